@@ -5,6 +5,7 @@ import hudson.Extension;
 import hudson.model.AbstractDescribableImpl;
 import hudson.model.Descriptor;
 import hudson.util.FormValidation;
+import hudson.util.Secret;
 import net.sf.json.JSONObject;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
@@ -190,6 +191,8 @@ public class BitbucketServer extends AbstractDescribableImpl<BitbucketServer> im
         private Integer timeout;
         private Integer poolSize;
         private boolean trustAllCertificates;
+        private Integer cacheMaxSizeMb;
+        private Secret webhookSecret;
 
         /**
          * Constructor that initializes the view.
@@ -212,6 +215,9 @@ public class BitbucketServer extends AbstractDescribableImpl<BitbucketServer> im
             url = json.getString("url");
             timeout = json.getInt("timeout");
             poolSize = json.getInt("poolSize");
+            cacheMaxSizeMb = json.optInt("cacheMaxSizeMb", 512);
+            String secret = json.optString("webhookSecret", null);
+            webhookSecret = secret == null || secret.isEmpty() ? null : Secret.fromString(secret);
 //            trustAllCertificates = json.getBoolean("trustAllCertificates");
             validate(url, username, password, timeout);
             save();
@@ -320,5 +326,23 @@ public class BitbucketServer extends AbstractDescribableImpl<BitbucketServer> im
         public Integer getPoolSize() {
             return poolSize;
         }
+
+        /**
+         * Returns the configured max size of the disk cache for immutable resources, 0 to disable it.
+         *
+         * @return The configured max cache size in megabytes.
+         */
+        public Integer getCacheMaxSizeMb() {
+            return cacheMaxSizeMb;
+        }
+
+        /**
+         * Returns the secret webhook payloads are signed with. Without it webhook events are not accepted.
+         *
+         * @return The configured webhook secret, or null.
+         */
+        public Secret getWebhookSecret() {
+            return webhookSecret;
+        }
     }
 }
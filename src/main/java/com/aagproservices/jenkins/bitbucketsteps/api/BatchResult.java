@@ -0,0 +1,82 @@
+package com.aagproservices.jenkins.bitbucketsteps.api;
+
+import org.jenkinsci.plugins.scriptsecurity.sandbox.whitelists.Whitelisted;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Compact result of a step that works on many items at once and keeps going when some of them fail.
+ */
+public final class BatchResult extends StepResult {
+
+    private static final long serialVersionUID = -1722520984815400390L;
+
+    private final List<String> succeeded;
+    private final Map<String, String> failed;
+    private final List<String> rolledBack;
+
+    /**
+     * Constructor that takes the outcome of each item.
+     *
+     * @param succeeded Descriptions of the items that succeeded.
+     * @param failed    Descriptions of the items that failed, mapped to the error.
+     */
+    public BatchResult(final List<String> succeeded, final Map<String, String> failed) {
+        this(succeeded, failed, Collections.emptyList());
+    }
+
+    /**
+     * Constructor that takes the outcome of each item and the items whose effect was undone.
+     *
+     * @param succeeded  Descriptions of the items that succeeded.
+     * @param failed     Descriptions of the items that failed, mapped to the error.
+     * @param rolledBack Descriptions of succeeded items that were undone because others failed.
+     */
+    public BatchResult(final List<String> succeeded, final Map<String, String> failed, final List<String> rolledBack) {
+        super(new JSONObject(), null);
+        this.succeeded = Collections.unmodifiableList(new ArrayList<>(succeeded));
+        this.failed = Collections.unmodifiableMap(new LinkedHashMap<>(failed));
+        this.rolledBack = Collections.unmodifiableList(new ArrayList<>(rolledBack));
+    }
+
+    @Whitelisted
+    public List<String> getSucceeded() {
+        return succeeded;
+    }
+
+    /**
+     * Returns the items that failed along with the error of each.
+     *
+     * @return Item descriptions mapped to error messages.
+     */
+    @Whitelisted
+    public Map<String, String> getFailed() {
+        return failed;
+    }
+
+    @Whitelisted
+    public List<String> getRolledBack() {
+        return rolledBack;
+    }
+
+    @Whitelisted
+    public boolean isSuccessful() {
+        return failed.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult {" +
+            "succeeded=" + succeeded.size() +
+            ", failed=" + failed +
+            ", rolledBack=" + rolledBack.size() +
+            "}";
+    }
+}
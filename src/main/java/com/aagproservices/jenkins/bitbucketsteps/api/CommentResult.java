@@ -0,0 +1,59 @@
+package com.aagproservices.jenkins.bitbucketsteps.api;
+
+import org.jenkinsci.plugins.scriptsecurity.sandbox.whitelists.Whitelisted;
+import org.json.JSONObject;
+
+import java.util.List;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Compact result describing a pull request comment.
+ */
+public final class CommentResult extends StepResult {
+
+    private static final long serialVersionUID = -3861402907135274621L;
+
+    private final int id;
+    private final int version;
+
+    /**
+     * Constructor that takes the comment as returned by the server.
+     *
+     * @param json   The comment.
+     * @param fields Names of additional fields to keep.
+     */
+    public CommentResult(final JSONObject json, final List<String> fields) {
+        super(json, fields);
+        this.id = json.optInt("id");
+        this.version = json.optInt("version");
+    }
+
+    /**
+     * Returns the ID of the comment.
+     *
+     * @return The comment ID.
+     */
+    @Whitelisted
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns the version of the comment, which grows with each edit.
+     *
+     * @return The version.
+     */
+    @Whitelisted
+    public int getVersion() {
+        return version;
+    }
+
+    @Override
+    public String toString() {
+        return "CommentResult {" +
+            "id=" + id +
+            ", version=" + version +
+            "}";
+    }
+}
@@ -0,0 +1,67 @@
+package com.aagproservices.jenkins.bitbucketsteps.api;
+
+import org.jenkinsci.plugins.scriptsecurity.sandbox.whitelists.Whitelisted;
+import org.json.JSONObject;
+
+import java.util.List;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Compact result describing a commit.
+ */
+public final class CommitResult extends StepResult {
+
+    private static final long serialVersionUID = 8235021746930382547L;
+
+    private final String id;
+    private final String displayId;
+    private final String message;
+
+    /**
+     * Constructor that takes the commit as returned by the server.
+     *
+     * @param json   The commit.
+     * @param fields Names of additional fields to keep.
+     */
+    public CommitResult(final JSONObject json, final List<String> fields) {
+        super(json, fields);
+        this.id = json.optString("id", null);
+        this.displayId = json.optString("displayId", null);
+        this.message = json.optString("message", null);
+    }
+
+    /**
+     * Returns the full commit hash.
+     *
+     * @return The commit hash.
+     */
+    @Whitelisted
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Returns the abbreviated commit hash.
+     *
+     * @return The short commit hash.
+     */
+    @Whitelisted
+    public String getDisplayId() {
+        return displayId;
+    }
+
+    @Whitelisted
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return "CommitResult {" +
+            "id='" + id + "'" +
+            ", displayId='" + displayId + "'" +
+            ", message='" + message + "'" +
+            "}";
+    }
+}
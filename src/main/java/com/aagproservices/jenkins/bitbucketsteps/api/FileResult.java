@@ -0,0 +1,61 @@
+package com.aagproservices.jenkins.bitbucketsteps.api;
+
+import org.jenkinsci.plugins.scriptsecurity.sandbox.whitelists.Whitelisted;
+import org.json.JSONObject;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Compact result describing a file downloaded to the workspace.
+ */
+public final class FileResult extends StepResult {
+
+    private static final long serialVersionUID = 2650884530193167745L;
+
+    private final String path;
+    private final long size;
+    private final boolean changed;
+
+    /**
+     * Constructor that takes the facts about the download.
+     *
+     * @param path    Path of the file, relative to the workspace.
+     * @param size    Size of the file in bytes.
+     * @param changed False if the file was already up to date and not downloaded again.
+     */
+    public FileResult(final String path, final long size, final boolean changed) {
+        super(new JSONObject(), null);
+        this.path = path;
+        this.size = size;
+        this.changed = changed;
+    }
+
+    @Whitelisted
+    public String getPath() {
+        return path;
+    }
+
+    @Whitelisted
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Tells whether the file was downloaded, as opposed to being found unchanged.
+     *
+     * @return True if the file was written.
+     */
+    @Whitelisted
+    public boolean isChanged() {
+        return changed;
+    }
+
+    @Override
+    public String toString() {
+        return "FileResult {" +
+            "path='" + path + "'" +
+            ", size=" + size +
+            ", changed=" + changed +
+            "}";
+    }
+}
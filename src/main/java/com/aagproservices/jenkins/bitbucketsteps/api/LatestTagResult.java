@@ -0,0 +1,85 @@
+package com.aagproservices.jenkins.bitbucketsteps.api;
+
+import org.jenkinsci.plugins.scriptsecurity.sandbox.whitelists.Whitelisted;
+import org.json.JSONObject;
+
+import java.util.List;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Compact result describing the tag with the highest version, along with the version that would follow it.
+ */
+public final class LatestTagResult extends StepResult {
+
+    private static final long serialVersionUID = -7790553716027281944L;
+
+    private final String id;
+    private final String displayId;
+    private final String latestCommit;
+    private final String version;
+    private final String nextVersion;
+
+    /**
+     * Constructor that takes the tag as returned by the server.
+     *
+     * @param json        The tag.
+     * @param version     The version parsed from the tag name.
+     * @param nextVersion The tag name of the next version, or null if it was not requested.
+     * @param fields      Names of additional fields to keep.
+     */
+    public LatestTagResult(final JSONObject json, final String version, final String nextVersion, final List<String> fields) {
+        super(json, fields);
+        this.id = json.optString("id", null);
+        this.displayId = json.optString("displayId", null);
+        this.latestCommit = json.optString("latestCommit", null);
+        this.version = version;
+        this.nextVersion = nextVersion;
+    }
+
+    @Whitelisted
+    public String getId() {
+        return id;
+    }
+
+    @Whitelisted
+    public String getDisplayId() {
+        return displayId;
+    }
+
+    @Whitelisted
+    public String getLatestCommit() {
+        return latestCommit;
+    }
+
+    /**
+     * Returns the version without prefix, e.g. "1.4.2".
+     *
+     * @return The version.
+     */
+    @Whitelisted
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the tag name of the next version including the prefix, e.g. "v1.5.0".
+     *
+     * @return The next tag name, or null if no bump was requested.
+     */
+    @Whitelisted
+    public String getNextVersion() {
+        return nextVersion;
+    }
+
+    @Override
+    public String toString() {
+        return "LatestTagResult {" +
+            "id='" + id + "'" +
+            ", displayId='" + displayId + "'" +
+            ", latestCommit='" + latestCommit + "'" +
+            ", version='" + version + "'" +
+            ", nextVersion='" + nextVersion + "'" +
+            "}";
+    }
+}
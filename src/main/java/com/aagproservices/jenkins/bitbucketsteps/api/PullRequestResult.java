@@ -0,0 +1,111 @@
+package com.aagproservices.jenkins.bitbucketsteps.api;
+
+import org.jenkinsci.plugins.scriptsecurity.sandbox.whitelists.Whitelisted;
+import org.json.JSONObject;
+
+import java.util.List;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Compact result describing a pull request.
+ */
+public final class PullRequestResult extends StepResult {
+
+    private static final long serialVersionUID = -2046630147518923150L;
+
+    private final int id;
+    private final int version;
+    private final String state;
+    private final String title;
+    private final String fromRef;
+    private final String toRef;
+    private final String author;
+
+    /**
+     * Constructor that takes the pull request as returned by the server.
+     *
+     * @param json   The pull request.
+     * @param fields Names of additional fields to keep.
+     */
+    public PullRequestResult(final JSONObject json, final List<String> fields) {
+        super(json, fields);
+        this.id = json.optInt("id");
+        this.version = json.optInt("version");
+        this.state = json.optString("state", null);
+        this.title = json.optString("title", null);
+        this.fromRef = displayIdOf(json, "fromRef");
+        this.toRef = displayIdOf(json, "toRef");
+        JSONObject authorRole = json.optJSONObject("author");
+        JSONObject user = authorRole == null ? null : authorRole.optJSONObject("user");
+        this.author = user == null ? null : user.optString("name", null);
+    }
+
+    @Whitelisted
+    public int getId() {
+        return id;
+    }
+
+    @Whitelisted
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the state of the pull request: OPEN, DECLINED or MERGED.
+     *
+     * @return The state.
+     */
+    @Whitelisted
+    public String getState() {
+        return state;
+    }
+
+    @Whitelisted
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * Returns the short name of the source branch.
+     *
+     * @return The source branch.
+     */
+    @Whitelisted
+    public String getFromRef() {
+        return fromRef;
+    }
+
+    /**
+     * Returns the short name of the target branch.
+     *
+     * @return The target branch.
+     */
+    @Whitelisted
+    public String getToRef() {
+        return toRef;
+    }
+
+    /**
+     * Returns the username of the author.
+     *
+     * @return The author.
+     */
+    @Whitelisted
+    public String getAuthor() {
+        return author;
+    }
+
+    @Override
+    public String toString() {
+        return "PullRequestResult {" +
+            "id=" + id +
+            ", version=" + version +
+            ", state='" + state + "'" +
+            ", title='" + title + "'" +
+            ", fromRef='" + fromRef + "'" +
+            ", toRef='" + toRef + "'" +
+            ", author='" + author + "'" +
+            "}";
+    }
+}
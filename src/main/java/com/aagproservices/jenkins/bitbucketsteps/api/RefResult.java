@@ -0,0 +1,72 @@
+package com.aagproservices.jenkins.bitbucketsteps.api;
+
+import org.jenkinsci.plugins.scriptsecurity.sandbox.whitelists.Whitelisted;
+import org.json.JSONObject;
+
+import java.util.List;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Compact result describing a branch or a tag.
+ */
+public final class RefResult extends StepResult {
+
+    private static final long serialVersionUID = 6390137402851164627L;
+
+    private final String id;
+    private final String displayId;
+    private final String latestCommit;
+
+    /**
+     * Constructor that takes the ref as returned by the server.
+     *
+     * @param json   The ref.
+     * @param fields Names of additional fields to keep.
+     */
+    public RefResult(final JSONObject json, final List<String> fields) {
+        super(json, fields);
+        this.id = json.optString("id", null);
+        this.displayId = json.optString("displayId", null);
+        this.latestCommit = json.optString("latestCommit", null);
+    }
+
+    /**
+     * Returns the fully qualified name of the ref, e.g. "refs/tags/v1.0".
+     *
+     * @return The ref ID.
+     */
+    @Whitelisted
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Returns the short name of the ref, e.g. "v1.0".
+     *
+     * @return The display ID.
+     */
+    @Whitelisted
+    public String getDisplayId() {
+        return displayId;
+    }
+
+    /**
+     * Returns the commit the ref points to.
+     *
+     * @return The commit hash.
+     */
+    @Whitelisted
+    public String getLatestCommit() {
+        return latestCommit;
+    }
+
+    @Override
+    public String toString() {
+        return "RefResult {" +
+            "id='" + id + "'" +
+            ", displayId='" + displayId + "'" +
+            ", latestCommit='" + latestCommit + "'" +
+            "}";
+    }
+}
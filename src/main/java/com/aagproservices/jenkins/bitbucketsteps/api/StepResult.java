@@ -0,0 +1,104 @@
+package com.aagproservices.jenkins.bitbucketsteps.api;
+
+import org.jenkinsci.plugins.scriptsecurity.sandbox.whitelists.Whitelisted;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Base class of the compact results returned by the steps. Instead of the whole server response only a few fields
+ * are kept, which keeps the pipeline program state small. Scripts that need more can request additional fields,
+ * which are copied from the response as plain maps, lists and values.
+ */
+public abstract class StepResult implements Serializable {
+
+    private static final long serialVersionUID = -3518872203617794105L;
+
+    private final Map<String, Object> fields;
+
+    /**
+     * Constructor that projects the requested fields out of a server response.
+     *
+     * @param json   The server response.
+     * @param fields Names of additional fields to keep. Nested fields are addressed with dots, e.g. "author.user.name".
+     */
+    protected StepResult(final JSONObject json, final List<String> fields) {
+        if (fields == null || fields.isEmpty()) {
+            this.fields = Collections.emptyMap();
+            return;
+        }
+        Map<String, Object> projected = new LinkedHashMap<>();
+        for (String field : fields) {
+            projected.put(field, toPlain(lookup(json, field)));
+        }
+        this.fields = Collections.unmodifiableMap(projected);
+    }
+
+    /**
+     * Returns an additional field requested via the "fields" parameter of the step.
+     *
+     * @param name Name of the field as requested.
+     * @return The value, or null if it was not requested or not present.
+     */
+    @Whitelisted
+    public Object getField(final String name) {
+        return fields.get(name);
+    }
+
+    /**
+     * Returns all additional fields requested via the "fields" parameter of the step.
+     *
+     * @return The requested fields.
+     */
+    @Whitelisted
+    public Map<String, Object> getFields() {
+        return fields;
+    }
+
+    protected static String displayIdOf(final JSONObject json, final String refField) {
+        JSONObject ref = json.optJSONObject(refField);
+        return ref == null ? null : ref.optString("displayId", null);
+    }
+
+    private static Object lookup(final JSONObject json, final String path) {
+        Object current = json;
+        for (String part : path.split("\\.")) {
+            if (!(current instanceof JSONObject)) {
+                return null;
+            }
+            current = ((JSONObject) current).opt(part);
+        }
+        return current;
+    }
+
+    private static Object toPlain(final Object value) {
+        if (value == null || value == JSONObject.NULL) {
+            return null;
+        }
+        if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            Map<String, Object> map = new LinkedHashMap<>();
+            for (String key : JSONObject.getNames(object) == null ? new String[0] : JSONObject.getNames(object)) {
+                map.put(key, toPlain(object.opt(key)));
+            }
+            return map;
+        }
+        if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            List<Object> list = new ArrayList<>(array.length());
+            for (int i = 0; i < array.length(); i++) {
+                list.add(toPlain(array.opt(i)));
+            }
+            return list;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,46 @@
+package com.aagproservices.jenkins.bitbucketsteps.cache;
+
+import hudson.Extension;
+import hudson.model.Api;
+import hudson.model.RootAction;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Exposes size, hit, miss and eviction counts of the caches at {@code <jenkins-url>/bitbucket-steps-cache/api/json}.
+ */
+@Extension
+@ExportedBean
+public class CacheAction implements RootAction {
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Bitbucket steps caches";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "bitbucket-steps-cache";
+    }
+
+    @Exported
+    public DiskCache getDisk() {
+        return DiskCache.getInstance();
+    }
+
+    @Exported
+    public ResponseCache getMemory() {
+        return ResponseCache.getInstance();
+    }
+
+    public Api getApi() {
+        return new Api(this);
+    }
+}
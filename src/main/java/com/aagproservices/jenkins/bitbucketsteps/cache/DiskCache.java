@@ -0,0 +1,212 @@
+package com.aagproservices.jenkins.bitbucketsteps.cache;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketServer;
+import jenkins.model.Jenkins;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Size-bounded disk cache under {@code JENKINS_HOME/bitbucket-steps/cache} for responses that can never change, e.g.
+ * anything addressed by a full commit hash. Entries are keyed by the request URL, which holds server, repository,
+ * commit and path, so no invalidation is needed. When the configured max size is exceeded, the least recently used
+ * entries are evicted; access times survive restarts through the file modification times.
+ */
+@ExportedBean
+public final class DiskCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DiskCache.class);
+
+    private static final String SUFFIX = ".entry";
+    private static final long DEFAULT_MAX_SIZE_MB = 512;
+
+    private static volatile DiskCache instance;
+
+    private final File directory;
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private boolean loaded;
+    private long sizeBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private DiskCache(final File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the cache of this Jenkins instance.
+     *
+     * @return The cache, or null when not running on a Jenkins controller.
+     */
+    public static DiskCache getInstance() {
+        if (instance == null) {
+            Jenkins jenkins = Jenkins.getInstanceOrNull();
+            if (jenkins == null) {
+                return null;
+            }
+            synchronized (DiskCache.class) {
+                if (instance == null) {
+                    instance = new DiskCache(new File(jenkins.getRootDir(), "bitbucket-steps/cache"));
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Reads an entry.
+     *
+     * @param key The request URL.
+     * @return The cached content, or null on a miss.
+     */
+    public byte[] read(final String key) {
+        if (getMaxSizeBytes() <= 0) {
+            return null;
+        }
+        String name = fileName(key);
+        synchronized (this) {
+            load();
+            if (entries.get(name) == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+        }
+        File file = new File(directory, name);
+        try {
+            byte[] content = Files.readAllBytes(file.toPath());
+            file.setLastModified(System.currentTimeMillis());
+            hits.incrementAndGet();
+            return content;
+        } catch (IOException e) {
+            //evicted in the meantime
+            synchronized (this) {
+                forget(name);
+            }
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Stores an entry, evicting the least recently used ones if the cache grows beyond its max size.
+     *
+     * @param key     The request URL.
+     * @param content The response body.
+     */
+    public void write(final String key, final byte[] content) {
+        long maxSize = getMaxSizeBytes();
+        if (maxSize <= 0 || content.length > maxSize) {
+            return;
+        }
+        String name = fileName(key);
+        try {
+            Files.createDirectories(directory.toPath());
+            File temp = File.createTempFile(name, ".tmp", directory);
+            Files.write(temp.toPath(), content);
+            Files.move(temp.toPath(), new File(directory, name).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.warn("Cannot write cache entry for " + key + ": " + e.getMessage());
+            return;
+        }
+        synchronized (this) {
+            load();
+            forget(name);
+            entries.put(name, (long) content.length);
+            sizeBytes += content.length;
+            evict(maxSize);
+        }
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            entries.put(file.getName(), file.length());
+            sizeBytes += file.length();
+        }
+    }
+
+    private void forget(final String name) {
+        Long size = entries.remove(name);
+        if (size != null) {
+            sizeBytes -= size;
+        }
+    }
+
+    private void evict(final long maxSize) {
+        Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+        while (sizeBytes > maxSize && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            eldest.remove();
+            sizeBytes -= entry.getValue();
+            evictions.incrementAndGet();
+            if (!new File(directory, entry.getKey()).delete()) {
+                LOGGER.debug("Cache entry " + entry.getKey() + " was already gone");
+            }
+        }
+    }
+
+    private static String fileName(final String key) {
+        return DigestUtils.sha256Hex(key) + SUFFIX;
+    }
+
+    @Exported
+    public long getMaxSizeBytes() {
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        BitbucketServer.BitbucketServerDescriptor descriptor = jenkins == null ? null
+                : (BitbucketServer.BitbucketServerDescriptor) jenkins.getDescriptor(BitbucketServer.class);
+        Integer maxSizeMb = descriptor == null ? null : descriptor.getCacheMaxSizeMb();
+        return (maxSizeMb == null ? DEFAULT_MAX_SIZE_MB : maxSizeMb) * 1024L * 1024L;
+    }
+
+    @Exported
+    public synchronized long getSizeBytes() {
+        load();
+        return sizeBytes;
+    }
+
+    @Exported
+    public synchronized int getEntries() {
+        load();
+        return entries.size();
+    }
+
+    @Exported
+    public long getHits() {
+        return hits.get();
+    }
+
+    @Exported
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Exported
+    public long getEvictions() {
+        return evictions.get();
+    }
+}
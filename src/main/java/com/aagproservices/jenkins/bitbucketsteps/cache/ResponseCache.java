@@ -0,0 +1,294 @@
+package com.aagproservices.jenkins.bitbucketsteps.cache;
+
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Short-lived in-memory cache for reads of things that do change, like tag lists, branch heads and pull requests.
+ * It absorbs the duplicate requests of parallel and matrix builds: within the TTL of the endpoint an entry is served
+ * as is, afterwards it is revalidated with If-None-Match/If-Modified-Since if the server sent validators, so an
+ * unchanged resource costs a 304 instead of downloading and parsing the body again. Any mutation through this plugin
+ * drops all entries of the repository it touched.
+ * <p>
+ * Every caller gets its own copy of a cached response, so one changing it does not affect the others. Reads whose
+ * result decides a following write bypass the cache, see {@code BaseService#executeRequest(Request, boolean)}.
+ */
+@ExportedBean
+public final class ResponseCache {
+
+    private static final ResponseCache INSTANCE = new ResponseCache();
+
+    private static final long DEFAULT_TTL_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    private static final Map<String, Long> TTL_MILLIS = new HashMap<>();
+    private static final long MAX_WEIGHT = 16 * 1024 * 1024;
+    private static final long MAX_ENTRY_WEIGHT = 1024 * 1024;
+
+    static {
+        TTL_MILLIS.put("tags", TimeUnit.SECONDS.toMillis(60));
+        TTL_MILLIS.put("branches", TimeUnit.SECONDS.toMillis(30));
+        TTL_MILLIS.put("pull-requests", TimeUnit.SECONDS.toMillis(15));
+    }
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private ResponseCache() {
+    }
+
+    public static ResponseCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Tells whether a request may be served from this cache. Only GETs of repository resources qualify, and of
+     * paged resources only the first page, so long listings walked page by page do not flush the cache. Requests
+     * sent from an agent do not get this far, since webhooks only invalidate the cache of the controller, see
+     * {@code BaseService#setOnAgent(boolean)}.
+     */
+    public static boolean isCacheable(final Request request) {
+        return "GET".equals(request.method()) && repositoryOf(request.url()) != null
+                && (request.url().queryParameter("start") == null || "0".equals(request.url().queryParameter("start")));
+    }
+
+    /**
+     * Looks up the entry of a request.
+     *
+     * @param request The request.
+     * @return The entry, fresh or stale, or null.
+     */
+    public synchronized Entry lookup(final Request request) {
+        Entry entry = entries.get(request.url().toString());
+        if (entry == null) {
+            misses.incrementAndGet();
+        } else if (entry.isFresh()) {
+            hits.incrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * Marks a stale entry as valid again after the server answered 304.
+     *
+     * @param entry The entry.
+     * @return A copy of the body of the entry.
+     */
+    public JSONObject revalidated(final Entry entry) {
+        revalidations.incrementAndGet();
+        entry.storedAt = System.currentTimeMillis();
+        return entry.getBody();
+    }
+
+    /**
+     * Stores a response. The body is copied, so the caller may go on changing it.
+     */
+
+    public void store(final Request request, final Validators validators, final JSONObject body, final long bodyLength) {
+        if (bodyLength > MAX_ENTRY_WEIGHT) {
+            return;
+        }
+        String repository = repositoryOf(request.url());
+        Entry entry = new Entry(repository, ttlOf(request.url()), validators, copyOf(body), bodyLength);
+        synchronized (this) {
+            Entry previous = entries.put(request.url().toString(), entry);
+            weight += bodyLength - (previous == null ? 0 : previous.weight);
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (weight > MAX_WEIGHT && eldest.hasNext()) {
+                weight -= eldest.next().weight;
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Drops all entries of the repository a request addresses.
+     *
+     * @param url URL of the request.
+     */
+    public void invalidate(final HttpUrl url) {
+        String repository = repositoryOf(url);
+        if (repository != null) {
+            invalidateRepository(repository);
+        }
+    }
+
+    /**
+     * Drops all entries of a repository, on any server.
+     *
+     * @param project  Project key.
+     * @param repoSlug Repository slug.
+     */
+    public void invalidate(final String project, final String repoSlug) {
+        invalidateRepository(repositoryKey(project, repoSlug));
+    }
+
+    private synchronized void invalidateRepository(final String repository) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.repository.equals(repository)) {
+                weight -= entry.weight;
+                iterator.remove();
+                invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    private static String repositoryOf(final HttpUrl url) {
+        List<String> segments = url.pathSegments();
+        int projects = segments.indexOf("projects");
+        if (projects < 0 || projects + 3 >= segments.size() || !"repos".equals(segments.get(projects + 2))) {
+            return null;
+        }
+        return repositoryKey(segments.get(projects + 1), segments.get(projects + 3));
+    }
+
+    private static String repositoryKey(final String project, final String repoSlug) {
+        return project.toUpperCase(Locale.ROOT) + "/" + repoSlug.toLowerCase(Locale.ROOT);
+    }
+
+    private static JSONObject copyOf(final JSONObject object) {
+        JSONObject copy = new JSONObject();
+        String[] names = JSONObject.getNames(object);
+        try {
+            for (String name : names == null ? new String[0] : names) {
+                copy.put(name, copyOfValue(object.opt(name)));
+            }
+        } catch (JSONException e) {
+            throw new IllegalStateException("Cannot copy cached response", e);
+        }
+        return copy;
+    }
+
+    private static Object copyOfValue(final Object value) {
+        if (value instanceof JSONObject) {
+            return copyOf((JSONObject) value);
+        }
+        if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            JSONArray copy = new JSONArray();
+            for (int i = 0; i < array.length(); i++) {
+                copy.put(copyOfValue(array.opt(i)));
+            }
+            return copy;
+        }
+        return value;
+    }
+
+    private static long ttlOf(final HttpUrl url) {
+        List<String> segments = url.pathSegments();
+        int repos = segments.indexOf("repos");
+        String endpoint = repos >= 0 && repos + 2 < segments.size() ? segments.get(repos + 2) : "";
+        return TTL_MILLIS.getOrDefault(endpoint, DEFAULT_TTL_MILLIS);
+    }
+
+    @Exported
+    public synchronized int getEntries() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the total weight of all entries, which is the length of their response bodies.
+     *
+     * @return The weight.
+     */
+    @Exported
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    @Exported
+    public long getHits() {
+        return hits.get();
+    }
+
+    @Exported
+    public long getRevalidations() {
+        return revalidations.get();
+    }
+
+    @Exported
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Exported
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    @Exported
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * A cached response.
+     */
+    public static final class Entry {
+        private final String repository;
+        private final long ttlMillis;
+        private final Validators validators;
+        private final JSONObject body;
+        private final long weight;
+        private volatile long storedAt = System.currentTimeMillis();
+
+        private Entry(final String repository, final long ttlMillis, final Validators validators, final JSONObject body,
+                      final long weight) {
+            this.repository = repository;
+            this.ttlMillis = ttlMillis;
+            this.validators = validators;
+            this.body = body;
+            this.weight = weight;
+        }
+
+        public boolean isFresh() {
+            return System.currentTimeMillis() - storedAt < ttlMillis;
+        }
+
+        public boolean canRevalidate() {
+            return validators != null;
+        }
+
+        /**
+         * Returns a copy of the cached body, which the caller may change.
+         *
+         * @return The body.
+         */
+        public JSONObject getBody() {
+            return copyOf(body);
+        }
+
+        /**
+         * Turns a request into a conditional one based on the validators of this entry.
+         *
+         * @param request The original request.
+         * @return The conditional request.
+         */
+        public Request conditional(final Request request) {
+            return validators.conditional(request);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.aagproservices.jenkins.bitbucketsteps.cache;
+
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * ETag and Last-Modified of a downloaded resource. They are remembered per download target, so the next download to
+ * the same target can be made conditional and skipped if the resource did not change.
+ */
+public final class Validators {
+
+    private static final int REMEMBERED_TARGETS = 10000;
+
+    private static final Map<String, Validators> REMEMBERED = Collections.synchronizedMap(
+            new LinkedHashMap<String, Validators>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, Validators> eldest) {
+                    return size() > REMEMBERED_TARGETS;
+                }
+            });
+
+    private final String etag;
+    private final String lastModified;
+
+    private Validators(final String etag, final String lastModified) {
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Takes the validators from a response.
+     *
+     * @param response The response.
+     * @return The validators, or null if the server sent none.
+     */
+    public static Validators of(final Response response) {
+        String etag = response.header("ETag");
+        String lastModified = response.header("Last-Modified");
+        return etag == null && lastModified == null ? null : new Validators(etag, lastModified);
+    }
+
+    public static Validators recall(final String target) {
+        return REMEMBERED.get(target);
+    }
+
+    /**
+     * Remembers the validators of what was downloaded to a target, or forgets them if there are none.
+     *
+     * @param target     Identifies the download target, e.g. URL and file.
+     * @param validators The validators, may be null.
+     */
+    public static void remember(final String target, final Validators validators) {
+        if (validators == null) {
+            REMEMBERED.remove(target);
+        } else {
+            REMEMBERED.put(target, validators);
+        }
+    }
+
+    /**
+     * Makes a request conditional.
+     *
+     * @param request The request.
+     * @return The request with If-None-Match and/or If-Modified-Since set.
+     */
+    public Request conditional(final Request request) {
+        Request.Builder builder = request.newBuilder();
+        if (etag != null) {
+            builder.header("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            builder.header("If-Modified-Since", lastModified);
+        }
+        return builder.build();
+    }
+}
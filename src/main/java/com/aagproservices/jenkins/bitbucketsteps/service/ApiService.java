@@ -0,0 +1,73 @@
+package com.aagproservices.jenkins.bitbucketsteps.service;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketServer;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import javax.ws.rs.BadRequestException;
+import java.io.IOException;
+import java.util.function.Predicate;
+
+/**
+ * Service for calls to any REST resource of the server, for endpoints no other service covers. The calls share the
+ * client, authentication and caching of all other requests.
+ */
+public final class ApiService extends BaseService {
+
+    private static final String REST_PREFIX = "/rest/";
+
+    public ApiService(final BitbucketServer bitbucketSite) {
+        super(bitbucketSite);
+    }
+
+    /**
+     * Calls a resource and hands the response to the reader as a stream.
+     *
+     * @param path        Path of the resource, either below the core REST API, e.g. "projects/KEY/repos", or from the
+     *                    server root, e.g. "/rest/branch-utils/1.0/...". May contain a query string.
+     * @param httpMethod  The HTTP method.
+     * @param requestBody The body, or null.
+     * @param reader      Consumes the response.
+     */
+    public <R> R call(final String path, final String httpMethod, final RequestBody requestBody,
+                      final BodyReader<R> reader) throws IOException {
+        String[] apiAndResource = split(path);
+        Request request = buildApiRequest(apiAndResource[0], apiAndResource[1], httpMethod, requestBody, null);
+        return executeStreaming(request, reader);
+    }
+
+    /**
+     * Walks all pages of a paged collection resource, fetching the next page only when the consumer has taken all
+     * values of the current one.
+     *
+     * @param path     Path of the resource, see {@link #call}.
+     * @param consumer Receives each value, returns false to stop.
+     */
+    public void forEachPagedValue(final String path, final int pageSize, final Predicate<JSONObject> consumer) throws BadRequestException {
+        String[] apiAndResource = split(path);
+        try {
+            forEachValue(apiAndResource[0], apiAndResource[1], null, pageSize, consumer);
+        } catch (JSONException ex) {
+            throw new RuntimeException("Error listing " + path + ", it is not a paged resource", ex);
+        }
+    }
+
+    /**
+     * Splits a path into the REST API, e.g. "/rest/api/1.0", and the resource below it.
+     */
+    static String[] split(final String path) {
+        String absolute = path.startsWith("/") ? path : "/" + path;
+        if (!absolute.startsWith(REST_PREFIX)) {
+            return new String[]{BASE_RESOURCE, absolute.substring(1)};
+        }
+        //"/rest/<name>/<version>/<resource>"
+        int nameEnd = absolute.indexOf('/', REST_PREFIX.length());
+        int versionEnd = nameEnd < 0 ? -1 : absolute.indexOf('/', nameEnd + 1);
+        if (versionEnd < 0) {
+            throw new IllegalArgumentException("Path " + path + " does not name a resource of a REST API");
+        }
+        return new String[]{absolute.substring(0, versionEnd), absolute.substring(versionEnd + 1)};
+    }
+}
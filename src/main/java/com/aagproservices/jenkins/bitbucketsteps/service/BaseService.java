@@ -1,6 +1,10 @@
 package com.aagproservices.jenkins.bitbucketsteps.service;
 
 import com.aagproservices.jenkins.bitbucketsteps.BitbucketServer;
+import com.aagproservices.jenkins.bitbucketsteps.cache.DiskCache;
+import com.aagproservices.jenkins.bitbucketsteps.cache.ResponseCache;
+import com.aagproservices.jenkins.bitbucketsteps.cache.Validators;
+import com.aagproservices.jenkins.bitbucketsteps.session.BitbucketSession;
 import com.aagproservices.jenkins.bitbucketsteps.util.HttpUtil;
 import okhttp3.*;
 import org.json.JSONArray;
@@ -13,8 +17,14 @@ import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManager;
 import javax.ws.rs.BadRequestException;
+import javax.ws.rs.ClientErrorException;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.ServerErrorException;
+import javax.ws.rs.WebApplicationException;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.security.KeyManagementException;
@@ -24,19 +34,32 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
 
 public abstract class BaseService {
     private static final Logger LOGGER = LoggerFactory.getLogger(BaseService.class);
 
     private static final String SSL_INSTANCE_TYPE = "SSL";
     private static final String AUTHORIZATION_HEADER = "Authorization";
+    private static final String XSRF_HEADER = "X-Atlassian-Token";
     protected static final String BASE_RESOURCE = "/rest/api/1.0";
+    protected static final String GIT_RESOURCE = "/rest/git/1.0";
+    protected static final String BRANCH_UTILS_RESOURCE = "/rest/branch-utils/1.0";
+    protected static final String BUILD_STATUS_RESOURCE = "/rest/build-status/1.0";
+    protected static final String INSIGHTS_RESOURCE = "/rest/insights/1.0";
+    private static final Pattern COMMIT_ID = Pattern.compile("[0-9a-f]{40}");
+    private static final ConcurrentMap<String, OkHttpClient> CLIENTS = new ConcurrentHashMap<>();
 
     protected BitbucketServer bitbucketSite;
     private OkHttpClient client;
     private Map<String, String> defaultRequestHeaders;
     private Map<String, String> customRequestHeaders;
+    private BitbucketSession session;
+    private boolean onAgent;
 
     BaseService(final BitbucketServer bitbucketSite) {
         this.bitbucketSite = bitbucketSite;
@@ -86,25 +109,81 @@ public abstract class BaseService {
     protected Request buildRequest(final String project, final String repoSlug,
                                    final String requestResource, final String httpMethod,
                                    final RequestBody requestBody, final Map<String, String> queryParams) {
+        return buildRequest(BASE_RESOURCE, project, repoSlug, requestResource, httpMethod, requestBody, queryParams);
+    }
+
+    /**
+     * Builds a request for a repository resource of another REST API than the core one, e.g. {@link #GIT_RESOURCE}.
+     */
+    protected Request buildRequest(final String api, final String project, final String repoSlug,
+                                   final String requestResource, final String httpMethod,
+                                   final RequestBody requestBody, final Map<String, String> queryParams) {
+        return buildApiRequest(api, repositoryResource(project, repoSlug) + "/" + requestResource,
+                httpMethod, requestBody, queryParams);
+    }
+
+    /**
+     * Builds a request for a resource of any scope, e.g. "repos" for all repositories or "projects/KEY/repos" for
+     * the repositories of a project.
+     *
+     * @param api      The REST API, e.g. {@link #BASE_RESOURCE}.
+     * @param resource Path of the resource below the API.
+     */
+    protected Request buildApiRequest(final String api, final String resource, final String httpMethod,
+                                      final RequestBody requestBody, final Map<String, String> queryParams) {
         Request.Builder requestBuilder = new Request.Builder();
-        registerAllHeaders(requestBuilder);
+        HttpUrl url = buildUrl(bitbucketSite.getUrl() + api + "/" + resource, queryParams);
+        registerAllHeaders(requestBuilder, url, httpMethod);
         //clear the custom headers for the next upcoming request
         this.customRequestHeaders.clear();
-        requestBuilder.url(buildUrl(
-                bitbucketSite.getUrl()
-                        + BASE_RESOURCE
-                        + "/projects/" + project
-                        + "/repos/" + repoSlug
-                        + "/" + requestResource,
-                queryParams));
+        requestBuilder.url(url);
         requestBuilder.method(httpMethod, requestBody);
         return requestBuilder.build();
     }
 
+    protected static String projectResource(final String project) {
+        return "projects/" + project;
+    }
+
+    protected static String repositoryResource(final String project, final String repoSlug) {
+        return projectResource(project) + "/repos/" + repoSlug;
+    }
+
     protected JSONObject executeRequest(final Request request) throws JSONException, BadRequestException {
+        return executeRequest(request, true);
+    }
+
+    /**
+     * Executes a request and parses the JSON response.
+     *
+     * @param request The request.
+     * @param cached  Whether a read may be answered from the in-memory cache. False for reads whose result decides
+     *                what is sent next, like the version of a pull request or its merge status before merging.
+     * @return The response, a copy of it if it came from the cache.
+     */
+    protected JSONObject executeRequest(final Request request, final boolean cached) throws JSONException, BadRequestException {
+        DiskCache cache = !onAgent && isImmutable(request) ? DiskCache.getInstance() : null;
+        if (cache != null) {
+            byte[] stored = cache.read(request.url().toString());
+            if (stored != null) {
+                return new JSONObject(new String(stored, StandardCharsets.UTF_8));
+            }
+        }
+
+        ResponseCache memory = ResponseCache.getInstance();
+        boolean cacheable = cached && !onAgent && cache == null && ResponseCache.isCacheable(request);
+        ResponseCache.Entry entry = cacheable ? memory.lookup(request) : null;
+        if (entry != null && entry.isFresh()) {
+            return entry.getBody();
+        }
+        boolean conditional = entry != null && entry.canRevalidate();
+
         try {
-            OkHttpClient client = getClient();
-            Response response = client.newCall(request).execute();
+            Response response = call(conditional ? entry.conditional(request) : request);
+            if (conditional && response.code() == 304) {
+                response.close();
+                return memory.revalidated(entry);
+            }
 
             JSONObject result = new JSONObject();
             ResponseBody respBody = response.body();
@@ -112,6 +191,11 @@ public abstract class BaseService {
                 String respString = respBody.string();
                 if(respString != null && respString.trim().length() > 0) {
                     result = new JSONObject(respString);
+                    if (cache != null && response.isSuccessful()) {
+                        cache.write(request.url().toString(), respString.getBytes(StandardCharsets.UTF_8));
+                    } else if (cacheable && response.isSuccessful()) {
+                        memory.store(request, Validators.of(response), result, respString.length());
+                    }
                 }
             }
 
@@ -126,16 +210,203 @@ public abstract class BaseService {
                     //no problem - just use the whole result string
                 }
                 LOGGER.error("Error response from server: " + errorMsg);
-                throw new BadRequestException(errorMsg);
+                throw buildException(response.code(), errorMsg, result);
             }
             return result;
         } catch (IOException e) {
             LOGGER.error("Error while executing request " + request.toString(), e);
             throw new IllegalArgumentException(e);
+        } finally {
+            if (!"GET".equals(request.method())) {
+                // even a failed mutation may have been applied, so never trust cached reads of the repository after it
+                memory.invalidate(request.url());
+            }
+        }
+    }
+
+    /**
+     * Executes a request whose response is not JSON, e.g. raw file content, and hands the body to the reader as a
+     * stream, so it is never held in memory as a whole. A 304 for a conditional request is passed to the reader like
+     * a success; other unsuccessful responses are mapped to exceptions, and mutations invalidate cached reads, like in
+     * {@link #executeRequest(Request)}.
+     *
+     * @param request The request.
+     * @param reader  Consumes the response. The response is closed afterwards.
+     * @param <R>     Type of what the reader makes of the response.
+     * @return Whatever the reader returned.
+     * @throws IOException If the response could not be read or the reader failed.
+     */
+    protected <R> R executeStreaming(final Request request, final BodyReader<R> reader) throws IOException {
+        try (Response response = call(request)) {
+            if (!response.isSuccessful() && response.code() != 304) {
+                ResponseBody respBody = response.body();
+                String errorMsg = respBody == null ? "" : respBody.string();
+                JSONObject result = new JSONObject();
+                try {
+                    result = new JSONObject(errorMsg);
+                    errorMsg = result.getJSONArray("errors").getJSONObject(0).getString("message");
+                } catch(Exception ex) {
+                    //no problem - just use the whole response
+                }
+                LOGGER.error("Error response from server: " + errorMsg);
+                throw buildException(response.code(), errorMsg, result);
+            }
+            return reader.read(response);
+        } finally {
+            if (!"GET".equals(request.method())) {
+                ResponseCache.getInstance().invalidate(request.url());
+            }
         }
     }
 
+    /**
+     * Sends a request. Inside a session a request may go without the password; if the server no longer accepts the
+     * session cookie, it is sent again with the password, which also renews the cookie.
+     */
+    private Response call(final Request request) throws IOException {
+        Response response = getClient().newCall(request).execute();
+        if (response.code() == 401 && session != null && request.header(AUTHORIZATION_HEADER) == null) {
+            response.close();
+            session.reset();
+            response = getClient().newCall(request.newBuilder()
+                    .header(AUTHORIZATION_HEADER, defaultRequestHeaders.get(AUTHORIZATION_HEADER)).build()).execute();
+        }
+        return response;
+    }
+
+    /**
+     * Tells whether a request reads something that can never change. Only an allowlist of core API resources qualifies,
+     * and only when every revision it depends on is given as a full commit hash: file content and listings at a
+     * commit, archives of a commit, the details of a commit and diffs between commits. Other resources addressed by a
+     * commit, like its build statuses, comments or reports, do change.
+     */
+    protected static boolean isImmutable(final Request request) {
+        if (!HttpMethod.GET.equals(request.method())) {
+            return false;
+        }
+        HttpUrl url = request.url();
+        List<String> resource = repositoryResource(url.pathSegments());
+        if (resource == null || resource.isEmpty()) {
+            return false;
+        }
+        String since = url.queryParameter("since");
+        boolean sinceCommit = since == null || isCommitId(since);
+        switch (resource.get(0)) {
+            case "raw":
+            case "browse":
+            case "archive":
+                return isCommitId(url.queryParameter("at"));
+            case "diff":
+                return isCommitId(url.queryParameter("until")) && sinceCommit;
+            case "commits":
+                return resource.size() >= 2 && isCommitId(resource.get(1))
+                        && (resource.size() == 2 || "diff".equals(resource.get(2)) && sinceCommit);
+            case "compare":
+                return resource.size() == 2 && "diff".equals(resource.get(1))
+                        && isCommitId(url.queryParameter("from")) && isCommitId(url.queryParameter("to"));
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns the path segments behind {@code /rest/api/1.0/projects/{project}/repos/{slug}/}, or null if the path
+     * does not lead to a resource of a repository in the core API.
+     */
+    private static List<String> repositoryResource(final List<String> segments) {
+        for (int i = 0; i + 6 <= segments.size(); i++) {
+            if ("rest".equals(segments.get(i)) && "api".equals(segments.get(i + 1))
+                    && "projects".equals(segments.get(i + 3)) && "repos".equals(segments.get(i + 5))) {
+                return segments.subList(Math.min(i + 7, segments.size()), segments.size());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Tells whether the given revision is a full commit hash, as opposed to a branch, tag or abbreviated hash.
+     */
+    public static boolean isCommitId(final String revision) {
+        return revision != null && COMMIT_ID.matcher(revision).matches();
+    }
+
+    /**
+     * Walks a paged collection resource and hands each value to the consumer. The next page is only requested once
+     * all values of the current one were consumed, and walking stops as soon as the consumer returns false.
+     */
+    protected void forEachValue(final String project, final String repoSlug, final String requestResource,
+                                final Map<String, String> queryParams, final int pageSize,
+                                final Predicate<JSONObject> consumer) throws JSONException, BadRequestException {
+        forEachValue(repositoryResource(project, repoSlug) + "/" + requestResource, queryParams, pageSize, consumer);
+    }
+
+    /**
+     * Walks a paged collection resource of any scope of the core REST API, see
+     * {@link #buildApiRequest(String, String, String, RequestBody, Map)}.
+     */
+    protected void forEachValue(final String resource, final Map<String, String> queryParams, final int pageSize,
+                                final Predicate<JSONObject> consumer) throws JSONException, BadRequestException {
+        forEachValue(BASE_RESOURCE, resource, queryParams, pageSize, consumer);
+    }
+
+    /**
+     * Walks a paged collection resource of any REST API, e.g. {@link #INSIGHTS_RESOURCE}.
+     */
+    protected void forEachValue(final String api, final String resource, final Map<String, String> queryParams, final int pageSize,
+                                final Predicate<JSONObject> consumer) throws JSONException, BadRequestException {
+        Map<String, String> params = new HashMap<>();
+        if (queryParams != null) {
+            params.putAll(queryParams);
+        }
+        params.put("limit", String.valueOf(pageSize));
+        int start = 0;
+        while (true) {
+            params.put("start", String.valueOf(start));
+            JSONObject page = executeRequest(buildApiRequest(api, resource, HttpMethod.GET, null, params));
+            JSONArray values = page.optJSONArray("values");
+            if (values != null) {
+                for (int i = 0; i < values.length(); i++) {
+                    if (!consumer.test(values.getJSONObject(i))) {
+                        return;
+                    }
+                }
+            }
+            if (page.optBoolean("isLastPage", true) || !page.has("nextPageStart")) {
+                return;
+            }
+            start = page.getInt("nextPageStart");
+        }
+    }
+
+    /**
+     * Maps an unsuccessful response to the exception thrown to the caller. Conflicts keep the response body as entity,
+     * so callers retrying optimistic updates can read e.g. the current version from it. Missing resources and server
+     * errors are told apart, the latter since unlike client errors they may go away when retried.
+     */
+    private WebApplicationException buildException(final int code, final String errorMsg, final JSONObject result) {
+        if (code == javax.ws.rs.core.Response.Status.CONFLICT.getStatusCode()) {
+            return new ClientErrorException(errorMsg,
+                    javax.ws.rs.core.Response.status(code).entity(result.toString()).build());
+        }
+        if (code == javax.ws.rs.core.Response.Status.NOT_FOUND.getStatusCode()) {
+            return new NotFoundException(errorMsg);
+        }
+        if (code >= 500) {
+            return new ServerErrorException(errorMsg, code);
+        }
+        return new BadRequestException(errorMsg);
+    }
+
+    /**
+     * Services are created per step, but they all share one client per configuration, so connections and their TLS
+     * sessions are reused across steps and builds.
+     */
     private void initClient() {
+        String key = bitbucketSite.getTimeout() + "|" + bitbucketSite.getPoolSize() + "|" + bitbucketSite.getTrustAllCertificates();
+        this.client = CLIENTS.computeIfAbsent(key, k -> buildClient());
+    }
+
+    private OkHttpClient buildClient() {
         OkHttpClient.Builder builder = new OkHttpClient.Builder()
                 .connectTimeout(this.bitbucketSite.getTimeout(), TimeUnit.SECONDS)
                 .readTimeout(this.bitbucketSite.getTimeout(), TimeUnit.SECONDS)
@@ -147,7 +418,7 @@ public abstract class BaseService {
                     .hostnameVerifier((s, sslSession) -> true);
         }
 
-        this.client = builder.build();
+        return builder.build();
     }
 
     private OkHttpClient.Builder installTrustManager(OkHttpClient.Builder builder, final TrustManager[] allTrustingManager) {
@@ -167,12 +438,43 @@ public abstract class BaseService {
 
     private void initHeaders() {
         this.defaultRequestHeaders = new HashMap<>();
-        this.defaultRequestHeaders.put(AUTHORIZATION_HEADER, Credentials.basic(bitbucketSite.getUserName(), bitbucketSite.getPassword()));
+        if (bitbucketSite.getPassword() != null) {
+            this.defaultRequestHeaders.put(AUTHORIZATION_HEADER, authorizationOf(bitbucketSite));
+        }
+    }
+
+    /**
+     * Returns the value of the Authorization header the requests to a site are sent with.
+     *
+     * @param bitbucketSite The configured site of bitbucket.
+     * @return The header value.
+     */
+    public static String authorizationOf(final BitbucketServer bitbucketSite) {
+        return Credentials.basic(bitbucketSite.getUserName(), bitbucketSite.getPassword());
+    }
+
+    /**
+     * Makes the service authenticate with the given Authorization header instead of the password of its site, e.g. on
+     * an agent, which is sent the site without its password.
+     *
+     * @param authorization The header value, see {@link #authorizationOf(BitbucketServer)}.
+     */
+    public void setAuthorization(final String authorization) {
+        this.defaultRequestHeaders.put(AUTHORIZATION_HEADER, authorization);
     }
 
-    private void registerAllHeaders(final Request.Builder builder) {
-        defaultRequestHeaders.forEach(builder::addHeader);
-        customRequestHeaders.forEach(builder::addHeader);
+    private void registerAllHeaders(final Request.Builder builder, final HttpUrl url, final String httpMethod) {
+        boolean cookie = session != null && session.isAuthenticated(url);
+        defaultRequestHeaders.forEach((name, value) -> {
+            if (!cookie || !AUTHORIZATION_HEADER.equals(name)) {
+                builder.addHeader(name, value);
+            }
+        });
+        if (!HttpMethod.GET.equals(httpMethod)) {
+            //requests authenticated with the session cookie are checked for XSRF, unless they opt out
+            builder.header(XSRF_HEADER, "no-check");
+        }
+        customRequestHeaders.forEach(builder::header);
     }
 
     private void addQueryParams(final HttpUrl.Builder urlBuilder, final Map<String, String> queryParams) {
@@ -193,7 +495,35 @@ public abstract class BaseService {
     }
 
     public OkHttpClient getClient() {
-        return client;
+        return session == null ? client : session.client(client);
+    }
+
+    /**
+     * Makes the service send its requests within a session, see {@link BitbucketSession}.
+     *
+     * @param session The session, or null for none.
+     */
+    public void setSession(final BitbucketSession session) {
+        this.session = session;
+    }
+
+    /**
+     * Makes the service send its requests past the caches of the controller, e.g. on an agent, where webhooks do not
+     * reach the caches and there is no Jenkins home to keep them in.
+     *
+     * @param onAgent Whether the service runs on an agent.
+     */
+    public void setOnAgent(final boolean onAgent) {
+        this.onAgent = onAgent;
+    }
+
+    /**
+     * Consumes a streamed response, see {@link #executeStreaming(Request, BodyReader)}.
+     *
+     * @param <R> Type of what the reader makes of the response.
+     */
+    public interface BodyReader<R> {
+        R read(Response response) throws IOException;
     }
 
     protected static final class MultipartField {
@@ -0,0 +1,182 @@
+package com.aagproservices.jenkins.bitbucketsteps.service;
+
+import hudson.Extension;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Sends build status updates off the pipeline thread. Updates wait a moment before they are sent, and an update of a
+ * status that is still waiting replaces it, so a pipeline reporting every stage only sends the state each status has
+ * when the batch goes out. Batches are sent by a single thread in the order the statuses were first submitted. When
+ * a build completes the waiting updates are sent right away, without holding up the completion of the build.
+ */
+public final class BuildStatusQueue {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BuildStatusQueue.class);
+
+    private static final long LINGER_MILLIS = 2000;
+    private static final long RETRY_DELAY_MILLIS = 1000;
+    private static final long FLUSH_TIMEOUT_SECONDS = 60;
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(
+            new NamingThreadFactory(new DaemonThreadFactory(), "Bitbucket build status"));
+
+    //guarded by itself, insertion order is kept when a waiting update is replaced
+    private static final Map<String, Update> PENDING = new LinkedHashMap<>();
+    private static boolean scheduled;
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+    private static final AtomicLong SUBMITTED = new AtomicLong();
+    private static final AtomicLong COALESCED = new AtomicLong();
+    private static final AtomicLong SENT = new AtomicLong();
+    private static final AtomicLong FAILED = new AtomicLong();
+
+    /**
+     * Private constructor.
+     */
+    private BuildStatusQueue() {
+    }
+
+    /**
+     * Queues a build status update. Returns right away; the update is sent with the next batch unless a newer update
+     * of the same status replaces it first.
+     *
+     * @param service The service the update is sent with.
+     * @param commit  The commit ID.
+     * @param status  The status, with at least state, key and url.
+     */
+    static void submit(final BuildStatusService service, final String commit, final JSONObject status) {
+        SUBMITTED.incrementAndGet();
+        enqueue(new Update(service, commit, status, 1, SEQUENCE.incrementAndGet()));
+    }
+
+    private static void enqueue(final Update update) {
+        synchronized (PENDING) {
+            String identity = update.service.identify(update.commit, update.status);
+            Update waiting = PENDING.get(identity);
+            if (waiting == null) {
+                PENDING.put(identity, update);
+            } else {
+                //a newer update wins over a retry of an older one; it keeps the place of both, also for a flush
+                Update newer = update.attempt > 1 ? waiting : update;
+                if (update.attempt == 1) {
+                    COALESCED.incrementAndGet();
+                }
+                PENDING.put(identity, new Update(newer.service, newer.commit, newer.status, newer.attempt,
+                        Math.min(waiting.sequence, update.sequence)));
+            }
+            if (!scheduled) {
+                scheduled = true;
+                EXECUTOR.schedule(BuildStatusQueue::drain, LINGER_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Sends all waiting updates and blocks until they, and any batch already being sent, are done. Updates that fail
+     * are tried again until they were sent or gave up; updates submitted after the call are not waited for.
+     *
+     * @throws InterruptedException If interrupted while waiting.
+     * @throws TimeoutException     If the updates could not be sent in time.
+     */
+    public static void flush() throws InterruptedException, TimeoutException {
+        long upTo = SEQUENCE.get();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(FLUSH_TIMEOUT_SECONDS);
+        long delay = 0;
+        do {
+            try {
+                EXECUTOR.schedule(BuildStatusQueue::drain, delay, TimeUnit.MILLISECONDS)
+                        .get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (ExecutionException e) {
+                //drain handles its own errors
+                throw new IllegalStateException(e.getCause());
+            }
+            //failed updates were queued again, their next attempt is waited for
+            delay = RETRY_DELAY_MILLIS;
+        } while (isPending(upTo));
+    }
+
+    private static boolean isPending(final long upTo) {
+        synchronized (PENDING) {
+            return PENDING.values().stream().anyMatch(update -> update.sequence <= upTo);
+        }
+    }
+
+    private static void drain() {
+        List<Update> batch;
+        synchronized (PENDING) {
+            batch = new ArrayList<>(PENDING.values());
+            PENDING.clear();
+            scheduled = false;
+        }
+        for (Update update : batch) {
+            try {
+                update.service.setBuildStatus(update.commit, update.status);
+                SENT.incrementAndGet();
+            } catch (RuntimeException e) {
+                if (update.attempt < MAX_ATTEMPTS) {
+                    LOGGER.debug("Could not send build status of " + update.commit + ", trying again", e);
+                    enqueue(new Update(update.service, update.commit, update.status, update.attempt + 1, update.sequence));
+                } else {
+                    FAILED.incrementAndGet();
+                    LOGGER.warn("Could not send build status of " + update.commit + " after " + MAX_ATTEMPTS + " attempts", e);
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            LOGGER.debug("Sent batch of " + batch.size() + " build status update(s), " + SUBMITTED.get() + " submitted, "
+                    + COALESCED.get() + " coalesced, " + SENT.get() + " sent, " + FAILED.get() + " failed in total");
+        }
+    }
+
+    private static final class Update {
+        private final BuildStatusService service;
+        private final String commit;
+        private final JSONObject status;
+        private final int attempt;
+        private final long sequence;
+
+        private Update(final BuildStatusService service, final String commit, final JSONObject status, final int attempt,
+                       final long sequence) {
+            this.service = service;
+            this.commit = commit;
+            this.status = status;
+            this.attempt = attempt;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * Sends the waiting updates when a build completes, so a status set in the last stage does not linger. The batch
+     * is only started here; sending it and any retries happen on the queue thread.
+     */
+    @Extension
+    public static class Flusher extends RunListener<Run<?, ?>> {
+
+        @Override
+        public void onCompleted(final Run<?, ?> run, @Nonnull final TaskListener listener) {
+            EXECUTOR.execute(BuildStatusQueue::drain);
+        }
+    }
+}
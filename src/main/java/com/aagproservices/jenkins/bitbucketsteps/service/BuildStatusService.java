@@ -0,0 +1,55 @@
+package com.aagproservices.jenkins.bitbucketsteps.service;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketServer;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * Service for the build statuses of commits. Updates are normally sent through {@link BuildStatusQueue}, which
+ * collapses rapid updates of the same status.
+ */
+public final class BuildStatusService extends BaseService {
+
+    public BuildStatusService(final BitbucketServer bitbucketSite) {
+        super(bitbucketSite);
+    }
+
+    /**
+     * Queues a build status update, see {@link BuildStatusQueue#submit}.
+     *
+     * @param commit The commit ID.
+     * @param status The status, with at least state, key and url.
+     */
+    public void submitBuildStatus(final String commit, final JSONObject status) {
+        BuildStatusQueue.submit(this, commit, status);
+    }
+
+    /**
+     * Sends a build status right away. A status with the same key replaces the previous one of the commit.
+     *
+     * @param commit The commit ID.
+     * @param status The status, with at least state, key and url.
+     */
+    public void setBuildStatus(final String commit, final JSONObject status) throws BadRequestException {
+        try {
+            RequestBody body = RequestBody.create(okhttp3.MediaType.parse(MediaType.APPLICATION_JSON), status.toString());
+            Request request = buildApiRequest(BUILD_STATUS_RESOURCE, "commits/" + commit, HttpMethod.POST, body, null);
+            executeRequest(request);
+        } catch (JSONException ex) {
+            throw new RuntimeException("Error setting build status", ex);
+        }
+    }
+
+    /**
+     * Identifies a status across builds and servers: statuses with the same identity replace each other.
+     */
+    String identify(final String commit, final JSONObject status) {
+        return bitbucketSite.getUrl() + "|" + commit + "|" + status.optString("key");
+    }
+}
@@ -0,0 +1,53 @@
+package com.aagproservices.jenkins.bitbucketsteps.service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Remembers which comment of a pull request carries a marker, and its last known version, so updating it again
+ * takes a single request instead of a scan of the pull request activity. An entry that turns out to be wrong is
+ * corrected by the caller: a deleted comment is looked up again, an outdated version is re-read.
+ */
+final class CommentIndex {
+
+    private static final int MAX_ENTRIES = 10000;
+
+    private static final Map<String, int[]> COMMENTS = Collections.synchronizedMap(
+            new LinkedHashMap<String, int[]>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, int[]> eldest) {
+                    return size() > MAX_ENTRIES;
+                }
+            });
+
+    /**
+     * Private constructor.
+     */
+    private CommentIndex() {
+    }
+
+    static String key(final String serverUrl, final String project, final String repoSlug, final int pullRequestId,
+                      final String marker) {
+        return serverUrl + "|" + project + "/" + repoSlug + "#" + pullRequestId + "|" + marker;
+    }
+
+    /**
+     * Returns the comment ID and version remembered for a key.
+     *
+     * @return ID and version, or null if not known.
+     */
+    static int[] get(final String key) {
+        return COMMENTS.get(key);
+    }
+
+    static void put(final String key, final int id, final int version) {
+        COMMENTS.put(key, new int[]{id, version});
+    }
+
+    static void remove(final String key) {
+        COMMENTS.remove(key);
+    }
+}
@@ -5,6 +5,9 @@ import com.aagproservices.jenkins.bitbucketsteps.api.Branch;
 import com.aagproservices.jenkins.bitbucketsteps.api.FileUpdate;
 import com.aagproservices.jenkins.bitbucketsteps.api.PullRequest;
 import com.aagproservices.jenkins.bitbucketsteps.api.Tag;
+import com.aagproservices.jenkins.bitbucketsteps.cache.Validators;
+import com.aagproservices.jenkins.bitbucketsteps.util.SemanticVersion;
+import okhttp3.HttpUrl;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import org.json.JSONArray;
@@ -12,15 +15,29 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import javax.ws.rs.BadRequestException;
+import javax.ws.rs.ClientErrorException;
 import javax.ws.rs.HttpMethod;
+import javax.ws.rs.NotFoundException;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 import java.io.File;
+import java.io.IOException;
 import java.util.*;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public final class ContentService extends BaseService {
 
+    private static final int PAGE_SIZE = 100;
+    private static final int CHANGES_PAGE_SIZE = 500;
+    private static final int MERGE_MAX_ATTEMPTS = 5;
+    private static final long CONFLICT_BACKOFF_BASE_MILLIS = 500;
+    private static final long CONFLICT_BACKOFF_MAX_MILLIS = 8000;
+    private static final int COMMENT_MAX_ATTEMPTS = 5;
+    private static final int ACTIVITY_PAGE_SIZE = 100;
+    private static final int UPDATE_MAX_ATTEMPTS = 5;
+
     public ContentService(final BitbucketServer bitbucketSite) {
         super(bitbucketSite);
     }
@@ -37,6 +54,8 @@ public final class ContentService extends BaseService {
             return executeRequest(request);
         } catch (JSONException ex) {
             throw new RuntimeException("Error creating tag", ex);
+        } finally {
+            refChanged(project, repoSlug, "refs/tags/" + tag.getName());
         }
     }
 
@@ -49,6 +68,183 @@ public final class ContentService extends BaseService {
         }
     }
 
+    /**
+     * Finds the tag with the highest semantic version behind the given prefix. The server narrows the tags down to the
+     * ones containing the prefix and lists them alphabetically; once the listing is known to be descending, paging
+     * stops as soon as no later tag can carry a higher version.
+     *
+     * @param from Lowest version to consider (inclusive), or null.
+     * @param to   Version to stay below (exclusive), or null.
+     * @return The tag, or null if no tag in the range carries a version.
+     */
+    public JSONObject findLatestTag(final String project, final String repoSlug, final String prefix, final SemanticVersion from,
+                                    final SemanticVersion to, final boolean includePreReleases) throws BadRequestException {
+        Map<String, String> params = new HashMap<>();
+        params.put("orderBy", "ALPHABETICAL");
+        if (!prefix.isEmpty()) {
+            params.put("filterText", prefix);
+        }
+
+        JSONObject[] latest = new JSONObject[1];
+        SemanticVersion[] latestVersion = new SemanticVersion[1];
+        String[] previousName = new String[1];
+        boolean[] descending = new boolean[1];
+        forEachRef(project, repoSlug, "tags", params, PAGE_SIZE, tag -> {
+            String name = tag.optString("displayId");
+            if (previousName[0] != null) {
+                descending[0] = name.compareTo(previousName[0]) < 0;
+            }
+            previousName[0] = name;
+            if (descending[0] && latestVersion[0] != null
+                    && name.compareTo(latestVersion[0].lowestNameOfHigherVersion(prefix)) < 0) {
+                return false;
+            }
+
+            SemanticVersion version = SemanticVersion.parse(prefix, name);
+            if (version != null && (includePreReleases || !version.isPreRelease())
+                    && (from == null || version.compareTo(from) >= 0) && (to == null || version.compareTo(to) < 0)
+                    && (latestVersion[0] == null || version.compareTo(latestVersion[0]) > 0)) {
+                latest[0] = tag;
+                latestVersion[0] = version;
+            }
+            return true;
+        });
+        return latest[0];
+    }
+
+    /**
+     * Walks the tags or branches of a repository page by page, see {@link BaseService#forEachValue}.
+     *
+     * @param kind Either "tags" or "branches".
+     */
+    public void forEachRef(final String project, final String repoSlug, final String kind, final Map<String, String> params,
+                           final int pageSize, final Predicate<JSONObject> consumer) throws BadRequestException {
+        try {
+            forEachValue(project, repoSlug, kind, params, pageSize, consumer);
+        } catch (JSONException ex) {
+            throw new RuntimeException("Error listing " + kind, ex);
+        }
+    }
+
+    /**
+     * Looks up one tag or branch by its name. The server narrows the refs down to the ones containing the name, so
+     * this normally takes a single request.
+     *
+     * @param kind Either "tags" or "branches".
+     * @param name Name of the ref, or the fully qualified ref.
+     * @return The ref, or null if there is none of that name.
+     */
+    public JSONObject findRef(final String project, final String repoSlug, final String kind, final String name) throws BadRequestException {
+        Map<String, String> params = Collections.singletonMap("filterText", name);
+        JSONObject[] found = {null};
+        forEachRef(project, repoSlug, kind, params, PAGE_SIZE, ref -> {
+            if (name.equals(ref.optString("displayId")) || name.equals(ref.optString("id"))) {
+                found[0] = ref;
+                return false;
+            }
+            return true;
+        });
+        return found[0];
+    }
+
+    /**
+     * Walks the branches of a repository along with their metadata, e.g. the latest commit and how far each one is
+     * ahead of and behind a base branch.
+     *
+     * @param filterText Text the branch names must contain, matched by the server. May be null.
+     * @param base       Branch the ahead/behind counts refer to, null for the default branch.
+     */
+    public void forEachBranchWithDetails(final String project, final String repoSlug, final String filterText, final String base,
+                                         final int pageSize, final Predicate<JSONObject> consumer) throws BadRequestException {
+        Map<String, String> params = new HashMap<>();
+        params.put("details", "true");
+        params.put("orderBy", "ALPHABETICAL");
+        if (filterText != null && !filterText.isEmpty()) {
+            params.put("filterText", filterText);
+        }
+        if (base != null && !base.isEmpty()) {
+            params.put("base", OpenPullRequestIndex.qualify(base));
+        }
+        forEachRef(project, repoSlug, "branches", params, pageSize, consumer);
+    }
+
+    /**
+     * Deletes a tag.
+     *
+     * @param name Name of the tag, without refs/tags/.
+     */
+    public void deleteTag(final String project, final String repoSlug, final String name) throws BadRequestException {
+        try {
+            executeRequest(buildRequest(GIT_RESOURCE, project, repoSlug, "tags/" + name, HttpMethod.DELETE, null, null));
+        } catch (JSONException ex) {
+            throw new RuntimeException("Error deleting tag", ex);
+        } finally {
+            refChanged(project, repoSlug, "refs/tags/" + name);
+        }
+    }
+
+    /**
+     * Deletes a branch.
+     *
+     * @param name Name of the branch, or the fully qualified ref.
+     */
+    public void deleteBranch(final String project, final String repoSlug, final String name) throws BadRequestException {
+        deleteBranch(project, repoSlug, name, null);
+    }
+
+    /**
+     * Deletes a branch, but only if it still points to the given commit. The server refuses to delete a branch that
+     * moved on since, e.g. one that got new commits after it was selected for deletion.
+     *
+     * @param name     Name of the branch, or the fully qualified ref.
+     * @param endPoint Commit the branch is expected to point to, or null to delete it wherever it points.
+     */
+    public void deleteBranch(final String project, final String repoSlug, final String name, final String endPoint) throws BadRequestException {
+        try {
+            JSONObject json = new JSONObject()
+                    .put("name", OpenPullRequestIndex.qualify(name))
+                    .put("dryRun", false);
+            if (endPoint != null && !endPoint.isEmpty()) {
+                json.put("endPoint", endPoint);
+            }
+
+            RequestBody body = RequestBody.create(okhttp3.MediaType.parse(MediaType.APPLICATION_JSON), json.toString());
+            executeRequest(buildRequest(BRANCH_UTILS_RESOURCE, project, repoSlug, "branches", HttpMethod.DELETE, body, null));
+        } catch (JSONException ex) {
+            throw new RuntimeException("Error deleting branch", ex);
+        } finally {
+            refChanged(project, repoSlug, OpenPullRequestIndex.qualify(name));
+        }
+    }
+
+    /**
+     * Walks the paths changed on one revision compared to another, the way a pull request from the first into the
+     * second shows them. Renamed and moved files yield both the old and the new path. Pages are only requested while
+     * the consumer wants more; between two full commit hashes they are cached on disk.
+     *
+     * @param from     The revision with the changes, e.g. the source branch.
+     * @param to       The revision to compare against, e.g. the target branch.
+     * @param consumer Receives each path, returns false to stop.
+     */
+    public void forEachChangedPath(final String project, final String repoSlug, final String from, final String to,
+                                   final Predicate<String> consumer) throws BadRequestException {
+        Map<String, String> params = new HashMap<>();
+        params.put("from", from);
+        params.put("to", to);
+        try {
+            forEachValue(project, repoSlug, "compare/changes", params, CHANGES_PAGE_SIZE, change -> {
+                JSONObject srcPath = change.optJSONObject("srcPath");
+                if (srcPath != null && !consumer.test(srcPath.optString("toString"))) {
+                    return false;
+                }
+                JSONObject path = change.optJSONObject("path");
+                return path == null || consumer.test(path.optString("toString"));
+            });
+        } catch (JSONException ex) {
+            throw new RuntimeException("Error listing changes", ex);
+        }
+    }
+
     public JSONObject createBranch(final String project, final String repoSlug, final Branch branch) throws BadRequestException {
         try {
             JSONObject json = new JSONObject()
@@ -61,9 +257,20 @@ public final class ContentService extends BaseService {
             return executeRequest(request);
         } catch (JSONException ex) {
             throw new RuntimeException("Error creating branch", ex);
+        } finally {
+            refChanged(project, repoSlug, OpenPullRequestIndex.qualify(branch.getName()));
         }
     }
 
+    /**
+     * Has the ref looked up again on the next use of the {@link RefIndex}, like a webhook reporting it would. Also
+     * called when the request failed, as it may have been applied anyway. On an agent there is no index to update;
+     * the controller takes care of it when the call returns.
+     */
+    private static void refChanged(final String project, final String repoSlug, final String ref) {
+        RefIndex.invalidate(project, repoSlug, Collections.singleton(ref));
+    }
+
     public JSONObject createPullRequest(final String project, final String repoSlug, final PullRequest pullRequest) throws BadRequestException {
         try {
             JSONObject json = new JSONObject()
@@ -98,24 +305,81 @@ public final class ContentService extends BaseService {
         }
     }
 
-    public JSONObject mergePullRequest(final String project, final String repoSlug, final int pullRequestId) throws BadRequestException {
-        boolean canMerge;
-        int prVersion;
+    /**
+     * Returns the open pull request between the refs of the given one, creating it only if there is none yet. The
+     * lookup goes through the {@link OpenPullRequestIndex} of the repository, so re-runs find their pull request
+     * without scanning the whole list.
+     *
+     * @param updateExisting Whether title and description of an existing pull request get updated.
+     * @return The existing or created pull request.
+     */
+    public JSONObject createOrReusePullRequest(final String project, final String repoSlug, final PullRequest pullRequest,
+                                               final boolean updateExisting) throws BadRequestException {
+        OpenPullRequestIndex index = OpenPullRequestIndex.forRepository(bitbucketSite.getUrl().toString(), project, repoSlug);
+        Integer existingId = index.find(this, pullRequest.getFrom(), pullRequest.getTo());
+        if (existingId != null) {
+            JSONObject existing = getPullRequest(project, repoSlug, existingId, false);
+            if ("OPEN".equals(existing.optString("state"))) {
+                return updateExisting ? updatePullRequest(project, repoSlug, existing, pullRequest) : existing;
+            }
+            index.remove(pullRequest.getFrom(), pullRequest.getTo());
+        }
 
+        if (pullRequest.getTitle() == null) {
+            throw new IllegalArgumentException("A pull request from " + pullRequest.getFrom() + " to " + pullRequest.getTo()
+                    + " has to be created, but no title is given");
+        }
         try {
-            Request request = buildRequest(project, repoSlug,"pull-requests/" + pullRequestId, HttpMethod.GET, null, null);
-            JSONObject prDetails = executeRequest(request);
-            try {
-                canMerge = prDetails.getBoolean("canMerge");
-            } catch(JSONException ex) {
-                canMerge = true;
+            JSONObject created = createPullRequest(project, repoSlug, pullRequest);
+            index.put(pullRequest.getFrom(), pullRequest.getTo(), created.optInt("id"));
+            return created;
+        } catch(ClientErrorException ex) {
+            //created concurrently by someone else - Bitbucket names the existing pull request in the conflict
+            JSONObject existing = existingPullRequestFrom(ex);
+            if (existing == null) {
+                throw ex;
             }
-            prVersion = prDetails.getInt("version");
+            index.put(pullRequest.getFrom(), pullRequest.getTo(), existing.optInt("id"));
+            return updateExisting ? updatePullRequest(project, repoSlug, existing, pullRequest) : existing;
+        }
+    }
+
+    public void forEachPullRequest(final String project, final String repoSlug, final Map<String, String> filters,
+                                   final int pageSize, final Predicate<JSONObject> consumer) throws BadRequestException {
+        try {
+            forEachValue(project, repoSlug, "pull-requests", filters, pageSize, consumer);
         } catch(JSONException ex) {
-            throw new BadRequestException("Cannot retrieve pull request info for ID " + pullRequestId, ex);
+            throw new BadRequestException("Cannot list pull requests", ex);
         }
+    }
+
+    public JSONObject mergePullRequest(final String project, final String repoSlug, final int pullRequestId) throws BadRequestException {
+        return mergePullRequest(project, repoSlug, pullRequestId, getPullRequestVersion(project, repoSlug, pullRequestId));
+    }
+
+    public JSONObject mergePullRequest(final String project, final String repoSlug, final int pullRequestId, final int version) throws BadRequestException {
+        return mergePullRequest(project, repoSlug, pullRequestId, version, true);
+    }
+
+    /**
+     * Merges a pull request, retrying when its version changed in the meantime.
+     *
+     * @param checkFirst Whether to ask for the merge status before merging. Callers that already know the merge outcome,
+     *                   e.g. from {@link #getOpenPullRequests}, skip it; a veto is then reported by the merge itself.
+     */
+    public JSONObject mergePullRequest(final String project, final String repoSlug, final int pullRequestId, final int version,
+                                       final boolean checkFirst) throws BadRequestException {
+        int prVersion = version;
+
+        for (int attempt = 1; ; attempt++) {
+            if (checkFirst) {
+                JSONObject mergeStatus = getMergeStatus(project, repoSlug, pullRequestId);
+                if (!mergeStatus.optBoolean("canMerge", true)) {
+                    throw new BadRequestException("Automated merge not possible for pull request with ID " + pullRequestId
+                            + describeVetoes(mergeStatus));
+                }
+            }
 
-        if(canMerge) {
             try {
                 RequestBody body = RequestBody.create(okhttp3.MediaType.parse(MediaType.APPLICATION_JSON), "{}");
                 Map<String, String> params = Collections.singletonMap("version", String.valueOf(prVersion));
@@ -123,9 +387,303 @@ public final class ContentService extends BaseService {
                 return executeRequest(request);
             } catch(JSONException ex) {
                 throw new BadRequestException("Error merging pull request with ID " + pullRequestId, ex);
+            } catch(ClientErrorException ex) {
+                if (ex.getResponse().getStatus() != Response.Status.CONFLICT.getStatusCode() || attempt >= MERGE_MAX_ATTEMPTS) {
+                    throw ex;
+                }
+                Integer reported = reportedVersion(ex);
+                if (reported == null && !checkFirst) {
+                    //a conflict without a current version is a veto, which the merge status was not asked for
+                    throw new BadRequestException("Automated merge not possible for pull request with ID " + pullRequestId
+                            + ": " + ex.getMessage());
+                }
+                //someone touched the pull request between reading its version and merging - re-read and try again
+                prVersion = reported != null ? reported : getPullRequestVersion(project, repoSlug, pullRequestId);
+                backoff(attempt, "merge of pull request " + pullRequestId);
+            }
+        }
+    }
+
+    public JSONObject getPullRequest(final String project, final String repoSlug, final int pullRequestId) throws BadRequestException {
+        return getPullRequest(project, repoSlug, pullRequestId, true);
+    }
+
+    /**
+     * Reads a pull request.
+     *
+     * @param cached Whether it may be answered from the response cache. False when its state or version decides
+     *               what is sent next.
+     */
+    public JSONObject getPullRequest(final String project, final String repoSlug, final int pullRequestId,
+                                     final boolean cached) throws BadRequestException {
+        try {
+            Request request = buildRequest(project, repoSlug,"pull-requests/" + pullRequestId, HttpMethod.GET, null, null);
+            return executeRequest(request, cached);
+        } catch(JSONException ex) {
+            throw new BadRequestException("Cannot retrieve pull request info for ID " + pullRequestId, ex);
+        }
+    }
+
+    /**
+     * Creates a comment on a pull request, or edits the one created earlier with the same marker, so repeated builds
+     * keep a single comment up to date instead of adding one each time. The marker is appended to the text as a
+     * markdown reference that is not rendered. Where the comment is and its version are remembered, so an update
+     * normally takes a single request; a conflict because the comment was edited in the meantime is retried with the
+     * current version.
+     *
+     * @param marker Identifies the comment among the comments of the pull request.
+     * @param text   The markdown text of the comment.
+     * @return The created or updated comment.
+     */
+    public JSONObject upsertPullRequestComment(final String project, final String repoSlug, final int pullRequestId,
+                                               final String marker, final String text) throws BadRequestException {
+        String markerLine = "[//]: # (bitbucket-steps:" + marker + ")";
+        String body = text + "\n\n" + markerLine;
+        String key = CommentIndex.key(bitbucketSite.getUrl().toString(), project, repoSlug, pullRequestId, marker);
+        int[] known = CommentIndex.get(key);
+        if (known == null) {
+            JSONObject existing = findPullRequestComment(project, repoSlug, pullRequestId, markerLine);
+            known = existing == null ? null : new int[]{existing.getInt("id"), existing.getInt("version")};
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                JSONObject comment = known == null
+                        ? createPullRequestComment(project, repoSlug, pullRequestId, body)
+                        : updatePullRequestComment(project, repoSlug, pullRequestId, known[0], known[1], body);
+                CommentIndex.put(key, comment.getInt("id"), comment.getInt("version"));
+                return comment;
+            } catch(NotFoundException ex) {
+                //the comment was deleted - look for another one with the marker, or create a new one
+                CommentIndex.remove(key);
+                if (known == null || attempt >= COMMENT_MAX_ATTEMPTS) {
+                    throw ex;
+                }
+                JSONObject existing = findPullRequestComment(project, repoSlug, pullRequestId, markerLine);
+                known = existing == null || existing.getInt("id") == known[0]
+                        ? null : new int[]{existing.getInt("id"), existing.getInt("version")};
+            } catch(ClientErrorException ex) {
+                if (known == null || ex.getResponse().getStatus() != Response.Status.CONFLICT.getStatusCode()
+                        || attempt >= COMMENT_MAX_ATTEMPTS) {
+                    throw ex;
+                }
+                //edited by someone else since, or the remembered version is out of date
+                known = new int[]{known[0], currentCommentVersionFrom(ex, project, repoSlug, pullRequestId, known[0])};
             }
-        } else {
-            throw new BadRequestException("Automated merge not possible for pull request with ID " + pullRequestId);
+        }
+    }
+
+    /**
+     * Looks for the newest comment of a pull request containing the given text, walking the activity from the
+     * newest entry. Only comments of the user of the site count, so a comment quoting the text is never taken over.
+     *
+     * @return The comment, or null if there is none.
+     */
+    public JSONObject findPullRequestComment(final String project, final String repoSlug, final int pullRequestId,
+                                             final String contained) throws BadRequestException {
+        JSONObject[] found = {null};
+        try {
+            forEachValue(project, repoSlug, "pull-requests/" + pullRequestId + "/activities", null, ACTIVITY_PAGE_SIZE, activity -> {
+                JSONObject comment = activity.optJSONObject("comment");
+                JSONObject author = comment == null ? null : comment.optJSONObject("author");
+                if ("COMMENTED".equals(activity.optString("action")) && comment != null
+                        && comment.optString("text").contains(contained) && author != null
+                        && author.optString("name").equalsIgnoreCase(bitbucketSite.getUserName())) {
+                    found[0] = comment;
+                    return false;
+                }
+                return true;
+            });
+        } catch(JSONException ex) {
+            throw new BadRequestException("Cannot list activities of pull request with ID " + pullRequestId, ex);
+        }
+        return found[0];
+    }
+
+    public JSONObject createPullRequestComment(final String project, final String repoSlug, final int pullRequestId,
+                                               final String text) throws BadRequestException {
+        try {
+            JSONObject json = new JSONObject().put("text", text);
+            RequestBody body = RequestBody.create(okhttp3.MediaType.parse(MediaType.APPLICATION_JSON), json.toString());
+            Request request = buildRequest(project, repoSlug, "pull-requests/" + pullRequestId + "/comments", HttpMethod.POST, body, null);
+            return executeRequest(request);
+        } catch(JSONException ex) {
+            throw new BadRequestException("Error commenting on pull request with ID " + pullRequestId, ex);
+        }
+    }
+
+    public JSONObject updatePullRequestComment(final String project, final String repoSlug, final int pullRequestId,
+                                               final int commentId, final int version, final String text) throws BadRequestException {
+        try {
+            JSONObject json = new JSONObject().put("text", text).put("version", version);
+            RequestBody body = RequestBody.create(okhttp3.MediaType.parse(MediaType.APPLICATION_JSON), json.toString());
+            Request request = buildRequest(project, repoSlug, "pull-requests/" + pullRequestId + "/comments/" + commentId,
+                    HttpMethod.PUT, body, null);
+            return executeRequest(request);
+        } catch(JSONException ex) {
+            throw new BadRequestException("Error updating comment " + commentId + " of pull request with ID " + pullRequestId, ex);
+        }
+    }
+
+    /**
+     * Returns all open pull requests into the given ref, keyed by their ID. Each entry carries the version and the
+     * merge outcome, so many pull requests can be re-checked with a single paged listing.
+     */
+    public Map<Integer, JSONObject> getOpenPullRequests(final String project, final String repoSlug, final String toRef) throws BadRequestException {
+        Map<String, String> params = new HashMap<>();
+        params.put("at", toRef);
+        params.put("direction", "INCOMING");
+        params.put("state", "OPEN");
+
+        Map<Integer, JSONObject> pullRequests = new LinkedHashMap<>();
+        forEachPullRequest(project, repoSlug, params, PAGE_SIZE, pr -> {
+            pullRequests.put(pr.optInt("id"), pr);
+            return true;
+        });
+        return pullRequests;
+    }
+
+    /**
+     * Updates title and description of a pull request. A pull request without a title keeps its current one. The
+     * reviewers are sent along, since Bitbucket removes the ones missing from an update, and a conflict because the
+     * pull request was edited in the meantime is retried with its current state.
+     */
+    private JSONObject updatePullRequest(final String project, final String repoSlug, final JSONObject existing,
+                                         final PullRequest pullRequest) throws BadRequestException {
+        JSONObject current = existing;
+        for (int attempt = 1; ; attempt++) {
+            String title = pullRequest.getTitle() == null ? current.optString("title") : pullRequest.getTitle();
+            String description = pullRequest.getDescription() == null ? "" : pullRequest.getDescription();
+            if (title.equals(current.optString("title")) && description.equals(current.optString("description"))) {
+                return current;
+            }
+            try {
+                JSONArray reviewers = current.optJSONArray("reviewers");
+                JSONObject json = new JSONObject()
+                        .put("version", current.getInt("version"))
+                        .put("title", title)
+                        .put("description", description)
+                        .put("reviewers", reviewers == null ? new JSONArray() : reviewers);
+
+                RequestBody body = RequestBody.create(okhttp3.MediaType.parse(MediaType.APPLICATION_JSON), json.toString());
+                Request request = buildRequest(project, repoSlug,"pull-requests/" + current.getInt("id"), HttpMethod.PUT, body, null);
+                return executeRequest(request);
+            } catch(JSONException ex) {
+                throw new BadRequestException("Error updating pull request", ex);
+            } catch(ClientErrorException ex) {
+                if (ex.getResponse().getStatus() != Response.Status.CONFLICT.getStatusCode() || attempt >= UPDATE_MAX_ATTEMPTS) {
+                    throw ex;
+                }
+                //edited in the meantime - read version and reviewers again
+                current = getPullRequest(project, repoSlug, current.optInt("id"), false);
+                backoff(attempt, "update of pull request " + current.optInt("id"));
+            }
+        }
+    }
+
+    private JSONObject existingPullRequestFrom(final ClientErrorException conflict) {
+        Object entity = conflict.getResponse().getEntity();
+        if (entity == null) {
+            return null;
+        }
+        try {
+            JSONArray errors = new JSONObject(entity.toString()).optJSONArray("errors");
+            return errors == null || errors.length() == 0 ? null : errors.getJSONObject(0).optJSONObject("existingPullRequest");
+        } catch(JSONException ex) {
+            return null;
+        }
+    }
+
+    public JSONObject getMergeStatus(final String project, final String repoSlug, final int pullRequestId) throws BadRequestException {
+        try {
+            Request request = buildRequest(project, repoSlug,"pull-requests/" + pullRequestId + "/merge", HttpMethod.GET, null, null);
+            //decides whether to merge, and waiting steps poll it for changes
+            return executeRequest(request, false);
+        } catch(JSONException ex) {
+            throw new BadRequestException("Cannot retrieve merge status for pull request with ID " + pullRequestId, ex);
+        }
+    }
+
+    public static List<String> getVetoes(final JSONObject mergeStatus) {
+        List<String> vetoes = new ArrayList<>();
+        JSONArray array = mergeStatus.optJSONArray("vetoes");
+        if (array != null) {
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject veto = array.optJSONObject(i);
+                if (veto != null) {
+                    vetoes.add(veto.optString("summaryMessage", veto.optString("detailedMessage")));
+                }
+            }
+        }
+        if (mergeStatus.optBoolean("conflicted", false)) {
+            vetoes.add("Pull request has merge conflicts");
+        }
+        return vetoes;
+    }
+
+    private int getPullRequestVersion(final String project, final String repoSlug, final int pullRequestId) {
+        try {
+            return getPullRequest(project, repoSlug, pullRequestId, false).getInt("version");
+        } catch(JSONException ex) {
+            throw new BadRequestException("Cannot retrieve pull request info for ID " + pullRequestId, ex);
+        }
+    }
+
+    private Integer reportedVersion(final ClientErrorException conflict) {
+        //Bitbucket reports the current version along with an out-of-date error, which saves us a round trip
+        Object entity = conflict.getResponse().getEntity();
+        if (entity != null) {
+            try {
+                JSONArray errors = new JSONObject(entity.toString()).optJSONArray("errors");
+                if (errors != null && errors.length() > 0 && errors.getJSONObject(0).has("currentVersion")) {
+                    return errors.getJSONObject(0).getInt("currentVersion");
+                }
+            } catch(JSONException ex) {
+                //fall through, the caller reads the version from the pull request
+            }
+        }
+        return null;
+    }
+
+    private String describeVetoes(final JSONObject mergeStatus) {
+        List<String> vetoes = getVetoes(mergeStatus);
+        return vetoes.isEmpty() ? "" : ": " + String.join("; ", vetoes);
+    }
+
+    private int currentCommentVersionFrom(final ClientErrorException conflict, final String project, final String repoSlug,
+                                          final int pullRequestId, final int commentId) {
+        Object entity = conflict.getResponse().getEntity();
+        if (entity != null) {
+            try {
+                JSONArray errors = new JSONObject(entity.toString()).optJSONArray("errors");
+                if (errors != null && errors.length() > 0 && errors.getJSONObject(0).has("currentVersion")) {
+                    return errors.getJSONObject(0).getInt("currentVersion");
+                }
+            } catch(JSONException ex) {
+                //fall through and read the version from the comment
+            }
+        }
+        try {
+            Request request = buildRequest(project, repoSlug, "pull-requests/" + pullRequestId + "/comments/" + commentId,
+                    HttpMethod.GET, null, null);
+            return executeRequest(request, false).getInt("version");
+        } catch(JSONException ex) {
+            throw new BadRequestException("Cannot retrieve comment " + commentId + " of pull request with ID " + pullRequestId, ex);
+        }
+    }
+
+    /**
+     * Waits before retrying a request that conflicted with a concurrent change, longer with every attempt.
+     *
+     * @param retried What is retried, for the message if the wait is interrupted.
+     */
+    private void backoff(final int attempt, final String retried) {
+        long delay = Math.min(CONFLICT_BACKOFF_MAX_MILLIS, CONFLICT_BACKOFF_BASE_MILLIS << (attempt - 1));
+        try {
+            Thread.sleep(delay);
+        } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to retry the " + retried, ex);
         }
     }
 
@@ -168,4 +726,57 @@ public final class ContentService extends BaseService {
             throw new BadRequestException("Error committing file", ex);
         }
     }
+
+    /**
+     * Streams the raw content of a file to the reader.
+     *
+     * @param project    Project key of the repository.
+     * @param repoSlug   Repository slug.
+     * @param path       Path of the file in the repository.
+     * @param at         Branch, tag or commit to read the file at, null for the default branch.
+     * @param validators Validators of a copy the caller already has, to get a 304 if it is still current. May be null.
+     * @param reader     Consumes the response.
+     * @param <R>        Type of what the reader makes of the response.
+     * @return Whatever the reader returned.
+     * @throws IOException If the content could not be read.
+     */
+    public <R> R readRawFile(final String project, final String repoSlug, final String path, final String at,
+                             final Validators validators, final BodyReader<R> reader) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        if (at != null && !at.isEmpty()) {
+            params.put("at", at);
+        }
+        Request request = buildRequest(project, repoSlug, "raw/" + path, HttpMethod.GET, null, params);
+        return executeStreaming(validators == null ? request : validators.conditional(request), reader);
+    }
+
+    /**
+     * Streams an archive of the repository, or of some paths of it, to the reader.
+     *
+     * @param project  Project key of the repository.
+     * @param repoSlug Repository slug.
+     * @param at       Branch, tag or commit to archive, null for the default branch.
+     * @param format   One of zip, tar, tar.gz or tgz.
+     * @param paths    Paths to include, all if null or empty.
+     * @param reader   Consumes the response.
+     * @param <R>      Type of what the reader makes of the response.
+     * @return Whatever the reader returned.
+     * @throws IOException If the archive could not be read.
+     */
+    public <R> R downloadArchive(final String project, final String repoSlug, final String at, final String format,
+                                 final List<String> paths, final BodyReader<R> reader) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        params.put("format", format);
+        if (at != null && !at.isEmpty()) {
+            params.put("at", at);
+        }
+        Request request = buildRequest(project, repoSlug, "archive", HttpMethod.GET, null, params);
+        if (paths != null && !paths.isEmpty()) {
+            //the path parameter is repeated once per path, which a parameter map cannot express
+            HttpUrl.Builder url = request.url().newBuilder();
+            paths.forEach(path -> url.addQueryParameter("path", path));
+            request = request.newBuilder().url(url.build()).build();
+        }
+        return executeStreaming(request, reader);
+    }
 }
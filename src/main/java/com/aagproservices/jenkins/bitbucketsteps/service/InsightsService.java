@@ -0,0 +1,80 @@
+package com.aagproservices.jenkins.bitbucketsteps.service;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketServer;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * Service for Code Insights reports and their annotations.
+ */
+public final class InsightsService extends BaseService {
+
+    /**
+     * Most annotations Bitbucket accepts in a single request.
+     */
+    public static final int MAX_ANNOTATIONS_PER_REQUEST = 1000;
+    public static final int MAX_ANNOTATIONS_PER_REPORT = 1000;
+
+    public InsightsService(final BitbucketServer bitbucketSite) {
+        super(bitbucketSite);
+    }
+
+    /**
+     * Creates a report, or replaces the report with the same key along with all of its annotations.
+     *
+     * @param commit The commit ID.
+     * @param key    The key of the report.
+     * @param report The report, with at least a title.
+     */
+    public JSONObject putReport(final String project, final String repoSlug, final String commit, final String key,
+                                final JSONObject report) throws BadRequestException {
+        try {
+            RequestBody body = RequestBody.create(okhttp3.MediaType.parse(MediaType.APPLICATION_JSON), report.toString());
+            Request request = buildRequest(INSIGHTS_RESOURCE, project, repoSlug, reportResource(commit, key), HttpMethod.PUT, body, null);
+            return executeRequest(request);
+        } catch (JSONException ex) {
+            throw new RuntimeException("Error creating report", ex);
+        }
+    }
+
+    /**
+     * Deletes a report and its annotations.
+     */
+    public void deleteReport(final String project, final String repoSlug, final String commit, final String key) throws BadRequestException {
+        try {
+            Request request = buildRequest(INSIGHTS_RESOURCE, project, repoSlug, reportResource(commit, key), HttpMethod.DELETE, null, null);
+            executeRequest(request);
+        } catch (JSONException ex) {
+            throw new RuntimeException("Error deleting report", ex);
+        }
+    }
+
+    /**
+     * Adds annotations to a report, at most {@link #MAX_ANNOTATIONS_PER_REQUEST} at a time.
+     *
+     * @param annotations The annotations, each with at least message and severity.
+     */
+    public void addAnnotations(final String project, final String repoSlug, final String commit, final String key,
+                               final JSONArray annotations) throws BadRequestException {
+        try {
+            JSONObject json = new JSONObject().put("annotations", annotations);
+            RequestBody body = RequestBody.create(okhttp3.MediaType.parse(MediaType.APPLICATION_JSON), json.toString());
+            Request request = buildRequest(INSIGHTS_RESOURCE, project, repoSlug, reportResource(commit, key) + "/annotations",
+                    HttpMethod.POST, body, null);
+            executeRequest(request);
+        } catch (JSONException ex) {
+            throw new RuntimeException("Error adding annotations", ex);
+        }
+    }
+
+    private static String reportResource(final String commit, final String key) {
+        return "commits/" + commit + "/reports/" + key;
+    }
+}
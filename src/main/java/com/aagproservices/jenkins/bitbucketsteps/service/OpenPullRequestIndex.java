@@ -0,0 +1,169 @@
+package com.aagproservices.jenkins.bitbucketsteps.service;
+
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * In-memory index of the open pull requests of a repository, keyed by source and target ref. Pull request IDs grow
+ * monotonically, so a refresh only walks the newest pull requests until it reaches one that is already known. A full
+ * rebuild every now and then drops pull requests that were closed in the meantime; entries found in between are
+ * verified by the caller anyway.
+ */
+public final class OpenPullRequestIndex {
+
+    private static final ConcurrentMap<String, OpenPullRequestIndex> INDEXES = new ConcurrentHashMap<>();
+
+    private static final long FULL_REFRESH_MILLIS = TimeUnit.MINUTES.toMillis(15);
+    private static final int INCREMENTAL_PAGE_SIZE = 25;
+    private static final int FULL_PAGE_SIZE = 100;
+
+    private final String project;
+    private final String repoSlug;
+    private final Map<String, Integer> byRefs = new HashMap<>();
+    private int highestId;
+    private long lastFullRefresh;
+    private volatile boolean stale;
+
+    private OpenPullRequestIndex(final String project, final String repoSlug) {
+        this.project = project;
+        this.repoSlug = repoSlug;
+    }
+
+    public static OpenPullRequestIndex forRepository(final String serverUrl, final String project, final String repoSlug) {
+        return INDEXES.computeIfAbsent(serverUrl + "|" + project + "/" + repoSlug, k -> new OpenPullRequestIndex(project, repoSlug));
+    }
+
+    /**
+     * Makes the indexes of a repository, on any server, rebuild themselves on their next use. Does not block on a
+     * refresh that is running.
+     *
+     * @param project  Project key of the repository.
+     * @param repoSlug Repository slug.
+     */
+    public static void invalidate(final String project, final String repoSlug) {
+        INDEXES.values().stream()
+                .filter(index -> index.project.equalsIgnoreCase(project) && index.repoSlug.equalsIgnoreCase(repoSlug))
+                .forEach(index -> index.stale = true);
+    }
+
+    /**
+     * Brings the index up to date and looks up the open pull request between two refs.
+     *
+     * @param service The service used to list pull requests.
+     * @param fromRef Source ref, either a branch name or a fully qualified ref.
+     * @param toRef   Target ref, either a branch name or a fully qualified ref.
+     * @return The ID of the pull request, or null if there is none.
+     */
+    public Integer find(final ContentService service, final String fromRef, final String toRef) {
+        refresh(service);
+        synchronized (this) {
+            return byRefs.get(key(fromRef, toRef));
+        }
+    }
+
+    public synchronized void put(final String fromRef, final String toRef, final int pullRequestId) {
+        byRefs.put(key(fromRef, toRef), pullRequestId);
+        highestId = Math.max(highestId, pullRequestId);
+    }
+
+    public synchronized void remove(final String fromRef, final String toRef) {
+        byRefs.remove(key(fromRef, toRef));
+    }
+
+    public synchronized void removeById(final int pullRequestId) {
+        byRefs.values().removeIf(id -> id == pullRequestId);
+    }
+
+    public synchronized int size() {
+        return byRefs.size();
+    }
+
+    /**
+     * Pages through the pull requests without holding the lock of the index, so lookups and other callers refreshing
+     * at the same time do not wait for the server. Only the result is merged into the index under the lock.
+     */
+    private void refresh(final ContentService service) {
+        Map<String, String> filters = new HashMap<>();
+        filters.put("state", "OPEN");
+        filters.put("order", "NEWEST");
+
+        boolean full;
+        int known;
+        synchronized (this) {
+            full = stale || System.currentTimeMillis() - lastFullRefresh > FULL_REFRESH_MILLIS;
+            if (full) {
+                //claimed, so callers arriving meanwhile only walk the newest pull requests
+                stale = false;
+                lastFullRefresh = System.currentTimeMillis();
+            }
+            known = full ? 0 : highestId;
+        }
+
+        Map<String, Integer> found = new HashMap<>();
+        try {
+            service.forEachPullRequest(project, repoSlug, filters, full ? FULL_PAGE_SIZE : INCREMENTAL_PAGE_SIZE, pr -> {
+                if (!full && pr.optInt("id") <= known) {
+                    return false;
+                }
+                index(pr, found);
+                return true;
+            });
+        } catch (RuntimeException e) {
+            if (full) {
+                stale = true;
+            }
+            throw e;
+        }
+
+        synchronized (this) {
+            if (full) {
+                byRefs.clear();
+                highestId = 0;
+            }
+            found.forEach((key, id) -> {
+                byRefs.put(key, id);
+                highestId = Math.max(highestId, id);
+            });
+        }
+    }
+
+    private void index(final JSONObject pr, final Map<String, Integer> found) {
+        JSONObject fromRef = pr.optJSONObject("fromRef");
+        JSONObject toRef = pr.optJSONObject("toRef");
+        if (fromRef == null || toRef == null || !isThisRepository(fromRef.optJSONObject("repository"))) {
+            //pull requests from forks never collide with the ones created by this plugin
+            return;
+        }
+        found.put(key(fromRef.optString("id"), toRef.optString("id")), pr.optInt("id"));
+    }
+
+    private boolean isThisRepository(final JSONObject repository) {
+        if (repository == null) {
+            return false;
+        }
+        JSONObject repoProject = repository.optJSONObject("project");
+        return repoSlug.equalsIgnoreCase(repository.optString("slug"))
+                && repoProject != null && project.equalsIgnoreCase(repoProject.optString("key"));
+    }
+
+    private static String key(final String fromRef, final String toRef) {
+        return qualify(fromRef) + "->" + qualify(toRef);
+    }
+
+    /**
+     * Turns a branch name into a fully qualified ref, leaving qualified refs as they are.
+     *
+     * @param ref Branch name or ref.
+     * @return The qualified ref.
+     */
+    public static String qualify(final String ref) {
+        return ref.startsWith("refs/") ? ref : "refs/heads/" + ref;
+    }
+}
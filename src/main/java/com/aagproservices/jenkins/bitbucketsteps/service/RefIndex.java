@@ -0,0 +1,608 @@
+package com.aagproservices.jenkins.bitbucketsteps.service;
+
+import com.aagproservices.jenkins.bitbucketsteps.util.SemanticVersion;
+import jenkins.model.Jenkins;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Persistent index of the tags or branches of a repository, kept under {@code JENKINS_HOME/bitbucket-steps/ref-index}.
+ * The file holds the refs sorted by name and is memory-mapped, so lookups are binary searches over the mapping and
+ * prefix or version range scans never load the whole index onto the heap.
+ * <p>
+ * Every refresh writes a new generation of the file instead of replacing the mapped one, which Windows does not
+ * allow. A generation is unmapped and deleted once the last reader of it is done.
+ * <p>
+ * File layout: magic, format, refresh time, listing time, count, one offset per entry, then the entries as
+ * (u16 name length, UTF-8 name, u8 commit length, commit bytes).
+ */
+public final class RefIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RefIndex.class);
+
+    private static final ConcurrentMap<String, RefIndex> INDEXES = new ConcurrentHashMap<>();
+
+    private static final int MAGIC = 0x42425249;
+    private static final int FORMAT = 2;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4;
+    private static final int PAGE_SIZE = 1000;
+    private static final int MAX_LOOKUPS = 100;
+    private static final long FULL_REBUILD_MILLIS = TimeUnit.HOURS.toMillis(24);
+    private static final String SUFFIX = ".idx";
+    private static final Comparator<byte[]> BYTE_ORDER = RefIndex::compareBytes;
+
+    private final File directory;
+    private final String baseName;
+    private final String project;
+    private final String repoSlug;
+    private final String kind;
+    private final Set<String> changed = ConcurrentHashMap.newKeySet();
+    private volatile Snapshot snapshot;
+    private volatile boolean opened;
+    private volatile boolean stale;
+    private volatile boolean rebuild;
+    private long generation;
+
+    /**
+     * Creates an index kept in the given directory. Outside of tests, indexes are obtained with
+     * {@link #forRepository(String, String, String, String)}, which shares them and keeps them where invalidations reach.
+     *
+     * @param baseName Name of the index files without generation and suffix.
+     */
+    RefIndex(final File directory, final String baseName, final String project, final String repoSlug, final String kind) {
+        this.directory = directory;
+        this.baseName = baseName;
+        this.project = project;
+        this.repoSlug = repoSlug;
+        this.kind = kind;
+    }
+
+    /**
+     * Returns the index of one kind of refs of a repository.
+     *
+     * @param serverUrl URL of the Bitbucket server.
+     * @param project   Project key of the repository.
+     * @param repoSlug  Repository slug.
+     * @param kind      Either "tags" or "branches".
+     * @return The index. It may still be empty, see {@link #getAgeMillis()}.
+     */
+    public static RefIndex forRepository(final String serverUrl, final String project, final String repoSlug, final String kind) {
+        String key = serverUrl + "|" + project + "/" + repoSlug + "|" + kind;
+        return INDEXES.computeIfAbsent(key, k -> new RefIndex(new File(Jenkins.get().getRootDir(), "bitbucket-steps/ref-index"),
+                DigestUtils.sha1Hex(k), project, repoSlug, kind));
+    }
+
+    /**
+     * Marks the indexes of a repository, on any server, as outdated, so they are refreshed on their next use.
+     *
+     * @param project  Project key of the repository.
+     * @param repoSlug Repository slug.
+     * @param refs     Fully qualified names of the refs that were created, moved or deleted, e.g. "refs/tags/v1.0.0".
+     *                 Only these are looked up again on the next refresh. A bare "refs/heads/" or "refs/tags/" makes
+     *                 the next refresh of the index of that kind list all refs, null that of every index.
+     */
+    public static void invalidate(final String project, final String repoSlug, final Collection<String> refs) {
+        INDEXES.values().stream()
+                .filter(index -> index.project.equalsIgnoreCase(project) && index.repoSlug.equalsIgnoreCase(repoSlug))
+                .forEach(index -> index.changed(refs));
+    }
+
+    /**
+     * Marks the given refs of this index as changed, see {@link #invalidate(String, String, Collection)}.
+     */
+    void changed(final Collection<String> refs) {
+        if (refs == null) {
+            rebuild = true;
+            stale = true;
+            return;
+        }
+        String refPrefix = "tags".equals(kind) ? "refs/tags/" : "refs/heads/";
+        for (String ref : refs) {
+            if (ref.equals(refPrefix)) {
+                rebuild = true;
+                stale = true;
+            } else if (ref.startsWith(refPrefix)) {
+                changed.add(ref.substring(refPrefix.length()));
+                stale = true;
+            }
+        }
+    }
+
+    /**
+     * Returns how long ago the index was last refreshed.
+     *
+     * @return Age in milliseconds, {@link Long#MAX_VALUE} if there is no index yet or it is known to be outdated.
+     */
+    public long getAgeMillis() {
+        Snapshot current = current();
+        return current == null || stale ? Long.MAX_VALUE : System.currentTimeMillis() - current.refreshedAt;
+    }
+
+    public int size() {
+        Snapshot current = current();
+        return current == null ? 0 : current.count;
+    }
+
+    /**
+     * Looks up the commit a ref points to.
+     *
+     * @param name Short name of the ref.
+     * @return The commit hash, or null if the ref is not in the index.
+     */
+    public String lookup(final String name) {
+        Snapshot current = acquire();
+        if (current == null) {
+            return null;
+        }
+        try {
+            byte[] commit = current.find(name.getBytes(StandardCharsets.UTF_8));
+            return commit == null ? null : Hex.encodeHexString(commit);
+        } finally {
+            current.release();
+        }
+    }
+
+    /**
+     * Visits all refs starting with the prefix in name order, until the consumer returns false.
+     *
+     * @param prefix   Name prefix, may be empty.
+     * @param consumer Receives name and commit of each ref.
+     */
+    public void forEachWithPrefix(final String prefix, final BiPredicate<String, String> consumer) {
+        Snapshot current = acquire();
+        if (current == null) {
+            return;
+        }
+        try {
+            byte[] key = prefix.getBytes(StandardCharsets.UTF_8);
+            for (int i = current.lowerBound(key); i < current.count; i++) {
+                byte[] name = current.nameAt(i);
+                if (!startsWith(name, key) || !consumer.test(new String(name, StandardCharsets.UTF_8), current.commitAt(i))) {
+                    return;
+                }
+            }
+        } finally {
+            current.release();
+        }
+    }
+
+    /**
+     * Finds the ref with the highest semantic version behind the prefix within an optional range.
+     *
+     * @param prefix             Prefix in front of the version.
+     * @param from               Lowest version to consider (inclusive), or null.
+     * @param to                 Version to stay below (exclusive), or null.
+     * @param includePreReleases Whether pre-releases are considered.
+     * @return Name and commit of the ref, or null if none matches.
+     */
+    public Map.Entry<String, String> findLatestVersion(final String prefix, final SemanticVersion from, final SemanticVersion to,
+                                                       final boolean includePreReleases) {
+        Object[] latest = new Object[3];
+        forEachWithPrefix(prefix, (name, commit) -> {
+            SemanticVersion version = SemanticVersion.parse(prefix, name);
+            if (version != null && (includePreReleases || !version.isPreRelease())
+                    && (from == null || version.compareTo(from) >= 0) && (to == null || version.compareTo(to) < 0)
+                    && (latest[0] == null || version.compareTo((SemanticVersion) latest[0]) > 0)) {
+                latest[0] = version;
+                latest[1] = name;
+                latest[2] = commit;
+            }
+            return true;
+        });
+        return latest[0] == null ? null : new AbstractMap.SimpleImmutableEntry<>((String) latest[1], (String) latest[2]);
+    }
+
+    /**
+     * Brings the index up to date unless another caller did so while this one waited. The refs reported as changed
+     * by webhook events are looked up one by one and merged into a new generation of the file. Without such reports
+     * there is no way to tell which refs changed, as a new tag on an old commit is not listed among the recently
+     * modified refs, so all refs are listed again. This also happens once a day and after too many changes.
+     *
+     * @param service      The service used to list the refs.
+     * @param maxAgeMillis Age up to which the index is left as it is.
+     */
+    public synchronized void refresh(final ContentService service, final long maxAgeMillis) {
+        if (getAgeMillis() <= maxAgeMillis) {
+            return;
+        }
+        Snapshot current = acquire();
+        //cleared before listing, so changes reported while the refresh runs mark the index outdated again
+        stale = false;
+        Set<String> names = new TreeSet<>(changed);
+        changed.removeAll(names);
+        boolean full = current == null || rebuild || names.isEmpty() || names.size() > MAX_LOOKUPS
+                || System.currentTimeMillis() - current.listedAt > FULL_REBUILD_MILLIS;
+        rebuild = false;
+        try {
+            if (full) {
+                TreeMap<byte[], byte[]> refs = new TreeMap<>(BYTE_ORDER);
+                service.forEachRef(project, repoSlug, kind, Collections.emptyMap(), PAGE_SIZE, ref -> {
+                    refs.put(ref.optString("displayId").getBytes(StandardCharsets.UTF_8), decode(ref.optString("latestCommit")));
+                    return true;
+                });
+                write(refs.size(), System.currentTimeMillis(), refs.entrySet().iterator());
+            } else {
+                //a null commit marks a deleted ref
+                TreeMap<byte[], byte[]> changes = new TreeMap<>(BYTE_ORDER);
+                int count = current.count;
+                for (String name : names) {
+                    JSONObject ref = service.findRef(project, repoSlug, kind, name);
+                    byte[] key = name.getBytes(StandardCharsets.UTF_8);
+                    boolean known = current.find(key) != null;
+                    changes.put(key, ref == null ? null : decode(ref.optString("latestCommit")));
+                    count += ref == null ? (known ? -1 : 0) : (known ? 0 : 1);
+                }
+                write(count, current.listedAt, new MergingIterator(current, changes));
+            }
+        } catch (IOException e) {
+            restore(names, full);
+            throw new UncheckedIOException("Cannot write ref index of " + project + "/" + repoSlug, e);
+        } catch (RuntimeException e) {
+            restore(names, full);
+            throw e;
+        } finally {
+            if (current != null) {
+                current.release();
+            }
+        }
+    }
+
+    private void restore(final Set<String> names, final boolean full) {
+        changed.addAll(names);
+        rebuild |= full;
+        stale = true;
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current == null && !opened) {
+            synchronized (this) {
+                if (!opened) {
+                    snapshot = openLatest();
+                    opened = true;
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Returns the current snapshot, which stays mapped until it is released.
+     */
+    private Snapshot acquire() {
+        while (true) {
+            Snapshot current = current();
+            if (current == null || current.retain()) {
+                return current;
+            }
+            //replaced and released in the meantime, the next read sees its successor
+        }
+    }
+
+    /**
+     * Opens the newest generation of the file and deletes the older ones left behind by a previous run.
+     */
+    private Snapshot openLatest() {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(baseName + "."));
+        Snapshot latest = null;
+        for (File file : files == null ? new File[0] : files) {
+            long fileGeneration = generationOf(file);
+            if (fileGeneration > generation) {
+                try {
+                    Snapshot candidate = Snapshot.open(file);
+                    if (latest != null) {
+                        latest.release();
+                    }
+                    latest = candidate;
+                    generation = fileGeneration;
+                    continue;
+                } catch (IOException e) {
+                    LOGGER.warn("Ignoring unreadable ref index " + file + ": " + e.getMessage());
+                }
+            }
+            if (latest == null || !latest.file.equals(file)) {
+                deleteQuietly(file);
+            }
+        }
+        return latest;
+    }
+
+    private long generationOf(final File file) {
+        String name = file.getName();
+        if (!name.endsWith(SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(baseName.length() + 1, name.length() - SUFFIX.length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+
+    private void write(final int count, final long listedAt, final Iterator<Map.Entry<byte[], byte[]>> entries) throws IOException {
+        Files.createDirectories(directory.toPath());
+        generation = Math.max(generation + 1, System.currentTimeMillis());
+        File file = new File(directory, baseName + "." + generation + SUFFIX);
+        File temp = new File(file.getPath() + ".tmp");
+        int[] offsets = new int[count];
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeLong(System.currentTimeMillis());
+            out.writeLong(listedAt);
+            out.writeInt(count);
+            out.write(new byte[count * 4]);
+            int position = HEADER_SIZE + count * 4;
+            for (int i = 0; i < count; i++) {
+                Map.Entry<byte[], byte[]> entry = entries.next();
+                offsets[i] = position;
+                out.writeShort(entry.getKey().length);
+                out.write(entry.getKey());
+                out.writeByte(entry.getValue().length);
+                out.write(entry.getValue());
+                position += 2 + entry.getKey().length + 1 + entry.getValue().length;
+            }
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(temp, "rw")) {
+            ByteBuffer table = ByteBuffer.allocate(count * 4);
+            table.asIntBuffer().put(offsets);
+            raf.getChannel().write(table, HEADER_SIZE);
+        }
+        //a new name, so the move never has to replace a file that is still mapped
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        Snapshot previous = snapshot;
+        snapshot = Snapshot.open(file);
+        opened = true;
+        if (previous != null) {
+            previous.release();
+        }
+    }
+
+    private static void deleteQuietly(final File file) {
+        if (!file.delete() && file.exists()) {
+            LOGGER.debug("Could not delete old ref index " + file + ", trying again on the next start");
+        }
+    }
+
+    /**
+     * Releases the mapping of a buffer right away instead of when it is garbage collected, which also allows to
+     * delete the file on Windows. There is no public API for this, so it is done through the JDK internals and
+     * simply left to the garbage collector if they are not accessible.
+     */
+    private static void unmap(final MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(theUnsafe.get(null), buffer);
+        } catch (NoSuchMethodException e) {
+            //Java 8
+            try {
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                LOGGER.debug("Cannot unmap ref index: " + ex.getMessage());
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.debug("Cannot unmap ref index: " + e.getMessage());
+        }
+    }
+
+    private static byte[] decode(final String commit) {
+        try {
+            return Hex.decodeHex(commit.toCharArray());
+        } catch (Exception e) {
+            return commit.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    private static int compareBytes(final byte[] left, final byte[] right) {
+        for (int i = 0; i < Math.min(left.length, right.length); i++) {
+            int result = Integer.compare(left[i] & 0xff, right[i] & 0xff);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return Integer.compare(left.length, right.length);
+    }
+
+    private static boolean startsWith(final byte[] name, final byte[] prefix) {
+        if (name.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (name[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read-only view on one generation of the index file. The index holds one reference and every reader one more;
+     * the file is unmapped and deleted when the last one is released.
+     */
+    private static final class Snapshot {
+        private final File file;
+        private final MappedByteBuffer buffer;
+        private final long refreshedAt;
+        private final long listedAt;
+        private final int count;
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private Snapshot(final File file, final MappedByteBuffer buffer) throws IOException {
+            this.file = file;
+            this.buffer = buffer;
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT) {
+                unmap(buffer);
+                throw new IOException("not a ref index");
+            }
+            this.refreshedAt = buffer.getLong(8);
+            this.listedAt = buffer.getLong(16);
+            this.count = buffer.getInt(24);
+        }
+
+        static Snapshot open(final File file) throws IOException {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+                return new Snapshot(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+        }
+
+        boolean retain() {
+            int current;
+            do {
+                current = references.get();
+                if (current == 0) {
+                    return false;
+                }
+            } while (!references.compareAndSet(current, current + 1));
+            return true;
+        }
+
+        void release() {
+            if (references.decrementAndGet() == 0) {
+                unmap(buffer);
+                deleteQuietly(file);
+            }
+        }
+
+        byte[] find(final byte[] key) {
+            int index = lowerBound(key);
+            return index < count && compareBytes(nameAt(index), key) == 0 ? commitBytesAt(index) : null;
+        }
+
+        int lowerBound(final byte[] key) {
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (compareBytes(nameAt(middle), key) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        byte[] nameAt(final int index) {
+            int offset = buffer.getInt(HEADER_SIZE + index * 4);
+            byte[] name = new byte[buffer.getShort(offset) & 0xffff];
+            for (int i = 0; i < name.length; i++) {
+                name[i] = buffer.get(offset + 2 + i);
+            }
+            return name;
+        }
+
+        byte[] commitBytesAt(final int index) {
+            int offset = buffer.getInt(HEADER_SIZE + index * 4);
+            int commitOffset = offset + 2 + (buffer.getShort(offset) & 0xffff);
+            byte[] commit = new byte[buffer.get(commitOffset) & 0xff];
+            for (int i = 0; i < commit.length; i++) {
+                commit[i] = buffer.get(commitOffset + 1 + i);
+            }
+            return commit;
+        }
+
+        String commitAt(final int index) {
+            return Hex.encodeHexString(commitBytesAt(index));
+        }
+    }
+
+    /**
+     * Merges the sorted entries of a snapshot with sorted changes, the changes winning on equal names. Changes
+     * without a commit remove the entry.
+     */
+    private static final class MergingIterator implements Iterator<Map.Entry<byte[], byte[]>> {
+        private final Snapshot snapshot;
+        private final Iterator<Map.Entry<byte[], byte[]>> changes;
+        private Map.Entry<byte[], byte[]> nextChange;
+        private int nextIndex;
+        private Map.Entry<byte[], byte[]> next;
+
+        MergingIterator(final Snapshot snapshot, final TreeMap<byte[], byte[]> changes) {
+            this.snapshot = snapshot;
+            this.changes = changes.entrySet().iterator();
+            this.nextChange = this.changes.hasNext() ? this.changes.next() : null;
+            this.next = advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<byte[], byte[]> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<byte[], byte[]> result = next;
+            next = advance();
+            return result;
+        }
+
+        private Map.Entry<byte[], byte[]> advance() {
+            while (nextChange != null || nextIndex < snapshot.count) {
+                if (nextIndex < snapshot.count) {
+                    byte[] name = snapshot.nameAt(nextIndex);
+                    int order = nextChange == null ? -1 : compareBytes(name, nextChange.getKey());
+                    if (order < 0) {
+                        nextIndex++;
+                        return new AbstractMap.SimpleImmutableEntry<>(name, snapshot.commitBytesAt(nextIndex - 1));
+                    }
+                    if (order == 0) {
+                        nextIndex++;
+                    }
+                }
+                Map.Entry<byte[], byte[]> change = nextChange;
+                nextChange = changes.hasNext() ? changes.next() : null;
+                if (change.getValue() != null) {
+                    return change;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.aagproservices.jenkins.bitbucketsteps.service;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketServer;
+import okhttp3.Request;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.NotFoundException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Service for repositories as a whole: listing them, and the facts about each one an inventory needs.
+ */
+public final class RepositoryService extends BaseService {
+
+    private static final int BRANCH_COUNT_PAGE_SIZE = 1000;
+
+    public RepositoryService(final BitbucketServer bitbucketSite) {
+        super(bitbucketSite);
+    }
+
+    /**
+     * Walks the repositories of a project, or of all projects, page by page, see {@link BaseService#forEachValue}.
+     *
+     * @param project Project key, null for all repositories the user can see.
+     */
+    public void forEachRepository(final String project, final int pageSize, final Predicate<JSONObject> consumer) throws BadRequestException {
+        try {
+            forEachValue(project == null ? "repos" : projectResource(project) + "/repos", null, pageSize, consumer);
+        } catch (JSONException ex) {
+            throw new RuntimeException("Error listing repositories", ex);
+        }
+    }
+
+    /**
+     * Returns the default branch of a repository.
+     *
+     * @return The branch, or null for an empty repository or one whose default branch does not exist.
+     */
+    public JSONObject getDefaultBranch(final String project, final String repoSlug) throws BadRequestException {
+        try {
+            Request request = buildRequest(project, repoSlug, "branches/default", HttpMethod.GET, null, null);
+            JSONObject branch = executeRequest(request);
+            return branch.has("id") ? branch : null;
+        } catch (NotFoundException ex) {
+            //newer servers answer 404 instead of an empty body
+            return null;
+        } catch (JSONException ex) {
+            throw new RuntimeException("Error getting default branch", ex);
+        }
+    }
+
+    /**
+     * Returns the tag that was created or moved last. This is not necessarily the highest version, e.g. after a
+     * hotfix release of an older line.
+     *
+     * @return The tag, or null if there is none.
+     */
+    public JSONObject getLastModifiedTag(final String project, final String repoSlug) throws BadRequestException {
+        Map<String, String> params = new HashMap<>();
+        params.put("orderBy", "MODIFICATION");
+        params.put("limit", "1");
+        try {
+            JSONArray tags = executeRequest(buildRequest(project, repoSlug, "tags", HttpMethod.GET, null, params)).optJSONArray("values");
+            return tags == null || tags.length() == 0 ? null : tags.getJSONObject(0);
+        } catch (JSONException ex) {
+            throw new RuntimeException("Error getting tags", ex);
+        }
+    }
+
+    public int countBranches(final String project, final String repoSlug) throws BadRequestException {
+        AtomicInteger count = new AtomicInteger();
+        try {
+            forEachValue(project, repoSlug, "branches", null, BRANCH_COUNT_PAGE_SIZE, branch -> {
+                count.incrementAndGet();
+                return true;
+            });
+        } catch (JSONException ex) {
+            throw new RuntimeException("Error counting branches", ex);
+        }
+        return count.get();
+    }
+}
@@ -0,0 +1,182 @@
+package com.aagproservices.jenkins.bitbucketsteps.session;
+
+import okhttp3.Cookie;
+import okhttp3.CookieJar;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Session shared by the steps inside a {@code withBitbucket} block. It provides project and repository to steps
+ * that leave them out, and keeps the session cookie Bitbucket hands out, so requests after the first authenticate
+ * with the cookie instead of the password, which the server has to hash on every request. The session itself is
+ * part of the pipeline state; its cookies are held in memory only, on the controller and on each agent that sends
+ * requests of the session, and are picked up again after a restart by authenticating once more. Only the controller
+ * learns when the block ends, so cookies that were not used for longer than Bitbucket keeps a session are dropped
+ * everywhere. Once the block ended the session cannot be used anymore.
+ */
+public final class BitbucketSession implements Serializable {
+
+    private static final long serialVersionUID = 4129058366410872215L;
+
+    private static final ConcurrentMap<String, State> STATES = new ConcurrentHashMap<>();
+    private static final long IDLE_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    private final String id = UUID.randomUUID().toString();
+    private final String project;
+    private final String repoSlug;
+    private final boolean onAgent;
+    private volatile boolean closed;
+
+    /**
+     * Constructor.
+     *
+     * @param project  Default project key, may be null.
+     * @param repoSlug Default repository slug, may be null.
+     * @param onAgent  Whether the steps inside send their requests from the agent by default.
+     */
+    public BitbucketSession(final String project, final String repoSlug, final boolean onAgent) {
+        this.project = project;
+        this.repoSlug = repoSlug;
+        this.onAgent = onAgent;
+    }
+
+    public String getProject() {
+        return project;
+    }
+
+    public String getRepoSlug() {
+        return repoSlug;
+    }
+
+    public boolean isOnAgent() {
+        return onAgent;
+    }
+
+    /**
+     * Returns a client for the requests of this session. It shares connections and threads with the given client
+     * and adds the cookies of the session.
+     *
+     * @param shared The client shared by all requests to the server.
+     * @return The client of the session.
+     */
+    public OkHttpClient client(final OkHttpClient shared) {
+        return state().client(shared);
+    }
+
+    /**
+     * Tells whether the session has a cookie for the server of a URL, so a request needs no password.
+     *
+     * @param url The URL of the request.
+     * @return True if a session cookie is held.
+     */
+    public boolean isAuthenticated(final HttpUrl url) {
+        return !state().cookies.loadForRequest(url).isEmpty();
+    }
+
+    /**
+     * Drops the cookies, e.g. after the server rejected them because its session expired.
+     */
+    public void reset() {
+        state().cookies.clear();
+        state().resets.incrementAndGet();
+    }
+
+    /**
+     * Returns how often the session had to authenticate with the password again.
+     *
+     * @return Number of resets.
+     */
+    public int getResets() {
+        return state().resets.get();
+    }
+
+    /**
+     * Releases what the session holds. Called when the block ends.
+     */
+    public void close() {
+        closed = true;
+        STATES.remove(id);
+    }
+
+    private State state() {
+        if (closed) {
+            throw new IllegalStateException("The withBitbucket block of this session has ended");
+        }
+        long now = System.currentTimeMillis();
+        STATES.values().removeIf(state -> now - state.lastUsed > IDLE_MILLIS);
+        State state = STATES.computeIfAbsent(id, k -> new State());
+        state.lastUsed = now;
+        return state;
+    }
+
+    private static final class State {
+        private final SessionCookieJar cookies = new SessionCookieJar();
+        private final AtomicInteger resets = new AtomicInteger();
+        private volatile long lastUsed;
+        private volatile OkHttpClient client;
+        private volatile OkHttpClient base;
+
+        private OkHttpClient client(final OkHttpClient shared) {
+            OkHttpClient current = client;
+            if (current == null || base != shared) {
+                synchronized (this) {
+                    if (client == null || base != shared) {
+                        client = shared.newBuilder().cookieJar(cookies).build();
+                        base = shared;
+                    }
+                    current = client;
+                }
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Keeps the cookies the server sets, by host, until they expire.
+     */
+    private static final class SessionCookieJar implements CookieJar {
+        private final List<Cookie> cookies = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void saveFromResponse(final HttpUrl url, final List<Cookie> received) {
+            for (Cookie cookie : received) {
+                cookies.removeIf(existing -> existing.name().equals(cookie.name()) && existing.domain().equals(cookie.domain())
+                        && existing.path().equals(cookie.path()));
+                cookies.add(cookie);
+            }
+        }
+
+        @Override
+        public List<Cookie> loadForRequest(final HttpUrl url) {
+            List<Cookie> matching = new ArrayList<>();
+            long now = System.currentTimeMillis();
+            Iterator<Cookie> iterator = cookies.iterator();
+            while (iterator.hasNext()) {
+                Cookie cookie = iterator.next();
+                if (cookie.expiresAt() < now) {
+                    cookies.remove(cookie);
+                } else if (cookie.matches(url)) {
+                    matching.add(cookie);
+                }
+            }
+            return matching;
+        }
+
+        private void clear() {
+            cookies.clear();
+        }
+    }
+}
@@ -1,10 +1,14 @@
 package com.aagproservices.jenkins.bitbucketsteps.step;
 
 import com.aagproservices.jenkins.bitbucketsteps.BitbucketServer;
+import com.aagproservices.jenkins.bitbucketsteps.session.BitbucketSession;
 import jenkins.model.Jenkins;
 import org.jenkinsci.plugins.workflow.steps.Step;
+import org.kohsuke.stapler.DataBoundSetter;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * @author Aleks Gekht
@@ -18,6 +22,8 @@ public abstract class AbstractStep extends Step implements Serializable {
     private BitbucketServer site;
     protected String project;
     protected String repoSlug;
+    private List<String> fields;
+    private boolean onAgent;
 
     /**
      * Constructor which extracts the information of the configured site (global Jenkins config) from it's descriptor
@@ -27,20 +33,49 @@ public abstract class AbstractStep extends Step implements Serializable {
         this.project = project;
         this.repoSlug = repoSlug;
 
+        this.site = resolveSite();
+    }
+
+    /**
+     * Builds a {@link BitbucketServer} from the global Jenkins configuration. Also used by executions that need to
+     * reconnect after a restart, since the site itself is not persisted with them.
+     *
+     * @return The configured {@link BitbucketServer}, or null if the plugin is not configured.
+     */
+    public static BitbucketServer resolveSite() {
         Jenkins jenkins = Jenkins.getInstanceOrNull();
         if (jenkins == null) {
             throw new IllegalStateException("Jenkins instance is null!");
         }
         BitbucketServer.BitbucketServerDescriptor siteDescriptor = (BitbucketServer.BitbucketServerDescriptor)jenkins.getDescriptor(BitbucketServer.class);
 
-        if (siteDescriptor != null) {
-            this.site = new BitbucketServer(
-                    siteDescriptor.getUrl(),
-                    siteDescriptor.getUsername(),
-                    siteDescriptor.getPassword(),
-                    siteDescriptor.getTimeout(),
-                    siteDescriptor.getPoolSize());
+        if (siteDescriptor == null) {
+            return null;
+        }
+        return new BitbucketServer(
+                siteDescriptor.getUrl(),
+                siteDescriptor.getUsername(),
+                siteDescriptor.getPassword(),
+                siteDescriptor.getTimeout(),
+                siteDescriptor.getPoolSize());
+    }
+
+    /**
+     * Takes project and repository from the enclosing {@code withBitbucket} block where the step does not name them.
+     *
+     * @param session The session of the block, or null outside of one.
+     */
+    public void inheritDefaults(final BitbucketSession session) {
+        if (session == null) {
+            return;
+        }
+        if (project == null || project.isEmpty()) {
+            project = session.getProject();
         }
+        if (repoSlug == null || repoSlug.isEmpty()) {
+            repoSlug = session.getRepoSlug();
+        }
+        onAgent |= session.isOnAgent();
     }
 
     /**
@@ -59,4 +94,51 @@ public abstract class AbstractStep extends Step implements Serializable {
     public String getRepoSlug() {
         return repoSlug;
     }
+
+    /**
+     * Returns the additional response fields to keep in the result of steps that return what the server responded.
+     *
+     * @return Field names, nested fields separated by dots.
+     */
+    public List<String> getFields() {
+        return fields;
+    }
+
+    /**
+     * Sets the additional response fields to keep. Entries may hold several names separated by commas, as the
+     * configuration form sends them.
+     *
+     * @param fields Field names, nested fields separated by dots.
+     */
+    @DataBoundSetter
+    public void setFields(final List<String> fields) {
+        if (fields == null) {
+            this.fields = null;
+            return;
+        }
+        List<String> names = new ArrayList<>();
+        for (String entry : fields) {
+            for (String name : entry.split(",")) {
+                if (!name.trim().isEmpty()) {
+                    names.add(name.trim());
+                }
+            }
+        }
+        this.fields = names;
+    }
+
+    /**
+     * Returns whether the requests are sent from the node of the workspace instead of the controller. Only steps
+     * whose requests need nothing from the controller support it; others ignore it.
+     *
+     * @return True to send the requests from the agent.
+     */
+    public boolean isOnAgent() {
+        return onAgent;
+    }
+
+    @DataBoundSetter
+    public void setOnAgent(final boolean onAgent) {
+        this.onAgent = onAgent;
+    }
 }
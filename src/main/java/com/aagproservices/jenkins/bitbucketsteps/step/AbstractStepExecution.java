@@ -1,11 +1,30 @@
 package com.aagproservices.jenkins.bitbucketsteps.step;
 
 import com.aagproservices.jenkins.bitbucketsteps.BitbucketServer;
+import com.aagproservices.jenkins.bitbucketsteps.cache.ResponseCache;
+import com.aagproservices.jenkins.bitbucketsteps.service.ApiService;
 import com.aagproservices.jenkins.bitbucketsteps.service.BaseService;
+import com.aagproservices.jenkins.bitbucketsteps.service.BuildStatusService;
 import com.aagproservices.jenkins.bitbucketsteps.service.ContentService;
+import com.aagproservices.jenkins.bitbucketsteps.service.InsightsService;
+import com.aagproservices.jenkins.bitbucketsteps.service.OpenPullRequestIndex;
+import com.aagproservices.jenkins.bitbucketsteps.service.RefIndex;
+import com.aagproservices.jenkins.bitbucketsteps.service.RepositoryService;
+import com.aagproservices.jenkins.bitbucketsteps.session.BitbucketSession;
+import hudson.FilePath;
+import hudson.model.Computer;
+import hudson.model.TaskListener;
 import org.jenkinsci.plugins.workflow.steps.StepContext;
 import org.jenkinsci.plugins.workflow.steps.SynchronousNonBlockingStepExecution;
 
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.concurrent.Future;
+
 /**
  * @param <R> The return type of the execution.
  * @param <T> The type of the step which gets executed.
@@ -19,7 +38,17 @@ public abstract class AbstractStepExecution<R, T extends AbstractStep> extends S
 
     private final transient T step;
 
-    private final transient BitbucketServer bitbucketSite;
+    private transient BitbucketServer bitbucketSite;
+
+    private transient BitbucketSession session;
+
+    private Intent<?, ?> intent;
+
+    private transient volatile Future<?> resumed;
+
+    private String project;
+
+    private String repoSlug;
 
     /**
      * Constructor which takes the information to initialize the execution of the step.
@@ -33,6 +62,12 @@ public abstract class AbstractStepExecution<R, T extends AbstractStep> extends S
         super(context);
         this.bitbucketSite = bitbucketSite;
         this.step = step;
+        this.session = sessionOf(context);
+        if (step != null) {
+            step.inheritDefaults(session);
+            this.project = step.getProject();
+            this.repoSlug = step.getRepoSlug();
+        }
         validate(step);
     }
 
@@ -56,40 +91,229 @@ public abstract class AbstractStepExecution<R, T extends AbstractStep> extends S
      * @return An instance of the desired service.
      */
     protected <S extends BaseService> S getService(final Class<S> clazz) {
+        S service = createService(clazz, bitbucketSite);
+        service.setSession(session);
+        return service;
+    }
+
+    /**
+     * Sends the requests of the step, from the node of the workspace if the step asks for it, see
+     * {@link AbstractStep#isOnAgent()}. There the service is created anew and only the result comes back. The
+     * requests are taken to change the repository of the step, see {@link #invalidateCaches(Collection)}.
+     *
+     * @param clazz The class of the service the call uses.
+     * @param call  The requests.
+     * @param <S>   The type of the service.
+     * @param <V>   The type of the result.
+     * @return The result.
+     */
+    protected <S extends BaseService, V extends Serializable> V call(final Class<S> clazz, final ServiceCall<S, V> call)
+            throws IOException, InterruptedException {
+        return call(clazz, call, step.isOnAgent(), true);
+    }
+
+    private <S extends BaseService, V extends Serializable> V call(final Class<S> clazz, final ServiceCall<S, V> call,
+                                                                   final boolean onAgent, final boolean changes)
+            throws IOException, InterruptedException {
+        FilePath workspace = getContext().get(FilePath.class);
+        if (onAgent) {
+            if (workspace == null) {
+                throw new IllegalStateException("Sending the requests from the agent requires a workspace");
+            }
+            try {
+                return workspace.act(new AgentCallable<>(bitbucketSite, session, clazz, call));
+            } finally {
+                if (changes) {
+                    //also after a failure, the change may have been made before it
+                    invalidateCaches(call.getChangedRefs());
+                }
+            }
+        }
+        return call.call(getService(clazz), workspace == null ? null : new File(workspace.getRemote()));
+    }
+
+    /**
+     * Records the change the step is about to make. Must be called from the constructor, so the record is part of
+     * the pipeline state before the step starts and any request goes out.
+     *
+     * @param intent The change, see {@link #perform()}.
+     */
+    protected void intend(final Intent<?, ?> intent) {
+        this.intent = intent;
+    }
+
+    /**
+     * Makes the change recorded with {@link #intend(Intent)}. Unlike other steps, which fail when the controller
+     * restarts while they run, such a step is resumed: it first asks the server whether the change was made before
+     * the restart and only sends the request again if not.
+     *
+     * @return The result.
+     */
+    @SuppressWarnings("unchecked")
+    protected R perform() throws IOException, InterruptedException {
+        return (R) perform(intent);
+    }
+
+    private <S extends BaseService, V extends Serializable> V perform(final Intent<S, V> intent)
+            throws IOException, InterruptedException {
+        return call(intent.getServiceClass(), intent.getRequest(), intent.isOnAgent(), true);
+    }
+
+    /**
+     * Drops what the controller caches about the repository of the step. Requests sent from an agent bypass the
+     * caches of the controller, so a change made there would otherwise stay unseen until the next webhook. Of the ref
+     * indexes only the changed refs are looked up again, so a change that touches no ref does not cost a listing of
+     * all tags.
+     *
+     * @param refs The refs the requests changed, see {@link ServiceCall#getChangedRefs()}.
+     */
+    private void invalidateCaches(final Collection<String> refs) {
+        if (isEmpty(project) || isEmpty(repoSlug)) {
+            return;
+        }
+        ResponseCache.getInstance().invalidate(project, repoSlug);
+        OpenPullRequestIndex.invalidate(project, repoSlug);
+        if (!refs.isEmpty()) {
+            RefIndex.invalidate(project, repoSlug, refs);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void onResume() {
+        if (intent == null) {
+            super.onResume();
+            return;
+        }
+        bitbucketSite = AbstractStep.resolveSite();
+        session = sessionOf(getContext());
+        resumed = Computer.threadPoolForRemoting.submit(() -> {
+            try {
+                getContext().onSuccess((R) resume(intent));
+            } catch (Exception e) {
+                getContext().onFailure(e);
+            }
+        });
+    }
+
+    @Override
+    public void stop(@Nonnull final Throwable cause) throws Exception {
+        Future<?> task = resumed;
+        if (task != null) {
+            task.cancel(true);
+        }
+        super.stop(cause);
+    }
+
+    private <S extends BaseService, V extends Serializable> V resume(final Intent<S, V> intent)
+            throws IOException, InterruptedException {
+        PrintStream log = getContext().get(TaskListener.class).getLogger();
+        V result = call(intent.getServiceClass(), intent.getCheck(), intent.isOnAgent(), false);
+        if (result != null) {
+            log.println("Resumed after a restart, " + intent + " was already done");
+            return result;
+        }
+        log.println("Resumed after a restart, " + intent + " was not done yet");
+        return call(intent.getServiceClass(), intent.getRequest(), intent.isOnAgent(), true);
+    }
+
+    /**
+     * Creates a service. Used on the controller as well as on agents.
+     *
+     * @param clazz         The class of the desired service.
+     * @param bitbucketSite The configured site of bitbucket.
+     * @param <S>           The type of the desired service.
+     * @return A new instance of the service.
+     */
+    static <S extends BaseService> S createService(final Class<S> clazz, final BitbucketServer bitbucketSite) {
         switch (clazz.getSimpleName()) {
             case "ContentService":
                 return clazz.cast(new ContentService(bitbucketSite));
+            case "RepositoryService":
+                return clazz.cast(new RepositoryService(bitbucketSite));
+            case "BuildStatusService":
+                return clazz.cast(new BuildStatusService(bitbucketSite));
+            case "InsightsService":
+                return clazz.cast(new InsightsService(bitbucketSite));
+            case "ApiService":
+                return clazz.cast(new ApiService(bitbucketSite));
             default:
                 throw new IllegalArgumentException(String.format("\"%s\" is not a valid service", clazz.getSimpleName()));
         }
     }
 
     /**
-     * Validates the step. Must be implemented by each step.
+     * Returns the session of the enclosing {@code withBitbucket} block.
+     *
+     * @param context The step context.
+     * @return The session, or null outside of a block.
+     */
+    public static BitbucketSession sessionOf(final StepContext context) {
+        try {
+            return context.get(BitbucketSession.class);
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Validates the step. Steps with further parameters extend it.
      *
      * @param step The step which gets validated.
      */
     protected void validate(T step) {
         if (isNull(step)) {
-            throw new IllegalStateException("Given step of type CreatePageStep is null");
+            throw new IllegalStateException("Given step of type " + getClass().getSimpleName() + " is null");
+        }
+
+        if (!requiresRepository()) {
+            if (step.getSite() == null) {
+                throw new IllegalStateException("Given site is null");
+            }
+            return;
         }
 
+        validateRepository(step);
+    }
+
+    /**
+     * Checks the site, project and repository slug of a step that works on one repository. Executions that do not
+     * block a thread while they wait, and so do not extend this class, validate their steps with it as well.
+     *
+     * @param step The step which gets validated.
+     */
+    public static void validateRepository(final AbstractStep step) {
         if (step.getSite() == null) {
             throw new IllegalStateException("Given site is null");
         }
 
-        String project = step.getProject();
-        String repoSlug = step.getRepoSlug();
-
-        if (project == null || project.isEmpty()) {
+        if (isEmpty(step.getProject())) {
             throw new IllegalArgumentException("Bitbucket project is null or empty!");
         }
 
-        if (repoSlug == null || repoSlug.isEmpty()) {
+        if (isEmpty(step.getRepoSlug())) {
             throw new IllegalArgumentException("Repository slug is null or empty!");
         }
     }
 
+    /**
+     * Tells whether the step works on the one repository given by its project and repository slug, which
+     * {@link #validate(AbstractStep)} then requires. Steps that get their repositories some other way, e.g. per file or
+     * as part of a path, return false.
+     *
+     * @return True if project and repository slug are required.
+     */
+    protected boolean requiresRepository() {
+        return true;
+    }
+
+    protected static boolean isEmpty(final String value) {
+        return value == null || value.isEmpty();
+    }
+
     /**
      * Returns the step which gets executed.
      *
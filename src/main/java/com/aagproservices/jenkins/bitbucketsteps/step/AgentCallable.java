@@ -0,0 +1,52 @@
+package com.aagproservices.jenkins.bitbucketsteps.step;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketServer;
+import com.aagproservices.jenkins.bitbucketsteps.service.BaseService;
+import com.aagproservices.jenkins.bitbucketsteps.session.BitbucketSession;
+import hudson.remoting.VirtualChannel;
+import hudson.util.Secret;
+import jenkins.MasterToSlaveFileCallable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * @param <S> The type of the service the call uses.
+ * @param <V> The type of the result.
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Runs a {@link ServiceCall} on the node of the workspace. The service is created there, so the requests go out
+ * through the client shared by all calls on that node, and only the result travels back to the controller. The
+ * password of the site is not sent along, only the Authorization header built from it.
+ */
+final class AgentCallable<S extends BaseService, V extends Serializable> extends MasterToSlaveFileCallable<V> {
+
+    private static final long serialVersionUID = 6620491317550238419L;
+
+    private final BitbucketServer bitbucketSite;
+    private final Secret authorization;
+    private final BitbucketSession session;
+    private final Class<S> serviceClass;
+    private final ServiceCall<S, V> call;
+
+    AgentCallable(final BitbucketServer bitbucketSite, final BitbucketSession session, final Class<S> serviceClass,
+                  final ServiceCall<S, V> call) {
+        this.bitbucketSite = new BitbucketServer(bitbucketSite.getUrl(), bitbucketSite.getUserName(), null,
+                bitbucketSite.getTimeout(), bitbucketSite.getPoolSize());
+        this.bitbucketSite.setTrustAllCertificates(bitbucketSite.getTrustAllCertificates());
+        this.authorization = Secret.fromString(BaseService.authorizationOf(bitbucketSite));
+        this.session = session;
+        this.serviceClass = serviceClass;
+        this.call = call;
+    }
+
+    @Override
+    public V invoke(final File workspace, final VirtualChannel channel) throws IOException {
+        S service = AbstractStepExecution.createService(serviceClass, bitbucketSite);
+        service.setAuthorization(authorization.getPlainText());
+        service.setOnAgent(true);
+        service.setSession(session);
+        return call.call(service, workspace);
+    }
+}
@@ -0,0 +1,76 @@
+package com.aagproservices.jenkins.bitbucketsteps.step;
+
+import com.aagproservices.jenkins.bitbucketsteps.service.BaseService;
+
+import java.io.Serializable;
+
+/**
+ * @param <S> The type of the service the requests use.
+ * @param <V> The type of the result.
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Record of a change a step is about to make on the server, kept with the execution in the pipeline state. It holds
+ * the request that makes the change and a check that tells from the server whether the change is already there. A
+ * step resumed after a restart cannot know whether its request went out, so it runs the check first and only sends
+ * the request if the change is missing, see {@link AbstractStepExecution#perform()}.
+ */
+public final class Intent<S extends BaseService, V extends Serializable> implements Serializable {
+
+    private static final long serialVersionUID = -5214397826403671193L;
+
+    private final String operation;
+    private final String target;
+    private final Class<S> serviceClass;
+    private final ServiceCall<S, V> request;
+    private final ServiceCall<S, V> check;
+    private final boolean onAgent;
+
+    /**
+     * Constructor.
+     *
+     * @param operation    What the step does, e.g. "create tag".
+     * @param target       What it does it to, e.g. the repository and the name of the tag.
+     * @param serviceClass The class of the service the requests use.
+     * @param request      The requests making the change.
+     * @param check        Reads the expected result from the server, returns null if the change is not there yet.
+     * @param onAgent      Whether the requests are sent from the node of the workspace.
+     */
+    public Intent(final String operation, final String target, final Class<S> serviceClass, final ServiceCall<S, V> request,
+                  final ServiceCall<S, V> check, final boolean onAgent) {
+        this.operation = operation;
+        this.target = target;
+        this.serviceClass = serviceClass;
+        this.request = request;
+        this.check = check;
+        this.onAgent = onAgent;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    Class<S> getServiceClass() {
+        return serviceClass;
+    }
+
+    ServiceCall<S, V> getRequest() {
+        return request;
+    }
+
+    ServiceCall<S, V> getCheck() {
+        return check;
+    }
+
+    boolean isOnAgent() {
+        return onAgent;
+    }
+
+    @Override
+    public String toString() {
+        return operation + " " + target;
+    }
+}
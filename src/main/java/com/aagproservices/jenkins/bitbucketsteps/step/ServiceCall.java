@@ -0,0 +1,42 @@
+package com.aagproservices.jenkins.bitbucketsteps.step;
+
+import com.aagproservices.jenkins.bitbucketsteps.service.BaseService;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * @param <S> The type of the service the call uses.
+ * @param <V> The type of the result.
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * The requests of a step, packed so they can run on the controller or be sent to the node of the workspace, see
+ * {@link AbstractStepExecution#call(Class, ServiceCall)}. Implementations carry only what the requests need and
+ * return a compact result, since both travel between controller and agent.
+ */
+public interface ServiceCall<S extends BaseService, V extends Serializable> extends Serializable {
+
+    /**
+     * Sends the requests.
+     *
+     * @param service   The service to send them with.
+     * @param workspace The workspace, local to where the call runs. May be null outside of a node block.
+     * @return The result.
+     * @throws IOException If a file of the workspace cannot be read.
+     */
+    V call(S service, File workspace) throws IOException;
+
+    /**
+     * Returns the refs the requests create, move or delete. When they are sent from an agent, the controller has
+     * these looked up again in its ref indexes afterwards, see {@code RefIndex#invalidate}.
+     *
+     * @return Fully qualified names of the refs, e.g. "refs/tags/v1.0.0". A bare "refs/heads/" or "refs/tags/" stands
+     *         for refs of that kind that are not known in advance. Empty if the requests change no refs.
+     */
+    default Collection<String> getChangedRefs() {
+        return Collections.emptyList();
+    }
+}
@@ -0,0 +1,134 @@
+package com.aagproservices.jenkins.bitbucketsteps.step.descriptor;
+
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStep;
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStepDescriptor;
+import com.aagproservices.jenkins.bitbucketsteps.step.execution.ApiExecution;
+import hudson.Extension;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import javax.annotation.Nonnull;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ *          Descriptor and definition of the step "api" which allows the user to call any REST resource of the
+ *          server, e.g. one no other step covers, with the connection and credentials of the configured site.
+ */
+public class ApiStep extends AbstractStep {
+
+    private static final long serialVersionUID = -1857329104827726305L;
+
+    private final String path;
+    private String method = "GET";
+    private String body;
+    private String contentType = "application/json";
+    private boolean allPages;
+    private int pageSize = 100;
+    private String outputFile;
+
+    /**
+     * Constructor which takes the necessary information to call a resource.
+     *
+     * @param path
+     *        Path below the core REST API, e.g. "projects/KEY/repos", or from the server root, e.g.
+     *        "/rest/branch-utils/1.0/...". May contain a query string
+     */
+    @DataBoundConstructor
+    public ApiStep(final String path) {
+        super(null, null);
+        this.path = path;
+    }
+
+    @Override
+    public StepExecution start(final StepContext context) throws Exception {
+        return new ApiExecution(this, context, getSite());
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    @DataBoundSetter
+    public void setMethod(final String method) {
+        this.method = method;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    @DataBoundSetter
+    public void setBody(final String body) {
+        this.body = body;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    @DataBoundSetter
+    public void setContentType(final String contentType) {
+        this.contentType = contentType;
+    }
+
+    /**
+     * Returns whether all pages of a paged resource are read. The values of all pages are returned as one JSON
+     * array, or written to the output file as JSON Lines
+     *
+     * @return True to read all pages
+     */
+    public boolean isAllPages() {
+        return allPages;
+    }
+
+    @DataBoundSetter
+    public void setAllPages(final boolean allPages) {
+        this.allPages = allPages;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    @DataBoundSetter
+    public void setPageSize(final int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Returns the workspace file the response is written to instead of being returned
+     *
+     * @return Path relative to the workspace
+     */
+    public String getOutputFile() {
+        return outputFile;
+    }
+
+    @DataBoundSetter
+    public void setOutputFile(final String outputFile) {
+        this.outputFile = outputFile;
+    }
+
+    @Extension
+    public static class Descriptor extends AbstractStepDescriptor {
+
+        @Nonnull
+        @Override
+        public String getDisplayName() {
+            return "Call a Bitbucket REST resource";
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "bitbucketApi";
+        }
+
+    }
+}
@@ -0,0 +1,148 @@
+package com.aagproservices.jenkins.bitbucketsteps.step.descriptor;
+
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStep;
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStepDescriptor;
+import com.aagproservices.jenkins.bitbucketsteps.step.execution.BuildStatusExecution;
+import hudson.Extension;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import javax.annotation.Nonnull;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ *          Descriptor and definition of the step "buildStatus" which allows the user to report the state of the build
+ *          for a commit. Updates are queued and sent in batches, see
+ *          {@link com.aagproservices.jenkins.bitbucketsteps.service.BuildStatusQueue}.
+ */
+public class BuildStatusStep extends AbstractStep {
+
+    private static final long serialVersionUID = 3190426651720958412L;
+
+    private final String state;
+    private String commit;
+    private String key;
+    private String name;
+    private String url;
+    private String description;
+    private boolean flush;
+
+    /**
+     * Constructor which takes the necessary information to report a build status.
+     *
+     * @param state
+     *        INPROGRESS, SUCCESSFUL or FAILED
+     */
+    @DataBoundConstructor
+    public BuildStatusStep(final String state) {
+        super(null, null);
+        this.state = state;
+    }
+
+    @Override
+    public StepExecution start(final StepContext context) throws Exception {
+        return new BuildStatusExecution(this, context, getSite());
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    /**
+     * Returns the commit the status is reported for, GIT_COMMIT if not set
+     *
+     * @return The commit ID
+     */
+    public String getCommit() {
+        return commit;
+    }
+
+    @DataBoundSetter
+    public void setCommit(final String commit) {
+        this.commit = commit;
+    }
+
+    /**
+     * Returns the key of the status, the job name if not set. Statuses with the same key replace each other
+     *
+     * @return The key
+     */
+    public String getKey() {
+        return key;
+    }
+
+    @DataBoundSetter
+    public void setKey(final String key) {
+        this.key = key;
+    }
+
+    /**
+     * Returns the name shown for the status, the name and number of the build if not set
+     *
+     * @return The name
+     */
+    public String getName() {
+        return name;
+    }
+
+    @DataBoundSetter
+    public void setName(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the link of the status, the URL of the build if not set
+     *
+     * @return The URL
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    @DataBoundSetter
+    public void setUrl(final String url) {
+        this.url = url;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    @DataBoundSetter
+    public void setDescription(final String description) {
+        this.description = description;
+    }
+
+    /**
+     * Returns whether the step waits until the status, and all other queued updates, have been sent
+     *
+     * @return True to wait
+     */
+    public boolean isFlush() {
+        return flush;
+    }
+
+    @DataBoundSetter
+    public void setFlush(final boolean flush) {
+        this.flush = flush;
+    }
+
+    @Extension
+    public static class Descriptor extends AbstractStepDescriptor {
+
+        @Nonnull
+        @Override
+        public String getDisplayName() {
+            return "Report build status";
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "bitbucketBuildStatus";
+        }
+
+    }
+}
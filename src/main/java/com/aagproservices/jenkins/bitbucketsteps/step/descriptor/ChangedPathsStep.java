@@ -0,0 +1,119 @@
+package com.aagproservices.jenkins.bitbucketsteps.step.descriptor;
+
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStep;
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStepDescriptor;
+import com.aagproservices.jenkins.bitbucketsteps.step.execution.ChangedPathsExecution;
+import hudson.Extension;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ *          Descriptor and definition of the step "changedPaths" which allows the user to find the paths, or the
+ *          modules, changed between two refs or by a pull request.
+ */
+public class ChangedPathsStep extends AbstractStep {
+
+    private static final long serialVersionUID = 6307754461287718820L;
+
+    private String from;
+    private String to;
+    private int pullRequestId;
+    private List<String> modules;
+
+    /**
+     * Constructor which takes the necessary information to find changed paths.
+     *
+     * @param project
+     *        Project or username where the repo is located
+     * @param repoSlug
+     *        Repository slug
+     */
+    @DataBoundConstructor
+    public ChangedPathsStep(final String project, final String repoSlug) {
+        super(project, repoSlug);
+    }
+
+    @Override
+    public StepExecution start(final StepContext context) throws Exception {
+        return new ChangedPathsExecution(this, context, getSite());
+    }
+
+    /**
+     * Returns the ref or commit with the changes, e.g. a feature branch
+     *
+     * @return Ref or commit
+     */
+    public String getFrom() {
+        return from;
+    }
+
+    @DataBoundSetter
+    public void setFrom(final String from) {
+        this.from = from;
+    }
+
+    /**
+     * Returns the ref or commit to compare against, e.g. the target branch
+     *
+     * @return Ref or commit
+     */
+    public String getTo() {
+        return to;
+    }
+
+    @DataBoundSetter
+    public void setTo(final String to) {
+        this.to = to;
+    }
+
+    /**
+     * Returns the pull request whose changes are listed, instead of from and to
+     *
+     * @return Pull request ID
+     */
+    public int getPullRequestId() {
+        return pullRequestId;
+    }
+
+    @DataBoundSetter
+    public void setPullRequestId(final int pullRequestId) {
+        this.pullRequestId = pullRequestId;
+    }
+
+    /**
+     * Returns the module root directories to collapse the changed paths to (optional)
+     *
+     * @return Module roots, relative to the repository root
+     */
+    public List<String> getModules() {
+        return modules;
+    }
+
+    @DataBoundSetter
+    public void setModules(final List<String> modules) {
+        this.modules = modules;
+    }
+
+    @Extension
+    public static class Descriptor extends AbstractStepDescriptor {
+
+        @Nonnull
+        @Override
+        public String getDisplayName() {
+            return "Find the paths changed between two refs or by a pull request";
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "bitbucketChangedPaths";
+        }
+
+    }
+}
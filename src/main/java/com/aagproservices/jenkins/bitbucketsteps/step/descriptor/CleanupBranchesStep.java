@@ -0,0 +1,192 @@
+package com.aagproservices.jenkins.bitbucketsteps.step.descriptor;
+
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStep;
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStepDescriptor;
+import com.aagproservices.jenkins.bitbucketsteps.step.execution.CleanupBranchesExecution;
+import hudson.Extension;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import javax.annotation.Nonnull;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ *          Descriptor and definition of the step "cleanupBranches" which allows the user to delete stale branches.
+ */
+public class CleanupBranchesStep extends AbstractStep {
+
+    private static final long serialVersionUID = 1345903377291587409L;
+
+    private String filterText;
+    private String includePattern;
+    private String excludePattern;
+    private int olderThanDays;
+    private String mergedInto;
+    private boolean dryRun = true;
+    private int maxDeletes;
+    private int parallelism = 4;
+    private double maxDeletesPerSecond = 5;
+
+    /**
+     * Constructor which takes the necessary information to clean up branches.
+     *
+     * @param project
+     *        Project or username where the repo is located
+     * @param repoSlug
+     *        Repository slug
+     */
+    @DataBoundConstructor
+    public CleanupBranchesStep(final String project, final String repoSlug) {
+        super(project, repoSlug);
+    }
+
+    @Override
+    public StepExecution start(final StepContext context) throws Exception {
+        return new CleanupBranchesExecution(this, context, getSite());
+    }
+
+    /**
+     * Returns the text branch names must contain, matched by the server (optional)
+     *
+     * @return Filter text
+     */
+    public String getFilterText() {
+        return filterText;
+    }
+
+    @DataBoundSetter
+    public void setFilterText(final String filterText) {
+        this.filterText = filterText;
+    }
+
+    /**
+     * Returns the regular expression branch names must match (optional)
+     *
+     * @return Pattern
+     */
+    public String getIncludePattern() {
+        return includePattern;
+    }
+
+    @DataBoundSetter
+    public void setIncludePattern(final String includePattern) {
+        this.includePattern = includePattern;
+    }
+
+    /**
+     * Returns the regular expression of branch names that are never deleted (optional)
+     *
+     * @return Pattern
+     */
+    public String getExcludePattern() {
+        return excludePattern;
+    }
+
+    @DataBoundSetter
+    public void setExcludePattern(final String excludePattern) {
+        this.excludePattern = excludePattern;
+    }
+
+    /**
+     * Returns how many days ago the latest commit of a branch must be, 0 for any age
+     *
+     * @return Age in days
+     */
+    public int getOlderThanDays() {
+        return olderThanDays;
+    }
+
+    @DataBoundSetter
+    public void setOlderThanDays(final int olderThanDays) {
+        this.olderThanDays = olderThanDays;
+    }
+
+    /**
+     * Returns the branch that branches must be fully merged into (optional)
+     *
+     * @return Branch name
+     */
+    public String getMergedInto() {
+        return mergedInto;
+    }
+
+    @DataBoundSetter
+    public void setMergedInto(final String mergedInto) {
+        this.mergedInto = mergedInto;
+    }
+
+    /**
+     * Returns whether the branches are only reported instead of deleted
+     *
+     * @return True for a dry run
+     */
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    @DataBoundSetter
+    public void setDryRun(final boolean dryRun) {
+        this.dryRun = dryRun;
+    }
+
+    /**
+     * Returns the max number of branches to delete, 0 for all that match
+     *
+     * @return Max number of branches
+     */
+    public int getMaxDeletes() {
+        return maxDeletes;
+    }
+
+    @DataBoundSetter
+    public void setMaxDeletes(final int maxDeletes) {
+        this.maxDeletes = maxDeletes;
+    }
+
+    /**
+     * Returns how many branches are deleted at the same time
+     *
+     * @return Number of concurrent deletions
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    @DataBoundSetter
+    public void setParallelism(final int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Returns how many deletions may start per second
+     *
+     * @return Max deletions per second
+     */
+    public double getMaxDeletesPerSecond() {
+        return maxDeletesPerSecond;
+    }
+
+    @DataBoundSetter
+    public void setMaxDeletesPerSecond(final double maxDeletesPerSecond) {
+        this.maxDeletesPerSecond = maxDeletesPerSecond;
+    }
+
+    @Extension
+    public static class Descriptor extends AbstractStepDescriptor {
+
+        @Nonnull
+        @Override
+        public String getDisplayName() {
+            return "Delete stale branches";
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "bitbucketCleanupBranches";
+        }
+
+    }
+}
@@ -8,6 +8,7 @@ import hudson.Extension;
 import org.jenkinsci.plugins.workflow.steps.StepContext;
 import org.jenkinsci.plugins.workflow.steps.StepExecution;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 
 import javax.annotation.Nonnull;
 
@@ -24,6 +25,7 @@ public class CreatePullRequestStep extends AbstractStep {
     private String description;
     private String fromRef;
     private String toRef;
+    private boolean updateExisting = false;
 
     /**
      * Constructor which takes the necessary information to create a page.
@@ -92,6 +94,20 @@ public class CreatePullRequestStep extends AbstractStep {
         return toRef;
     }
 
+    /**
+     * Returns whether title and description of an already open pull request between the same refs get updated
+     *
+     * @return True to update an existing pull request
+     */
+    public boolean isUpdateExisting() {
+        return updateExisting;
+    }
+
+    @DataBoundSetter
+    public void setUpdateExisting(final boolean updateExisting) {
+        this.updateExisting = updateExisting;
+    }
+
     public PullRequest getPullRequest() {
         PullRequest pr = new PullRequest();
         pr.setTitle(getTitle());
@@ -0,0 +1,132 @@
+package com.aagproservices.jenkins.bitbucketsteps.step.descriptor;
+
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStep;
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStepDescriptor;
+import com.aagproservices.jenkins.bitbucketsteps.step.execution.DownloadArchiveExecution;
+import hudson.Extension;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ *          Descriptor and definition of the step "downloadArchive" which allows the user to download some paths of a
+ *          repository instead of cloning all of it.
+ */
+public class DownloadArchiveStep extends AbstractStep {
+
+    private static final long serialVersionUID = -1408763290437816262L;
+
+    private final String target;
+    private List<String> paths;
+    private String at;
+    private String format = "tar.gz";
+    private boolean extract;
+
+    /**
+     * Constructor which takes the necessary information to download an archive.
+     *
+     * @param project
+     *        Project or username where the repo is located
+     * @param repoSlug
+     *        Repository slug
+     * @param target
+     *        Workspace file the archive is written to, or directory it is extracted to
+     */
+    @DataBoundConstructor
+    public DownloadArchiveStep(final String project, final String repoSlug, final String target) {
+        super(project, repoSlug);
+        this.target = target;
+    }
+
+    @Override
+    public StepExecution start(final StepContext context) throws Exception {
+        return new DownloadArchiveExecution(this, context, getSite());
+    }
+
+    /**
+     * Returns the workspace file the archive is written to, or the directory it is extracted to
+     *
+     * @return Path relative to the workspace
+     */
+    public String getTarget() {
+        return target;
+    }
+
+    /**
+     * Returns the paths of the repository to include, all if not set
+     *
+     * @return Paths in the repository
+     */
+    public List<String> getPaths() {
+        return paths;
+    }
+
+    @DataBoundSetter
+    public void setPaths(final List<String> paths) {
+        this.paths = paths;
+    }
+
+    /**
+     * Returns the branch, tag or commit to archive, the default branch if not set
+     *
+     * @return Branch, tag or commit
+     */
+    public String getAt() {
+        return at;
+    }
+
+    @DataBoundSetter
+    public void setAt(final String at) {
+        this.at = at;
+    }
+
+    /**
+     * Returns the archive format: zip, tar, tar.gz or tgz
+     *
+     * @return Archive format
+     */
+    public String getFormat() {
+        return format;
+    }
+
+    @DataBoundSetter
+    public void setFormat(final String format) {
+        this.format = format;
+    }
+
+    /**
+     * Returns whether the archive is extracted into the target directory instead of being saved
+     *
+     * @return True to extract
+     */
+    public boolean isExtract() {
+        return extract;
+    }
+
+    @DataBoundSetter
+    public void setExtract(final boolean extract) {
+        this.extract = extract;
+    }
+
+    @Extension
+    public static class Descriptor extends AbstractStepDescriptor {
+
+        @Nonnull
+        @Override
+        public String getDisplayName() {
+            return "Download an archive of the repository";
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "bitbucketDownloadArchive";
+        }
+
+    }
+}
@@ -0,0 +1,171 @@
+package com.aagproservices.jenkins.bitbucketsteps.step.descriptor;
+
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStep;
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStepDescriptor;
+import com.aagproservices.jenkins.bitbucketsteps.step.execution.FanOutExecution;
+import hudson.Extension;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ *          Descriptor and definition of the step "fanOut" which allows the user to create the same tag or branch
+ *          in many repositories, or merge a pull request in each of them, at once.
+ */
+public class FanOutStep extends AbstractStep {
+
+    private static final long serialVersionUID = 7117094218467432306L;
+
+    public static final String CREATE_TAG = "createTag";
+    public static final String CREATE_BRANCH = "createBranch";
+    public static final String MERGE_PULL_REQUEST = "mergePullRequest";
+
+    private final List<RepositoryTarget> repositories;
+    private final String operation;
+    private String name;
+    private String startPoint;
+    private String message;
+    private int parallelism = 8;
+    private int retries = 2;
+    private boolean rollbackOnFailure;
+
+    /**
+     * Constructor which takes the necessary information to run the operation.
+     *
+     * @param repositories
+     *        The repositories to run the operation in
+     * @param operation
+     *        createTag, createBranch or mergePullRequest
+     */
+    @DataBoundConstructor
+    public FanOutStep(final List<RepositoryTarget> repositories, final String operation) {
+        super(null, null);
+        this.repositories = repositories == null ? null : new ArrayList<>(repositories);
+        this.operation = operation;
+    }
+
+    @Override
+    public StepExecution start(final StepContext context) throws Exception {
+        return new FanOutExecution(this, context, getSite());
+    }
+
+    public List<RepositoryTarget> getRepositories() {
+        return repositories;
+    }
+
+    /**
+     * Returns the operation to run in each repository: createTag, createBranch or mergePullRequest
+     *
+     * @return The operation
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * Returns the name of the tag or branch to create
+     *
+     * @return Tag or branch name
+     */
+    public String getName() {
+        return name;
+    }
+
+    @DataBoundSetter
+    public void setName(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the branch or commit the tag or branch is created at
+     *
+     * @return Start point
+     */
+    public String getStartPoint() {
+        return startPoint;
+    }
+
+    @DataBoundSetter
+    public void setStartPoint(final String startPoint) {
+        this.startPoint = startPoint;
+    }
+
+    /**
+     * Returns the message of the tag or branch (optional)
+     *
+     * @return Message
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    @DataBoundSetter
+    public void setMessage(final String message) {
+        this.message = message;
+    }
+
+    /**
+     * Returns how many repositories are worked on at the same time
+     *
+     * @return Number of concurrent operations
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    @DataBoundSetter
+    public void setParallelism(final int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Returns how often the operation is retried in a repository after a server or connection error
+     *
+     * @return Number of retries
+     */
+    public int getRetries() {
+        return retries;
+    }
+
+    @DataBoundSetter
+    public void setRetries(final int retries) {
+        this.retries = retries;
+    }
+
+    /**
+     * Returns whether the tags or branches already created are deleted again if the operation fails in any repository
+     *
+     * @return True to roll back
+     */
+    public boolean isRollbackOnFailure() {
+        return rollbackOnFailure;
+    }
+
+    @DataBoundSetter
+    public void setRollbackOnFailure(final boolean rollbackOnFailure) {
+        this.rollbackOnFailure = rollbackOnFailure;
+    }
+
+    @Extension
+    public static class Descriptor extends AbstractStepDescriptor {
+
+        @Nonnull
+        @Override
+        public String getDisplayName() {
+            return "Create a tag or branch, or merge a pull request, in many repositories";
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "bitbucketFanOut";
+        }
+
+    }
+}
@@ -0,0 +1,193 @@
+package com.aagproservices.jenkins.bitbucketsteps.step.descriptor;
+
+import com.aagproservices.jenkins.bitbucketsteps.service.InsightsService;
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStep;
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStepDescriptor;
+import com.aagproservices.jenkins.bitbucketsteps.step.execution.InsightsReportExecution;
+import hudson.Extension;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import javax.annotation.Nonnull;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ *          Descriptor and definition of the step "insightsReport" which allows the user to publish the findings of a
+ *          SARIF or JSON file from the workspace as a Code Insights report of a commit.
+ */
+public class InsightsReportStep extends AbstractStep {
+
+    private static final long serialVersionUID = 8816024153950271377L;
+
+    private final String file;
+    private String key = "jenkins";
+    private String title;
+    private String commit;
+    private String format;
+    private String result;
+    private String details;
+    private String link;
+    private int chunkSize = InsightsService.MAX_ANNOTATIONS_PER_REQUEST;
+    private int maxAnnotations = InsightsService.MAX_ANNOTATIONS_PER_REPORT;
+
+    /**
+     * Constructor which takes the necessary information to publish a report.
+     *
+     * @param project
+     *        Project key
+     * @param repoSlug
+     *        Repository slug
+     * @param file
+     *        Workspace file with the findings
+     */
+    @DataBoundConstructor
+    public InsightsReportStep(final String project, final String repoSlug, final String file) {
+        super(project, repoSlug);
+        this.file = file;
+    }
+
+    @Override
+    public StepExecution start(final StepContext context) throws Exception {
+        return new InsightsReportExecution(this, context, getSite());
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the key of the report. A report with the same key is replaced
+     *
+     * @return The key
+     */
+    public String getKey() {
+        return key;
+    }
+
+    @DataBoundSetter
+    public void setKey(final String key) {
+        this.key = key;
+    }
+
+    /**
+     * Returns the title of the report, the key if not set
+     *
+     * @return The title
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    @DataBoundSetter
+    public void setTitle(final String title) {
+        this.title = title;
+    }
+
+    /**
+     * Returns the commit the report belongs to, GIT_COMMIT if not set
+     *
+     * @return The commit ID
+     */
+    public String getCommit() {
+        return commit;
+    }
+
+    @DataBoundSetter
+    public void setCommit(final String commit) {
+        this.commit = commit;
+    }
+
+    /**
+     * Returns the format of the file, sarif or json. Files ending with .sarif are read as SARIF if not set
+     *
+     * @return The format
+     */
+    public String getFormat() {
+        return format;
+    }
+
+    @DataBoundSetter
+    public void setFormat(final String format) {
+        this.format = format;
+    }
+
+    /**
+     * Returns the result of the report, PASS or FAIL. The report has no result if not set
+     *
+     * @return The result
+     */
+    public String getResult() {
+        return result;
+    }
+
+    @DataBoundSetter
+    public void setResult(final String result) {
+        this.result = result;
+    }
+
+    public String getDetails() {
+        return details;
+    }
+
+    @DataBoundSetter
+    public void setDetails(final String details) {
+        this.details = details;
+    }
+
+    public String getLink() {
+        return link;
+    }
+
+    @DataBoundSetter
+    public void setLink(final String link) {
+        this.link = link;
+    }
+
+    /**
+     * Returns how many annotations are uploaded with one request, at most 1000
+     *
+     * @return Annotations per request
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    @DataBoundSetter
+    public void setChunkSize(final int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Returns how many annotations are uploaded at most, the rest are counted but left out. Bitbucket keeps at most
+     * 1000 per report, a higher value is lowered to that.
+     *
+     * @return Max number of annotations
+     */
+    public int getMaxAnnotations() {
+        return maxAnnotations;
+    }
+
+    @DataBoundSetter
+    public void setMaxAnnotations(final int maxAnnotations) {
+        this.maxAnnotations = maxAnnotations;
+    }
+
+    @Extension
+    public static class Descriptor extends AbstractStepDescriptor {
+
+        @Nonnull
+        @Override
+        public String getDisplayName() {
+            return "Publish a Code Insights report";
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "bitbucketInsightsReport";
+        }
+
+    }
+}
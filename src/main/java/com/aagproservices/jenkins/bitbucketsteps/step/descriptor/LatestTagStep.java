@@ -0,0 +1,148 @@
+package com.aagproservices.jenkins.bitbucketsteps.step.descriptor;
+
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStep;
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStepDescriptor;
+import com.aagproservices.jenkins.bitbucketsteps.step.execution.LatestTagExecution;
+import hudson.Extension;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import javax.annotation.Nonnull;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ *          Descriptor and definition of the step "latestTag" which allows the user to find the tag with the highest
+ *          semantic version.
+ */
+public class LatestTagStep extends AbstractStep {
+
+    private static final long serialVersionUID = 5572304129866147301L;
+
+    private String prefix = "v";
+    private boolean includePreReleases = false;
+    private String bump;
+    private String from;
+    private String to;
+    private int indexMaxAgeSeconds = 0;
+
+    /**
+     * Constructor which takes the necessary information to find the latest tag.
+     *
+     * @param project
+     *        Project or username where the repo is located
+     * @param repoSlug
+     *        Repository slug
+     */
+    @DataBoundConstructor
+    public LatestTagStep(final String project, final String repoSlug) {
+        super(project, repoSlug);
+    }
+
+    @Override
+    public StepExecution start(final StepContext context) throws Exception {
+        return new LatestTagExecution(this, context, getSite());
+    }
+
+    /**
+     * Returns the prefix in front of the version in the tag names
+     *
+     * @return The prefix, e.g. "v"
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+
+    @DataBoundSetter
+    public void setPrefix(final String prefix) {
+        this.prefix = prefix == null ? "" : prefix;
+    }
+
+    /**
+     * Returns whether pre-release versions like "v2.0.0-rc.1" are considered
+     *
+     * @return True to consider pre-releases
+     */
+    public boolean isIncludePreReleases() {
+        return includePreReleases;
+    }
+
+    @DataBoundSetter
+    public void setIncludePreReleases(final boolean includePreReleases) {
+        this.includePreReleases = includePreReleases;
+    }
+
+    /**
+     * Returns which part of the version is incremented to compute the next version (optional)
+     *
+     * @return major, minor or patch
+     */
+    public String getBump() {
+        return bump;
+    }
+
+    @DataBoundSetter
+    public void setBump(final String bump) {
+        this.bump = bump;
+    }
+
+    /**
+     * Returns the lowest version to consider, with or without the prefix (optional)
+     *
+     * @return Lowest version, inclusive
+     */
+    public String getFrom() {
+        return from;
+    }
+
+    @DataBoundSetter
+    public void setFrom(final String from) {
+        this.from = from;
+    }
+
+    /**
+     * Returns the version to stay below, with or without the prefix (optional)
+     *
+     * @return Upper version bound, exclusive
+     */
+    public String getTo() {
+        return to;
+    }
+
+    @DataBoundSetter
+    public void setTo(final String to) {
+        this.to = to;
+    }
+
+    /**
+     * Returns how old the on-disk tag index may be to answer from it, 0 to always ask the server
+     *
+     * @return Max index age in seconds
+     */
+    public int getIndexMaxAgeSeconds() {
+        return indexMaxAgeSeconds;
+    }
+
+    @DataBoundSetter
+    public void setIndexMaxAgeSeconds(final int indexMaxAgeSeconds) {
+        this.indexMaxAgeSeconds = indexMaxAgeSeconds;
+    }
+
+    @Extension
+    public static class Descriptor extends AbstractStepDescriptor {
+
+        @Nonnull
+        @Override
+        public String getDisplayName() {
+            return "Find the tag with the highest semantic version";
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "bitbucketLatestTag";
+        }
+
+    }
+}
@@ -0,0 +1,148 @@
+package com.aagproservices.jenkins.bitbucketsteps.step.descriptor;
+
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStep;
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStepDescriptor;
+import com.aagproservices.jenkins.bitbucketsteps.step.execution.ListPullRequestsExecution;
+import hudson.Extension;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import javax.annotation.Nonnull;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ *          Descriptor and definition of the step "listPullRequests" which allows the user to list pull requests,
+ *          filtered on the server.
+ */
+public class ListPullRequestsStep extends AbstractStep {
+
+    private static final long serialVersionUID = 2871648392010355702L;
+
+    private String state = "OPEN";
+    private String direction = "INCOMING";
+    private String at;
+    private String author;
+    private int maxResults = 0;
+    private String outputFile;
+
+    /**
+     * Constructor which takes the necessary information to list pull requests.
+     *
+     * @param project
+     *        Project or username where the repo is located
+     * @param repoSlug
+     *        Repository slug
+     */
+    @DataBoundConstructor
+    public ListPullRequestsStep(final String project, final String repoSlug) {
+        super(project, repoSlug);
+    }
+
+    @Override
+    public StepExecution start(final StepContext context) throws Exception {
+        return new ListPullRequestsExecution(this, context, getSite());
+    }
+
+    /**
+     * Returns the state of the pull requests to list: OPEN, DECLINED, MERGED or ALL
+     *
+     * @return Pull request state
+     */
+    public String getState() {
+        return state;
+    }
+
+    @DataBoundSetter
+    public void setState(final String state) {
+        this.state = state;
+    }
+
+    /**
+     * Returns whether "at" filters on the target (INCOMING) or the source (OUTGOING) ref
+     *
+     * @return Direction of the ref filter
+     */
+    public String getDirection() {
+        return direction;
+    }
+
+    @DataBoundSetter
+    public void setDirection(final String direction) {
+        this.direction = direction;
+    }
+
+    /**
+     * Returns the ref the pull requests must target or come from (optional)
+     *
+     * @return Branch name or fully qualified ref
+     */
+    public String getAt() {
+        return at;
+    }
+
+    @DataBoundSetter
+    public void setAt(final String at) {
+        this.at = at;
+    }
+
+    /**
+     * Returns the username of the author of the pull requests (optional)
+     *
+     * @return Author username
+     */
+    public String getAuthor() {
+        return author;
+    }
+
+    @DataBoundSetter
+    public void setAuthor(final String author) {
+        this.author = author;
+    }
+
+    /**
+     * Returns the max number of pull requests to list, 0 for all
+     *
+     * @return Max number of results
+     */
+    public int getMaxResults() {
+        return maxResults;
+    }
+
+    @DataBoundSetter
+    public void setMaxResults(final int maxResults) {
+        this.maxResults = maxResults;
+    }
+
+    /**
+     * Returns the workspace file the pull requests are written to as JSON Lines instead of being returned (optional)
+     *
+     * @return Path relative to the workspace
+     */
+    public String getOutputFile() {
+        return outputFile;
+    }
+
+    @DataBoundSetter
+    public void setOutputFile(final String outputFile) {
+        this.outputFile = outputFile;
+    }
+
+    @Extension
+    public static class Descriptor extends AbstractStepDescriptor {
+
+        @Nonnull
+        @Override
+        public String getDisplayName() {
+            return "List pull requests of the repository";
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "bitbucketListPullRequests";
+        }
+
+    }
+}
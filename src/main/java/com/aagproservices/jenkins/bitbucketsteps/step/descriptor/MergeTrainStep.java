@@ -0,0 +1,116 @@
+package com.aagproservices.jenkins.bitbucketsteps.step.descriptor;
+
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStep;
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStepDescriptor;
+import com.aagproservices.jenkins.bitbucketsteps.step.execution.MergeTrainExecution;
+import hudson.Extension;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import javax.annotation.Nonnull;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ *          Descriptor and definition of the step "mergeTrain" which queues a pull request for an ordered merge into
+ *          its target branch.
+ */
+public class MergeTrainStep extends AbstractStep {
+
+    private static final long serialVersionUID = -6115920438517720391L;
+
+    private int id;
+    private String targetBranch;
+    private String validationJob;
+    private int batchSize = 5;
+
+    /**
+     * Constructor which takes the necessary information to queue a pull request.
+     *
+     * @param project
+     *        Project or username where the repo is located
+     * @param repoSlug
+     *        Repository slug
+     * @param id
+     *        ID of the pull request to merge
+     */
+    @DataBoundConstructor
+    public MergeTrainStep(final String project, final String repoSlug, final int id) {
+        super(project, repoSlug);
+        this.id = id;
+    }
+
+    @Override
+    public StepExecution start(final StepContext context) throws Exception {
+        return new MergeTrainExecution(this, context, getSite());
+    }
+
+    /**
+     * Returns the ID of the pull request to merge
+     *
+     * @return Pull request ID
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns the branch the pull request gets merged into. Read from the pull request if not set.
+     *
+     * @return Target branch name
+     */
+    public String getTargetBranch() {
+        return targetBranch;
+    }
+
+    @DataBoundSetter
+    public void setTargetBranch(final String targetBranch) {
+        this.targetBranch = targetBranch;
+    }
+
+    /**
+     * Returns the job that validates a group of queued pull requests before they get merged (optional)
+     *
+     * @return Full name of the validation job
+     */
+    public String getValidationJob() {
+        return validationJob;
+    }
+
+    @DataBoundSetter
+    public void setValidationJob(final String validationJob) {
+        this.validationJob = validationJob;
+    }
+
+    /**
+     * Returns the max number of pull requests validated together
+     *
+     * @return Batch size
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    @DataBoundSetter
+    public void setBatchSize(final int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    @Extension
+    public static class Descriptor extends AbstractStepDescriptor {
+
+        @Nonnull
+        @Override
+        public String getDisplayName() {
+            return "Queue pull request for ordered merge into its target branch";
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "bitbucketMergeTrain";
+        }
+
+    }
+}
@@ -0,0 +1,89 @@
+package com.aagproservices.jenkins.bitbucketsteps.step.descriptor;
+
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStep;
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStepDescriptor;
+import com.aagproservices.jenkins.bitbucketsteps.step.execution.PullRequestCommentExecution;
+import hudson.Extension;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import javax.annotation.Nonnull;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ *          Descriptor and definition of the step "pullRequestComment" which allows the user to keep a single comment
+ *          on a pull request up to date: the comment left by an earlier build is edited instead of adding a new one.
+ */
+public class PullRequestCommentStep extends AbstractStep {
+
+    private static final long serialVersionUID = 5528106341952738204L;
+
+    private final int pullRequestId;
+    private final String text;
+    private String marker;
+
+    /**
+     * Constructor which takes the necessary information to comment on a pull request.
+     *
+     * @param project
+     *        Project or username where the repo is located
+     * @param repoSlug
+     *        Repository slug
+     * @param pullRequestId
+     *        ID of the pull request
+     * @param text
+     *        Markdown text of the comment
+     */
+    @DataBoundConstructor
+    public PullRequestCommentStep(final String project, final String repoSlug, final int pullRequestId, final String text) {
+        super(project, repoSlug);
+        this.pullRequestId = pullRequestId;
+        this.text = text;
+    }
+
+    @Override
+    public StepExecution start(final StepContext context) throws Exception {
+        return new PullRequestCommentExecution(this, context, getSite());
+    }
+
+    public int getPullRequestId() {
+        return pullRequestId;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Returns what identifies the comment among the comments of the pull request, the job name if not set
+     *
+     * @return The marker
+     */
+    public String getMarker() {
+        return marker;
+    }
+
+    @DataBoundSetter
+    public void setMarker(final String marker) {
+        this.marker = marker;
+    }
+
+    @Extension
+    public static class Descriptor extends AbstractStepDescriptor {
+
+        @Nonnull
+        @Override
+        public String getDisplayName() {
+            return "Create or update a pull request comment";
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "bitbucketPullRequestComment";
+        }
+
+    }
+}
@@ -0,0 +1,116 @@
+package com.aagproservices.jenkins.bitbucketsteps.step.descriptor;
+
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStep;
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStepDescriptor;
+import com.aagproservices.jenkins.bitbucketsteps.step.execution.ReadFileExecution;
+import hudson.Extension;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import javax.annotation.Nonnull;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ *          Descriptor and definition of the step "readFile" which allows the user to read a single file of a
+ *          repository without cloning it.
+ */
+public class ReadFileStep extends AbstractStep {
+
+    private static final long serialVersionUID = 5190357826640185129L;
+
+    private final String path;
+    private String at;
+    private String outputFile;
+    private int maxContentBytes = 1024 * 1024;
+
+    /**
+     * Constructor which takes the necessary information to read a file.
+     *
+     * @param project
+     *        Project or username where the repo is located
+     * @param repoSlug
+     *        Repository slug
+     * @param path
+     *        Path of the file in the repository
+     */
+    @DataBoundConstructor
+    public ReadFileStep(final String project, final String repoSlug, final String path) {
+        super(project, repoSlug);
+        this.path = path;
+    }
+
+    @Override
+    public StepExecution start(final StepContext context) throws Exception {
+        return new ReadFileExecution(this, context, getSite());
+    }
+
+    /**
+     * Returns the path of the file in the repository
+     *
+     * @return File path
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the branch, tag or commit to read the file at, the default branch if not set
+     *
+     * @return Branch, tag or commit
+     */
+    public String getAt() {
+        return at;
+    }
+
+    @DataBoundSetter
+    public void setAt(final String at) {
+        this.at = at;
+    }
+
+    /**
+     * Returns the workspace file the content is written to instead of being returned (optional)
+     *
+     * @return Path relative to the workspace
+     */
+    public String getOutputFile() {
+        return outputFile;
+    }
+
+    @DataBoundSetter
+    public void setOutputFile(final String outputFile) {
+        this.outputFile = outputFile;
+    }
+
+    /**
+     * Returns the max size of a file whose content is returned, the step fails for bigger files
+     *
+     * @return Max size in bytes
+     */
+    public int getMaxContentBytes() {
+        return maxContentBytes;
+    }
+
+    @DataBoundSetter
+    public void setMaxContentBytes(final int maxContentBytes) {
+        this.maxContentBytes = maxContentBytes;
+    }
+
+    @Extension
+    public static class Descriptor extends AbstractStepDescriptor {
+
+        @Nonnull
+        @Override
+        public String getDisplayName() {
+            return "Read a file of the repository";
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "bitbucketReadFile";
+        }
+
+    }
+}
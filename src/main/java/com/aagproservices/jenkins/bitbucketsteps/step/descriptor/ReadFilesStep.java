@@ -0,0 +1,124 @@
+package com.aagproservices.jenkins.bitbucketsteps.step.descriptor;
+
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStep;
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStepDescriptor;
+import com.aagproservices.jenkins.bitbucketsteps.step.execution.ReadFilesExecution;
+import hudson.Extension;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ *          Descriptor and definition of the step "readFiles" which allows the user to read files of many
+ *          repositories at once. Project and repository are given per file.
+ */
+public class ReadFilesStep extends AbstractStep {
+
+    private static final long serialVersionUID = -4021967392262571513L;
+
+    private final List<RepositoryFile> files;
+    private String outputFile;
+    private String outputDir;
+    private int parallelism = 8;
+    private int maxContentBytes = 1024 * 1024;
+
+    /**
+     * Constructor which takes the necessary information to read the files.
+     *
+     * @param files
+     *        The files to read
+     */
+    @DataBoundConstructor
+    public ReadFilesStep(final List<RepositoryFile> files) {
+        super(null, null);
+        this.files = files == null ? null : new ArrayList<>(files);
+    }
+
+    @Override
+    public StepExecution start(final StepContext context) throws Exception {
+        return new ReadFilesExecution(this, context, getSite());
+    }
+
+    public List<RepositoryFile> getFiles() {
+        return files;
+    }
+
+    /**
+     * Returns the workspace file the contents are written to as JSON Lines
+     *
+     * @return Path relative to the workspace
+     */
+    public String getOutputFile() {
+        return outputFile;
+    }
+
+    @DataBoundSetter
+    public void setOutputFile(final String outputFile) {
+        this.outputFile = outputFile;
+    }
+
+    /**
+     * Returns the workspace directory the files are written to as {@code <project>/<repoSlug>/<path>}
+     *
+     * @return Path relative to the workspace
+     */
+    public String getOutputDir() {
+        return outputDir;
+    }
+
+    @DataBoundSetter
+    public void setOutputDir(final String outputDir) {
+        this.outputDir = outputDir;
+    }
+
+    /**
+     * Returns how many files are read at the same time
+     *
+     * @return Number of concurrent requests
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    @DataBoundSetter
+    public void setParallelism(final int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Returns the max size of a file written to the JSON Lines output, bigger files are reported as failed
+     *
+     * @return Max size in bytes
+     */
+    public int getMaxContentBytes() {
+        return maxContentBytes;
+    }
+
+    @DataBoundSetter
+    public void setMaxContentBytes(final int maxContentBytes) {
+        this.maxContentBytes = maxContentBytes;
+    }
+
+    @Extension
+    public static class Descriptor extends AbstractStepDescriptor {
+
+        @Nonnull
+        @Override
+        public String getDisplayName() {
+            return "Read files of many repositories";
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "bitbucketReadFiles";
+        }
+
+    }
+}
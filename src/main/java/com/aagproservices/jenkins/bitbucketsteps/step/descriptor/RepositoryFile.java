@@ -0,0 +1,86 @@
+package com.aagproservices.jenkins.bitbucketsteps.step.descriptor;
+
+import hudson.Extension;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import javax.annotation.Nonnull;
+import java.io.Serializable;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ *          A file in some repository, as read by the step "readFiles", e.g.
+ *          {@code repositoryFile(project: 'PRJ', repoSlug: 'repo', path: 'pom.xml', at: 'master')}.
+ */
+public class RepositoryFile extends AbstractDescribableImpl<RepositoryFile> implements Serializable {
+
+    private static final long serialVersionUID = -5560142371846021389L;
+
+    private final String project;
+    private final String repoSlug;
+    private final String path;
+    private String at;
+
+    /**
+     * Constructor which takes the location of the file.
+     *
+     * @param project
+     *        Project or username where the repo is located
+     * @param repoSlug
+     *        Repository slug
+     * @param path
+     *        Path of the file in the repository
+     */
+    @DataBoundConstructor
+    public RepositoryFile(final String project, final String repoSlug, final String path) {
+        this.project = project;
+        this.repoSlug = repoSlug;
+        this.path = path;
+    }
+
+    public String getProject() {
+        return project;
+    }
+
+    public String getRepoSlug() {
+        return repoSlug;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the branch, tag or commit to read the file at, the default branch if not set
+     *
+     * @return Branch, tag or commit
+     */
+    public String getAt() {
+        return at;
+    }
+
+    @DataBoundSetter
+    public void setAt(final String at) {
+        this.at = at;
+    }
+
+    @Override
+    public String toString() {
+        return project + "/" + repoSlug + ":" + path + (at == null || at.isEmpty() ? "" : "@" + at);
+    }
+
+    @Extension
+    @Symbol("repositoryFile")
+    public static class DescriptorImpl extends Descriptor<RepositoryFile> {
+
+        @Nonnull
+        @Override
+        public String getDisplayName() {
+            return "File of a repository";
+        }
+    }
+}
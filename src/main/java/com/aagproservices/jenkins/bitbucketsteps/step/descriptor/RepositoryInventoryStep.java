@@ -0,0 +1,102 @@
+package com.aagproservices.jenkins.bitbucketsteps.step.descriptor;
+
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStep;
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStepDescriptor;
+import com.aagproservices.jenkins.bitbucketsteps.step.execution.RepositoryInventoryExecution;
+import hudson.Extension;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import javax.annotation.Nonnull;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ *          Descriptor and definition of the step "repositoryInventory" which allows the user to list the repositories
+ *          of a project, or of all projects, along with their default branch, last modified tag and number of branches.
+ */
+public class RepositoryInventoryStep extends AbstractStep {
+
+    private static final long serialVersionUID = -6634012842170541736L;
+
+    private final String outputFile;
+    private int parallelism = 8;
+    private boolean countBranches = true;
+
+    /**
+     * Constructor which takes the necessary information to scan the repositories.
+     *
+     * @param outputFile
+     *        Workspace file the inventory is written to as JSON Lines
+     */
+    @DataBoundConstructor
+    public RepositoryInventoryStep(final String outputFile) {
+        super(null, null);
+        this.outputFile = outputFile;
+    }
+
+    @Override
+    public StepExecution start(final StepContext context) throws Exception {
+        return new RepositoryInventoryExecution(this, context, getSite());
+    }
+
+    /**
+     * Sets the project whose repositories are scanned, all projects if not set
+     *
+     * @param project Project key
+     */
+    @DataBoundSetter
+    public void setProject(final String project) {
+        this.project = project;
+    }
+
+    public String getOutputFile() {
+        return outputFile;
+    }
+
+    /**
+     * Returns how many repositories are looked at the same time
+     *
+     * @return Number of concurrent repositories
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    @DataBoundSetter
+    public void setParallelism(final int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Returns whether the branches of each repository are counted, which takes a request per 1000 branches
+     *
+     * @return True to count branches
+     */
+    public boolean isCountBranches() {
+        return countBranches;
+    }
+
+    @DataBoundSetter
+    public void setCountBranches(final boolean countBranches) {
+        this.countBranches = countBranches;
+    }
+
+    @Extension
+    public static class Descriptor extends AbstractStepDescriptor {
+
+        @Nonnull
+        @Override
+        public String getDisplayName() {
+            return "Scan the repositories of a project or of all projects";
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "bitbucketRepositoryInventory";
+        }
+
+    }
+}
@@ -0,0 +1,78 @@
+package com.aagproservices.jenkins.bitbucketsteps.step.descriptor;
+
+import hudson.Extension;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import javax.annotation.Nonnull;
+import java.io.Serializable;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ *          A repository the step "fanOut" works on, e.g.
+ *          {@code repositoryTarget(project: 'PRJ', repoSlug: 'repo', pullRequestId: 12)}.
+ */
+public class RepositoryTarget extends AbstractDescribableImpl<RepositoryTarget> implements Serializable {
+
+    private static final long serialVersionUID = 3904157520917437714L;
+
+    private final String project;
+    private final String repoSlug;
+    private int pullRequestId;
+
+    /**
+     * Constructor which takes the repository.
+     *
+     * @param project
+     *        Project or username where the repo is located
+     * @param repoSlug
+     *        Repository slug
+     */
+    @DataBoundConstructor
+    public RepositoryTarget(final String project, final String repoSlug) {
+        this.project = project;
+        this.repoSlug = repoSlug;
+    }
+
+    public String getProject() {
+        return project;
+    }
+
+    public String getRepoSlug() {
+        return repoSlug;
+    }
+
+    /**
+     * Returns the pull request to merge, only used by the operation mergePullRequest
+     *
+     * @return Pull request ID
+     */
+    public int getPullRequestId() {
+        return pullRequestId;
+    }
+
+    @DataBoundSetter
+    public void setPullRequestId(final int pullRequestId) {
+        this.pullRequestId = pullRequestId;
+    }
+
+    @Override
+    public String toString() {
+        return project + "/" + repoSlug + (pullRequestId > 0 ? "#" + pullRequestId : "");
+    }
+
+    @Extension
+    @Symbol("repositoryTarget")
+    public static class DescriptorImpl extends Descriptor<RepositoryTarget> {
+
+        @Nonnull
+        @Override
+        public String getDisplayName() {
+            return "Repository";
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.aagproservices.jenkins.bitbucketsteps.step.descriptor;
+
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStep;
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStepDescriptor;
+import com.aagproservices.jenkins.bitbucketsteps.step.execution.WaitForMergeableExecution;
+import hudson.Extension;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import javax.annotation.Nonnull;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ *          Descriptor and definition of the step "waitForMergeable" which waits until a pull request can be merged
+ *          and optionally merges it.
+ */
+public class WaitForMergeableStep extends AbstractStep {
+
+    private static final long serialVersionUID = -4203516677923112984L;
+
+    private int id;
+    private boolean merge = false;
+    private int timeoutMinutes = 60;
+    private int initialIntervalSeconds = 5;
+    private int maxIntervalSeconds = 120;
+
+    /**
+     * Constructor which takes the necessary information to wait for a pull request.
+     *
+     * @param project
+     *        Project or username where the repo is located
+     * @param repoSlug
+     *        Repository slug
+     * @param id
+     *        ID of the pull request to wait for
+     */
+    @DataBoundConstructor
+    public WaitForMergeableStep(final String project, final String repoSlug, final int id) {
+        super(project, repoSlug);
+        this.id = id;
+    }
+
+    @Override
+    public StepExecution start(final StepContext context) throws Exception {
+        return new WaitForMergeableExecution(this, context, getSite());
+    }
+
+    /**
+     * Returns the ID of the pull request to wait for
+     *
+     * @return Pull request ID
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns whether the pull request gets merged once it is mergeable
+     *
+     * @return True to merge the pull request
+     */
+    public boolean isMerge() {
+        return merge;
+    }
+
+    @DataBoundSetter
+    public void setMerge(final boolean merge) {
+        this.merge = merge;
+    }
+
+    /**
+     * Returns the time after which the step fails with the remaining vetoes
+     *
+     * @return Timeout in minutes
+     */
+    public int getTimeoutMinutes() {
+        return timeoutMinutes;
+    }
+
+    @DataBoundSetter
+    public void setTimeoutMinutes(final int timeoutMinutes) {
+        this.timeoutMinutes = timeoutMinutes;
+    }
+
+    /**
+     * Returns the delay before the first re-check, doubled on every further one
+     *
+     * @return Initial poll interval in seconds
+     */
+    public int getInitialIntervalSeconds() {
+        return initialIntervalSeconds;
+    }
+
+    @DataBoundSetter
+    public void setInitialIntervalSeconds(final int initialIntervalSeconds) {
+        this.initialIntervalSeconds = initialIntervalSeconds;
+    }
+
+    /**
+     * Returns the upper bound of the poll interval
+     *
+     * @return Max poll interval in seconds
+     */
+    public int getMaxIntervalSeconds() {
+        return maxIntervalSeconds;
+    }
+
+    @DataBoundSetter
+    public void setMaxIntervalSeconds(final int maxIntervalSeconds) {
+        this.maxIntervalSeconds = maxIntervalSeconds;
+    }
+
+    @Extension
+    public static class Descriptor extends AbstractStepDescriptor {
+
+        @Nonnull
+        @Override
+        public String getDisplayName() {
+            return "Wait until pull request can be merged";
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "bitbucketWaitForMergeable";
+        }
+
+    }
+}
@@ -0,0 +1,77 @@
+package com.aagproservices.jenkins.bitbucketsteps.step.descriptor;
+
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStep;
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStepDescriptor;
+import com.aagproservices.jenkins.bitbucketsteps.step.execution.WithBitbucketExecution;
+import hudson.Extension;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import javax.annotation.Nonnull;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ *          Descriptor and definition of the block step "withBitbucket" which runs its body in a session: the steps
+ *          inside share the authentication with the server and take project and repository from the block unless
+ *          they name their own.
+ */
+public class WithBitbucketStep extends AbstractStep {
+
+    private static final long serialVersionUID = 7310562294468170319L;
+
+    /**
+     * Constructor. Project and repository are optional.
+     */
+    @DataBoundConstructor
+    public WithBitbucketStep() {
+        super(null, null);
+    }
+
+    @Override
+    public StepExecution start(final StepContext context) throws Exception {
+        return new WithBitbucketExecution(this, context);
+    }
+
+    /**
+     * Sets the project the steps inside use unless they name their own
+     *
+     * @param project Project key
+     */
+    @DataBoundSetter
+    public void setProject(final String project) {
+        this.project = project;
+    }
+
+    /**
+     * Sets the repository the steps inside use unless they name their own
+     *
+     * @param repoSlug Repository slug
+     */
+    @DataBoundSetter
+    public void setRepoSlug(final String repoSlug) {
+        this.repoSlug = repoSlug;
+    }
+
+    @Extension
+    public static class Descriptor extends AbstractStepDescriptor {
+
+        @Nonnull
+        @Override
+        public String getDisplayName() {
+            return "Run steps in a Bitbucket session";
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "withBitbucket";
+        }
+
+        @Override
+        public boolean takesImplicitBlockArgument() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.aagproservices.jenkins.bitbucketsteps.step.execution;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketServer;
+import com.aagproservices.jenkins.bitbucketsteps.api.FileResult;
+import com.aagproservices.jenkins.bitbucketsteps.service.ApiService;
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStepExecution;
+import com.aagproservices.jenkins.bitbucketsteps.step.descriptor.ApiStep;
+import hudson.FilePath;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.json.JSONArray;
+
+import javax.ws.rs.HttpMethod;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Execution implementation of the step "api". Without an output file the response is returned as text. With one it
+ * is streamed to the workspace and never held in memory; all pages of a paged resource are then written as they
+ * arrive, one value per line.
+ */
+public class ApiExecution extends AbstractStepExecution<Object, ApiStep> {
+
+    private static final long serialVersionUID = 4402751938165382270L;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final List<String> METHODS = Arrays.asList(HttpMethod.GET, HttpMethod.POST, HttpMethod.PUT,
+            HttpMethod.DELETE, "PATCH");
+
+    /**
+     * Constructor that takes the needed information for the execution of the step.
+     *
+     * @param apiStep       The step that is going to be executed.
+     * @param context       The step context.
+     * @param bitbucketSite The configured site of bitbucket.
+     */
+    public ApiExecution(final ApiStep apiStep, final StepContext context, final BitbucketServer bitbucketSite) {
+        super(apiStep, context, bitbucketSite);
+    }
+
+    @Override
+    protected boolean requiresRepository() {
+        //project and repository are part of the path
+        return false;
+    }
+
+    @Override
+    public void validate(final ApiStep step) {
+        super.validate(step);
+
+        if (isEmpty(step.getPath())) {
+            throw new IllegalArgumentException("Path is null or empty!");
+        }
+
+        if (!METHODS.contains(step.getMethod())) {
+            throw new IllegalArgumentException("The method must be one of " + METHODS);
+        }
+
+        if (step.isAllPages() && (!HttpMethod.GET.equals(step.getMethod()) || step.getPageSize() <= 0)) {
+            throw new IllegalArgumentException("allPages requires the GET method and a positive pageSize");
+        }
+    }
+
+    @Override
+    protected Object run() throws Exception {
+        try {
+            ApiStep step = getStep();
+            ApiService service = getService(ApiService.class);
+            FilePath target = null;
+            if (step.getOutputFile() != null && !step.getOutputFile().isEmpty()) {
+                FilePath workspace = getContext().get(FilePath.class);
+                if (workspace == null) {
+                    throw new IllegalStateException("Writing the response requires a workspace");
+                }
+                target = workspace.child(step.getOutputFile());
+            }
+
+            if (step.isAllPages()) {
+                return target == null ? readAllPages(service) : writeAllPages(service, target);
+            }
+
+            RequestBody body = step.getBody() == null ? null
+                    : RequestBody.create(MediaType.parse(step.getContentType()), step.getBody());
+            if (body == null && !HttpMethod.GET.equals(step.getMethod()) && !HttpMethod.DELETE.equals(step.getMethod())) {
+                body = RequestBody.create(null, new byte[0]);
+            }
+            FilePath output = target;
+            return service.call(step.getPath(), step.getMethod(), body, response -> {
+                ResponseBody responseBody = response.body();
+                if (output == null) {
+                    return responseBody == null ? "" : responseBody.string();
+                }
+                try (InputStream in = responseBody == null ? null : responseBody.byteStream();
+                     OutputStream out = output.write()) {
+                    long size = in == null ? 0 : IOUtils.copyLarge(in, out, new byte[BUFFER_SIZE]);
+                    return new FileResult(step.getOutputFile(), size, true);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while writing " + output);
+                }
+            });
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    private String readAllPages(final ApiService service) {
+        JSONArray values = new JSONArray();
+        service.forEachPagedValue(getStep().getPath(), getStep().getPageSize(), value -> {
+            values.put(value);
+            return true;
+        });
+        return values.toString();
+    }
+
+    private FileResult writeAllPages(final ApiService service, final FilePath target) throws IOException, InterruptedException {
+        CountingOutputStream counting = new CountingOutputStream(target.write());
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(counting, StandardCharsets.UTF_8))) {
+            service.forEachPagedValue(getStep().getPath(), getStep().getPageSize(), value -> {
+                try {
+                    writer.write(value.toString());
+                    writer.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot write " + getStep().getOutputFile(), e);
+                }
+                return true;
+            });
+        }
+        return new FileResult(getStep().getOutputFile(), counting.getByteCount(), true);
+    }
+}
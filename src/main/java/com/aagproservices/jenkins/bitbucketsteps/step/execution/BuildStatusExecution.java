@@ -0,0 +1,89 @@
+package com.aagproservices.jenkins.bitbucketsteps.step.execution;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketServer;
+import com.aagproservices.jenkins.bitbucketsteps.service.BuildStatusQueue;
+import com.aagproservices.jenkins.bitbucketsteps.service.BuildStatusService;
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStepExecution;
+import com.aagproservices.jenkins.bitbucketsteps.step.descriptor.BuildStatusStep;
+import hudson.EnvVars;
+import hudson.model.Run;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Execution implementation of the step "buildStatus". The update is only queued, so the step returns right away;
+ * missing values are taken from the build.
+ */
+public class BuildStatusExecution extends AbstractStepExecution<Void, BuildStatusStep> {
+
+    private static final long serialVersionUID = -1406683192750127316L;
+
+    private static final List<String> STATES = Arrays.asList("INPROGRESS", "SUCCESSFUL", "FAILED");
+
+    /**
+     * Constructor that takes the needed information for the execution of the step.
+     *
+     * @param buildStatusStep The step that is going to be executed.
+     * @param context         The step context.
+     * @param bitbucketSite   The configured site of bitbucket.
+     */
+    public BuildStatusExecution(final BuildStatusStep buildStatusStep, final StepContext context, final BitbucketServer bitbucketSite) {
+        super(buildStatusStep, context, bitbucketSite);
+    }
+
+    @Override
+    protected boolean requiresRepository() {
+        //build statuses belong to a commit, not to a repository
+        return false;
+    }
+
+    @Override
+    public void validate(final BuildStatusStep step) {
+        super.validate(step);
+
+        if (step.getState() == null || !STATES.contains(step.getState())) {
+            throw new IllegalArgumentException("The state must be one of " + STATES);
+        }
+    }
+
+    @Override
+    protected Void run() throws Exception {
+        try {
+            BuildStatusStep step = getStep();
+            EnvVars env = getContext().get(EnvVars.class);
+            Run<?, ?> run = getContext().get(Run.class);
+
+            String commit = step.getCommit() != null ? step.getCommit() : env.get("GIT_COMMIT");
+            if (commit == null || commit.isEmpty()) {
+                throw new IllegalArgumentException("No commit given and GIT_COMMIT is not set");
+            }
+            String url = step.getUrl() != null ? step.getUrl() : env.get("BUILD_URL");
+            if (url == null || url.isEmpty()) {
+                throw new IllegalArgumentException("No url given and the Jenkins URL is not configured");
+            }
+
+            JSONObject status = new JSONObject()
+                    .put("state", step.getState())
+                    .put("key", step.getKey() != null ? step.getKey() : run.getParent().getFullName())
+                    .put("name", step.getName() != null ? step.getName() : run.getFullDisplayName())
+                    .put("url", url);
+            if (step.getDescription() != null) {
+                status.put("description", step.getDescription());
+            }
+
+            getService(BuildStatusService.class).submitBuildStatus(commit, status);
+            if (step.isFlush()) {
+                BuildStatusQueue.flush();
+            }
+            return null;
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.aagproservices.jenkins.bitbucketsteps.step.execution;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketServer;
+import com.aagproservices.jenkins.bitbucketsteps.service.ContentService;
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStepExecution;
+import com.aagproservices.jenkins.bitbucketsteps.step.descriptor.ChangedPathsStep;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Execution implementation of the step "changedPaths". Returns the sorted changed paths, or with module roots the
+ * modules that contain at least one of them, in the order they were given. Once every module is known to be changed
+ * no further pages are requested. For a pull request the latest commits of both its refs are compared, so the result
+ * is cached on disk until the pull request changes.
+ */
+public class ChangedPathsExecution extends AbstractStepExecution<List<String>, ChangedPathsStep> {
+
+    private static final long serialVersionUID = -8839013427420651731L;
+
+    /**
+     * Constructor that takes the needed information for the execution of the step.
+     *
+     * @param changedPathsStep The step that is going to be executed.
+     * @param context          The step context.
+     * @param bitbucketSite    The configured site of bitbucket.
+     */
+    public ChangedPathsExecution(final ChangedPathsStep changedPathsStep, final StepContext context, final BitbucketServer bitbucketSite) {
+        super(changedPathsStep, context, bitbucketSite);
+    }
+
+    @Override
+    public void validate(final ChangedPathsStep step) {
+        super.validate(step);
+
+        boolean refs = step.getFrom() != null && !step.getFrom().isEmpty() && step.getTo() != null && !step.getTo().isEmpty();
+        if (refs == (step.getPullRequestId() > 0)) {
+            throw new IllegalArgumentException("Either from and to or pullRequestId must be given");
+        }
+    }
+
+    @Override
+    protected List<String> run() throws Exception {
+        try {
+            ContentService service = getService(ContentService.class);
+            String from = getStep().getFrom();
+            String to = getStep().getTo();
+            if (getStep().getPullRequestId() > 0) {
+                //the commits decide what is compared, so a pull request pushed to moments ago must not come from the cache
+                JSONObject pullRequest = service.getPullRequest(getStep().getProject(), getStep().getRepoSlug(),
+                        getStep().getPullRequestId(), false);
+                from = pullRequest.getJSONObject("fromRef").getString("latestCommit");
+                to = pullRequest.getJSONObject("toRef").getString("latestCommit");
+            }
+
+            List<String> modules = getStep().getModules();
+            if (modules == null || modules.isEmpty()) {
+                Set<String> paths = new TreeSet<>();
+                service.forEachChangedPath(getStep().getProject(), getStep().getRepoSlug(), from, to, path -> {
+                    //a path seen before, e.g. on both sides of a rename, must not end the walk
+                    paths.add(path);
+                    return true;
+                });
+                return new ArrayList<>(paths);
+            }
+
+            List<String> roots = new ArrayList<>();
+            modules.forEach(module -> roots.add(module.replaceAll("^/+|/+$", "")));
+            Set<String> dirty = new LinkedHashSet<>();
+            service.forEachChangedPath(getStep().getProject(), getStep().getRepoSlug(), from, to, path -> {
+                for (String root : roots) {
+                    if (root.isEmpty() || path.equals(root) || path.startsWith(root + "/")) {
+                        dirty.add(root);
+                    }
+                }
+                return dirty.size() < roots.size();
+            });
+            List<String> result = new ArrayList<>();
+            roots.stream().filter(dirty::contains).forEach(result::add);
+            return result;
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.aagproservices.jenkins.bitbucketsteps.step.execution;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketServer;
+import com.aagproservices.jenkins.bitbucketsteps.api.BatchResult;
+import com.aagproservices.jenkins.bitbucketsteps.service.ContentService;
+import com.aagproservices.jenkins.bitbucketsteps.service.OpenPullRequestIndex;
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStepExecution;
+import com.aagproservices.jenkins.bitbucketsteps.step.descriptor.CleanupBranchesStep;
+import com.aagproservices.jenkins.bitbucketsteps.util.RateLimiter;
+import hudson.model.TaskListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.json.JSONObject;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Execution implementation of the step "cleanupBranches". The branch list is streamed with its metadata, filtered by
+ * name on the server and by pattern, age and merge state here. The default branch, the merge target and branches with
+ * an open pull request are never selected. Only the names of the selected branches and the commits they pointed to
+ * are kept; once the listing is complete they are deleted by a bounded number of threads and no faster than the rate
+ * cap. Deleting earlier would shift the later pages and skip branches. Each delete names the listed commit, so a branch
+ * that got new commits since it was selected is refused by the server and reported as failed. In a dry run they are
+ * only reported; the result then lists them as succeeded.
+ */
+public class CleanupBranchesExecution extends AbstractStepExecution<BatchResult, CleanupBranchesStep> {
+
+    private static final long serialVersionUID = -5218370409968127740L;
+
+    private static final int PAGE_SIZE = 250;
+    private static final String LATEST_COMMIT_METADATA = "com.atlassian.bitbucket.server.bitbucket-branch:latest-commit-metadata";
+    private static final String AHEAD_BEHIND_METADATA = "com.atlassian.bitbucket.server.bitbucket-branch:ahead-behind-metadata-provider";
+    private static final String PULL_REQUEST_METADATA = "com.atlassian.bitbucket.server.bitbucket-ref-metadata:outgoing-pull-request-metadata";
+
+    /**
+     * Constructor that takes the needed information for the execution of the step.
+     *
+     * @param cleanupBranchesStep The step that is going to be executed.
+     * @param context             The step context.
+     * @param bitbucketSite       The configured site of bitbucket.
+     */
+    public CleanupBranchesExecution(final CleanupBranchesStep cleanupBranchesStep, final StepContext context, final BitbucketServer bitbucketSite) {
+        super(cleanupBranchesStep, context, bitbucketSite);
+    }
+
+    @Override
+    public void validate(final CleanupBranchesStep step) {
+        super.validate(step);
+
+        boolean criteria = !isEmpty(step.getFilterText()) || !isEmpty(step.getIncludePattern())
+                || step.getOlderThanDays() > 0 || !isEmpty(step.getMergedInto());
+        if (!criteria) {
+            throw new IllegalArgumentException("At least one of filterText, includePattern, olderThanDays or mergedInto is required");
+        }
+
+        if (step.getParallelism() <= 0 || step.getMaxDeletesPerSecond() <= 0 || step.getMaxDeletes() < 0 || step.getOlderThanDays() < 0) {
+            throw new IllegalArgumentException("parallelism and maxDeletesPerSecond must be positive, maxDeletes and olderThanDays must not be negative");
+        }
+
+        try {
+            if (!isEmpty(step.getIncludePattern())) {
+                Pattern.compile(step.getIncludePattern());
+            }
+            if (!isEmpty(step.getExcludePattern())) {
+                Pattern.compile(step.getExcludePattern());
+            }
+        } catch (PatternSyntaxException e) {
+            throw new IllegalArgumentException("Invalid branch pattern: " + e.getMessage());
+        }
+    }
+
+    @Override
+    protected BatchResult run() throws Exception {
+        try {
+            PrintStream log = getContext().get(TaskListener.class).getLogger();
+            CleanupBranchesStep step = getStep();
+            ContentService service = getService(ContentService.class);
+            Pattern include = isEmpty(step.getIncludePattern()) ? null : Pattern.compile(step.getIncludePattern());
+            Pattern exclude = isEmpty(step.getExcludePattern()) ? null : Pattern.compile(step.getExcludePattern());
+            long cutoff = step.getOlderThanDays() > 0
+                    ? System.currentTimeMillis() - TimeUnit.DAYS.toMillis(step.getOlderThanDays()) : Long.MAX_VALUE;
+
+            //deleting shifts the pages that are still to come, so the whole listing is done before the first delete
+            //name of each selected branch to its id and the commit it pointed to when it was selected
+            Map<String, String[]> candidates = new LinkedHashMap<>();
+            service.forEachBranchWithDetails(step.getProject(), step.getRepoSlug(), step.getFilterText(),
+                    step.getMergedInto(), PAGE_SIZE, branch -> {
+                        String name = branch.optString("displayId");
+                        if (isSelected(branch, name, include, exclude, cutoff)) {
+                            candidates.put(name, new String[]{branch.optString("id"), branch.optString("latestCommit")});
+                        }
+                        return step.getMaxDeletes() == 0 || candidates.size() < step.getMaxDeletes();
+                    });
+
+            List<String> succeeded = Collections.synchronizedList(new ArrayList<>());
+            Map<String, String> failed = Collections.synchronizedMap(new LinkedHashMap<>());
+            if (step.isDryRun()) {
+                candidates.keySet().forEach(name -> log.println("Would delete " + name));
+                succeeded.addAll(candidates.keySet());
+            } else {
+                RateLimiter rateLimiter = new RateLimiter(step.getMaxDeletesPerSecond());
+                Semaphore inFlight = new Semaphore(step.getParallelism());
+                ExecutorService pool = Executors.newFixedThreadPool(step.getParallelism(),
+                        new NamingThreadFactory(new DaemonThreadFactory(), "bitbucketCleanupBranches"));
+                try {
+                    for (Map.Entry<String, String[]> candidate : candidates.entrySet()) {
+                        inFlight.acquire();
+                        rateLimiter.acquire();
+                        pool.execute(() -> {
+                            try {
+                                service.deleteBranch(step.getProject(), step.getRepoSlug(), candidate.getValue()[0],
+                                        candidate.getValue()[1]);
+                                log.println("Deleted " + candidate.getKey());
+                                succeeded.add(candidate.getKey());
+                            } catch (RuntimeException e) {
+                                failed.put(candidate.getKey(), e.getMessage() == null ? e.toString() : e.getMessage());
+                            } finally {
+                                inFlight.release();
+                            }
+                        });
+                    }
+                    inFlight.acquire(step.getParallelism());
+                } finally {
+                    pool.shutdownNow();
+                }
+            }
+
+            failed.forEach((name, error) -> log.println("Could not delete " + name + ": " + error));
+            log.println((step.isDryRun() ? "Would delete " : "Deleted ") + succeeded.size() + " branches");
+            return new BatchResult(succeeded, failed);
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    private boolean isSelected(final JSONObject branch, final String name, final Pattern include, final Pattern exclude,
+                               final long cutoff) {
+        //the merge target may be given as name or as ref, and is never behind itself
+        boolean mergeTarget = !isEmpty(getStep().getMergedInto())
+                && branch.optString("id").equals(OpenPullRequestIndex.qualify(getStep().getMergedInto()));
+        if (branch.optBoolean("isDefault") || mergeTarget
+                || (include != null && !include.matcher(name).matches())
+                || (exclude != null && exclude.matcher(name).matches())) {
+            return false;
+        }
+        JSONObject metadata = branch.optJSONObject("metadata");
+        if (metadata == null) {
+            //without details none of the other criteria can be checked, so the branch is kept
+            return false;
+        }
+        if (cutoff != Long.MAX_VALUE) {
+            JSONObject latestCommit = metadata.optJSONObject(LATEST_COMMIT_METADATA);
+            if (latestCommit == null || latestCommit.optLong("committerTimestamp", latestCommit.optLong("authorTimestamp")) >= cutoff) {
+                return false;
+            }
+        }
+        if (!isEmpty(getStep().getMergedInto())) {
+            JSONObject aheadBehind = metadata.optJSONObject(AHEAD_BEHIND_METADATA);
+            if (aheadBehind == null || aheadBehind.optInt("ahead", -1) != 0) {
+                return false;
+            }
+        }
+        JSONObject pullRequests = metadata.optJSONObject(PULL_REQUEST_METADATA);
+        if (pullRequests != null) {
+            JSONObject pullRequest = pullRequests.optJSONObject("pullRequest");
+            if (pullRequests.optInt("open") > 0 || (pullRequest != null && "OPEN".equals(pullRequest.optString("state")))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,18 +1,28 @@
 package com.aagproservices.jenkins.bitbucketsteps.step.execution;
 
 import com.aagproservices.jenkins.bitbucketsteps.BitbucketServer;
+import com.aagproservices.jenkins.bitbucketsteps.api.Branch;
+import com.aagproservices.jenkins.bitbucketsteps.api.RefResult;
 import com.aagproservices.jenkins.bitbucketsteps.service.ContentService;
+import com.aagproservices.jenkins.bitbucketsteps.service.OpenPullRequestIndex;
 import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStepExecution;
+import com.aagproservices.jenkins.bitbucketsteps.step.Intent;
+import com.aagproservices.jenkins.bitbucketsteps.step.ServiceCall;
 import com.aagproservices.jenkins.bitbucketsteps.step.descriptor.CreateBranchStep;
 import org.jenkinsci.plugins.workflow.steps.StepContext;
 import org.json.JSONObject;
 
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * @author Aleks Gekht
  * @version 0.1.0
  * Execution implementation of the step "createTag".
  */
-public class CreateBranchExecution extends AbstractStepExecution<JSONObject, CreateBranchStep> {
+public class CreateBranchExecution extends AbstractStepExecution<RefResult, CreateBranchStep> {
 
     private static final long serialVersionUID = 7220386183261962984L;
 
@@ -25,6 +35,12 @@ public class CreateBranchExecution extends AbstractStepExecution<JSONObject, Cre
      */
     public CreateBranchExecution(final CreateBranchStep createBranchStep, final StepContext context, final BitbucketServer bitbucketSite) {
         super(createBranchStep, context, bitbucketSite);
+        Branch branch = createBranchStep.getBranch();
+        String project = createBranchStep.getProject();
+        String repoSlug = createBranchStep.getRepoSlug();
+        intend(new Intent<>("create branch", project + "/" + repoSlug + " " + branch.getName(), ContentService.class,
+                new CreateBranch(project, repoSlug, branch, createBranchStep.getFields()),
+                new FindBranch(project, repoSlug, branch, createBranchStep.getFields()), createBranchStep.isOnAgent()));
     }
 
     @Override
@@ -41,12 +57,66 @@ public class CreateBranchExecution extends AbstractStepExecution<JSONObject, Cre
     }
 
     @Override
-    protected JSONObject run() throws Exception {
+    protected RefResult run() throws Exception {
         try {
-            return getService(ContentService.class).createBranch(getStep().getProject(), getStep().getRepoSlug(), getStep().getBranch());
+            return perform();
         } catch (Exception e) {
             e.printStackTrace();
             throw e;
         }
     }
+
+    private static final class CreateBranch implements ServiceCall<ContentService, RefResult> {
+
+        private static final long serialVersionUID = 4471052216583306920L;
+
+        private final String project;
+        private final String repoSlug;
+        private final Branch branch;
+        private final List<String> fields;
+
+        private CreateBranch(final String project, final String repoSlug, final Branch branch, final List<String> fields) {
+            this.project = project;
+            this.repoSlug = repoSlug;
+            this.branch = branch;
+            this.fields = fields;
+        }
+
+        @Override
+        public RefResult call(final ContentService service, final File workspace) {
+            return new RefResult(service.createBranch(project, repoSlug, branch), fields);
+        }
+
+        @Override
+        public Collection<String> getChangedRefs() {
+            return Collections.singleton(OpenPullRequestIndex.qualify(branch.getName()));
+        }
+    }
+
+    /**
+     * Tells whether the branch exists. Unlike a tag it may have moved on since it was created, so its commit is not
+     * compared with the start point.
+     */
+    private static final class FindBranch implements ServiceCall<ContentService, RefResult> {
+
+        private static final long serialVersionUID = 5209731648823174095L;
+
+        private final String project;
+        private final String repoSlug;
+        private final Branch branch;
+        private final List<String> fields;
+
+        private FindBranch(final String project, final String repoSlug, final Branch branch, final List<String> fields) {
+            this.project = project;
+            this.repoSlug = repoSlug;
+            this.branch = branch;
+            this.fields = fields;
+        }
+
+        @Override
+        public RefResult call(final ContentService service, final File workspace) {
+            JSONObject ref = service.findRef(project, repoSlug, "branches", branch.getName());
+            return ref == null ? null : new RefResult(ref, fields);
+        }
+    }
 }
@@ -1,11 +1,14 @@
 package com.aagproservices.jenkins.bitbucketsteps.step.execution;
 
 import com.aagproservices.jenkins.bitbucketsteps.BitbucketServer;
+import com.aagproservices.jenkins.bitbucketsteps.api.PullRequest;
 import com.aagproservices.jenkins.bitbucketsteps.service.ContentService;
 import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStepExecution;
+import com.aagproservices.jenkins.bitbucketsteps.step.ServiceCall;
 import com.aagproservices.jenkins.bitbucketsteps.step.descriptor.CreatePullRequestStep;
 import org.jenkinsci.plugins.workflow.steps.StepContext;
-import org.json.JSONObject;
+
+import java.io.File;
 
 /**
  * @author Aleks Gekht
@@ -47,11 +50,34 @@ public class CreatePullRequestExecution extends AbstractStepExecution<Integer, C
     @Override
     protected Integer run() throws Exception {
         try {
-            JSONObject result = getService(ContentService.class).createPullRequest(getStep().getProject(), getStep().getRepoSlug(), getStep().getPullRequest());
-            return result.getInt("id");
+            return call(ContentService.class, new CreatePullRequest(getStep().getProject(), getStep().getRepoSlug(),
+                    getStep().getPullRequest(), getStep().isUpdateExisting()));
         } catch (Exception e) {
             e.printStackTrace();
             throw e;
         }
     }
+
+    private static final class CreatePullRequest implements ServiceCall<ContentService, Integer> {
+
+        private static final long serialVersionUID = -6032874479178021526L;
+
+        private final String project;
+        private final String repoSlug;
+        private final PullRequest pullRequest;
+        private final boolean updateExisting;
+
+        private CreatePullRequest(final String project, final String repoSlug, final PullRequest pullRequest,
+                                  final boolean updateExisting) {
+            this.project = project;
+            this.repoSlug = repoSlug;
+            this.pullRequest = pullRequest;
+            this.updateExisting = updateExisting;
+        }
+
+        @Override
+        public Integer call(final ContentService service, final File workspace) {
+            return service.createOrReusePullRequest(project, repoSlug, pullRequest, updateExisting).getInt("id");
+        }
+    }
 }
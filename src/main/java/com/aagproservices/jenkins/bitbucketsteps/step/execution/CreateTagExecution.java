@@ -1,18 +1,28 @@
 package com.aagproservices.jenkins.bitbucketsteps.step.execution;
 
 import com.aagproservices.jenkins.bitbucketsteps.BitbucketServer;
+import com.aagproservices.jenkins.bitbucketsteps.api.RefResult;
+import com.aagproservices.jenkins.bitbucketsteps.api.Tag;
+import com.aagproservices.jenkins.bitbucketsteps.service.BaseService;
 import com.aagproservices.jenkins.bitbucketsteps.service.ContentService;
 import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStepExecution;
+import com.aagproservices.jenkins.bitbucketsteps.step.Intent;
+import com.aagproservices.jenkins.bitbucketsteps.step.ServiceCall;
 import com.aagproservices.jenkins.bitbucketsteps.step.descriptor.CreateTagStep;
 import org.jenkinsci.plugins.workflow.steps.StepContext;
 import org.json.JSONObject;
 
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * @author Aleks Gekht
  * @version 0.1.0
  * Execution implementation of the step "createTag".
  */
-public class CreateTagExecution extends AbstractStepExecution<JSONObject, CreateTagStep> {
+public class CreateTagExecution extends AbstractStepExecution<RefResult, CreateTagStep> {
 
     private static final long serialVersionUID = 7220386183041962984L;
 
@@ -25,6 +35,12 @@ public class CreateTagExecution extends AbstractStepExecution<JSONObject, Create
      */
     public CreateTagExecution(final CreateTagStep createTagStep, final StepContext context, final BitbucketServer bitbucketSite) {
         super(createTagStep, context, bitbucketSite);
+        Tag tag = createTagStep.getTag();
+        String project = createTagStep.getProject();
+        String repoSlug = createTagStep.getRepoSlug();
+        intend(new Intent<>("create tag", project + "/" + repoSlug + " " + tag.getName(), ContentService.class,
+                new CreateTag(project, repoSlug, tag, createTagStep.getFields()),
+                new FindTag(project, repoSlug, tag, createTagStep.getFields()), createTagStep.isOnAgent()));
     }
 
     @Override
@@ -41,12 +57,74 @@ public class CreateTagExecution extends AbstractStepExecution<JSONObject, Create
     }
 
     @Override
-    protected JSONObject run() throws Exception {
+    protected RefResult run() throws Exception {
         try {
-            return getService(ContentService.class).createTag(getStep().getProject(), getStep().getRepoSlug(), getStep().getTag());
+            return perform();
         } catch (Exception e) {
             e.printStackTrace();
             throw e;
         }
     }
+
+    private static final class CreateTag implements ServiceCall<ContentService, RefResult> {
+
+        private static final long serialVersionUID = -2240781951106263719L;
+
+        private final String project;
+        private final String repoSlug;
+        private final Tag tag;
+        private final List<String> fields;
+
+        private CreateTag(final String project, final String repoSlug, final Tag tag, final List<String> fields) {
+            this.project = project;
+            this.repoSlug = repoSlug;
+            this.tag = tag;
+            this.fields = fields;
+        }
+
+        @Override
+        public RefResult call(final ContentService service, final File workspace) {
+            return new RefResult(service.createTag(project, repoSlug, tag), fields);
+        }
+
+        @Override
+        public Collection<String> getChangedRefs() {
+            return Collections.singleton("refs/tags/" + tag.getName());
+        }
+    }
+
+    /**
+     * Tells whether the tag exists, on the start point if that is a commit hash.
+     */
+    private static final class FindTag implements ServiceCall<ContentService, RefResult> {
+
+        private static final long serialVersionUID = -3861207544916622487L;
+
+        private final String project;
+        private final String repoSlug;
+        private final Tag tag;
+        private final List<String> fields;
+
+        private FindTag(final String project, final String repoSlug, final Tag tag, final List<String> fields) {
+            this.project = project;
+            this.repoSlug = repoSlug;
+            this.tag = tag;
+            this.fields = fields;
+        }
+
+        @Override
+        public RefResult call(final ContentService service, final File workspace) {
+            JSONObject ref = service.findRef(project, repoSlug, "tags", tag.getName());
+            if (ref == null) {
+                return null;
+            }
+            String latestCommit = ref.optString("latestCommit");
+            String startPoint = tag.getStartPoint();
+            if (BaseService.isCommitId(startPoint) && !startPoint.equals(latestCommit)) {
+                throw new IllegalStateException("Tag " + tag.getName() + " exists on commit " + latestCommit
+                        + " instead of " + startPoint);
+            }
+            return new RefResult(ref, fields);
+        }
+    }
 }
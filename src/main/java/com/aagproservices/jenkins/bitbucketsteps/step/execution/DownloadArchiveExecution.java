@@ -0,0 +1,96 @@
+package com.aagproservices.jenkins.bitbucketsteps.step.execution;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketServer;
+import com.aagproservices.jenkins.bitbucketsteps.api.FileResult;
+import com.aagproservices.jenkins.bitbucketsteps.service.ContentService;
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStepExecution;
+import com.aagproservices.jenkins.bitbucketsteps.step.descriptor.DownloadArchiveStep;
+import com.aagproservices.jenkins.bitbucketsteps.util.ThroughputInputStream;
+import hudson.FilePath;
+import hudson.model.TaskListener;
+import org.apache.commons.io.IOUtils;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Execution implementation of the step "downloadArchive". The archive is streamed from Bitbucket to the agent as it
+ * arrives, either into a file or into the extraction of a tar archive on the agent. Zip archives need random access,
+ * so the agent spools them to a temporary file before extracting.
+ */
+public class DownloadArchiveExecution extends AbstractStepExecution<FileResult, DownloadArchiveStep> {
+
+    private static final long serialVersionUID = 4438150905117235873L;
+
+    private static final List<String> FORMATS = Arrays.asList("zip", "tar", "tar.gz", "tgz");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Constructor that takes the needed information for the execution of the step.
+     *
+     * @param downloadArchiveStep The step that is going to be executed.
+     * @param context             The step context.
+     * @param bitbucketSite       The configured site of bitbucket.
+     */
+    public DownloadArchiveExecution(final DownloadArchiveStep downloadArchiveStep, final StepContext context, final BitbucketServer bitbucketSite) {
+        super(downloadArchiveStep, context, bitbucketSite);
+    }
+
+    @Override
+    public void validate(final DownloadArchiveStep step) {
+        super.validate(step);
+
+        if (step.getTarget() == null || step.getTarget().isEmpty()) {
+            throw new IllegalArgumentException("Target is null or empty!");
+        }
+
+        if (!FORMATS.contains(step.getFormat())) {
+            throw new IllegalArgumentException("format must be one of " + FORMATS);
+        }
+    }
+
+    @Override
+    protected FileResult run() throws Exception {
+        try {
+            FilePath workspace = getContext().get(FilePath.class);
+            if (workspace == null) {
+                throw new IllegalStateException("Downloading an archive requires a workspace");
+            }
+            FilePath target = workspace.child(getStep().getTarget());
+            TaskListener listener = getContext().get(TaskListener.class);
+            String format = getStep().getFormat();
+
+            return getService(ContentService.class).downloadArchive(getStep().getProject(), getStep().getRepoSlug(),
+                    getStep().getAt(), format, getStep().getPaths(), response -> {
+                        ThroughputInputStream in = new ThroughputInputStream(
+                                ReadFileExecution.bodyOf(response, "archive of " + getStep().getRepoSlug()).byteStream(),
+                                listener.getLogger(), "Archive of " + getStep().getRepoSlug());
+                        try (InputStream measured = in) {
+                            if (!getStep().isExtract()) {
+                                try (OutputStream out = target.write()) {
+                                    IOUtils.copyLarge(measured, out, new byte[BUFFER_SIZE]);
+                                }
+                            } else if ("zip".equals(format)) {
+                                target.unzipFrom(measured);
+                            } else {
+                                target.untarFrom(measured, "tar".equals(format)
+                                        ? FilePath.TarCompression.NONE : FilePath.TarCompression.GZIP);
+                            }
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new InterruptedIOException("Interrupted while writing " + target);
+                        }
+                        return new FileResult(getStep().getTarget(), in.getBytes(), true);
+                    });
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.aagproservices.jenkins.bitbucketsteps.step.execution;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketServer;
+import com.aagproservices.jenkins.bitbucketsteps.api.BatchResult;
+import com.aagproservices.jenkins.bitbucketsteps.api.Branch;
+import com.aagproservices.jenkins.bitbucketsteps.api.Tag;
+import com.aagproservices.jenkins.bitbucketsteps.service.ContentService;
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStepExecution;
+import com.aagproservices.jenkins.bitbucketsteps.step.descriptor.FanOutStep;
+import com.aagproservices.jenkins.bitbucketsteps.step.descriptor.RepositoryTarget;
+import hudson.model.TaskListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+
+import javax.ws.rs.ClientErrorException;
+import javax.ws.rs.ServerErrorException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Execution implementation of the step "fanOut". The operation runs in a bounded number of repositories at a time,
+ * all over the shared HTTP client. Server and connection errors are retried with a growing delay; other errors fail
+ * the repository right away. Every repository is worked on, also after another one failed, so the summary tells the
+ * outcome for all of them. With rollback, tags or branches that were created are deleted again once all repositories
+ * are done if any of them failed, so a release is either tagged everywhere or nowhere. Merges cannot be rolled back;
+ * before a merge is retried, the pull request is read again, since the failed attempt may have been applied by the
+ * server.
+ */
+public class FanOutExecution extends AbstractStepExecution<BatchResult, FanOutStep> {
+
+    private static final long serialVersionUID = -2709425139876370447L;
+
+    private static final List<String> OPERATIONS = Arrays.asList(
+            FanOutStep.CREATE_TAG, FanOutStep.CREATE_BRANCH, FanOutStep.MERGE_PULL_REQUEST);
+    private static final long RETRY_BASE_MILLIS = 1000;
+    private static final long RETRY_MAX_MILLIS = 16000;
+
+    /**
+     * Constructor that takes the needed information for the execution of the step.
+     *
+     * @param fanOutStep    The step that is going to be executed.
+     * @param context       The step context.
+     * @param bitbucketSite The configured site of bitbucket.
+     */
+    public FanOutExecution(final FanOutStep fanOutStep, final StepContext context, final BitbucketServer bitbucketSite) {
+        super(fanOutStep, context, bitbucketSite);
+    }
+
+    @Override
+    protected boolean requiresRepository() {
+        //project and repository are given per repository
+        return false;
+    }
+
+    @Override
+    public void validate(final FanOutStep step) {
+        super.validate(step);
+
+        if (!OPERATIONS.contains(step.getOperation())) {
+            throw new IllegalArgumentException("operation must be one of " + OPERATIONS);
+        }
+
+        if (step.getRepositories() == null || step.getRepositories().isEmpty()) {
+            throw new IllegalArgumentException("No repositories given");
+        }
+
+        boolean merge = FanOutStep.MERGE_PULL_REQUEST.equals(step.getOperation());
+        if (!merge && (isEmpty(step.getName()) || isEmpty(step.getStartPoint()))) {
+            throw new IllegalArgumentException("name and startPoint are required to create tags or branches");
+        }
+
+        for (RepositoryTarget repository : step.getRepositories()) {
+            if (isEmpty(repository.getProject()) || isEmpty(repository.getRepoSlug())) {
+                throw new IllegalArgumentException("Project and repository slug are required for every repository");
+            }
+            if (merge && repository.getPullRequestId() <= 0) {
+                throw new IllegalArgumentException("pullRequestId is required to merge in " + repository);
+            }
+        }
+
+        if (step.getParallelism() <= 0 || step.getRetries() < 0) {
+            throw new IllegalArgumentException("parallelism must be positive and retries must not be negative");
+        }
+
+        if (merge && step.isRollbackOnFailure()) {
+            throw new IllegalArgumentException("Merges cannot be rolled back");
+        }
+    }
+
+    @Override
+    protected BatchResult run() throws Exception {
+        try {
+            PrintStream log = getContext().get(TaskListener.class).getLogger();
+            List<RepositoryTarget> repositories = getStep().getRepositories();
+            String[] errors = runAll(repositories, this::apply);
+
+            List<String> succeeded = new ArrayList<>();
+            Map<String, String> failed = new LinkedHashMap<>();
+            List<RepositoryTarget> done = new ArrayList<>();
+            for (int i = 0; i < repositories.size(); i++) {
+                if (errors[i] == null) {
+                    succeeded.add(repositories.get(i).toString());
+                    done.add(repositories.get(i));
+                } else {
+                    failed.put(repositories.get(i).toString(), errors[i]);
+                }
+            }
+
+            List<String> rolledBack = new ArrayList<>();
+            if (!failed.isEmpty() && getStep().isRollbackOnFailure() && !done.isEmpty()) {
+                log.println("Rolling back " + getStep().getOperation() + " in " + done.size() + " repositories");
+                String[] rollbackErrors = runAll(done, this::undo);
+                for (int i = 0; i < done.size(); i++) {
+                    if (rollbackErrors[i] == null) {
+                        rolledBack.add(done.get(i).toString());
+                    } else {
+                        log.println("Could not roll back " + done.get(i) + ": " + rollbackErrors[i]);
+                    }
+                }
+            }
+
+            for (int i = 0; i < repositories.size(); i++) {
+                String name = repositories.get(i).toString();
+                String outcome = errors[i] != null ? "FAILED" : rolledBack.contains(name) ? "ROLLED BACK" : "OK";
+                log.println(String.format("%-50s %-12s %s", name, outcome, errors[i] == null ? "" : errors[i]));
+            }
+            return new BatchResult(succeeded, failed, rolledBack);
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    private interface Operation {
+        void run(ContentService service, RepositoryTarget repository);
+    }
+
+    /**
+     * Runs an operation in all repositories with bounded parallelism.
+     *
+     * @return The error of each repository, null where it succeeded.
+     */
+    private String[] runAll(final List<RepositoryTarget> repositories, final Operation operation) throws Exception {
+        String[] errors = new String[repositories.size()];
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(getStep().getParallelism(), repositories.size()),
+                new NamingThreadFactory(new DaemonThreadFactory(), "bitbucketFanOut"));
+        try {
+            List<Future<?>> pending = new ArrayList<>();
+            for (int i = 0; i < repositories.size(); i++) {
+                int index = i;
+                pending.add(pool.submit(() -> errors[index] = withRetries(repositories.get(index), operation)));
+            }
+            for (Future<?> future : pending) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return errors;
+    }
+
+    private String withRetries(final RepositoryTarget repository, final Operation operation) throws InterruptedException {
+        ContentService service = getService(ContentService.class);
+        boolean merge = FanOutStep.MERGE_PULL_REQUEST.equals(getStep().getOperation());
+        for (int attempt = 1; ; attempt++) {
+            try {
+                if (merge && attempt > 1 && isMerged(service, repository)) {
+                    //an earlier attempt failed on our side but was applied by the server
+                    return null;
+                }
+                operation.run(service, repository);
+                return null;
+            } catch (ClientErrorException e) {
+                boolean conflict = e.getResponse().getStatus() == 409;
+                if (conflict && attempt > 1 && (!merge || isMerged(service, repository))) {
+                    //an earlier attempt timed out on our side but was applied by the server
+                    return null;
+                }
+                return e.getMessage();
+            } catch (ServerErrorException | IllegalArgumentException e) {
+                boolean transientError = e instanceof ServerErrorException || e.getCause() instanceof IOException;
+                if (!transientError || attempt > getStep().getRetries()) {
+                    return e.getMessage();
+                }
+            } catch (RuntimeException e) {
+                return e.getMessage() == null ? e.toString() : e.getMessage();
+            }
+            Thread.sleep(Math.min(RETRY_MAX_MILLIS, RETRY_BASE_MILLIS << (attempt - 1)));
+        }
+    }
+
+    private static boolean isMerged(final ContentService service, final RepositoryTarget repository) {
+        return "MERGED".equals(service.getPullRequest(repository.getProject(), repository.getRepoSlug(),
+                repository.getPullRequestId(), false).optString("state"));
+    }
+
+    private void apply(final ContentService service, final RepositoryTarget repository) {
+        switch (getStep().getOperation()) {
+            case FanOutStep.CREATE_TAG:
+                Tag tag = new Tag();
+                tag.setName(getStep().getName());
+                tag.setStartPoint(getStep().getStartPoint());
+                tag.setMessage(getStep().getMessage());
+                service.createTag(repository.getProject(), repository.getRepoSlug(), tag);
+                break;
+            case FanOutStep.CREATE_BRANCH:
+                Branch branch = new Branch();
+                branch.setName(getStep().getName());
+                branch.setStartPoint(getStep().getStartPoint());
+                branch.setMessage(getStep().getMessage());
+                service.createBranch(repository.getProject(), repository.getRepoSlug(), branch);
+                break;
+            default:
+                service.mergePullRequest(repository.getProject(), repository.getRepoSlug(), repository.getPullRequestId());
+        }
+    }
+
+    private void undo(final ContentService service, final RepositoryTarget repository) {
+        if (FanOutStep.CREATE_TAG.equals(getStep().getOperation())) {
+            service.deleteTag(repository.getProject(), repository.getRepoSlug(), getStep().getName());
+        } else {
+            service.deleteBranch(repository.getProject(), repository.getRepoSlug(), getStep().getName());
+        }
+    }
+}
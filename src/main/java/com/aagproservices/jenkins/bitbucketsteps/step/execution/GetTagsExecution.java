@@ -1,19 +1,24 @@
 package com.aagproservices.jenkins.bitbucketsteps.step.execution;
 
 import com.aagproservices.jenkins.bitbucketsteps.BitbucketServer;
+import com.aagproservices.jenkins.bitbucketsteps.api.RefResult;
 import com.aagproservices.jenkins.bitbucketsteps.service.ContentService;
 import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStepExecution;
 import com.aagproservices.jenkins.bitbucketsteps.step.descriptor.CreateTagStep;
 import com.aagproservices.jenkins.bitbucketsteps.step.descriptor.GetTagsStep;
 import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * @author Aleks Gekht
  * @version 0.1.0
  * Execution implementation of the step "getTags".
  */
-public class GetTagsExecution extends AbstractStepExecution<JSONObject, GetTagsStep> {
+public class GetTagsExecution extends AbstractStepExecution<List<RefResult>, GetTagsStep> {
 
     private static final long serialVersionUID = 7220386183068962984L;
 
@@ -34,9 +39,17 @@ public class GetTagsExecution extends AbstractStepExecution<JSONObject, GetTagsS
     }
 
     @Override
-    protected JSONObject run() throws Exception {
+    protected List<RefResult> run() throws Exception {
         try {
-            return getService(ContentService.class).getTags(getStep().getProject(), getStep().getRepoSlug());
+            JSONObject page = getService(ContentService.class).getTags(getStep().getProject(), getStep().getRepoSlug());
+            List<RefResult> tags = new ArrayList<>();
+            JSONArray values = page.optJSONArray("values");
+            if (values != null) {
+                for (int i = 0; i < values.length(); i++) {
+                    tags.add(new RefResult(values.optJSONObject(i), getStep().getFields()));
+                }
+            }
+            return tags;
         } catch (Exception e) {
             e.printStackTrace();
             throw e;
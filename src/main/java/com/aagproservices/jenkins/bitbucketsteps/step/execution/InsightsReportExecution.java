@@ -0,0 +1,177 @@
+package com.aagproservices.jenkins.bitbucketsteps.step.execution;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketServer;
+import com.aagproservices.jenkins.bitbucketsteps.service.InsightsService;
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStepExecution;
+import com.aagproservices.jenkins.bitbucketsteps.step.descriptor.InsightsReportStep;
+import com.aagproservices.jenkins.bitbucketsteps.util.AnnotationReader;
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.model.TaskListener;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Execution implementation of the step "insightsReport". Bitbucket keeps at most 1000 annotations per report, so the
+ * findings file is read completely before anything is sent; a file that cannot be read leaves an earlier report as
+ * it is. The report is then put, which replaces an earlier report with the same key and all of its annotations in
+ * one request, and the annotations are uploaded in chunks, one after the other. A report holds no more annotations
+ * than one request takes, so with the default chunk size that is a single request. Bitbucket cannot swap a report
+ * and its annotations in one request, so if an upload fails the report is deleted again and a commit never shows a
+ * report with only part of its annotations.
+ */
+public class InsightsReportExecution extends AbstractStepExecution<Integer, InsightsReportStep> {
+
+    private static final long serialVersionUID = 2457718845097120153L;
+
+    private static final long PROGRESS_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    /**
+     * Constructor that takes the needed information for the execution of the step.
+     *
+     * @param insightsReportStep The step that is going to be executed.
+     * @param context            The step context.
+     * @param bitbucketSite      The configured site of bitbucket.
+     */
+    public InsightsReportExecution(final InsightsReportStep insightsReportStep, final StepContext context, final BitbucketServer bitbucketSite) {
+        super(insightsReportStep, context, bitbucketSite);
+    }
+
+    @Override
+    public void validate(final InsightsReportStep step) {
+        super.validate(step);
+
+        if (step.getFile() == null || step.getFile().isEmpty()) {
+            throw new IllegalArgumentException("The findings file is null or empty");
+        }
+
+        if (step.getKey() == null || step.getKey().isEmpty()) {
+            throw new IllegalArgumentException("The report key is null or empty");
+        }
+
+        if (step.getFormat() != null && !step.getFormat().isEmpty()
+                && !AnnotationReader.SARIF.equals(step.getFormat()) && !AnnotationReader.JSON.equals(step.getFormat())) {
+            throw new IllegalArgumentException("The format must be sarif or json");
+        }
+
+        if (step.getMaxAnnotations() <= 0 || step.getChunkSize() <= 0
+                || step.getChunkSize() > InsightsService.MAX_ANNOTATIONS_PER_REQUEST) {
+            throw new IllegalArgumentException("maxAnnotations must be positive and chunkSize must be between 1 and "
+                    + InsightsService.MAX_ANNOTATIONS_PER_REQUEST);
+        }
+    }
+
+    @Override
+    protected Integer run() throws Exception {
+        try {
+            InsightsReportStep step = getStep();
+            FilePath workspace = getContext().get(FilePath.class);
+            if (workspace == null) {
+                throw new IllegalStateException("Reading the findings requires a workspace");
+            }
+            PrintStream log = getContext().get(TaskListener.class).getLogger();
+            EnvVars env = getContext().get(EnvVars.class);
+            String commit = step.getCommit() != null ? step.getCommit() : env.get("GIT_COMMIT");
+            if (commit == null || commit.isEmpty()) {
+                throw new IllegalArgumentException("No commit given and GIT_COMMIT is not set");
+            }
+            String format = step.getFormat() != null && !step.getFormat().isEmpty() ? step.getFormat()
+                    : step.getFile().endsWith(".sarif") ? AnnotationReader.SARIF : AnnotationReader.JSON;
+
+            int limit = step.getMaxAnnotations();
+            if (limit > InsightsService.MAX_ANNOTATIONS_PER_REPORT) {
+                log.println("Bitbucket keeps at most " + InsightsService.MAX_ANNOTATIONS_PER_REPORT + " annotations per report");
+                limit = InsightsService.MAX_ANNOTATIONS_PER_REPORT;
+            }
+            List<JSONObject> annotations = new ArrayList<>();
+            int read;
+            try (InputStream in = new BufferedInputStream(workspace.child(step.getFile()).read())) {
+                int max = limit;
+                read = AnnotationReader.read(in, format, annotation -> {
+                    if (annotations.size() < max) {
+                        annotations.add(annotation);
+                    }
+                });
+            }
+
+            InsightsService service = getService(InsightsService.class);
+            String project = step.getProject();
+            String repoSlug = step.getRepoSlug();
+            service.putReport(project, repoSlug, commit, step.getKey(), report());
+
+            int uploaded = 0;
+            int chunks = 0;
+            long start = System.currentTimeMillis();
+            long lastProgress = start;
+            boolean complete = false;
+            try {
+                for (int from = 0; from < annotations.size(); from += step.getChunkSize()) {
+                    JSONArray chunk = new JSONArray(annotations.subList(from, Math.min(annotations.size(), from + step.getChunkSize())));
+                    service.addAnnotations(project, repoSlug, commit, step.getKey(), chunk);
+                    uploaded += chunk.length();
+                    chunks++;
+                    if (System.currentTimeMillis() - lastProgress >= PROGRESS_INTERVAL_MILLIS) {
+                        lastProgress = System.currentTimeMillis();
+                        log.println(progress(uploaded, chunks, lastProgress - start));
+                    }
+                }
+                complete = true;
+            } finally {
+                if (!complete) {
+                    deleteReport(service, commit, log);
+                }
+            }
+
+            log.println(progress(uploaded, chunks, System.currentTimeMillis() - start)
+                    + " to report " + step.getKey() + " of " + commit);
+            if (read > annotations.size()) {
+                log.println("Left out " + (read - annotations.size()) + " of " + read + " findings, the limit is " + limit);
+            }
+            return uploaded;
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    private JSONObject report() {
+        InsightsReportStep step = getStep();
+        JSONObject report = new JSONObject()
+                .put("title", step.getTitle() != null ? step.getTitle() : step.getKey())
+                .put("reporter", "Jenkins");
+        if (step.getResult() != null) {
+            report.put("result", step.getResult());
+        }
+        if (step.getDetails() != null) {
+            report.put("details", step.getDetails());
+        }
+        if (step.getLink() != null) {
+            report.put("link", step.getLink());
+        }
+        return report;
+    }
+
+    private void deleteReport(final InsightsService service, final String commit, final PrintStream log) {
+        try {
+            service.deleteReport(getStep().getProject(), getStep().getRepoSlug(), commit, getStep().getKey());
+            log.println("Deleted the incomplete report " + getStep().getKey());
+        } catch (RuntimeException e) {
+            log.println("Could not delete the incomplete report " + getStep().getKey() + ": " + e.getMessage());
+        }
+    }
+
+    private static String progress(final int annotations, final int chunks, final long elapsedMillis) {
+        long rate = elapsedMillis == 0 ? annotations : annotations * 1000L / elapsedMillis;
+        return "Uploaded " + annotations + " annotations in " + chunks + " chunks in " + elapsedMillis + " ms (" + rate + " annotations/s)";
+    }
+}
@@ -0,0 +1,106 @@
+package com.aagproservices.jenkins.bitbucketsteps.step.execution;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketServer;
+import com.aagproservices.jenkins.bitbucketsteps.api.LatestTagResult;
+import com.aagproservices.jenkins.bitbucketsteps.service.ContentService;
+import com.aagproservices.jenkins.bitbucketsteps.service.RefIndex;
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStepExecution;
+import com.aagproservices.jenkins.bitbucketsteps.step.descriptor.LatestTagStep;
+import com.aagproservices.jenkins.bitbucketsteps.util.SemanticVersion;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Execution implementation of the step "latestTag".
+ */
+public class LatestTagExecution extends AbstractStepExecution<LatestTagResult, LatestTagStep> {
+
+    private static final long serialVersionUID = -2299712854331700835L;
+
+    /**
+     * Constructor that takes the needed information for the execution of the step.
+     *
+     * @param latestTagStep The step that is going to be executed.
+     * @param context       The step context.
+     * @param bitbucketSite The configured site of bitbucket.
+     */
+    public LatestTagExecution(final LatestTagStep latestTagStep, final StepContext context, final BitbucketServer bitbucketSite) {
+        super(latestTagStep, context, bitbucketSite);
+    }
+
+    @Override
+    public void validate(final LatestTagStep step) {
+        super.validate(step);
+
+        String bump = step.getBump();
+        if (bump != null && !bump.isEmpty() && !bump.matches("(?i)major|minor|patch")) {
+            throw new IllegalArgumentException("bump must be one of major, minor or patch");
+        }
+        if (bound(step, step.getFrom()) == null && step.getFrom() != null && !step.getFrom().isEmpty()) {
+            throw new IllegalArgumentException("from must be a semantic version");
+        }
+        if (bound(step, step.getTo()) == null && step.getTo() != null && !step.getTo().isEmpty()) {
+            throw new IllegalArgumentException("to must be a semantic version");
+        }
+    }
+
+    /**
+     * Parses a version bound given with or without the prefix.
+     */
+    private static SemanticVersion bound(final LatestTagStep step, final String version) {
+        if (version == null || version.isEmpty()) {
+            return null;
+        }
+        SemanticVersion parsed = SemanticVersion.parse(step.getPrefix(), version);
+        return parsed != null ? parsed : SemanticVersion.parse("", version);
+    }
+
+    @Override
+    protected LatestTagResult run() throws Exception {
+        try {
+            String prefix = getStep().getPrefix();
+            SemanticVersion from = bound(getStep(), getStep().getFrom());
+            SemanticVersion to = bound(getStep(), getStep().getTo());
+            JSONObject tag = getStep().getIndexMaxAgeSeconds() > 0
+                    ? findInIndex(prefix, from, to)
+                    : getService(ContentService.class).findLatestTag(
+                            getStep().getProject(), getStep().getRepoSlug(), prefix, from, to, getStep().isIncludePreReleases());
+            if (tag == null) {
+                return null;
+            }
+            SemanticVersion version = SemanticVersion.parse(prefix, tag.optString("displayId"));
+            String bump = getStep().getBump();
+            String nextVersion = bump == null || bump.isEmpty() ? null : prefix + version.next(bump);
+            return new LatestTagResult(tag, version.toString(), nextVersion, getStep().getFields());
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Answers from the on-disk tag index, refreshing it first if it is older than allowed.
+     */
+    private JSONObject findInIndex(final String prefix, final SemanticVersion from, final SemanticVersion to) throws JSONException {
+        RefIndex index = RefIndex.forRepository(getStep().getSite().getUrl().toString(),
+                getStep().getProject(), getStep().getRepoSlug(), "tags");
+        long maxAgeMillis = TimeUnit.SECONDS.toMillis(getStep().getIndexMaxAgeSeconds());
+        if (index.getAgeMillis() > maxAgeMillis) {
+            index.refresh(getService(ContentService.class), maxAgeMillis);
+        }
+        Map.Entry<String, String> latest = index.findLatestVersion(prefix, from, to, getStep().isIncludePreReleases());
+        if (latest == null) {
+            return null;
+        }
+        return new JSONObject()
+                .put("id", "refs/tags/" + latest.getKey())
+                .put("displayId", latest.getKey())
+                .put("latestCommit", latest.getValue());
+    }
+}
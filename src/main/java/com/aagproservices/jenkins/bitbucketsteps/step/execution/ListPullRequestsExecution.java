@@ -0,0 +1,120 @@
+package com.aagproservices.jenkins.bitbucketsteps.step.execution;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketServer;
+import com.aagproservices.jenkins.bitbucketsteps.api.PullRequestResult;
+import com.aagproservices.jenkins.bitbucketsteps.service.ContentService;
+import com.aagproservices.jenkins.bitbucketsteps.service.OpenPullRequestIndex;
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStepExecution;
+import com.aagproservices.jenkins.bitbucketsteps.step.descriptor.ListPullRequestsStep;
+import hudson.FilePath;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Execution implementation of the step "listPullRequests". Pages are requested one at a time and only as long as
+ * more results are wanted. With an output file every pull request is streamed to the workspace as one JSON line and
+ * only the count is returned, so huge repositories can be scanned without holding the list in memory.
+ */
+public class ListPullRequestsExecution extends AbstractStepExecution<Object, ListPullRequestsStep> {
+
+    private static final long serialVersionUID = -3020667129418275346L;
+
+    private static final int PAGE_SIZE = 100;
+
+    /**
+     * Constructor that takes the needed information for the execution of the step.
+     *
+     * @param listPullRequestsStep The step that is going to be executed.
+     * @param context              The step context.
+     * @param bitbucketSite        The configured site of bitbucket.
+     */
+    public ListPullRequestsExecution(final ListPullRequestsStep listPullRequestsStep, final StepContext context, final BitbucketServer bitbucketSite) {
+        super(listPullRequestsStep, context, bitbucketSite);
+    }
+
+    @Override
+    public void validate(final ListPullRequestsStep step) {
+        super.validate(step);
+
+        if (step.getMaxResults() < 0) {
+            throw new IllegalArgumentException("maxResults must not be negative");
+        }
+    }
+
+    @Override
+    protected Object run() throws Exception {
+        try {
+            ContentService service = getService(ContentService.class);
+            Map<String, String> filters = buildFilters();
+            int pageSize = getStep().getMaxResults() > 0 ? Math.min(PAGE_SIZE, getStep().getMaxResults()) : PAGE_SIZE;
+
+            if (getStep().getOutputFile() == null || getStep().getOutputFile().isEmpty()) {
+                List<PullRequestResult> pullRequests = new ArrayList<>();
+                service.forEachPullRequest(getStep().getProject(), getStep().getRepoSlug(), filters, pageSize,
+                        limit(pr -> pullRequests.add(new PullRequestResult(pr, getStep().getFields()))));
+                return pullRequests;
+            }
+
+            FilePath workspace = getContext().get(FilePath.class);
+            if (workspace == null) {
+                throw new IllegalStateException("Writing to an output file requires a workspace");
+            }
+            AtomicInteger written = new AtomicInteger();
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    workspace.child(getStep().getOutputFile()).write(), StandardCharsets.UTF_8))) {
+                service.forEachPullRequest(getStep().getProject(), getStep().getRepoSlug(), filters, pageSize, limit(pr -> {
+                    try {
+                        writer.write(pr.toString());
+                        writer.write('\n');
+                        written.incrementAndGet();
+                        return true;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+            }
+            return written.get();
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    private Map<String, String> buildFilters() {
+        Map<String, String> filters = new HashMap<>();
+        filters.put("state", getStep().getState());
+        filters.put("direction", getStep().getDirection());
+        if (getStep().getAt() != null && !getStep().getAt().isEmpty()) {
+            filters.put("at", OpenPullRequestIndex.qualify(getStep().getAt()));
+        }
+        if (getStep().getAuthor() != null && !getStep().getAuthor().isEmpty()) {
+            filters.put("role.1", "AUTHOR");
+            filters.put("username.1", getStep().getAuthor());
+        }
+        return filters;
+    }
+
+    /**
+     * Wraps a consumer so walking stops once maxResults pull requests were consumed.
+     */
+    private Predicate<JSONObject> limit(final Predicate<JSONObject> consumer) {
+        int max = getStep().getMaxResults();
+        AtomicInteger seen = new AtomicInteger();
+        return pr -> consumer.test(pr) && (max == 0 || seen.incrementAndGet() < max);
+    }
+}
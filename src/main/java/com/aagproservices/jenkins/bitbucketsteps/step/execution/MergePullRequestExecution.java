@@ -1,19 +1,28 @@
 package com.aagproservices.jenkins.bitbucketsteps.step.execution;
 
 import com.aagproservices.jenkins.bitbucketsteps.BitbucketServer;
+import com.aagproservices.jenkins.bitbucketsteps.api.PullRequestResult;
 import com.aagproservices.jenkins.bitbucketsteps.service.ContentService;
 import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStepExecution;
+import com.aagproservices.jenkins.bitbucketsteps.step.Intent;
+import com.aagproservices.jenkins.bitbucketsteps.step.ServiceCall;
 import com.aagproservices.jenkins.bitbucketsteps.step.descriptor.CreatePullRequestStep;
 import com.aagproservices.jenkins.bitbucketsteps.step.descriptor.MergePullRequestStep;
 import org.jenkinsci.plugins.workflow.steps.StepContext;
 import org.json.JSONObject;
 
+import javax.ws.rs.BadRequestException;
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * @author Aleks Gekht
  * @version 0.1.0
  * Execution implementation of the step "createTag".
  */
-public class MergePullRequestExecution extends AbstractStepExecution<JSONObject, MergePullRequestStep> {
+public class MergePullRequestExecution extends AbstractStepExecution<PullRequestResult, MergePullRequestStep> {
 
     private static final long serialVersionUID = 7223466183041962984L;
 
@@ -26,6 +35,12 @@ public class MergePullRequestExecution extends AbstractStepExecution<JSONObject,
      */
     public MergePullRequestExecution(final MergePullRequestStep mergePullRequestStep, final StepContext context, final BitbucketServer bitbucketSite) {
         super(mergePullRequestStep, context, bitbucketSite);
+        String project = mergePullRequestStep.getProject();
+        String repoSlug = mergePullRequestStep.getRepoSlug();
+        int id = mergePullRequestStep.getId();
+        intend(new Intent<>("merge pull request", project + "/" + repoSlug + " #" + id, ContentService.class,
+                new MergePullRequest(project, repoSlug, id, mergePullRequestStep.getFields()),
+                new FindMerged(project, repoSlug, id, mergePullRequestStep.getFields()), mergePullRequestStep.isOnAgent()));
     }
 
     @Override
@@ -38,12 +53,73 @@ public class MergePullRequestExecution extends AbstractStepExecution<JSONObject,
     }
 
     @Override
-    protected JSONObject run() throws Exception {
+    protected PullRequestResult run() throws Exception {
         try {
-            return getService(ContentService.class).mergePullRequest(getStep().getProject(), getStep().getRepoSlug(), getStep().getId());
+            return perform();
         } catch (Exception e) {
             e.printStackTrace();
             throw e;
         }
     }
+
+    private static final class MergePullRequest implements ServiceCall<ContentService, PullRequestResult> {
+
+        private static final long serialVersionUID = 1825539076601872339L;
+
+        private final String project;
+        private final String repoSlug;
+        private final int id;
+        private final List<String> fields;
+
+        private MergePullRequest(final String project, final String repoSlug, final int id, final List<String> fields) {
+            this.project = project;
+            this.repoSlug = repoSlug;
+            this.id = id;
+            this.fields = fields;
+        }
+
+        @Override
+        public PullRequestResult call(final ContentService service, final File workspace) {
+            return new PullRequestResult(service.mergePullRequest(project, repoSlug, id), fields);
+        }
+
+        @Override
+        public Collection<String> getChangedRefs() {
+            //moves the target branch, which is only known from the pull request
+            return Collections.singleton("refs/heads/");
+        }
+    }
+
+    /**
+     * Tells whether the pull request is merged. A declined pull request cannot be merged any more, so that fails.
+     */
+    private static final class FindMerged implements ServiceCall<ContentService, PullRequestResult> {
+
+        private static final long serialVersionUID = -4719360528114732906L;
+
+        private final String project;
+        private final String repoSlug;
+        private final int id;
+        private final List<String> fields;
+
+        private FindMerged(final String project, final String repoSlug, final int id, final List<String> fields) {
+            this.project = project;
+            this.repoSlug = repoSlug;
+            this.id = id;
+            this.fields = fields;
+        }
+
+        @Override
+        public PullRequestResult call(final ContentService service, final File workspace) {
+            JSONObject pullRequest = service.getPullRequest(project, repoSlug, id, false);
+            switch (pullRequest.optString("state")) {
+                case "MERGED":
+                    return new PullRequestResult(pullRequest, fields);
+                case "DECLINED":
+                    throw new BadRequestException("Pull request with ID " + id + " was declined");
+                default:
+                    return null;
+            }
+        }
+    }
 }
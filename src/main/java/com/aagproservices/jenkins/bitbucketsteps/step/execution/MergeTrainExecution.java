@@ -0,0 +1,175 @@
+package com.aagproservices.jenkins.bitbucketsteps.step.execution;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketServer;
+import com.aagproservices.jenkins.bitbucketsteps.api.PullRequestResult;
+import com.aagproservices.jenkins.bitbucketsteps.service.ContentService;
+import com.aagproservices.jenkins.bitbucketsteps.session.BitbucketSession;
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStep;
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStepExecution;
+import com.aagproservices.jenkins.bitbucketsteps.step.descriptor.MergeTrainStep;
+import com.aagproservices.jenkins.bitbucketsteps.train.MergeTrain;
+import hudson.model.Computer;
+import hudson.model.TaskListener;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.json.JSONObject;
+
+import javax.annotation.Nonnull;
+import javax.ws.rs.BadRequestException;
+import java.util.List;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Execution implementation of the step "mergeTrain". The pull request is handed to the {@link MergeTrain} of its
+ * target branch and the step completes once the train merged or rejected it, without blocking a thread meanwhile.
+ */
+public class MergeTrainExecution extends StepExecution {
+
+    private static final long serialVersionUID = 3308215767021956614L;
+
+    private final String project;
+    private final String repoSlug;
+    private final int id;
+    private final String validationJob;
+    private final int batchSize;
+    private final List<String> fields;
+    private String targetBranch;
+    private boolean done;
+
+    private transient BitbucketServer bitbucketSite;
+    private transient BitbucketSession session;
+    private transient volatile MergeTrain train;
+
+    /**
+     * Constructor that takes the needed information for the execution of the step.
+     *
+     * @param step          The step that is going to be executed.
+     * @param context       The step context.
+     * @param bitbucketSite The configured site of bitbucket.
+     */
+    public MergeTrainExecution(final MergeTrainStep step, final StepContext context, final BitbucketServer bitbucketSite) {
+        super(context);
+        this.session = AbstractStepExecution.sessionOf(context);
+        step.inheritDefaults(session);
+        validate(step);
+        this.project = step.getProject();
+        this.repoSlug = step.getRepoSlug();
+        this.id = step.getId();
+        this.targetBranch = step.getTargetBranch();
+        this.validationJob = step.getValidationJob();
+        this.batchSize = step.getBatchSize();
+        this.fields = step.getFields();
+        this.bitbucketSite = bitbucketSite;
+    }
+
+    private void validate(final MergeTrainStep step) {
+        AbstractStepExecution.validateRepository(step);
+
+        if (step.getId() == 0) {
+            throw new IllegalStateException("Pull request is 0");
+        }
+    }
+
+    @Override
+    public boolean start() throws Exception {
+        Computer.threadPoolForRemoting.submit(this::board);
+        return false;
+    }
+
+    @Override
+    public void stop(@Nonnull final Throwable cause) throws Exception {
+        if (train != null) {
+            train.cancel(id);
+        }
+        if (finish()) {
+            getContext().onFailure(cause);
+        }
+    }
+
+    @Override
+    public void onResume() {
+        //the trains live in memory only, so after a restart the pull request queues up again unless it was merged
+        bitbucketSite = AbstractStep.resolveSite();
+        session = AbstractStepExecution.sessionOf(getContext());
+        Computer.threadPoolForRemoting.submit(this::resume);
+    }
+
+    @Override
+    public String getStatus() {
+        MergeTrain current = train;
+        return current == null
+                ? "Queueing pull request " + id
+                : "Pull request " + id + " is at position " + current.positionOf(id) + " of the merge train into " + targetBranch;
+    }
+
+    /**
+     * Ends the step.
+     *
+     * @return False if it had already ended, e.g. because it was stopped while the train merged the pull request.
+     */
+    private synchronized boolean finish() {
+        if (done) {
+            return false;
+        }
+        done = true;
+        return true;
+    }
+
+    private void resume() {
+        try {
+            JSONObject pullRequest = getService().getPullRequest(project, repoSlug, id, false);
+            switch (pullRequest.optString("state")) {
+                case "MERGED":
+                    getContext().get(TaskListener.class).getLogger().println("Pull request " + id + " was merged before the restart");
+                    if (finish()) {
+                        getContext().onSuccess(new PullRequestResult(pullRequest, fields));
+                    }
+                    return;
+                case "DECLINED":
+                    throw new BadRequestException("Pull request " + id + " was declined");
+                default:
+                    board();
+            }
+        } catch (Exception e) {
+            if (finish()) {
+                getContext().onFailure(e);
+            }
+        }
+    }
+
+    private void board() {
+        try {
+            TaskListener listener = getContext().get(TaskListener.class);
+            if (targetBranch == null || targetBranch.isEmpty()) {
+                JSONObject pullRequest = getService().getPullRequest(project, repoSlug, id);
+                targetBranch = pullRequest.getJSONObject("toRef").getString("displayId");
+            }
+            train = MergeTrain.forBranch(bitbucketSite, project, repoSlug, targetBranch);
+            train.enqueue(bitbucketSite, id, validationJob, batchSize).whenComplete((result, error) -> {
+                if (!finish()) {
+                    //stopped, which reported the outcome already
+                    return;
+                }
+                if (error != null) {
+                    getContext().onFailure(error);
+                } else {
+                    listener.getLogger().println("Merged pull request " + id + " into " + targetBranch);
+                    getContext().onSuccess(new PullRequestResult(result, fields));
+                }
+            });
+            listener.getLogger().println("Pull request " + id + " queued for merge into " + targetBranch
+                    + " (" + train.getQueueLength() + " in queue)");
+        } catch (Exception e) {
+            if (finish()) {
+                getContext().onFailure(e);
+            }
+        }
+    }
+
+    private ContentService getService() {
+        ContentService service = new ContentService(bitbucketSite);
+        service.setSession(session);
+        return service;
+    }
+}
@@ -0,0 +1,66 @@
+package com.aagproservices.jenkins.bitbucketsteps.step.execution;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketServer;
+import com.aagproservices.jenkins.bitbucketsteps.api.CommentResult;
+import com.aagproservices.jenkins.bitbucketsteps.service.ContentService;
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStepExecution;
+import com.aagproservices.jenkins.bitbucketsteps.step.descriptor.PullRequestCommentStep;
+import hudson.model.Run;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.json.JSONObject;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Execution implementation of the step "pullRequestComment".
+ */
+public class PullRequestCommentExecution extends AbstractStepExecution<CommentResult, PullRequestCommentStep> {
+
+    private static final long serialVersionUID = -8032718450291173866L;
+
+    /**
+     * Constructor that takes the needed information for the execution of the step.
+     *
+     * @param pullRequestCommentStep The step that is going to be executed.
+     * @param context                The step context.
+     * @param bitbucketSite          The configured site of bitbucket.
+     */
+    public PullRequestCommentExecution(final PullRequestCommentStep pullRequestCommentStep, final StepContext context, final BitbucketServer bitbucketSite) {
+        super(pullRequestCommentStep, context, bitbucketSite);
+    }
+
+    @Override
+    public void validate(final PullRequestCommentStep step) {
+        super.validate(step);
+
+        if (step.getPullRequestId() <= 0) {
+            throw new IllegalArgumentException("The pull request ID must be positive");
+        }
+
+        if (step.getText() == null || step.getText().isEmpty()) {
+            throw new IllegalArgumentException("The text of the comment is null or empty");
+        }
+
+        if (step.getMarker() != null && (step.getMarker().contains(")") || step.getMarker().contains("\n"))) {
+            throw new IllegalArgumentException("The marker must not contain ')' or line breaks");
+        }
+    }
+
+    @Override
+    protected CommentResult run() throws Exception {
+        try {
+            PullRequestCommentStep step = getStep();
+            String marker = step.getMarker();
+            if (marker == null || marker.isEmpty()) {
+                //the marker ends up inside a markdown reference, which a closing parenthesis would end early
+                marker = getContext().get(Run.class).getParent().getFullName().replace(')', '_');
+            }
+            JSONObject comment = getService(ContentService.class).upsertPullRequestComment(step.getProject(), step.getRepoSlug(),
+                    step.getPullRequestId(), marker, step.getText());
+            return new CommentResult(comment, step.getFields());
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.aagproservices.jenkins.bitbucketsteps.step.execution;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketServer;
+import com.aagproservices.jenkins.bitbucketsteps.api.FileResult;
+import com.aagproservices.jenkins.bitbucketsteps.cache.Validators;
+import com.aagproservices.jenkins.bitbucketsteps.service.ContentService;
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStepExecution;
+import com.aagproservices.jenkins.bitbucketsteps.step.descriptor.ReadFileStep;
+import hudson.FilePath;
+import hudson.model.Computer;
+import hudson.model.TaskListener;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.apache.commons.io.IOUtils;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Execution implementation of the step "readFile". With an output file the response body is copied straight into
+ * the workspace, through a fixed buffer, so files of any size can be read. If the file was downloaded to the same
+ * place before and is still there, the request is conditional and an unchanged file is not downloaded again.
+ * Without an output file the content is returned as text, up to a size limit.
+ */
+public class ReadFileExecution extends AbstractStepExecution<Object, ReadFileStep> {
+
+    private static final long serialVersionUID = -6195038476284015371L;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Constructor that takes the needed information for the execution of the step.
+     *
+     * @param readFileStep  The step that is going to be executed.
+     * @param context       The step context.
+     * @param bitbucketSite The configured site of bitbucket.
+     */
+    public ReadFileExecution(final ReadFileStep readFileStep, final StepContext context, final BitbucketServer bitbucketSite) {
+        super(readFileStep, context, bitbucketSite);
+    }
+
+    @Override
+    public void validate(final ReadFileStep step) {
+        super.validate(step);
+
+        if (step.getPath() == null || step.getPath().isEmpty()) {
+            throw new IllegalArgumentException("Path is null or empty!");
+        }
+
+        if (step.getMaxContentBytes() <= 0) {
+            throw new IllegalArgumentException("maxContentBytes must be positive");
+        }
+    }
+
+    @Override
+    protected Object run() throws Exception {
+        try {
+            ContentService service = getService(ContentService.class);
+            if (getStep().getOutputFile() == null || getStep().getOutputFile().isEmpty()) {
+                return readContent(service);
+            }
+
+            FilePath workspace = getContext().get(FilePath.class);
+            if (workspace == null) {
+                throw new IllegalStateException("Writing to an output file requires a workspace");
+            }
+            return download(service, workspace.child(getStep().getOutputFile()));
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    private String readContent(final ContentService service) throws IOException {
+        return service.readRawFile(getStep().getProject(), getStep().getRepoSlug(), getStep().getPath(),
+                getStep().getAt(), null, response -> read(bodyOf(response, getStep().getPath()), getStep().getMaxContentBytes(),
+                        getStep().getPath()));
+    }
+
+    private FileResult download(final ContentService service, final FilePath target) throws IOException, InterruptedException {
+        TaskListener listener = getContext().get(TaskListener.class);
+        Computer computer = target.toComputer();
+        String key = getStep().getSite().getUrl() + "|" + getStep().getProject() + "/" + getStep().getRepoSlug() + "/"
+                + getStep().getPath() + "@" + getStep().getAt() + "|" + (computer == null ? "" : computer.getName())
+                + ":" + target.getRemote();
+        Validators known = target.exists() ? Validators.recall(key) : null;
+
+        return service.readRawFile(getStep().getProject(), getStep().getRepoSlug(), getStep().getPath(),
+                getStep().getAt(), known, response -> {
+                    if (response.code() == 304) {
+                        listener.getLogger().println(getStep().getPath() + " is unchanged, keeping " + getStep().getOutputFile());
+                        return new FileResult(getStep().getOutputFile(), length(target), false);
+                    }
+                    //a partly written file must never look current
+                    Validators.remember(key, null);
+                    long size = write(bodyOf(response, getStep().getPath()), target);
+                    Validators.remember(key, Validators.of(response));
+                    listener.getLogger().println("Wrote " + getStep().getPath() + " (" + size + " bytes) to " + getStep().getOutputFile());
+                    return new FileResult(getStep().getOutputFile(), size, true);
+                });
+    }
+
+    /**
+     * Returns the body of a successful response, failing if the server sent none.
+     */
+    static ResponseBody bodyOf(final Response response, final String path) throws IOException {
+        ResponseBody body = response.body();
+        if (body == null) {
+            throw new IOException("Bitbucket answered " + response.code() + " without content for " + path);
+        }
+        return body;
+    }
+
+    /**
+     * Reads a response body as text, failing if it is bigger than allowed.
+     */
+    static String read(final ResponseBody body, final int max, final String path) throws IOException {
+        if (body.contentLength() > max) {
+            throw tooBig(max, path);
+        }
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try (InputStream in = body.byteStream()) {
+            if (IOUtils.copyLarge(in, content, 0, max + 1L, new byte[BUFFER_SIZE]) > max) {
+                throw tooBig(max, path);
+            }
+        }
+        return new String(content.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Copies a response body into a file through a fixed buffer.
+     *
+     * @return The number of bytes written.
+     */
+    static long write(final ResponseBody body, final FilePath target) throws IOException {
+        try (InputStream in = body.byteStream(); OutputStream out = open(target)) {
+            return IOUtils.copyLarge(in, out, new byte[BUFFER_SIZE]);
+        }
+    }
+
+    private static IllegalStateException tooBig(final int max, final String path) {
+        return new IllegalStateException(path + " is bigger than " + max + " bytes, raise maxContentBytes or use outputFile");
+    }
+
+    private static OutputStream open(final FilePath target) throws IOException {
+        try {
+            return target.write();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while opening " + target);
+        }
+    }
+
+    private static long length(final FilePath target) throws IOException {
+        try {
+            return target.length();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading " + target);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.aagproservices.jenkins.bitbucketsteps.step.execution;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketServer;
+import com.aagproservices.jenkins.bitbucketsteps.api.BatchResult;
+import com.aagproservices.jenkins.bitbucketsteps.service.ContentService;
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStepExecution;
+import com.aagproservices.jenkins.bitbucketsteps.step.descriptor.ReadFilesStep;
+import com.aagproservices.jenkins.bitbucketsteps.step.descriptor.RepositoryFile;
+import hudson.FilePath;
+import hudson.model.TaskListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Execution implementation of the step "readFiles". The files are read by a bounded number of threads over the
+ * shared HTTP client. Each one is either streamed into its own file below the output directory, or appended to the
+ * output file as one JSON line holding its content. A file that cannot be read is reported and the others are read
+ * regardless; in the JSON Lines output it appears with an "error" instead of "content".
+ */
+public class ReadFilesExecution extends AbstractStepExecution<BatchResult, ReadFilesStep> {
+
+    private static final long serialVersionUID = 1960470253151392604L;
+
+    /**
+     * Constructor that takes the needed information for the execution of the step.
+     *
+     * @param readFilesStep The step that is going to be executed.
+     * @param context       The step context.
+     * @param bitbucketSite The configured site of bitbucket.
+     */
+    public ReadFilesExecution(final ReadFilesStep readFilesStep, final StepContext context, final BitbucketServer bitbucketSite) {
+        super(readFilesStep, context, bitbucketSite);
+    }
+
+    @Override
+    protected boolean requiresRepository() {
+        //project and repository are given per file
+        return false;
+    }
+
+    @Override
+    public void validate(final ReadFilesStep step) {
+        super.validate(step);
+
+        if (step.getFiles() == null || step.getFiles().isEmpty()) {
+            throw new IllegalArgumentException("No files given");
+        }
+
+        for (RepositoryFile file : step.getFiles()) {
+            if (isEmpty(file.getProject()) || isEmpty(file.getRepoSlug()) || isEmpty(file.getPath())) {
+                throw new IllegalArgumentException("Project, repository slug and path are required for every file: " + file);
+            }
+            if (!isEmpty(step.getOutputDir())) {
+                targetSegments(file);
+            }
+        }
+
+        if (isEmpty(step.getOutputFile()) == isEmpty(step.getOutputDir())) {
+            throw new IllegalArgumentException("Either outputFile or outputDir must be given");
+        }
+
+        if (step.getParallelism() <= 0 || step.getMaxContentBytes() <= 0) {
+            throw new IllegalArgumentException("parallelism and maxContentBytes must be positive");
+        }
+    }
+
+    @Override
+    protected BatchResult run() throws Exception {
+        try {
+            FilePath workspace = getContext().get(FilePath.class);
+            if (workspace == null) {
+                throw new IllegalStateException("Reading files requires a workspace");
+            }
+            TaskListener listener = getContext().get(TaskListener.class);
+            List<RepositoryFile> files = getStep().getFiles();
+            String[] errors = new String[files.size()];
+
+            ExecutorService pool = Executors.newFixedThreadPool(Math.min(getStep().getParallelism(), files.size()),
+                    new NamingThreadFactory(new DaemonThreadFactory(), "bitbucketReadFiles"));
+            Writer jsonLines = isEmpty(getStep().getOutputFile()) ? null : new BufferedWriter(new OutputStreamWriter(
+                    workspace.child(getStep().getOutputFile()).write(), StandardCharsets.UTF_8));
+            FilePath outputDir = isEmpty(getStep().getOutputDir()) ? null : workspace.child(getStep().getOutputDir());
+            try {
+                List<Future<?>> pending = new ArrayList<>();
+                for (int i = 0; i < files.size(); i++) {
+                    int index = i;
+                    pending.add(pool.submit(() -> errors[index] = read(files.get(index), jsonLines, outputDir)));
+                }
+                for (Future<?> future : pending) {
+                    future.get();
+                }
+            } finally {
+                pool.shutdownNow();
+                if (jsonLines != null) {
+                    jsonLines.close();
+                }
+            }
+
+            List<String> succeeded = new ArrayList<>();
+            Map<String, String> failed = new LinkedHashMap<>();
+            for (int i = 0; i < files.size(); i++) {
+                if (errors[i] == null) {
+                    succeeded.add(files.get(i).toString());
+                } else {
+                    failed.put(files.get(i).toString(), errors[i]);
+                    listener.getLogger().println("Could not read " + files.get(i) + ": " + errors[i]);
+                }
+            }
+            listener.getLogger().println("Read " + succeeded.size() + " of " + files.size() + " files");
+            return new BatchResult(succeeded, failed);
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads one file.
+     *
+     * @return Null on success, otherwise the error.
+     */
+    private String read(final RepositoryFile file, final Writer jsonLines, final FilePath outputDir) {
+        ContentService service = getService(ContentService.class);
+        JSONObject line = new JSONObject()
+                .put("project", file.getProject())
+                .put("repoSlug", file.getRepoSlug())
+                .put("path", file.getPath())
+                .put("at", file.getAt());
+        String error = null;
+        try {
+            if (jsonLines == null) {
+                FilePath target = outputDir;
+                for (String segment : targetSegments(file)) {
+                    target = target.child(segment);
+                }
+                service.readRawFile(file.getProject(), file.getRepoSlug(), file.getPath(), file.getAt(), null,
+                        response -> ReadFileExecution.write(ReadFileExecution.bodyOf(response, file.getPath()), target));
+                return null;
+            }
+            line.put("content", service.readRawFile(file.getProject(), file.getRepoSlug(), file.getPath(), file.getAt(),
+                    null, response -> ReadFileExecution.read(ReadFileExecution.bodyOf(response, file.getPath()),
+                            getStep().getMaxContentBytes(), file.getPath())));
+        } catch (Exception e) {
+            error = e.getMessage() == null ? e.toString() : e.getMessage();
+            line.put("error", error);
+            if (jsonLines == null) {
+                return error;
+            }
+        }
+        try {
+            synchronized (jsonLines) {
+                jsonLines.write(line.toString());
+                jsonLines.write('\n');
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write " + getStep().getOutputFile(), e);
+        }
+        return error;
+    }
+
+    /**
+     * Returns the path a file is written to below the output directory, as project, repository slug and the path in
+     * the repository, split into normalized segments.
+     *
+     * @throws IllegalArgumentException If the path would lead out of the output directory.
+     */
+    static List<String> targetSegments(final RepositoryFile file) {
+        List<String> segments = new ArrayList<>();
+        for (String segment : (file.getProject() + "/" + file.getRepoSlug() + "/" + file.getPath()).split("[/\\\\]+")) {
+            if (segment.isEmpty() || ".".equals(segment)) {
+                continue;
+            }
+            if ("..".equals(segment)) {
+                throw new IllegalArgumentException("Cannot write " + file + " below outputDir, '..' is not allowed in its path");
+            }
+            segments.add(segment);
+        }
+        return segments;
+    }
+}
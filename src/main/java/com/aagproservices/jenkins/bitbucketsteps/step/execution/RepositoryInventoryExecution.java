@@ -0,0 +1,155 @@
+package com.aagproservices.jenkins.bitbucketsteps.step.execution;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketServer;
+import com.aagproservices.jenkins.bitbucketsteps.service.RepositoryService;
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStepExecution;
+import com.aagproservices.jenkins.bitbucketsteps.step.descriptor.RepositoryInventoryStep;
+import hudson.FilePath;
+import hudson.model.TaskListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Execution implementation of the step "repositoryInventory". Repositories are listed page by page; each one is
+ * looked up by a bounded number of threads and written to the output file as one JSON line as soon as it is done, so
+ * only the repositories in flight are held in memory. The lines are in completion order. A repository whose details
+ * cannot be read is written with an "error". The tag written is the one that was created or moved last, not the
+ * highest version, which would require listing all tags of every repository. Returns the number of repositories written.
+ */
+public class RepositoryInventoryExecution extends AbstractStepExecution<Integer, RepositoryInventoryStep> {
+
+    private static final long serialVersionUID = 8452810537925044178L;
+
+    private static final int PAGE_SIZE = 100;
+
+    /**
+     * Constructor that takes the needed information for the execution of the step.
+     *
+     * @param repositoryInventoryStep The step that is going to be executed.
+     * @param context                 The step context.
+     * @param bitbucketSite           The configured site of bitbucket.
+     */
+    public RepositoryInventoryExecution(final RepositoryInventoryStep repositoryInventoryStep, final StepContext context, final BitbucketServer bitbucketSite) {
+        super(repositoryInventoryStep, context, bitbucketSite);
+    }
+
+    @Override
+    protected boolean requiresRepository() {
+        //the project is optional and there is no single repository
+        return false;
+    }
+
+    @Override
+    public void validate(final RepositoryInventoryStep step) {
+        super.validate(step);
+
+        if (isEmpty(step.getOutputFile())) {
+            throw new IllegalArgumentException("Output file is null or empty!");
+        }
+
+        if (step.getParallelism() <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+    }
+
+    @Override
+    protected Integer run() throws Exception {
+        try {
+            FilePath workspace = getContext().get(FilePath.class);
+            if (workspace == null) {
+                throw new IllegalStateException("Writing the inventory requires a workspace");
+            }
+            TaskListener listener = getContext().get(TaskListener.class);
+            String project = getStep().getProject() == null || getStep().getProject().isEmpty() ? null : getStep().getProject();
+            int parallelism = getStep().getParallelism();
+
+            //at most two repositories per thread are in flight, so listing never runs far ahead of the lookups
+            Semaphore inFlight = new Semaphore(2 * parallelism);
+            AtomicInteger written = new AtomicInteger();
+            AtomicReference<Exception> writeError = new AtomicReference<>();
+            ExecutorService pool = Executors.newFixedThreadPool(parallelism,
+                    new NamingThreadFactory(new DaemonThreadFactory(), "bitbucketRepositoryInventory"));
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    workspace.child(getStep().getOutputFile()).write(), StandardCharsets.UTF_8))) {
+                RepositoryService service = getService(RepositoryService.class);
+                service.forEachRepository(project, PAGE_SIZE, repository -> {
+                    try {
+                        inFlight.acquire();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                    pool.execute(() -> {
+                        try {
+                            String line = describe(repository).toString();
+                            synchronized (writer) {
+                                writer.write(line);
+                                writer.write('\n');
+                            }
+                            written.incrementAndGet();
+                        } catch (IOException e) {
+                            writeError.compareAndSet(null, e);
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                    return writeError.get() == null;
+                });
+                inFlight.acquire(2 * parallelism);
+            } finally {
+                pool.shutdownNow();
+            }
+            if (writeError.get() != null) {
+                throw new UncheckedIOException("Cannot write " + getStep().getOutputFile(), (IOException) writeError.get());
+            }
+            listener.getLogger().println("Wrote " + written.get() + " repositories to " + getStep().getOutputFile());
+            return written.get();
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    private JSONObject describe(final JSONObject repository) {
+        JSONObject repositoryProject = repository.optJSONObject("project");
+        String projectKey = repositoryProject == null ? null : repositoryProject.optString("key", null);
+        String repoSlug = repository.optString("slug", null);
+        JSONObject line = new JSONObject()
+                .put("project", projectKey)
+                .put("repoSlug", repoSlug)
+                .put("name", repository.optString("name", null))
+                .put("public", repository.optBoolean("public"));
+        try {
+            RepositoryService service = getService(RepositoryService.class);
+            JSONObject defaultBranch = service.getDefaultBranch(projectKey, repoSlug);
+            line.put("defaultBranch", defaultBranch == null ? null : defaultBranch.optString("displayId", null));
+            JSONObject tag = service.getLastModifiedTag(projectKey, repoSlug);
+            if (tag != null) {
+                line.put("lastModifiedTag", tag.optString("displayId", null));
+                line.put("lastModifiedTagCommit", tag.optString("latestCommit", null));
+            }
+            if (getStep().isCountBranches()) {
+                line.put("branchCount", service.countBranches(projectKey, repoSlug));
+            }
+        } catch (RuntimeException e) {
+            line.put("error", e.getMessage() == null ? e.toString() : e.getMessage());
+        }
+        return line;
+    }
+}
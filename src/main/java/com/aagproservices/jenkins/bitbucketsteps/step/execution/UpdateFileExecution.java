@@ -1,19 +1,26 @@
 package com.aagproservices.jenkins.bitbucketsteps.step.execution;
 
 import com.aagproservices.jenkins.bitbucketsteps.BitbucketServer;
+import com.aagproservices.jenkins.bitbucketsteps.api.CommitResult;
+import com.aagproservices.jenkins.bitbucketsteps.api.FileUpdate;
 import com.aagproservices.jenkins.bitbucketsteps.service.ContentService;
+import com.aagproservices.jenkins.bitbucketsteps.service.OpenPullRequestIndex;
 import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStepExecution;
+import com.aagproservices.jenkins.bitbucketsteps.step.ServiceCall;
 import com.aagproservices.jenkins.bitbucketsteps.step.descriptor.UpdateFileStep;
-import hudson.FilePath;
 import org.jenkinsci.plugins.workflow.steps.StepContext;
-import org.json.JSONObject;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * @author Aleks Gekht
  * @version 0.1.0
  * Execution implementation of the step "createTag".
  */
-public class UpdateFileExecution extends AbstractStepExecution<JSONObject, UpdateFileStep> {
+public class UpdateFileExecution extends AbstractStepExecution<CommitResult, UpdateFileStep> {
 
     private static final long serialVersionUID = 7220386183041962984L;
 
@@ -46,18 +53,46 @@ public class UpdateFileExecution extends AbstractStepExecution<JSONObject, Updat
     }
 
     @Override
-    protected JSONObject run() throws Exception {
+    protected CommitResult run() throws Exception {
         try {
-            FilePath path = getContext().get(FilePath.class);
-            return getService(ContentService.class).updateFile(
-                    getStep().getProject(),
-                    getStep().getRepoSlug(),
-                    getStep().getFileUpdate(),
-                    path.getRemote()
-            );
+            return call(ContentService.class, new UpdateFile(getStep().getProject(), getStep().getRepoSlug(),
+                    getStep().getFileUpdate(), getStep().getFields()));
         } catch (Exception e) {
             e.printStackTrace();
             throw e;
         }
     }
+
+    /**
+     * Reads the file where the call runs, so from the agent it is uploaded without passing through the controller.
+     */
+    private static final class UpdateFile implements ServiceCall<ContentService, CommitResult> {
+
+        private static final long serialVersionUID = -7412620931877103505L;
+
+        private final String project;
+        private final String repoSlug;
+        private final FileUpdate fileUpdate;
+        private final List<String> fields;
+
+        private UpdateFile(final String project, final String repoSlug, final FileUpdate fileUpdate, final List<String> fields) {
+            this.project = project;
+            this.repoSlug = repoSlug;
+            this.fileUpdate = fileUpdate;
+            this.fields = fields;
+        }
+
+        @Override
+        public CommitResult call(final ContentService service, final File workspace) {
+            if (workspace == null) {
+                throw new IllegalStateException("Updating a file requires a workspace");
+            }
+            return new CommitResult(service.updateFile(project, repoSlug, fileUpdate, workspace.getPath()), fields);
+        }
+
+        @Override
+        public Collection<String> getChangedRefs() {
+            return Collections.singleton(OpenPullRequestIndex.qualify(fileUpdate.getBranch()));
+        }
+    }
 }
@@ -0,0 +1,234 @@
+package com.aagproservices.jenkins.bitbucketsteps.step.execution;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketServer;
+import com.aagproservices.jenkins.bitbucketsteps.service.ContentService;
+import com.aagproservices.jenkins.bitbucketsteps.session.BitbucketSession;
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStep;
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStepExecution;
+import com.aagproservices.jenkins.bitbucketsteps.step.descriptor.WaitForMergeableStep;
+import com.aagproservices.jenkins.bitbucketsteps.webhook.WebhookSubscriptions;
+import hudson.model.Computer;
+import hudson.model.TaskListener;
+import jenkins.util.Timer;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.json.JSONObject;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Execution implementation of the step "waitForMergeable". Unlike the other executions it does not block a thread
+ * while waiting: every check is scheduled on the Jenkins timer with exponential backoff and jitter, and a webhook
+ * event for the pull request triggers the next check right away. If the pull request does not become mergeable in
+ * time, the step fails with the remaining vetoes.
+ */
+public class WaitForMergeableExecution extends StepExecution {
+
+    private static final long serialVersionUID = -1728861437006529817L;
+
+    private final String project;
+    private final String repoSlug;
+    private final int id;
+    private final boolean merge;
+    private final long timeoutMillis;
+    private final long initialIntervalMillis;
+    private final long maxIntervalMillis;
+
+    private long deadline;
+    private int attempt;
+    private boolean done;
+
+    private transient BitbucketServer bitbucketSite;
+    private transient BitbucketSession session;
+    private transient ContentService service;
+    private transient ScheduledFuture<?> nextCheck;
+    private transient Runnable wakeUp;
+    //guarded by this, only one check runs at a time and a wake-up during a check asks for another one right after it
+    private transient boolean checking;
+    private transient boolean recheck;
+
+    /**
+     * Constructor that takes the needed information for the execution of the step.
+     *
+     * @param step          The step that is going to be executed.
+     * @param context       The step context.
+     * @param bitbucketSite The configured site of bitbucket.
+     */
+    public WaitForMergeableExecution(final WaitForMergeableStep step, final StepContext context, final BitbucketServer bitbucketSite) {
+        super(context);
+        this.session = AbstractStepExecution.sessionOf(context);
+        step.inheritDefaults(session);
+        validate(step);
+        this.project = step.getProject();
+        this.repoSlug = step.getRepoSlug();
+        this.id = step.getId();
+        this.merge = step.isMerge();
+        this.timeoutMillis = TimeUnit.MINUTES.toMillis(step.getTimeoutMinutes());
+        this.initialIntervalMillis = TimeUnit.SECONDS.toMillis(step.getInitialIntervalSeconds());
+        this.maxIntervalMillis = TimeUnit.SECONDS.toMillis(step.getMaxIntervalSeconds());
+        this.bitbucketSite = bitbucketSite;
+    }
+
+    private void validate(final WaitForMergeableStep step) {
+        AbstractStepExecution.validateRepository(step);
+
+        if (step.getId() == 0) {
+            throw new IllegalStateException("Pull request is 0");
+        }
+
+        if (step.getInitialIntervalSeconds() <= 0 || step.getMaxIntervalSeconds() < step.getInitialIntervalSeconds()) {
+            throw new IllegalArgumentException("Poll intervals must be positive and the max interval must not be below the initial one");
+        }
+    }
+
+    @Override
+    public boolean start() throws Exception {
+        deadline = System.currentTimeMillis() + timeoutMillis;
+        subscribe();
+        schedule(0);
+        return false;
+    }
+
+    @Override
+    public void stop(@Nonnull final Throwable cause) throws Exception {
+        finish();
+        getContext().onFailure(cause);
+    }
+
+    @Override
+    public void onResume() {
+        bitbucketSite = AbstractStep.resolveSite();
+        session = AbstractStepExecution.sessionOf(getContext());
+        subscribe();
+        schedule(0);
+    }
+
+    @Override
+    public String getStatus() {
+        return "Waiting for pull request " + id + " to become mergeable, " + attempt + " check(s) so far";
+    }
+
+    private void subscribe() {
+        wakeUp = () -> {
+            synchronized (this) {
+                attempt = 0;
+            }
+            schedule(0);
+        };
+        WebhookSubscriptions.subscribe(WebhookSubscriptions.pullRequestKey(project, repoSlug, id), wakeUp);
+    }
+
+    private synchronized void schedule(final long delayMillis) {
+        if (done) {
+            return;
+        }
+        if (nextCheck != null) {
+            nextCheck.cancel(false);
+        }
+        //the timer threads must not block on HTTP, so the check itself runs on the shared pool
+        nextCheck = Timer.get().schedule(() -> Computer.threadPoolForRemoting.submit(this::check), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Ends the waiting.
+     *
+     * @return False if it had already ended, so the outcome was reported before.
+     */
+    private synchronized boolean finish() {
+        if (done) {
+            return false;
+        }
+        done = true;
+        if (nextCheck != null) {
+            nextCheck.cancel(false);
+        }
+        if (wakeUp != null) {
+            WebhookSubscriptions.unsubscribe(WebhookSubscriptions.pullRequestKey(project, repoSlug, id), wakeUp);
+        }
+        return true;
+    }
+
+    /**
+     * Checks the pull request once. The requests are sent without holding the lock of the execution, so webhook
+     * deliveries waking it up never wait for a slow server.
+     */
+    private void check() {
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            if (checking) {
+                recheck = true;
+                return;
+            }
+            checking = true;
+            recheck = false;
+        }
+        try {
+            TaskListener listener = getContext().get(TaskListener.class);
+            JSONObject mergeStatus = getService().getMergeStatus(project, repoSlug, id);
+            List<String> vetoes = ContentService.getVetoes(mergeStatus);
+
+            if (mergeStatus.optBoolean("canMerge", false)) {
+                if (merge) {
+                    getService().mergePullRequest(project, repoSlug, id);
+                    listener.getLogger().println("Merged pull request " + id);
+                }
+                if (finish()) {
+                    getContext().onSuccess(vetoes);
+                }
+                return;
+            }
+
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                if (finish()) {
+                    getContext().onFailure(new TimeoutException("Pull request " + id + " did not become mergeable within "
+                            + TimeUnit.MILLISECONDS.toMinutes(timeoutMillis) + " minute(s): " + String.join("; ", vetoes)));
+                }
+                return;
+            }
+
+            long delay;
+            //scheduled before the lock is released, a wake-up right after it then replaces this check instead of
+            //being replaced by it
+            synchronized (this) {
+                delay = recheck ? 0 : Math.min(nextDelay(), remaining);
+                attempt++;
+                checking = false;
+                schedule(delay);
+            }
+            listener.getLogger().println("Pull request " + id + " is not mergeable yet (" + String.join("; ", vetoes)
+                    + "), checking again in " + TimeUnit.MILLISECONDS.toSeconds(delay) + "s");
+        } catch (Exception e) {
+            if (finish()) {
+                getContext().onFailure(e);
+            }
+        }
+    }
+
+    /**
+     * Exponential backoff with "equal jitter": half of the delay is fixed, the other half random, so parallel builds
+     * waiting for the same pull request spread out their requests.
+     */
+    private long nextDelay() {
+        long exponential = initialIntervalMillis << Math.min(attempt, 20);
+        long capped = Math.min(maxIntervalMillis, exponential);
+        return capped / 2 + ThreadLocalRandom.current().nextLong(capped / 2 + 1);
+    }
+
+    private ContentService getService() {
+        if (service == null) {
+            service = new ContentService(bitbucketSite);
+            service.setSession(session);
+        }
+        return service;
+    }
+}
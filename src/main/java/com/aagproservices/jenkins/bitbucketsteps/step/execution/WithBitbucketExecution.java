@@ -0,0 +1,81 @@
+package com.aagproservices.jenkins.bitbucketsteps.step.execution;
+
+import com.aagproservices.jenkins.bitbucketsteps.session.BitbucketSession;
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStepExecution;
+import com.aagproservices.jenkins.bitbucketsteps.step.descriptor.WithBitbucketStep;
+import org.jenkinsci.plugins.workflow.steps.BodyExecution;
+import org.jenkinsci.plugins.workflow.steps.BodyExecutionCallback;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+
+import javax.annotation.Nonnull;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Execution implementation of the block step "withBitbucket". The session is handed to the body through the step
+ * context and closed when the body ends, however it ends. Blocks can be nested; an inner block inherits project and
+ * repository of the outer one unless it names its own.
+ */
+public class WithBitbucketExecution extends StepExecution {
+
+    private static final long serialVersionUID = -2986105473328419156L;
+
+    private final String project;
+    private final String repoSlug;
+    private final boolean onAgent;
+
+    private transient BodyExecution body;
+
+    /**
+     * Constructor that takes the needed information for the execution of the step.
+     *
+     * @param step    The step that is going to be executed.
+     * @param context The step context.
+     */
+    public WithBitbucketExecution(final WithBitbucketStep step, final StepContext context) {
+        super(context);
+        if (step.getSite() == null) {
+            throw new IllegalStateException("Given site is null");
+        }
+        step.inheritDefaults(AbstractStepExecution.sessionOf(context));
+        this.project = step.getProject();
+        this.repoSlug = step.getRepoSlug();
+        this.onAgent = step.isOnAgent();
+    }
+
+    @Override
+    public boolean start() throws Exception {
+        BitbucketSession session = new BitbucketSession(project, repoSlug, onAgent);
+        body = getContext().newBodyInvoker()
+                .withContext(session)
+                .withCallback(new Callback(session))
+                .start();
+        return false;
+    }
+
+    @Override
+    public void stop(@Nonnull final Throwable cause) throws Exception {
+        if (body != null) {
+            body.cancel(cause);
+        } else {
+            getContext().onFailure(cause);
+        }
+    }
+
+    private static final class Callback extends BodyExecutionCallback.TailCall {
+
+        private static final long serialVersionUID = 3547801954736629810L;
+
+        private final BitbucketSession session;
+
+        private Callback(final BitbucketSession session) {
+            this.session = session;
+        }
+
+        @Override
+        protected void finished(final StepContext context) {
+            session.close();
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package com.aagproservices.jenkins.bitbucketsteps.train;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketServer;
+import com.aagproservices.jenkins.bitbucketsteps.service.ContentService;
+import hudson.model.Computer;
+import hudson.model.Job;
+import hudson.model.ParametersAction;
+import hudson.model.Result;
+import hudson.model.StringParameterValue;
+import jenkins.model.Jenkins;
+import org.json.JSONObject;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.BadRequestException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Controller-side queue of pull requests waiting to be merged into one target branch. Pull requests are merged in
+ * the order they were queued by a single worker per train, which re-checks all queued pull requests with one paged
+ * listing per round and then merges them back-to-back, keeping track of the target branch head in between. While a
+ * validation build runs, no thread of the train waits for it, see {@link ValidationBuild}.
+ */
+@ExportedBean
+public final class MergeTrain {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MergeTrain.class);
+
+    private static final ConcurrentMap<String, MergeTrain> TRAINS = new ConcurrentHashMap<>();
+
+    private static final int MAX_ROUND_SIZE = 50;
+    private static final long RATE_WINDOW_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final String project;
+    private final String repoSlug;
+    private final String targetBranch;
+
+    private final Deque<Car> queue = new ArrayDeque<>();
+    private final Deque<Long> recentMerges = new ArrayDeque<>();
+    private boolean running;
+    private volatile String head;
+    private long merged;
+    private long rejected;
+    private long totalWaitMillis;
+
+    private MergeTrain(final String project, final String repoSlug, final String targetBranch) {
+        this.project = project;
+        this.repoSlug = repoSlug;
+        this.targetBranch = targetBranch;
+    }
+
+    /**
+     * Returns the train for the given target branch, creating it if necessary.
+     *
+     * @param site         The Bitbucket server the repository lives on.
+     * @param project      Project key of the repository.
+     * @param repoSlug     Repository slug.
+     * @param targetBranch Branch the pull requests are merged into.
+     * @return The train.
+     */
+    public static MergeTrain forBranch(final BitbucketServer site, final String project, final String repoSlug, final String targetBranch) {
+        String key = site.getUrl() + "|" + project + "/" + repoSlug + "|" + targetBranch;
+        return TRAINS.computeIfAbsent(key, k -> new MergeTrain(project, repoSlug, targetBranch));
+    }
+
+    public static Collection<MergeTrain> all() {
+        return TRAINS.values();
+    }
+
+    /**
+     * Queues a pull request.
+     *
+     * @param site          The Bitbucket server to merge on.
+     * @param pullRequestId ID of the pull request.
+     * @param validationJob Optional job that validates a group of pull requests before they are merged.
+     * @param batchSize     Max number of pull requests validated together.
+     * @return Future completed with the merge response, or exceptionally if the pull request was rejected.
+     */
+    public CompletableFuture<JSONObject> enqueue(final BitbucketServer site, final int pullRequestId,
+                                                 final String validationJob, final int batchSize) {
+        Car car = new Car(site, pullRequestId, validationJob, Math.max(1, batchSize));
+        synchronized (this) {
+            queue.addLast(car);
+            if (!running) {
+                running = true;
+                Computer.threadPoolForRemoting.submit(this::run);
+            }
+        }
+        return car.result;
+    }
+
+    /**
+     * Removes a pull request that has not been picked up yet, e.g. because the waiting build was aborted.
+     *
+     * @param pullRequestId ID of the pull request.
+     * @return True if it was still queued.
+     */
+    public synchronized boolean cancel(final int pullRequestId) {
+        Iterator<Car> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            Car car = iterator.next();
+            if (car.pullRequestId == pullRequestId) {
+                iterator.remove();
+                car.result.cancel(false);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public synchronized int positionOf(final int pullRequestId) {
+        int position = 1;
+        for (Car car : queue) {
+            if (car.pullRequestId == pullRequestId) {
+                return position;
+            }
+            position++;
+        }
+        return 0;
+    }
+
+    private void run() {
+        while (true) {
+            List<Car> round = nextRound();
+            if (round.isEmpty()) {
+                return;
+            }
+            try {
+                ContentService service = new ContentService(round.get(0).site);
+                List<Car> ready = recheck(service, round);
+                if (!ready.isEmpty() && ready.get(0).validationJob != null) {
+                    //the worker ends here and picks up again once the validation build is over, the train stays
+                    //running meanwhile so no other worker starts
+                    validate(ready).whenComplete((result, error) -> Computer.threadPoolForRemoting.submit(
+                            () -> validated(service, round, ready, result, error)));
+                    return;
+                }
+                for (Car car : ready) {
+                    merge(service, car);
+                }
+            } catch (Exception e) {
+                failed(round, e);
+            }
+        }
+    }
+
+    private void validated(final ContentService service, final List<Car> round, final List<Car> ready,
+                           final Result result, final Throwable error) {
+        if (error != null) {
+            failed(round, error);
+        } else if (result != Result.SUCCESS) {
+            ready.forEach(car -> reject(car, new BadRequestException("Validation job " + car.validationJob
+                    + " failed for pull requests " + ids(ready) + " into " + targetBranch)));
+        } else {
+            for (Car car : ready) {
+                merge(service, car);
+            }
+        }
+        run();
+    }
+
+    private void failed(final List<Car> round, final Throwable cause) {
+        LOGGER.error("Merge train into " + targetBranch + " failed", cause);
+        round.stream().filter(car -> !car.result.isDone()).forEach(car -> reject(car, cause));
+    }
+
+    /**
+     * Takes the next cars from the front of the queue. Cars that need validation are grouped with following cars of
+     * the same validation job, up to their batch size.
+     */
+    private synchronized List<Car> nextRound() {
+        List<Car> round = new ArrayList<>();
+        Car first = queue.peekFirst();
+        if (first == null) {
+            running = false;
+            return round;
+        }
+        int limit = first.validationJob == null ? MAX_ROUND_SIZE : first.batchSize;
+        while (!queue.isEmpty() && round.size() < limit
+                && Objects.equals(queue.peekFirst().validationJob, first.validationJob)) {
+            round.add(queue.pollFirst());
+        }
+        return round;
+    }
+
+    private List<Car> recheck(final ContentService service, final List<Car> round) {
+        Map<Integer, JSONObject> open = service.getOpenPullRequests(project, repoSlug, "refs/heads/" + targetBranch);
+        List<Car> ready = new ArrayList<>();
+        for (Car car : round) {
+            JSONObject pr = open.get(car.pullRequestId);
+            if (pr == null) {
+                reject(car, new BadRequestException("Pull request " + car.pullRequestId + " is no longer open against " + targetBranch));
+                continue;
+            }
+            JSONObject mergeResult = pr.optJSONObject("properties") == null ? null
+                    : pr.optJSONObject("properties").optJSONObject("mergeResult");
+            if (mergeResult != null && "CONFLICTED".equals(mergeResult.optString("outcome"))) {
+                reject(car, new BadRequestException("Pull request " + car.pullRequestId + " has conflicts with " + targetBranch));
+                continue;
+            }
+            car.version = pr.optInt("version");
+            ready.add(car);
+        }
+        return ready;
+    }
+
+    private CompletableFuture<Result> validate(final List<Car> group) {
+        Job<?, ?> job = Jenkins.get().getItemByFullName(group.get(0).validationJob, Job.class);
+        if (job == null) {
+            throw new IllegalArgumentException("Validation job " + group.get(0).validationJob + " does not exist");
+        }
+        ParametersAction parameters = new ParametersAction(
+                new StringParameterValue("MERGE_TRAIN_PULL_REQUESTS", ids(group)),
+                new StringParameterValue("MERGE_TRAIN_TARGET", targetBranch),
+                new StringParameterValue("MERGE_TRAIN_HEAD", head == null ? "" : head));
+        return ValidationBuild.schedule(job, parameters);
+    }
+
+    private void merge(final ContentService service, final Car car) {
+        try {
+            //the listing of the round already told whether the pull request can be merged
+            JSONObject result = service.mergePullRequest(project, repoSlug, car.pullRequestId, car.version, false);
+            JSONObject properties = result.optJSONObject("properties");
+            JSONObject mergeCommit = properties == null ? null : properties.optJSONObject("mergeCommit");
+            if (mergeCommit != null) {
+                head = mergeCommit.optString("id", head);
+            }
+            synchronized (this) {
+                long now = System.currentTimeMillis();
+                merged++;
+                totalWaitMillis += now - car.enqueued;
+                recentMerges.addLast(now);
+            }
+            car.result.complete(result);
+        } catch (Exception e) {
+            reject(car, e);
+        }
+    }
+
+    private void reject(final Car car, final Throwable cause) {
+        synchronized (this) {
+            rejected++;
+        }
+        car.result.completeExceptionally(cause);
+    }
+
+    private static String ids(final List<Car> cars) {
+        return cars.stream().map(car -> String.valueOf(car.pullRequestId)).collect(Collectors.joining(","));
+    }
+
+    @Exported
+    public String getRepository() {
+        return project + "/" + repoSlug;
+    }
+
+    @Exported
+    public String getTargetBranch() {
+        return targetBranch;
+    }
+
+    /**
+     * Returns the commit the target branch pointed to after the last merge done by this train.
+     *
+     * @return Commit hash, or null if nothing was merged yet.
+     */
+    @Exported
+    public String getHead() {
+        return head;
+    }
+
+    @Exported
+    public synchronized int getQueueLength() {
+        return queue.size();
+    }
+
+    @Exported
+    public synchronized long getMerged() {
+        return merged;
+    }
+
+    @Exported
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Returns the average time between queueing and merging of the merged pull requests.
+     *
+     * @return Average wait in milliseconds.
+     */
+    @Exported
+    public synchronized long getAverageWaitMillis() {
+        return merged == 0 ? 0 : totalWaitMillis / merged;
+    }
+
+    /**
+     * Returns the current queue wait of the pull request at the front of the queue.
+     *
+     * @return Wait in milliseconds.
+     */
+    @Exported
+    public synchronized long getOldestWaitMillis() {
+        Car first = queue.peekFirst();
+        return first == null ? 0 : System.currentTimeMillis() - first.enqueued;
+    }
+
+    @Exported
+    public synchronized int getMergesLastHour() {
+        long cutoff = System.currentTimeMillis() - RATE_WINDOW_MILLIS;
+        while (!recentMerges.isEmpty() && recentMerges.peekFirst() < cutoff) {
+            recentMerges.pollFirst();
+        }
+        return recentMerges.size();
+    }
+
+    private static final class Car {
+        private final BitbucketServer site;
+        private final int pullRequestId;
+        private final String validationJob;
+        private final int batchSize;
+        private final long enqueued = System.currentTimeMillis();
+        private final CompletableFuture<JSONObject> result = new CompletableFuture<>();
+        private int version;
+
+        private Car(final BitbucketServer site, final int pullRequestId, final String validationJob, final int batchSize) {
+            this.site = site;
+            this.pullRequestId = pullRequestId;
+            this.validationJob = validationJob == null || validationJob.isEmpty() ? null : validationJob;
+            this.batchSize = batchSize;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.aagproservices.jenkins.bitbucketsteps.train;
+
+import hudson.Extension;
+import hudson.model.Api;
+import hudson.model.RootAction;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Exposes queue length, wait times and merge rate of all merge trains at
+ * {@code <jenkins-url>/bitbucket-merge-trains/api/json}.
+ */
+@Extension
+@ExportedBean
+public class MergeTrainAction implements RootAction {
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Bitbucket merge trains";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "bitbucket-merge-trains";
+    }
+
+    @Exported
+    public List<MergeTrain> getTrains() {
+        return new ArrayList<>(MergeTrain.all());
+    }
+
+    public Api getApi() {
+        return new Api(this);
+    }
+}
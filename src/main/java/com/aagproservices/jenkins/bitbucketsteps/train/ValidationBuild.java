@@ -0,0 +1,103 @@
+package com.aagproservices.jenkins.bitbucketsteps.train;
+
+import hudson.Extension;
+import hudson.model.Action;
+import hudson.model.InvisibleAction;
+import hudson.model.Job;
+import hudson.model.Queue;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import hudson.model.queue.QueueListener;
+import jenkins.model.ParameterizedJobMixIn;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Marks a build of a validation job scheduled by a {@link MergeTrain} and tells the train when it is over, so no
+ * thread waits for the build meanwhile. Like the trains, the pending builds are known in memory only.
+ */
+public final class ValidationBuild extends InvisibleAction implements Queue.QueueAction {
+
+    private static final ConcurrentMap<String, CompletableFuture<Result>> PENDING = new ConcurrentHashMap<>();
+
+    private final String id = UUID.randomUUID().toString();
+
+    private ValidationBuild() {
+    }
+
+    /**
+     * Schedules a build of a validation job.
+     *
+     * @param job     The validation job.
+     * @param actions Further actions of the build, like its parameters.
+     * @return Future completed with the result of the build once it is over, or with {@link Result#NOT_BUILT} if it
+     * was cancelled while queued.
+     */
+    static CompletableFuture<Result> schedule(final Job<?, ?> job, final Action... actions) {
+        ValidationBuild marker = new ValidationBuild();
+        CompletableFuture<Result> result = new CompletableFuture<>();
+        PENDING.put(marker.id, result);
+        Action[] all = Arrays.copyOf(actions, actions.length + 1);
+        all[actions.length] = marker;
+        if (ParameterizedJobMixIn.scheduleBuild2(job, 0, all) == null) {
+            PENDING.remove(marker.id);
+            result.completeExceptionally(new IllegalStateException("Validation job " + job.getFullName() + " could not be scheduled"));
+        }
+        return result;
+    }
+
+    /**
+     * Every validation gets a build of its own, even if another one with the same parameters is still queued.
+     */
+    @Override
+    public boolean shouldSchedule(final List<Action> actions) {
+        return true;
+    }
+
+    private void completed(final Result result) {
+        CompletableFuture<Result> pending = PENDING.remove(id);
+        if (pending != null) {
+            pending.complete(result);
+        }
+    }
+
+    /**
+     * Reports the result of a validation build when it completes.
+     */
+    @Extension
+    public static class Completion extends RunListener<Run<?, ?>> {
+
+        @Override
+        public void onCompleted(final Run<?, ?> run, @Nonnull final TaskListener listener) {
+            ValidationBuild marker = run.getAction(ValidationBuild.class);
+            if (marker != null) {
+                marker.completed(run.getResult());
+            }
+        }
+    }
+
+    /**
+     * Reports a validation build that was cancelled before it started, which never completes.
+     */
+    @Extension
+    public static class Cancellation extends QueueListener {
+
+        @Override
+        public void onLeft(final Queue.LeftItem item) {
+            ValidationBuild marker = item.isCancelled() ? item.getAction(ValidationBuild.class) : null;
+            if (marker != null) {
+                marker.completed(Result.NOT_BUILT);
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.aagproservices.jenkins.bitbucketsteps.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Reads findings as Code Insights annotations from a SARIF log or from a JSON file of annotations, either a plain
+ * array or an object with an "annotations" array. The input is parsed as a stream and only one finding is held in
+ * memory at a time, so files with any number of findings can be read.
+ */
+public final class AnnotationReader {
+
+    public static final String SARIF = "sarif";
+    public static final String JSON = "json";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int MAX_MESSAGE_LENGTH = 2000;
+
+    /**
+     * Private constructor.
+     */
+    private AnnotationReader() {
+    }
+
+    /**
+     * Reads all findings of a file.
+     *
+     * @param in       The file content, not closed.
+     * @param format   {@link #SARIF} or {@link #JSON}.
+     * @param consumer Receives each finding as an annotation.
+     * @return Number of annotations read.
+     * @throws IOException If the input cannot be read or is not of the given format.
+     */
+    public static int read(final InputStream in, final String format, final Consumer<JSONObject> consumer) throws IOException {
+        try (JsonParser parser = MAPPER.getFactory().createParser(in)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            JsonToken first = parser.nextToken();
+            if (SARIF.equals(format)) {
+                expect(first, JsonToken.START_OBJECT, parser);
+                return readSarif(parser, consumer);
+            }
+            if (first == JsonToken.START_ARRAY) {
+                return readArray(parser, consumer, false);
+            }
+            expect(first, JsonToken.START_OBJECT, parser);
+            int count = 0;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("annotations".equals(field)) {
+                    expect(value, JsonToken.START_ARRAY, parser);
+                    count += readArray(parser, consumer, false);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return count;
+        }
+    }
+
+    private static int readSarif(final JsonParser parser, final Consumer<JSONObject> consumer) throws IOException {
+        int count = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (!"runs".equals(field)) {
+                parser.skipChildren();
+                continue;
+            }
+            expect(value, JsonToken.START_ARRAY, parser);
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String runField = parser.getCurrentName();
+                    JsonToken runValue = parser.nextToken();
+                    if ("results".equals(runField)) {
+                        expect(runValue, JsonToken.START_ARRAY, parser);
+                        count += readArray(parser, consumer, true);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    private static int readArray(final JsonParser parser, final Consumer<JSONObject> consumer, final boolean sarif) throws IOException {
+        int count = 0;
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            JSONObject finding = new JSONObject(MAPPER.readValue(parser, Map.class));
+            consumer.accept(sarif ? fromSarif(finding) : fromJson(finding));
+            count++;
+        }
+        return count;
+    }
+
+    private static JSONObject fromSarif(final JSONObject result) {
+        JSONObject annotation = new JSONObject();
+        JSONObject message = result.optJSONObject("message");
+        String text = message == null ? null : message.optString("text", null);
+        String ruleId = result.optString("ruleId", null);
+        annotation.put("message", truncate(text != null ? text : ruleId != null ? ruleId : "Finding"));
+        annotation.put("severity", severityOf(result.optString("level", "warning")));
+        if (ruleId != null) {
+            annotation.put("externalId", ruleId);
+        }
+        JSONArray locations = result.optJSONArray("locations");
+        JSONObject physical = locations == null || locations.length() == 0 ? null
+                : locations.getJSONObject(0).optJSONObject("physicalLocation");
+        if (physical != null) {
+            JSONObject artifact = physical.optJSONObject("artifactLocation");
+            if (artifact != null && artifact.has("uri")) {
+                annotation.put("path", artifact.getString("uri"));
+            }
+            JSONObject region = physical.optJSONObject("region");
+            if (region != null && region.has("startLine")) {
+                annotation.put("line", region.getInt("startLine"));
+            }
+        }
+        return annotation;
+    }
+
+    private static JSONObject fromJson(final JSONObject finding) {
+        finding.put("message", truncate(finding.optString("message", "Finding")));
+        if (!finding.has("severity")) {
+            finding.put("severity", "MEDIUM");
+        }
+        return finding;
+    }
+
+    private static String severityOf(final String level) {
+        switch (level) {
+            case "error":
+                return "HIGH";
+            case "warning":
+                return "MEDIUM";
+            default:
+                return "LOW";
+        }
+    }
+
+    private static String truncate(final String message) {
+        return message.length() > MAX_MESSAGE_LENGTH ? message.substring(0, MAX_MESSAGE_LENGTH - 3) + "..." : message;
+    }
+
+    private static void expect(final JsonToken actual, final JsonToken expected, final JsonParser parser) throws IOException {
+        if (actual != expected) {
+            throw new IOException("Expected " + expected + " but found " + actual + " at " + parser.getCurrentLocation());
+        }
+    }
+}
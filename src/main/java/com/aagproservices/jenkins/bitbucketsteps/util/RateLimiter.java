@@ -0,0 +1,44 @@
+package com.aagproservices.jenkins.bitbucketsteps.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Spaces out operations shared by several threads so that no more than a given number start per second.
+ */
+public final class RateLimiter {
+
+    private final long intervalNanos;
+    private long nextSlot = System.nanoTime();
+
+    /**
+     * Constructor.
+     *
+     * @param permitsPerSecond Max operations per second, must be positive.
+     */
+    public RateLimiter(final double permitsPerSecond) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("Rate must be positive");
+        }
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+    }
+
+    /**
+     * Blocks until the next operation may start.
+     *
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public void acquire() throws InterruptedException {
+        long slot;
+        synchronized (this) {
+            long now = System.nanoTime();
+            slot = Math.max(now, nextSlot);
+            nextSlot = slot + intervalNanos;
+        }
+        long wait = slot - System.nanoTime();
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+}
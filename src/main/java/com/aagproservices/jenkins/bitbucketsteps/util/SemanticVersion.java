@@ -0,0 +1,144 @@
+package com.aagproservices.jenkins.bitbucketsteps.util;
+
+import java.math.BigInteger;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Semantic version parsed from a tag name like "v1.4.2" or "v2.0.0-rc.1". The patch number is optional, so
+ * two-part versions like "v1.4" are accepted as well.
+ */
+public final class SemanticVersion implements Comparable<SemanticVersion> {
+
+    private static final Pattern VERSION = Pattern.compile(
+            "(0|[1-9]\\d*)\\.(0|[1-9]\\d*)(?:\\.(0|[1-9]\\d*))?(?:-([0-9A-Za-z.-]+))?(?:\\+[0-9A-Za-z.-]+)?");
+    private static final Pattern NUMERIC = Pattern.compile("\\d+");
+
+    private final BigInteger major;
+    private final BigInteger minor;
+    private final BigInteger patch;
+    private final String preRelease;
+
+    private SemanticVersion(final BigInteger major, final BigInteger minor, final BigInteger patch, final String preRelease) {
+        this.major = major;
+        this.minor = minor;
+        this.patch = patch;
+        this.preRelease = preRelease;
+    }
+
+    /**
+     * Parses the version from a tag name.
+     *
+     * @param prefix  Prefix in front of the version, e.g. "v". May be empty.
+     * @param tagName The tag name.
+     * @return The version, or null if the tag name is not prefix followed by a semantic version.
+     */
+    public static SemanticVersion parse(final String prefix, final String tagName) {
+        if (tagName == null || !tagName.startsWith(prefix)) {
+            return null;
+        }
+        Matcher matcher = VERSION.matcher(tagName);
+        if (!matcher.region(prefix.length(), tagName.length()).matches()) {
+            return null;
+        }
+        return new SemanticVersion(
+                new BigInteger(matcher.group(1)),
+                new BigInteger(matcher.group(2)),
+                matcher.group(3) == null ? BigInteger.ZERO : new BigInteger(matcher.group(3)),
+                matcher.group(4));
+    }
+
+    public boolean isPreRelease() {
+        return preRelease != null;
+    }
+
+    /**
+     * Returns the next version, dropping any pre-release part.
+     *
+     * @param part Which part to increment: "major", "minor" or "patch".
+     * @return The next version.
+     */
+    public SemanticVersion next(final String part) {
+        switch (part.toLowerCase(Locale.ROOT)) {
+            case "major":
+                return new SemanticVersion(major.add(BigInteger.ONE), BigInteger.ZERO, BigInteger.ZERO, null);
+            case "minor":
+                return new SemanticVersion(major, minor.add(BigInteger.ONE), BigInteger.ZERO, null);
+            case "patch":
+                return isPreRelease()
+                        ? new SemanticVersion(major, minor, patch, null)
+                        : new SemanticVersion(major, minor, patch.add(BigInteger.ONE), null);
+            default:
+                throw new IllegalArgumentException("Version part " + part + " is not supported, use major, minor or patch");
+        }
+    }
+
+    /**
+     * Returns the lexicographically smallest tag name any higher version could have. When tags are listed in
+     * descending alphabetical order, nothing after a name below this bound can be a higher version.
+     *
+     * @param prefix Prefix in front of the version.
+     * @return The bound.
+     */
+    public String lowestNameOfHigherVersion(final String prefix) {
+        return prefix + (major.signum() > 0 ? "1" : "0");
+    }
+
+    @Override
+    public int compareTo(final SemanticVersion other) {
+        int result = major.compareTo(other.major);
+        if (result == 0) {
+            result = minor.compareTo(other.minor);
+        }
+        if (result == 0) {
+            result = patch.compareTo(other.patch);
+        }
+        if (result == 0) {
+            result = comparePreRelease(preRelease, other.preRelease);
+        }
+        return result;
+    }
+
+    private static int comparePreRelease(final String left, final String right) {
+        if (left == null || right == null) {
+            //a release is higher than any of its pre-releases
+            return left == null ? (right == null ? 0 : 1) : -1;
+        }
+        String[] leftParts = left.split("\\.");
+        String[] rightParts = right.split("\\.");
+        for (int i = 0; i < Math.min(leftParts.length, rightParts.length); i++) {
+            boolean leftNumeric = NUMERIC.matcher(leftParts[i]).matches();
+            boolean rightNumeric = NUMERIC.matcher(rightParts[i]).matches();
+            int result;
+            if (leftNumeric && rightNumeric) {
+                result = new BigInteger(leftParts[i]).compareTo(new BigInteger(rightParts[i]));
+            } else if (leftNumeric != rightNumeric) {
+                result = leftNumeric ? -1 : 1;
+            } else {
+                result = leftParts[i].compareTo(rightParts[i]);
+            }
+            if (result != 0) {
+                return result;
+            }
+        }
+        return Integer.compare(leftParts.length, rightParts.length);
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return other instanceof SemanticVersion && compareTo((SemanticVersion) other) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return major + "." + minor + "." + patch + (preRelease == null ? "" : "-" + preRelease);
+    }
+}
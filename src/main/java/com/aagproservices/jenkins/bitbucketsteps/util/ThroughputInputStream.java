@@ -0,0 +1,91 @@
+package com.aagproservices.jenkins.bitbucketsteps.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Counts the bytes read through it and reports progress and throughput to a log while a transfer runs, and a summary
+ * once the stream is closed.
+ */
+public class ThroughputInputStream extends FilterInputStream {
+
+    private static final long REPORT_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    private final PrintStream log;
+    private final String name;
+    private final long startedAt = System.currentTimeMillis();
+    private long lastReportAt = startedAt;
+    private long bytes;
+    private boolean closed;
+
+    /**
+     * Constructor.
+     *
+     * @param in   The stream to measure.
+     * @param log  Where progress is reported.
+     * @param name Name of the transfer used in the reports.
+     */
+    public ThroughputInputStream(final InputStream in, final PrintStream log, final String name) {
+        super(in);
+        this.log = log;
+        this.name = name;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int read = super.read();
+        if (read >= 0) {
+            count(1);
+        }
+        return read;
+    }
+
+    @Override
+    public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+        int read = super.read(buffer, offset, length);
+        if (read > 0) {
+            count(read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        long skipped = super.skip(n);
+        count(skipped);
+        return skipped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        super.close();
+        if (!closed) {
+            closed = true;
+            log.println(name + ": " + bytes + " bytes in " + (System.currentTimeMillis() - startedAt) + " ms, "
+                    + rate(bytes, startedAt));
+        }
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    private void count(final long read) {
+        bytes += read;
+        long now = System.currentTimeMillis();
+        if (now - lastReportAt >= REPORT_INTERVAL_MILLIS) {
+            lastReportAt = now;
+            log.println(name + ": " + bytes + " bytes so far, " + rate(bytes, startedAt));
+        }
+    }
+
+    private static String rate(final long bytes, final long since) {
+        long millis = Math.max(1, System.currentTimeMillis() - since);
+        return (bytes * 1000 / millis) + " bytes/s";
+    }
+}
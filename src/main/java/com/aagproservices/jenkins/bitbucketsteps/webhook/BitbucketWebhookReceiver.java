@@ -0,0 +1,150 @@
+package com.aagproservices.jenkins.bitbucketsteps.webhook;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketServer;
+import hudson.Extension;
+import hudson.model.UnprotectedRootAction;
+import hudson.security.csrf.CrumbExclusion;
+import hudson.util.Secret;
+import jenkins.model.Jenkins;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.IOUtils;
+import org.json.JSONException;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.HttpResponses;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Endpoint that receives Bitbucket webhook events, so cached refs and pull requests of a repository are dropped and
+ * steps waiting on it are woken up as soon as something changes. Point a Bitbucket webhook with the events
+ * "Repository: Push" and the pull request events to {@code <jenkins-url>/bitbucket-steps-hook/} and give it the secret
+ * configured for the plugin. The endpoint is reachable without authentication, so it accepts nothing while no secret
+ * is configured.
+ */
+@Extension
+public class BitbucketWebhookReceiver implements UnprotectedRootAction {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BitbucketWebhookReceiver.class);
+
+    public static final String URL_NAME = "bitbucket-steps-hook";
+    private static final String EVENT_KEY_HEADER = "X-Event-Key";
+    private static final String REQUEST_ID_HEADER = "X-Request-Id";
+    private static final String SIGNATURE_HEADER = "X-Hub-Signature";
+    private static final String SIGNATURE_PREFIX = "sha256=";
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return null;
+    }
+
+    @Override
+    public String getUrlName() {
+        return URL_NAME;
+    }
+
+    /**
+     * Accepts a webhook event whose payload carries a valid signature. The event is only queued here, see
+     * {@link WebhookEventQueue}.
+     *
+     * @param req The request holding the event.
+     * @return Empty OK response, also for events that are not of interest; 403 if no secret is configured, 401 for a
+     * missing or bad signature, 400 for a malformed payload and 503 if the backlog is full.
+     * @throws IOException If the payload could not be read.
+     */
+    @RequirePOST
+    public HttpResponse doIndex(final StaplerRequest req) throws IOException {
+        String eventKey = req.getHeader(EVENT_KEY_HEADER);
+        Secret secret = Jenkins.get().getDescriptorByType(BitbucketServer.BitbucketServerDescriptor.class).getWebhookSecret();
+        if (secret == null || secret.getPlainText().isEmpty()) {
+            LOGGER.warn("Rejecting webhook event " + eventKey + ", no webhook secret is configured");
+            return HttpResponses.error(HttpServletResponse.SC_FORBIDDEN, "No webhook secret configured");
+        }
+        byte[] payload = IOUtils.toByteArray(req.getInputStream());
+        if (!hasValidSignature(secret.getPlainText(), payload, req.getHeader(SIGNATURE_HEADER))) {
+            LOGGER.warn("Rejecting webhook event " + eventKey + " with missing or invalid signature");
+            return HttpResponses.error(HttpServletResponse.SC_UNAUTHORIZED, "Invalid signature");
+        }
+        if (eventKey == null) {
+            return HttpResponses.ok();
+        }
+
+        WebhookEvent event;
+        try {
+            event = WebhookEvent.parse(eventKey, new String(payload, StandardCharsets.UTF_8));
+        } catch (JSONException ex) {
+            LOGGER.warn("Ignoring malformed webhook event " + eventKey + ": " + ex.getMessage());
+            return HttpResponses.error(HttpServletResponse.SC_BAD_REQUEST, "Malformed payload");
+        }
+        if (event != null && !WebhookEventQueue.offer(req.getHeader(REQUEST_ID_HEADER), event)) {
+            LOGGER.warn("Dropping webhook event " + eventKey + ", too many events are waiting");
+            return HttpResponses.error(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Too many events");
+        }
+        return HttpResponses.ok();
+    }
+
+    private static boolean hasValidSignature(final String secret, final byte[] payload, final String signature) {
+        if (signature == null || !signature.startsWith(SIGNATURE_PREFIX)) {
+            return false;
+        }
+        byte[] expected = sign(secret, payload).getBytes(StandardCharsets.US_ASCII);
+        byte[] actual = signature.substring(SIGNATURE_PREFIX.length()).toLowerCase(Locale.ROOT).getBytes(StandardCharsets.US_ASCII);
+        return MessageDigest.isEqual(expected, actual);
+    }
+
+    /**
+     * Signs a payload the way Bitbucket does.
+     *
+     * @param secret  The webhook secret.
+     * @param payload The payload.
+     * @return Hex encoded HMAC-SHA256 of the payload.
+     */
+    public static String sign(final String secret, final byte[] payload) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return Hex.encodeHexString(mac.doFinal(payload));
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
+    /**
+     * Bitbucket cannot provide a crumb, so the endpoint is excluded from CSRF protection.
+     */
+    @Extension
+    public static class CrumbExclusionImpl extends CrumbExclusion {
+
+        @Override
+        public boolean process(final HttpServletRequest req, final HttpServletResponse resp, final FilterChain chain)
+                throws IOException, ServletException {
+            String pathInfo = req.getPathInfo();
+            if (pathInfo != null && pathInfo.startsWith("/" + URL_NAME)) {
+                chain.doFilter(req, resp);
+                return true;
+            }
+            return false;
+        }
+    }
+}
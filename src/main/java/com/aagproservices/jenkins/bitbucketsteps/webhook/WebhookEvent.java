@@ -0,0 +1,122 @@
+package com.aagproservices.jenkins.bitbucketsteps.webhook;
+
+import com.aagproservices.jenkins.bitbucketsteps.cache.ResponseCache;
+import com.aagproservices.jenkins.bitbucketsteps.service.OpenPullRequestIndex;
+import com.aagproservices.jenkins.bitbucketsteps.service.RefIndex;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * A webhook event reduced to what the plugin reacts to: the repository it concerns and, for pull request events, the
+ * pull request, or for pushes the refs that changed. Events with the same {@link #getKey() key} concern the same thing
+ * and can be coalesced with {@link #merge(WebhookEvent, WebhookEvent)}.
+ */
+final class WebhookEvent {
+
+    static final String REFS_CHANGED = "repo:refs_changed";
+    static final String PULL_REQUEST_PREFIX = "pr:";
+
+    private final String project;
+    private final String repoSlug;
+    private final Integer pullRequestId;
+    private final Set<String> changedRefs;
+
+    private WebhookEvent(final String project, final String repoSlug, final Integer pullRequestId, final Set<String> changedRefs) {
+        this.project = project;
+        this.repoSlug = repoSlug;
+        this.pullRequestId = pullRequestId;
+        this.changedRefs = changedRefs;
+    }
+
+    /**
+     * Parses an event.
+     *
+     * @param eventKey Value of the X-Event-Key header.
+     * @param payload  The payload.
+     * @return The event, or null if it is of no interest.
+     * @throws JSONException If the payload does not have the structure of the event.
+     */
+    static WebhookEvent parse(final String eventKey, final String payload) throws JSONException {
+        if (REFS_CHANGED.equals(eventKey)) {
+            JSONObject json = new JSONObject(payload);
+            JSONObject repository = json.getJSONObject("repository");
+            //without the list of changes all refs have to be listed again
+            Set<String> changedRefs = null;
+            JSONArray changes = json.optJSONArray("changes");
+            for (int i = 0; changes != null && i < changes.length(); i++) {
+                String refId = changes.getJSONObject(i).optString("refId", null);
+                if (refId == null) {
+                    changedRefs = null;
+                    break;
+                }
+                if (changedRefs == null) {
+                    changedRefs = new TreeSet<>();
+                }
+                changedRefs.add(refId);
+            }
+            return new WebhookEvent(repository.getJSONObject("project").getString("key"), repository.getString("slug"),
+                    null, changedRefs);
+        }
+        if (eventKey.startsWith(PULL_REQUEST_PREFIX)) {
+            JSONObject pullRequest = new JSONObject(payload).getJSONObject("pullRequest");
+            JSONObject repository = pullRequest.getJSONObject("toRef").getJSONObject("repository");
+            return new WebhookEvent(repository.getJSONObject("project").getString("key"), repository.getString("slug"),
+                    pullRequest.getInt("id"), null);
+        }
+        return null;
+    }
+
+    /**
+     * Combines two events with the same key into one with the effect of both.
+     *
+     * @param first  The earlier event.
+     * @param second The later event.
+     * @return The combined event, never the later one itself.
+     */
+    static WebhookEvent merge(final WebhookEvent first, final WebhookEvent second) {
+        if (first.pullRequestId != null || first.changedRefs == null) {
+            return first;
+        }
+        if (second.changedRefs == null) {
+            return new WebhookEvent(first.project, first.repoSlug, null, null);
+        }
+        Set<String> changedRefs = new TreeSet<>(first.changedRefs);
+        changedRefs.addAll(second.changedRefs);
+        return new WebhookEvent(first.project, first.repoSlug, null, changedRefs);
+    }
+
+    /**
+     * Returns a key that is equal for all events concerning the same pull request or the refs of the same repository.
+     *
+     * @return The key.
+     */
+    String getKey() {
+        if (pullRequestId != null) {
+            return WebhookSubscriptions.pullRequestKey(project, repoSlug, pullRequestId);
+        }
+        return WebhookSubscriptions.repositoryKey(project, repoSlug) + "#refs";
+    }
+
+    /**
+     * Drops everything cached about the repository and wakes up the steps waiting on it.
+     *
+     * @return The number of callbacks that were run.
+     */
+    int process() {
+        ResponseCache.getInstance().invalidate(project, repoSlug);
+        int woken = 0;
+        if (pullRequestId != null) {
+            OpenPullRequestIndex.invalidate(project, repoSlug);
+            woken += WebhookSubscriptions.fire(WebhookSubscriptions.pullRequestKey(project, repoSlug, pullRequestId));
+        } else {
+            RefIndex.invalidate(project, repoSlug, changedRefs);
+        }
+        return woken + WebhookSubscriptions.fire(WebhookSubscriptions.repositoryKey(project, repoSlug));
+    }
+}
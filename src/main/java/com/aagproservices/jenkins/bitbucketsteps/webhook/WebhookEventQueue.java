@@ -0,0 +1,97 @@
+package com.aagproservices.jenkins.bitbucketsteps.webhook;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Processes webhook events on a single thread with a bounded backlog, so the request threads only parse and enqueue.
+ * An event is merged into one for the same pull request or repository that is still waiting, and dropped if Bitbucket
+ * redelivers a request that was already accepted. When the backlog is full new events are rejected instead of piling up.
+ */
+final class WebhookEventQueue {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WebhookEventQueue.class);
+
+    private static final int CAPACITY = 1000;
+    private static final int REMEMBERED_REQUESTS = 1000;
+
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(CAPACITY),
+            new NamingThreadFactory(new DaemonThreadFactory(), "Bitbucket webhook events"));
+
+    private static final ConcurrentMap<String, WebhookEvent> PENDING = new ConcurrentHashMap<>();
+
+    private static final Map<String, Boolean> RECENT_REQUESTS = Collections.synchronizedMap(
+            new LinkedHashMap<String, Boolean>(16, 0.75f, false) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, Boolean> eldest) {
+                    return size() > REMEMBERED_REQUESTS;
+                }
+            });
+
+    /**
+     * Private constructor.
+     */
+    private WebhookEventQueue() {
+    }
+
+    /**
+     * Queues an event.
+     *
+     * @param requestId ID of the delivery as sent by Bitbucket, may be null.
+     * @param event     The event.
+     * @return False if the backlog is full, true if the event was queued or is a duplicate.
+     */
+    static boolean offer(final String requestId, final WebhookEvent event) {
+        if (requestId != null && RECENT_REQUESTS.put(requestId, Boolean.TRUE) != null) {
+            LOGGER.debug("Ignoring redelivered webhook request " + requestId);
+            return true;
+        }
+        String key = event.getKey();
+        if (PENDING.merge(key, event, WebhookEvent::merge) != event) {
+            return true;
+        }
+        try {
+            EXECUTOR.execute(() -> {
+                //removed first, so an event arriving while this one is processed is queued again
+                WebhookEvent pending = PENDING.remove(key);
+                try {
+                    int woken = pending.process();
+                    LOGGER.debug("Webhook event for " + key + " woke " + woken + " waiting step(s)");
+                } catch (RuntimeException ex) {
+                    LOGGER.warn("Error while processing webhook event for " + key, ex);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException ex) {
+            PENDING.remove(key);
+            if (requestId != null) {
+                RECENT_REQUESTS.remove(requestId);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Tells whether all queued events have been processed.
+     *
+     * @return True if nothing is queued or running.
+     */
+    static boolean isIdle() {
+        return EXECUTOR.getQueue().isEmpty() && EXECUTOR.getActiveCount() == 0;
+    }
+}
@@ -0,0 +1,73 @@
+package com.aagproservices.jenkins.bitbucketsteps.webhook;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * @author Aleks Gekht
+ * @version 0.1.0
+ * Registry of callbacks that want to be woken up when a webhook event for a given resource arrives, e.g. a waiting
+ * step that should re-check a pull request right away instead of at its next poll.
+ */
+public final class WebhookSubscriptions {
+
+    private static final ConcurrentMap<String, Set<Runnable>> SUBSCRIBERS = new ConcurrentHashMap<>();
+
+    /**
+     * Private constructor.
+     */
+    private WebhookSubscriptions() {
+    }
+
+    /**
+     * Builds the subscription key for a pull request.
+     *
+     * @param project       Project key of the repository.
+     * @param repoSlug      Repository slug.
+     * @param pullRequestId ID of the pull request.
+     * @return The subscription key.
+     */
+    public static String pullRequestKey(final String project, final String repoSlug, final int pullRequestId) {
+        return repositoryKey(project, repoSlug) + "#pr:" + pullRequestId;
+    }
+
+    /**
+     * Builds the subscription key for a repository. Project keys and slugs are matched case-insensitively.
+     *
+     * @param project  Project key of the repository.
+     * @param repoSlug Repository slug.
+     * @return The subscription key.
+     */
+    public static String repositoryKey(final String project, final String repoSlug) {
+        return project.toUpperCase(Locale.ROOT) + "/" + repoSlug.toLowerCase(Locale.ROOT);
+    }
+
+    public static void subscribe(final String key, final Runnable callback) {
+        SUBSCRIBERS.computeIfAbsent(key, k -> new CopyOnWriteArraySet<>()).add(callback);
+    }
+
+    public static void unsubscribe(final String key, final Runnable callback) {
+        SUBSCRIBERS.computeIfPresent(key, (k, callbacks) -> {
+            callbacks.remove(callback);
+            return callbacks.isEmpty() ? null : callbacks;
+        });
+    }
+
+    /**
+     * Runs all callbacks registered for the given key.
+     *
+     * @param key The subscription key.
+     * @return The number of callbacks that were run.
+     */
+    public static int fire(final String key) {
+        Set<Runnable> callbacks = SUBSCRIBERS.get(key);
+        if (callbacks == null) {
+            return 0;
+        }
+        callbacks.forEach(Runnable::run);
+        return callbacks.size();
+    }
+}
@@ -0,0 +1,211 @@
+package com.aagproservices.jenkins.bitbucketsteps;
+
+import com.aagproservices.jenkins.bitbucketsteps.webhook.BitbucketWebhookReceiver;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jenkins.model.Jenkins;
+import net.sf.json.JSONObject;
+import org.apache.commons.io.IOUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal local stand-in for a Bitbucket server. Tests register canned replies per method and path, and can make the
+ * stand-in emit webhook callbacks the way Bitbucket would.
+ *
+ * @author Aleks Gekht
+ */
+public class BitbucketStandIn implements Closeable {
+
+    public static final String REPO_RESOURCE = "/rest/api/1.0/projects/PRJ/repos/repo/";
+    public static final String WEBHOOK_SECRET = "webhook-secret";
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Map<String, Route> routes = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> hits = new ConcurrentHashMap<>();
+    private final AtomicInteger passwordChecks = new AtomicInteger();
+    private volatile long passwordCheckMillis;
+    private volatile String webhookSecret;
+    private volatile int timeoutSeconds = 10;
+
+    public interface Route {
+        Reply handle(String method, String query, String body) throws IOException;
+    }
+
+    public static final class Reply {
+        private final int status;
+        private final String body;
+
+        public Reply(final int status, final String body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        public static Reply json(final String body) {
+            return new Reply(200, body);
+        }
+    }
+
+    public BitbucketStandIn() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::dispatch);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public void on(final String method, final String path, final Route route) {
+        routes.put(method + " " + path, route);
+    }
+
+    public int hits(final String method, final String path) {
+        AtomicInteger count = hits.get(method + " " + path);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * Makes each request authenticated with a password take the given time, like the password hashing Bitbucket does,
+     * and answer with a session cookie that later requests can authenticate with instead.
+     */
+    public void simulatePasswordCheck(final long millis) {
+        passwordCheckMillis = millis;
+    }
+
+    /**
+     * Sets the request timeout {@link #configurePlugin()} configures, e.g. for a request that is held across a restart.
+     */
+    public void setTimeout(final int seconds) {
+        timeoutSeconds = seconds;
+    }
+
+    public int passwordChecks() {
+        return passwordChecks.get();
+    }
+
+    /**
+     * Points the global plugin configuration to this stand-in, with {@link #WEBHOOK_SECRET} as webhook secret.
+     */
+    public void configurePlugin() throws Exception {
+        configurePlugin(WEBHOOK_SECRET);
+    }
+
+    /**
+     * Points the global plugin configuration to this stand-in with the given webhook secret, null for none.
+     */
+    public void configurePlugin(final String webhookSecret) throws Exception {
+        this.webhookSecret = webhookSecret;
+        BitbucketServer.BitbucketServerDescriptor descriptor =
+                Jenkins.get().getDescriptorByType(BitbucketServer.BitbucketServerDescriptor.class);
+        JSONObject json = new JSONObject()
+                .element("url", getUrl())
+                .element("username", "user")
+                .element("password", "secret")
+                .element("timeout", timeoutSeconds)
+                .element("poolSize", 5);
+        if (webhookSecret != null) {
+            json.element("webhookSecret", webhookSecret);
+        }
+        descriptor.configure(null, json);
+    }
+
+    /**
+     * Posts a webhook event to the given Jenkins the way Bitbucket does, signed with the configured secret.
+     *
+     * @return The HTTP status Jenkins answered with.
+     */
+    public int sendWebhook(final URL jenkinsUrl, final String eventKey, final String payload) throws IOException {
+        return sendWebhook(jenkinsUrl, eventKey, payload, webhookSecret == null ? Collections.emptyMap()
+                : Collections.singletonMap("X-Hub-Signature", "sha256=" + BitbucketWebhookReceiver.sign(webhookSecret,
+                        payload.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    /**
+     * Posts a webhook event with exactly the given additional headers, e.g. X-Request-Id or X-Hub-Signature.
+     *
+     * @return The HTTP status Jenkins answered with.
+     */
+    public int sendWebhook(final URL jenkinsUrl, final String eventKey, final String payload,
+                           final Map<String, String> headers) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(jenkinsUrl, "bitbucket-steps-hook/").openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json; charset=UTF-8");
+        connection.setRequestProperty("X-Event-Key", eventKey);
+        headers.forEach(connection::setRequestProperty);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(payload.getBytes(StandardCharsets.UTF_8));
+        }
+        return connection.getResponseCode();
+    }
+
+    public static String pullRequestEvent(final int id) {
+        return "{\"pullRequest\":{\"id\":" + id + ",\"toRef\":{\"id\":\"refs/heads/master\",\"repository\":"
+                + "{\"slug\":\"repo\",\"project\":{\"key\":\"PRJ\"}}}}}";
+    }
+
+    private void dispatch(final HttpExchange exchange) throws IOException {
+        String key = exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath();
+        hits.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+        if (exchange.getRequestHeaders().containsKey("Authorization")) {
+            passwordChecks.incrementAndGet();
+            if (passwordCheckMillis > 0) {
+                try {
+                    Thread.sleep(passwordCheckMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                exchange.getResponseHeaders().add("Set-Cookie", "BITBUCKETSESSIONID=" + passwordChecks.get() + "; Path=/; HttpOnly");
+            }
+        }
+        Route route = routes.get(key);
+        Reply reply = isXsrfRejected(exchange)
+                ? new Reply(403, "{\"errors\":[{\"message\":\"XSRF check failed\"}]}")
+                : route == null
+                ? new Reply(404, "{\"errors\":[{\"message\":\"No route for " + key + "\"}]}")
+                : route.handle(exchange.getRequestMethod(), exchange.getRequestURI().getQuery(),
+                        IOUtils.toString(exchange.getRequestBody(), StandardCharsets.UTF_8));
+        byte[] body = reply.body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(reply.status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+        exchange.close();
+    }
+
+    /**
+     * Tells whether Bitbucket would reject the request as cross-site: a form, multipart or text request that is
+     * authenticated with a session cookie only and does not opt out of the check.
+     */
+    private static boolean isXsrfRejected(final HttpExchange exchange) {
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        boolean form = contentType != null && (contentType.startsWith("multipart/")
+                || contentType.startsWith("application/x-www-form-urlencoded") || contentType.startsWith("text/plain"));
+        return form && !exchange.getRequestHeaders().containsKey("Authorization")
+                && !"no-check".equals(exchange.getRequestHeaders().getFirst("X-Atlassian-Token"));
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,34 @@
+package com.aagproservices.jenkins.bitbucketsteps.cache;
+
+import okhttp3.Request;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that callers of the response cache cannot change what other callers get.
+ *
+ * @author Aleks Gekht
+ */
+public class ResponseCacheTest {
+
+    @Test
+    public void everyCallerGetsItsOwnCopy() throws Exception {
+        Request request = new Request.Builder()
+                .url("https://bitbucket.example.com/rest/api/1.0/projects/COPY/repos/repo/pull-requests/1").get().build();
+        JSONObject stored = new JSONObject("{\"id\":1,\"version\":3,\"reviewers\":[{\"user\":{\"name\":\"jdoe\"}}]}");
+        ResponseCache cache = ResponseCache.getInstance();
+        cache.store(request, null, stored, stored.toString().length());
+        stored.put("version", 4);
+
+        JSONObject first = cache.lookup(request).getBody();
+        first.put("version", 5);
+        first.getJSONArray("reviewers").getJSONObject(0).put("approved", true);
+
+        JSONObject second = cache.lookup(request).getBody();
+        assertEquals(3, second.getInt("version"));
+        assertEquals(false, second.getJSONArray("reviewers").getJSONObject(0).has("approved"));
+        cache.invalidate("COPY", "repo");
+    }
+}
@@ -0,0 +1,39 @@
+package com.aagproservices.jenkins.bitbucketsteps.service;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Tests how paths given to the generic API step are split into the REST API and the resource below it.
+ *
+ * @author Aleks Gekht
+ */
+public class ApiServiceTest {
+
+    @Test
+    public void pathsOutsideRestAreBelowTheCoreApi() {
+        assertArrayEquals(new String[]{"/rest/api/1.0", "projects/PRJ/repos"}, ApiService.split("projects/PRJ/repos"));
+        assertArrayEquals(new String[]{"/rest/api/1.0", "projects/PRJ/repos"}, ApiService.split("/projects/PRJ/repos"));
+        assertArrayEquals(new String[]{"/rest/api/1.0", "users?filter=jo"}, ApiService.split("users?filter=jo"));
+    }
+
+    @Test
+    public void pathsFromTheRootNameTheirApi() {
+        assertArrayEquals(new String[]{"/rest/branch-utils/1.0", "projects/PRJ/repos/repo/branches"},
+                ApiService.split("/rest/branch-utils/1.0/projects/PRJ/repos/repo/branches"));
+        assertArrayEquals(new String[]{"/rest/api/latest", "dashboard/pull-requests?state=OPEN"},
+                ApiService.split("rest/api/latest/dashboard/pull-requests?state=OPEN"));
+        assertArrayEquals(new String[]{"/rest/insights/1.0", ""}, ApiService.split("/rest/insights/1.0/"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void pathWithoutApiVersionIsRefused() {
+        ApiService.split("/rest/insights");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void pathWithoutResourceIsRefused() {
+        ApiService.split("/rest/insights/1.0");
+    }
+}
@@ -0,0 +1,53 @@
+package com.aagproservices.jenkins.bitbucketsteps.service;
+
+import okhttp3.Request;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests which requests are answered from the disk cache of immutable responses.
+ *
+ * @author Aleks Gekht
+ */
+public class BaseServiceTest {
+
+    private static final String SHA = "a00945762949b7787df8f5d1ac7f3a7d52f0d6a6";
+    private static final String OTHER_SHA = "0123456789abcdef0123456789abcdef01234567";
+    private static final String REPO = "https://bitbucket.example.com/context/rest/api/1.0/projects/PRJ/repos/repo/";
+
+    @Test
+    public void contentAndDiffsAtCommitsAreImmutable() {
+        assertTrue(BaseService.isImmutable(get(REPO + "browse/pom.xml?at=" + SHA)));
+        assertTrue(BaseService.isImmutable(get(REPO + "raw/CHANGELOG.md?at=" + SHA)));
+        assertTrue(BaseService.isImmutable(get(REPO + "archive?format=zip&at=" + SHA)));
+        assertTrue(BaseService.isImmutable(get(REPO + "commits/" + SHA)));
+        assertTrue(BaseService.isImmutable(get(REPO + "commits/" + SHA + "/diff/pom.xml?since=" + OTHER_SHA)));
+        assertTrue(BaseService.isImmutable(get(REPO + "diff/pom.xml?until=" + SHA)));
+        assertTrue(BaseService.isImmutable(get(REPO + "compare/diff?from=" + SHA + "&to=" + OTHER_SHA)));
+    }
+
+    @Test
+    public void mutableResourcesAtCommitsAreNotImmutable() {
+        assertFalse(BaseService.isImmutable(get(REPO + "commits/" + SHA + "/comments")));
+        assertFalse(BaseService.isImmutable(get(REPO + "commits/" + SHA + "/builds")));
+        assertFalse(BaseService.isImmutable(get(REPO + "commits?until=" + SHA)));
+        assertFalse(BaseService.isImmutable(get(REPO + "pull-requests?at=" + SHA)));
+        assertFalse(BaseService.isImmutable(get("https://bitbucket.example.com/rest/build-status/1.0/commits/" + SHA)));
+        assertFalse(BaseService.isImmutable(get("https://bitbucket.example.com/rest/insights/1.0/projects/PRJ/repos/repo/commits/"
+                + SHA + "/reports/lint")));
+    }
+
+    @Test
+    public void revisionsOtherThanFullCommitsAreNotImmutable() {
+        assertFalse(BaseService.isImmutable(get(REPO + "browse/pom.xml?at=refs/heads/master")));
+        assertFalse(BaseService.isImmutable(get(REPO + "raw/pom.xml?at=a009457")));
+        assertFalse(BaseService.isImmutable(get(REPO + "diff/pom.xml?until=" + SHA + "&since=master")));
+        assertFalse(BaseService.isImmutable(get(REPO + "compare/diff?from=" + SHA + "&to=master")));
+    }
+
+    private static Request get(final String url) {
+        return new Request.Builder().url(url).get().build();
+    }
+}
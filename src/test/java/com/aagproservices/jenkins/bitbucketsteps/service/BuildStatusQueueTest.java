@@ -0,0 +1,113 @@
+package com.aagproservices.jenkins.bitbucketsteps.service;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketServer;
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketStandIn;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the build status queue collapses updates of the same status, waits before sending them and retries
+ * failed ones before a flush returns.
+ *
+ * @author Aleks Gekht
+ */
+public class BuildStatusQueueTest {
+
+    private static final String STATUSES = "/rest/build-status/1.0/commits/";
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private BitbucketStandIn bitbucket;
+    private BuildStatusService service;
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        bitbucket = new BitbucketStandIn();
+        service = new BuildStatusService(new BitbucketServer(new URL(bitbucket.getUrl()), "user", "secret", 10, 5));
+    }
+
+    @After
+    public void tearDown() {
+        bitbucket.close();
+    }
+
+    @Test
+    public void updatesOfTheSameStatusAreCoalesced() throws Exception {
+        String commit = "c0a1e5ced0000000000000000000000000000001";
+        recordStatuses(commit, 0);
+
+        service.submitBuildStatus(commit, status("build", "INPROGRESS"));
+        service.submitBuildStatus(commit, status("build", "INPROGRESS"));
+        service.submitBuildStatus(commit, status("lint", "SUCCESSFUL"));
+        service.submitBuildStatus(commit, status("build", "SUCCESSFUL"));
+        BuildStatusQueue.flush();
+
+        assertEquals(2, bitbucket.hits("POST", STATUSES + commit));
+        assertTrue(sent.contains("build=SUCCESSFUL"));
+        assertTrue(sent.contains("lint=SUCCESSFUL"));
+    }
+
+    @Test
+    public void updatesLingerBeforeTheyAreSent() throws Exception {
+        String commit = "11a6e40000000000000000000000000000000002";
+        recordStatuses(commit, 0);
+
+        service.submitBuildStatus(commit, status("build", "INPROGRESS"));
+        assertEquals(0, bitbucket.hits("POST", STATUSES + commit));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (bitbucket.hits("POST", STATUSES + commit) == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(100);
+        }
+        assertEquals(1, bitbucket.hits("POST", STATUSES + commit));
+    }
+
+    @Test
+    public void flushWaitsForRetries() throws Exception {
+        String commit = "7e7a1e5000000000000000000000000000000003";
+        recordStatuses(commit, 1);
+
+        service.submitBuildStatus(commit, status("build", "FAILED"));
+        BuildStatusQueue.flush();
+
+        assertEquals(2, bitbucket.hits("POST", STATUSES + commit));
+        assertEquals("build=FAILED", sent.get(0));
+    }
+
+    /**
+     * Records the statuses sent for the commit, after failing the given number of requests.
+     */
+    private void recordStatuses(final String commit, final int failures) {
+        int[] remaining = {failures};
+        bitbucket.on("POST", STATUSES + commit, (method, query, body) -> {
+            synchronized (remaining) {
+                if (remaining[0] > 0) {
+                    remaining[0]--;
+                    return new BitbucketStandIn.Reply(503, "{\"errors\":[{\"message\":\"Unavailable\"}]}");
+                }
+            }
+            String key = body.replaceAll(".*\"key\":\"([^\"]*)\".*", "$1");
+            String state = body.replaceAll(".*\"state\":\"([^\"]*)\".*", "$1");
+            sent.add(key + "=" + state);
+            return new BitbucketStandIn.Reply(204, "");
+        });
+    }
+
+    private static JSONObject status(final String key, final String state) throws Exception {
+        return new JSONObject().put("key", key).put("state", state).put("url", "https://jenkins.example.com/job/1/");
+    }
+}
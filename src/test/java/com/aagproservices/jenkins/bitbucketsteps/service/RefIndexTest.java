@@ -0,0 +1,213 @@
+package com.aagproservices.jenkins.bitbucketsteps.service;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketServer;
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketStandIn;
+import com.aagproservices.jenkins.bitbucketsteps.cache.ResponseCache;
+import com.aagproservices.jenkins.bitbucketsteps.util.SemanticVersion;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the on-disk ref index: scans over the mapped file, version ranges, incremental refreshes and reopening the
+ * latest generation of the file.
+ *
+ * @author Aleks Gekht
+ */
+public class RefIndexTest {
+
+    private static final String TAGS = BitbucketStandIn.REPO_RESOURCE + "tags";
+    private static final String COMMIT = "0123456789abcdef0123456789abcdef01234567";
+    private static final String OTHER_COMMIT = "fedcba9876543210fedcba9876543210fedcba98";
+    private static final String BASE_NAME = "index";
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private BitbucketStandIn bitbucket;
+    private ContentService service;
+    //tag name to the commit it points to
+    private final Map<String, String> tags = new ConcurrentSkipListMap<>();
+    private final AtomicInteger fullListings = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        bitbucket = new BitbucketStandIn();
+        service = new ContentService(new BitbucketServer(new URL(bitbucket.getUrl()), "user", "secret", 10, 5));
+        ResponseCache.getInstance().invalidate("PRJ", "repo");
+        bitbucket.on("GET", TAGS, (method, query, body) -> {
+            String filter = query.replaceAll(".*(?:^|&)filterText=([^&]*).*|.*", "$1");
+            if (filter.isEmpty()) {
+                fullListings.incrementAndGet();
+            }
+            StringBuilder values = new StringBuilder();
+            tags.forEach((name, commit) -> {
+                if (name.contains(filter)) {
+                    values.append(values.length() == 0 ? "" : ",").append("{\"id\":\"refs/tags/").append(name)
+                            .append("\",\"displayId\":\"").append(name).append("\",\"latestCommit\":\"").append(commit).append("\"}");
+                }
+            });
+            return BitbucketStandIn.Reply.json("{\"values\":[" + values + "],\"isLastPage\":true}");
+        });
+    }
+
+    @After
+    public void tearDown() {
+        bitbucket.close();
+    }
+
+    @Test
+    public void prefixScanVisitsMatchingRefsInNameOrder() throws Exception {
+        addTags("v1.0.0", "v1.10.0", "v1.2.0", "release-1", "w0");
+        RefIndex index = refreshedIndex();
+
+        assertEquals(Arrays.asList("v1.0.0", "v1.10.0", "v1.2.0"), scan(index, "v1.", Integer.MAX_VALUE));
+        assertEquals(Arrays.asList("v1.0.0", "v1.10.0"), scan(index, "v1.", 2));
+        assertEquals(5, scan(index, "", Integer.MAX_VALUE).size());
+        assertTrue(scan(index, "x", Integer.MAX_VALUE).isEmpty());
+        assertEquals(COMMIT, index.lookup("release-1"));
+        assertNull(index.lookup("release"));
+    }
+
+    @Test
+    public void latestVersionStaysInTheRange() throws Exception {
+        addTags("v1.9.0", "v1.10.0", "v2.0.0-rc.1", "v2.0.0", "v2.1.0", "v3", "vnext");
+        RefIndex index = refreshedIndex();
+
+        assertEquals("v2.1.0", index.findLatestVersion("v", null, null, false).getKey());
+        assertEquals("v1.10.0", index.findLatestVersion("v", null, version("2.0.0"), false).getKey());
+        assertEquals("v2.0.0-rc.1", index.findLatestVersion("v", null, version("2.0.0"), true).getKey());
+        assertEquals("v2.0.0", index.findLatestVersion("v", version("2.0.0"), version("2.1.0"), false).getKey());
+        assertNull(index.findLatestVersion("v", version("3.0.0"), null, false));
+        assertEquals(COMMIT, index.findLatestVersion("v", version("1.9.0"), version("1.10.0"), false).getValue());
+    }
+
+    @Test
+    public void incrementalRefreshMergesChangesAndDeletes() throws Exception {
+        addTags("v1.0.0", "v1.1.0", "v1.2.0");
+        RefIndex index = refreshedIndex();
+
+        tags.remove("v1.0.0");
+        tags.put("v1.1.0", OTHER_COMMIT);
+        tags.put("v1.3.0", COMMIT);
+        tags.put("v1.4.0", COMMIT);
+        index.changed(Arrays.asList("refs/tags/v1.0.0", "refs/tags/v1.1.0", "refs/tags/v1.3.0", "refs/heads/v1.4.0"));
+        assertEquals(Long.MAX_VALUE, index.getAgeMillis());
+        index.refresh(service, 60000);
+
+        assertEquals(1, fullListings.get());
+        assertEquals(Arrays.asList("v1.1.0", "v1.2.0", "v1.3.0"), scan(index, "", Integer.MAX_VALUE));
+        assertEquals(3, index.size());
+        assertNull(index.lookup("v1.0.0"));
+        assertEquals(OTHER_COMMIT, index.lookup("v1.1.0"));
+        //a branch of the same name is no change of the tags
+        assertNull(index.lookup("v1.4.0"));
+        assertTrue(index.getAgeMillis() < 60000);
+    }
+
+    @Test
+    public void unknownChangesListAllRefsAgain() throws Exception {
+        addTags("v1.0.0");
+        RefIndex index = refreshedIndex();
+
+        tags.put("v1.1.0", COMMIT);
+        ResponseCache.getInstance().invalidate("PRJ", "repo");
+        index.changed(null);
+        index.refresh(service, 60000);
+
+        assertEquals(2, fullListings.get());
+        assertEquals(COMMIT, index.lookup("v1.1.0"));
+    }
+
+    @Test
+    public void unknownRefsOfAnotherKindLeaveTheIndexAsItIs() throws Exception {
+        addTags("v1.0.0");
+        RefIndex index = refreshedIndex();
+
+        index.changed(Arrays.asList("refs/heads/"));
+        assertTrue(index.getAgeMillis() < 60000);
+
+        index.changed(Arrays.asList("refs/tags/"));
+        ResponseCache.getInstance().invalidate("PRJ", "repo");
+        index.refresh(service, 60000);
+        assertEquals(2, fullListings.get());
+    }
+
+    @Test
+    public void reopensTheLatestGeneration() throws Exception {
+        addTags("v1.0.0", "v1.1.0");
+        RefIndex index = refreshedIndex();
+        tags.put("v1.2.0", OTHER_COMMIT);
+        index.changed(Arrays.asList("refs/tags/v1.2.0"));
+        index.refresh(service, 60000);
+
+        //an older generation left behind by a crash, and a newer file that is no index at all
+        File[] written = indexFiles();
+        assertEquals(1, written.length);
+        File older = new File(folder.getRoot(), BASE_NAME + ".1.idx");
+        Files.copy(written[0].toPath(), older.toPath());
+        File garbage = new File(folder.getRoot(), BASE_NAME + "." + Long.MAX_VALUE + ".idx");
+        Files.write(garbage.toPath(), "garbage".getBytes(StandardCharsets.UTF_8));
+
+        RefIndex reopened = new RefIndex(folder.getRoot(), BASE_NAME, "PRJ", "repo", "tags");
+        assertEquals(3, reopened.size());
+        assertEquals(OTHER_COMMIT, reopened.lookup("v1.2.0"));
+        assertTrue(reopened.getAgeMillis() < 60000);
+        assertArrayEquals(written, indexFiles());
+        assertEquals(1, fullListings.get());
+    }
+
+    private RefIndex refreshedIndex() {
+        RefIndex index = new RefIndex(folder.getRoot(), BASE_NAME, "PRJ", "repo", "tags");
+        assertEquals(Long.MAX_VALUE, index.getAgeMillis());
+        index.refresh(service, 60000);
+        return index;
+    }
+
+    private void addTags(final String... names) {
+        for (String name : names) {
+            tags.put(name, COMMIT);
+        }
+    }
+
+    private File[] indexFiles() {
+        File[] files = folder.getRoot().listFiles((dir, name) -> name.startsWith(BASE_NAME + "."));
+        Arrays.sort(files);
+        return files;
+    }
+
+    private static List<String> scan(final RefIndex index, final String prefix, final int limit) {
+        List<String> names = new ArrayList<>();
+        index.forEachWithPrefix(prefix, (name, commit) -> {
+            names.add(name);
+            return names.size() < limit;
+        });
+        return names;
+    }
+
+    private static SemanticVersion version(final String version) {
+        return SemanticVersion.parse("", version);
+    }
+}
@@ -0,0 +1,120 @@
+package com.aagproservices.jenkins.bitbucketsteps.step;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketStandIn;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the step "bitbucketApi" against a local stand-in server: resources of other REST APIs than the core one,
+ * and all pages of a paged resource, returned as one array or streamed to a file one value per line.
+ *
+ * @author Aleks Gekht
+ */
+public class ApiStepTest {
+
+    private static final String BRANCHES = "/rest/branch-utils/1.0/projects/PRJ/repos/repo/branches";
+    private static final String REPOS = "/rest/api/1.0/projects/PRJ/repos";
+    private static final int REPO_COUNT = 7;
+    private static final Pattern START = Pattern.compile("(?:^|&)start=(\\d+)");
+    private static final Pattern LIMIT = Pattern.compile("(?:^|&)limit=(\\d+)");
+    private static final Pattern SLUG = Pattern.compile("\"slug\":\"([^\"]+)\"");
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private BitbucketStandIn bitbucket;
+    private final List<String> queries = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        bitbucket = new BitbucketStandIn();
+        bitbucket.configurePlugin();
+        bitbucket.on("GET", REPOS, (method, query, body) -> {
+            queries.add(query);
+            int start = intParameter(START, query);
+            int end = Math.min(REPO_COUNT, start + intParameter(LIMIT, query));
+            StringBuilder values = new StringBuilder();
+            for (int i = start + 1; i <= end; i++) {
+                values.append(values.length() == 0 ? "" : ",").append("{\"slug\":\"repo-").append(i).append("\"}");
+            }
+            return BitbucketStandIn.Reply.json("{\"values\":[" + values + "],\"isLastPage\":" + (end >= REPO_COUNT)
+                    + (end < REPO_COUNT ? ",\"nextPageStart\":" + end : "") + "}");
+        });
+        bitbucket.on("POST", BRANCHES, (method, query, body) ->
+                BitbucketStandIn.Reply.json("{\"displayId\":\"feature\",\"request\":" + body + "}"));
+    }
+
+    @After
+    public void tearDown() {
+        bitbucket.close();
+    }
+
+    @Test
+    public void callsResourcesOfOtherRestApis() throws Exception {
+        WorkflowRun run = api("def created = bitbucketApi(path: '" + BRANCHES + "', method: 'POST',"
+                + " body: '{\"name\":\"feature\"}')\n"
+                + "echo \"created=${created}\"");
+
+        j.assertLogContains("created={\"displayId\":\"feature\",\"request\":{\"name\":\"feature\"}}", run);
+        assertEquals(1, bitbucket.hits("POST", BRANCHES));
+    }
+
+    @Test
+    public void allPagesAreReturnedAsOneArray() throws Exception {
+        WorkflowRun run = api("def repos = bitbucketApi(path: 'projects/PRJ/repos', allPages: true, pageSize: 3)\n"
+                + "echo \"repos=${repos}\"");
+
+        j.assertLogContains("repos=[{\"slug\":\"repo-1\"},", run);
+        j.assertLogContains("{\"slug\":\"repo-7\"}]", run);
+        assertEquals(3, bitbucket.hits("GET", REPOS));
+    }
+
+    @Test
+    public void allPagesAreStreamedOneValuePerLine() throws Exception {
+        WorkflowRun run = api("node {\n"
+                + "  def file = bitbucketApi(path: 'projects/PRJ/repos', allPages: true, pageSize: 3, outputFile: 'repos.jsonl')\n"
+                + "  echo \"size=${file.size}\"\n"
+                + "}");
+
+        String written = j.jenkins.getWorkspaceFor(run.getParent()).child("repos.jsonl").readToString();
+        j.assertLogContains("size=" + written.length(), run);
+        String[] lines = written.split("\n");
+        assertEquals(REPO_COUNT, lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            Matcher slug = SLUG.matcher(lines[i]);
+            assertTrue(lines[i], slug.find());
+            assertEquals("repo-" + (i + 1), slug.group(1));
+        }
+        //the pages were fetched one after another, each with the page size asked for
+        assertEquals(3, queries.size());
+        for (int page = 0; page < queries.size(); page++) {
+            assertEquals(queries.get(page), page * 3, intParameter(START, queries.get(page)));
+            assertEquals(queries.get(page), 3, intParameter(LIMIT, queries.get(page)));
+        }
+    }
+
+    private WorkflowRun api(final String script) throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class, "api");
+        job.setDefinition(new CpsFlowDefinition(script, true));
+        return j.assertBuildStatusSuccess(job.scheduleBuild2(0));
+    }
+
+    private static int intParameter(final Pattern parameter, final String query) {
+        Matcher matcher = parameter.matcher(query == null ? "" : query);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : 0;
+    }
+}
@@ -0,0 +1,86 @@
+package com.aagproservices.jenkins.bitbucketsteps.step;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketStandIn;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the step "bitbucketChangedPaths" against a local stand-in server.
+ *
+ * @author Aleks Gekht
+ */
+public class ChangedPathsStepTest {
+
+    private static final String CHANGES = BitbucketStandIn.REPO_RESOURCE + "compare/changes";
+    private static final String PULL_REQUEST = BitbucketStandIn.REPO_RESOURCE + "pull-requests/1";
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private BitbucketStandIn bitbucket;
+    private final List<String> compared = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        bitbucket = new BitbucketStandIn();
+        bitbucket.configurePlugin();
+        bitbucket.on("GET", CHANGES, (method, query, body) -> compared.add(query) && query.contains("start=0")
+                //a rename reports the old path next to the new one, and a later page repeats a path
+                ? BitbucketStandIn.Reply.json("{\"values\":[{\"path\":{\"toString\":\"lib/b.txt\"},"
+                        + "\"srcPath\":{\"toString\":\"lib/a.txt\"}},{\"path\":{\"toString\":\"lib/a.txt\"}}],"
+                        + "\"isLastPage\":false,\"nextPageStart\":2}")
+                : BitbucketStandIn.Reply.json("{\"values\":[{\"path\":{\"toString\":\"lib/b.txt\"}},"
+                        + "{\"path\":{\"toString\":\"app/c.txt\"}}],\"isLastPage\":true}"));
+    }
+
+    @After
+    public void tearDown() {
+        bitbucket.close();
+    }
+
+    @Test
+    public void duplicatePathsDoNotEndTheListing() throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class, "changes");
+        job.setDefinition(new CpsFlowDefinition(
+                "def paths = bitbucketChangedPaths(project: 'PRJ', repoSlug: 'repo', from: 'feature', to: 'master')\n"
+                        + "echo \"paths=${paths}\"", true));
+        WorkflowRun run = j.assertBuildStatusSuccess(job.scheduleBuild2(0));
+
+        j.assertLogContains("paths=[app/c.txt, lib/a.txt, lib/b.txt]", run);
+        assertEquals(2, bitbucket.hits("GET", CHANGES));
+    }
+
+    @Test
+    public void pullRequestIsReadAgainAfterAPush() throws Exception {
+        //every read of the pull request finds a new commit on its source branch, as if pushed to in between
+        AtomicInteger pushes = new AtomicInteger();
+        bitbucket.on("GET", PULL_REQUEST, (method, query, body) -> BitbucketStandIn.Reply.json(
+                "{\"id\":1,\"version\":1,\"fromRef\":{\"latestCommit\":\"" + commit(pushes.incrementAndGet())
+                        + "\"},\"toRef\":{\"latestCommit\":\"" + commit(0) + "\"}}"));
+        WorkflowJob job = j.createProject(WorkflowJob.class, "changes");
+        job.setDefinition(new CpsFlowDefinition(
+                "bitbucketChangedPaths(project: 'PRJ', repoSlug: 'repo', pullRequestId: 1)\n"
+                        + "bitbucketChangedPaths(project: 'PRJ', repoSlug: 'repo', pullRequestId: 1)", true));
+        j.assertBuildStatusSuccess(job.scheduleBuild2(0));
+
+        assertEquals(2, bitbucket.hits("GET", PULL_REQUEST));
+        assertTrue(compared.stream().anyMatch(query -> query.contains("from=" + commit(2))));
+    }
+
+    private static String commit(final int number) {
+        return String.format("%040d", number);
+    }
+}
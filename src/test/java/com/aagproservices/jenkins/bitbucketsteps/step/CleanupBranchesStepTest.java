@@ -0,0 +1,141 @@
+package com.aagproservices.jenkins.bitbucketsteps.step;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketStandIn;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the step "bitbucketCleanupBranches" against a local stand-in server.
+ *
+ * @author Aleks Gekht
+ */
+public class CleanupBranchesStepTest {
+
+    private static final String BRANCHES = BitbucketStandIn.REPO_RESOURCE + "branches";
+    private static final String DELETE = "/rest/branch-utils/1.0/projects/PRJ/repos/repo/branches";
+    private static final String COMMIT = "0123456789abcdef0123456789abcdef01234567";
+    private static final String NEW_COMMIT = "fedcba9876543210fedcba9876543210fedcba98";
+    private static final String AHEAD_BEHIND = "com.atlassian.bitbucket.server.bitbucket-branch:ahead-behind-metadata-provider";
+    private static final int PAGE_SIZE = 2;
+    private static final Pattern START = Pattern.compile("(?:^|&)start=(\\d+)");
+    private static final Pattern NAME = Pattern.compile("\"name\":\"refs/heads/([^\"]+)\"");
+    private static final Pattern END_POINT = Pattern.compile("\"endPoint\":\"([^\"]+)\"");
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private BitbucketStandIn bitbucket;
+    //branch name to the commit it points to
+    private final Map<String, String> branches = new ConcurrentSkipListMap<>();
+    //a branch that gets a new commit right after it was listed
+    private volatile String movedAfterListing;
+
+    @Before
+    public void setUp() throws Exception {
+        bitbucket = new BitbucketStandIn();
+        bitbucket.configurePlugin();
+        //pages are cut from the branches that exist at the time of the request, like the server does
+        bitbucket.on("GET", BRANCHES, (method, query, body) -> {
+            Matcher matcher = START.matcher(query);
+            int start = matcher.find() ? Integer.parseInt(matcher.group(1)) : 0;
+            List<String> names = new ArrayList<>(branches.keySet());
+            int end = Math.min(names.size(), start + PAGE_SIZE);
+            StringBuilder values = new StringBuilder();
+            for (String branch : names.subList(Math.min(start, end), end)) {
+                values.append(values.length() == 0 ? "" : ",").append("{\"id\":\"refs/heads/").append(branch)
+                        .append("\",\"displayId\":\"").append(branch).append("\",\"latestCommit\":\"")
+                        .append(branches.get(branch)).append("\",\"metadata\":{\"").append(AHEAD_BEHIND)
+                        .append("\":{\"ahead\":0,\"behind\":1}}}");
+                if (branch.equals(movedAfterListing)) {
+                    branches.put(branch, NEW_COMMIT);
+                }
+            }
+            return BitbucketStandIn.Reply.json("{\"values\":[" + values + "],\"isLastPage\":" + (end >= names.size())
+                    + (end < names.size() ? ",\"nextPageStart\":" + end : "") + "}");
+        });
+        //like the server, a branch that no longer points to the given end point is not deleted
+        bitbucket.on("DELETE", DELETE, (method, query, body) -> {
+            Matcher name = NAME.matcher(body);
+            Matcher endPoint = END_POINT.matcher(body);
+            if (!name.find()) {
+                return new BitbucketStandIn.Reply(400, "{\"errors\":[{\"message\":\"No branch given\"}]}");
+            }
+            if (endPoint.find() && !endPoint.group(1).equals(branches.get(name.group(1)))) {
+                return new BitbucketStandIn.Reply(409, "{\"errors\":[{\"message\":\"Branch moved\"}]}");
+            }
+            branches.remove(name.group(1));
+            return new BitbucketStandIn.Reply(204, "");
+        });
+    }
+
+    @After
+    public void tearDown() {
+        bitbucket.close();
+    }
+
+    @Test
+    public void deletesMatchingBranchesOnAllPages() throws Exception {
+        addBranches("feature/a", "feature/b", "feature/c", "feature/d", "feature/e");
+
+        WorkflowRun run = cleanup("includePattern: 'feature/.*'");
+
+        j.assertLogContains("Deleted 5 branches", run);
+        assertTrue(branches.isEmpty());
+        assertEquals(3, bitbucket.hits("GET", BRANCHES));
+        assertEquals(5, bitbucket.hits("DELETE", DELETE));
+    }
+
+    @Test
+    public void branchThatMovedAfterItWasSelectedIsKept() throws Exception {
+        addBranches("feature/a", "feature/b", "feature/c");
+        movedAfterListing = "feature/b";
+
+        WorkflowRun run = cleanup("includePattern: 'feature/.*'");
+
+        j.assertLogContains("Could not delete feature/b", run);
+        j.assertLogContains("Deleted 2 branches", run);
+        assertEquals(NEW_COMMIT, branches.get("feature/b"));
+        assertEquals(1, branches.size());
+    }
+
+    @Test
+    public void mergeTargetGivenAsRefIsKept() throws Exception {
+        addBranches("feature/a", "release/1.x");
+
+        WorkflowRun run = cleanup("mergedInto: 'refs/heads/release/1.x'");
+
+        j.assertLogContains("Deleted 1 branches", run);
+        assertTrue(branches.containsKey("release/1.x"));
+        assertEquals(1, branches.size());
+    }
+
+    private void addBranches(final String... names) {
+        for (String name : names) {
+            branches.put(name, COMMIT);
+        }
+    }
+
+    private WorkflowRun cleanup(final String criteria) throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class, "cleanup");
+        job.setDefinition(new CpsFlowDefinition(
+                "bitbucketCleanupBranches(project: 'PRJ', repoSlug: 'repo', " + criteria + ", dryRun: false,\n"
+                        + "  maxDeletesPerSecond: 100)", true));
+        return j.assertBuildStatusSuccess(job.scheduleBuild2(0));
+    }
+}
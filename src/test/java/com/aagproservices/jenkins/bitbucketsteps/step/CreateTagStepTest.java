@@ -0,0 +1,103 @@
+package com.aagproservices.jenkins.bitbucketsteps.step;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketStandIn;
+import hudson.model.Label;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the step "bitbucketCreateTag" against a local stand-in server, with the request sent from an agent.
+ *
+ * @author Aleks Gekht
+ */
+public class CreateTagStepTest {
+
+    private static final String TAGS = BitbucketStandIn.REPO_RESOURCE + "tags";
+    private static final String COMMIT = "0123456789abcdef0123456789abcdef01234567";
+    private static final Pattern NAME = Pattern.compile("\"name\":\"([^\"]+)\"");
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private BitbucketStandIn bitbucket;
+    private final List<String> tags = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        bitbucket = new BitbucketStandIn();
+        bitbucket.configurePlugin();
+        tags.add("v1.0.0");
+        bitbucket.on("GET", TAGS, (method, query, body) -> {
+            StringBuilder values = new StringBuilder();
+            for (String tag : tags) {
+                values.append(values.length() == 0 ? "" : ",").append(tag(tag));
+            }
+            return BitbucketStandIn.Reply.json("{\"values\":[" + values + "],\"isLastPage\":true}");
+        });
+        bitbucket.on("POST", TAGS, (method, query, body) -> {
+            Matcher matcher = NAME.matcher(body);
+            String name = matcher.find() ? matcher.group(1) : "unnamed";
+            tags.add(name);
+            return BitbucketStandIn.Reply.json(tag(name));
+        });
+    }
+
+    @After
+    public void tearDown() {
+        bitbucket.close();
+    }
+
+    @Test
+    public void tagCreatedOnAgentIsSeenByTheController() throws Exception {
+        j.createOnlineSlave(Label.get("remote"));
+        WorkflowJob job = j.createProject(WorkflowJob.class, "tag");
+        job.setDefinition(new CpsFlowDefinition(
+                "def before = bitbucketLatestTag(project: 'PRJ', repoSlug: 'repo', indexMaxAgeSeconds: 3600)\n"
+                        + "echo \"before=${before.displayId}\"\n"
+                        + "node('remote') {\n"
+                        + "  bitbucketCreateTag(project: 'PRJ', repoSlug: 'repo', name: 'v1.1.0', message: '', startPoint: 'master',"
+                        + " onAgent: true)\n"
+                        + "}\n"
+                        + "def after = bitbucketLatestTag(project: 'PRJ', repoSlug: 'repo', indexMaxAgeSeconds: 3600)\n"
+                        + "echo \"after=${after.displayId}\"", true));
+        WorkflowRun run = j.assertBuildStatusSuccess(job.scheduleBuild2(0));
+
+        j.assertLogContains("before=v1.0.0", run);
+        j.assertLogContains("after=v1.1.0", run);
+        assertEquals(1, bitbucket.hits("POST", TAGS));
+        //the agent authenticated with the header it was sent instead of the password
+        assertEquals(bitbucket.hits("GET", TAGS) + bitbucket.hits("POST", TAGS), bitbucket.passwordChecks());
+    }
+
+    @Test
+    public void tagCreatedOnTheControllerIsSeenByTheIndex() throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class, "tag");
+        job.setDefinition(new CpsFlowDefinition(
+                "def before = bitbucketLatestTag(project: 'PRJ', repoSlug: 'repo', indexMaxAgeSeconds: 3600)\n"
+                        + "echo \"before=${before.displayId}\"\n"
+                        + "bitbucketCreateTag(project: 'PRJ', repoSlug: 'repo', name: 'v1.1.0', message: '', startPoint: 'master')\n"
+                        + "def after = bitbucketLatestTag(project: 'PRJ', repoSlug: 'repo', indexMaxAgeSeconds: 3600)\n"
+                        + "echo \"after=${after.displayId}\"", true));
+        WorkflowRun run = j.assertBuildStatusSuccess(job.scheduleBuild2(0));
+
+        j.assertLogContains("before=v1.0.0", run);
+        j.assertLogContains("after=v1.1.0", run);
+    }
+
+    private static String tag(final String name) {
+        return "{\"id\":\"refs/tags/" + name + "\",\"displayId\":\"" + name + "\",\"latestCommit\":\"" + COMMIT + "\"}";
+    }
+}
@@ -0,0 +1,94 @@
+package com.aagproservices.jenkins.bitbucketsteps.step;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketStandIn;
+import hudson.FilePath;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the step "bitbucketDownloadArchive" against a local stand-in server: saving the archive as is and
+ * extracting it into the workspace.
+ *
+ * @author Aleks Gekht
+ */
+public class DownloadArchiveStepTest {
+
+    private static final String ARCHIVE = BitbucketStandIn.REPO_RESOURCE + "archive";
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private BitbucketStandIn bitbucket;
+    private final List<String> queries = new CopyOnWriteArrayList<>();
+    private String archive;
+
+    @Before
+    public void setUp() throws Exception {
+        bitbucket = new BitbucketStandIn();
+        bitbucket.configurePlugin();
+        //a plain tar of text files is ASCII only, so the stand-in can send it as a string
+        FilePath content = new FilePath(folder.newFolder("content"));
+        content.child("docs/a.txt").write("hello", "UTF-8");
+        content.child("docs/b.txt").write("world", "UTF-8");
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        content.tar(tar, "**");
+        archive = new String(tar.toByteArray(), StandardCharsets.US_ASCII);
+        bitbucket.on("GET", ARCHIVE, (method, query, body) -> {
+            queries.add(query);
+            return new BitbucketStandIn.Reply(200, archive);
+        });
+    }
+
+    @After
+    public void tearDown() {
+        bitbucket.close();
+    }
+
+    @Test
+    public void extractsTheArchiveIntoTheTarget() throws Exception {
+        WorkflowJob job = download("target: 'src', format: 'tar', extract: true, paths: ['docs'], at: 'release'");
+
+        FilePath workspace = j.jenkins.getWorkspaceFor(job);
+        assertEquals("hello", workspace.child("src/docs/a.txt").readToString());
+        assertEquals("world", workspace.child("src/docs/b.txt").readToString());
+        assertEquals(1, queries.size());
+        assertTrue(queries.get(0), queries.get(0).contains("format=tar"));
+        assertTrue(queries.get(0), queries.get(0).contains("path=docs"));
+        assertTrue(queries.get(0), queries.get(0).contains("at=release"));
+    }
+
+    @Test
+    public void savesTheArchiveAsIs() throws Exception {
+        WorkflowJob job = download("target: 'repo.tar', format: 'tar'");
+
+        FilePath saved = j.jenkins.getWorkspaceFor(job).child("repo.tar");
+        assertEquals(archive.length(), saved.length());
+        assertEquals(archive, saved.readToString());
+    }
+
+    private WorkflowJob download(final String arguments) throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class, "download");
+        job.setDefinition(new CpsFlowDefinition("node {\n"
+                + "  bitbucketDownloadArchive(project: 'PRJ', repoSlug: 'repo', " + arguments + ")\n"
+                + "}", true));
+        j.assertBuildStatusSuccess(job.scheduleBuild2(0));
+        return job;
+    }
+}
@@ -0,0 +1,61 @@
+package com.aagproservices.jenkins.bitbucketsteps.step;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketStandIn;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the step "bitbucketFanOut" against a local stand-in server.
+ *
+ * @author Aleks Gekht
+ */
+public class FanOutStepTest {
+
+    private static final String PULL_REQUEST = BitbucketStandIn.REPO_RESOURCE + "pull-requests/1";
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private BitbucketStandIn bitbucket;
+    private final AtomicBoolean merged = new AtomicBoolean();
+
+    @Before
+    public void setUp() throws Exception {
+        bitbucket = new BitbucketStandIn();
+        bitbucket.configurePlugin();
+        bitbucket.on("GET", PULL_REQUEST, (method, query, body) -> BitbucketStandIn.Reply.json(
+                "{\"id\":1,\"version\":2,\"state\":\"" + (merged.get() ? "MERGED" : "OPEN") + "\"}"));
+        bitbucket.on("GET", PULL_REQUEST + "/merge", (method, query, body) ->
+                BitbucketStandIn.Reply.json("{\"canMerge\":true,\"vetoes\":[]}"));
+        //the merge is applied, but the answer gets lost on the way back
+        bitbucket.on("POST", PULL_REQUEST + "/merge", (method, query, body) -> {
+            merged.set(true);
+            return new BitbucketStandIn.Reply(500, "{\"errors\":[{\"message\":\"Gateway timeout\"}]}");
+        });
+    }
+
+    @After
+    public void tearDown() {
+        bitbucket.close();
+    }
+
+    @Test
+    public void retryOfAnAppliedMergeSucceeds() throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class, "merge");
+        job.setDefinition(new CpsFlowDefinition(
+                "bitbucketFanOut(operation: 'mergePullRequest', retries: 2,\n"
+                        + "  repositories: [[project: 'PRJ', repoSlug: 'repo', pullRequestId: 1]])", true));
+        j.assertBuildStatusSuccess(job.scheduleBuild2(0));
+
+        assertEquals(1, bitbucket.hits("POST", PULL_REQUEST + "/merge"));
+    }
+}
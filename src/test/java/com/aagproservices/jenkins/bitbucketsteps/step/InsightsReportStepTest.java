@@ -0,0 +1,125 @@
+package com.aagproservices.jenkins.bitbucketsteps.step;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketStandIn;
+import hudson.FilePath;
+import hudson.model.Result;
+import net.sf.json.JSONObject;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the step "bitbucketInsightsReport" against a local stand-in server: the annotation limit of a report,
+ * chunked uploads and what happens to the report when something fails.
+ *
+ * @author Aleks Gekht
+ */
+public class InsightsReportStepTest {
+
+    private static final String COMMIT = "0123456789abcdef0123456789abcdef01234567";
+    private static final String REPORT = "/rest/insights/1.0/projects/PRJ/repos/repo/commits/" + COMMIT + "/reports/sast";
+    private static final String ANNOTATIONS = REPORT + "/annotations";
+    private static final int FINDINGS = 5000;
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private BitbucketStandIn bitbucket;
+    private final AtomicInteger received = new AtomicInteger();
+    private final AtomicInteger largestChunk = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        bitbucket = new BitbucketStandIn();
+        bitbucket.configurePlugin();
+        bitbucket.on("PUT", REPORT, (method, query, body) -> BitbucketStandIn.Reply.json(body));
+        bitbucket.on("DELETE", REPORT, (method, query, body) -> new BitbucketStandIn.Reply(204, ""));
+        bitbucket.on("POST", ANNOTATIONS, (method, query, body) -> {
+            int size = JSONObject.fromObject(body).getJSONArray("annotations").size();
+            received.addAndGet(size);
+            largestChunk.accumulateAndGet(size, Math::max);
+            return new BitbucketStandIn.Reply(204, "");
+        });
+    }
+
+    @After
+    public void tearDown() {
+        bitbucket.close();
+    }
+
+    @Test
+    public void uploadsAtMostTheReportLimitInChunks() throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class, "insights");
+        writeSarif(j.jenkins.getWorkspaceFor(job).child("findings.sarif"), FINDINGS);
+        job.setDefinition(new CpsFlowDefinition(
+                "node { def count = bitbucketInsightsReport(project: 'PRJ', repoSlug: 'repo', file: 'findings.sarif',"
+                        + " key: 'sast', commit: '" + COMMIT + "', maxAnnotations: 5000, chunkSize: 100)\n"
+                        + "echo \"count=${count}\" }", true));
+        WorkflowRun run = j.buildAndAssertSuccess(job);
+
+        j.assertLogContains("count=1000", run);
+        j.assertLogContains("Left out " + (FINDINGS - 1000) + " of " + FINDINGS + " findings", run);
+        assertEquals(1000, received.get());
+        assertEquals(10, bitbucket.hits("POST", ANNOTATIONS));
+        assertTrue(largestChunk.get() <= 100);
+        assertEquals(1, bitbucket.hits("PUT", REPORT));
+    }
+
+    @Test
+    public void unreadableFindingsKeepTheEarlierReport() throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class, "unreadable");
+        j.jenkins.getWorkspaceFor(job).child("findings.sarif").write("{\"runs\":[{\"results\":[", "UTF-8");
+        job.setDefinition(new CpsFlowDefinition(
+                "node { bitbucketInsightsReport(project: 'PRJ', repoSlug: 'repo', file: 'findings.sarif',"
+                        + " key: 'sast', commit: '" + COMMIT + "') }", true));
+
+        j.assertBuildStatus(Result.FAILURE, job.scheduleBuild2(0));
+        assertEquals(0, bitbucket.hits("PUT", REPORT));
+        assertEquals(0, bitbucket.hits("DELETE", REPORT));
+    }
+
+    @Test
+    public void failedUploadDeletesReport() throws Exception {
+        bitbucket.on("POST", ANNOTATIONS, (method, query, body) ->
+                new BitbucketStandIn.Reply(500, "{\"errors\":[{\"message\":\"Annotation store unavailable\"}]}"));
+        WorkflowJob job = j.createProject(WorkflowJob.class, "failing");
+        writeSarif(j.jenkins.getWorkspaceFor(job).child("findings.sarif"), 5000);
+        job.setDefinition(new CpsFlowDefinition(
+                "node { bitbucketInsightsReport(project: 'PRJ', repoSlug: 'repo', file: 'findings.sarif',"
+                        + " key: 'sast', commit: '" + COMMIT + "') }", true));
+
+        WorkflowRun run = j.assertBuildStatus(Result.FAILURE, job.scheduleBuild2(0));
+        j.assertLogContains("Deleted the incomplete report sast", run);
+        assertEquals(1, bitbucket.hits("DELETE", REPORT));
+    }
+
+    private static void writeSarif(final FilePath file, final int findings) throws Exception {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(file.write(), StandardCharsets.UTF_8))) {
+            writer.write("{\"version\":\"2.1.0\",\"runs\":[{\"tool\":{\"driver\":{\"name\":\"lint\"}},\"results\":[");
+            for (int i = 0; i < findings; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write("{\"ruleId\":\"R" + (i % 50) + "\",\"level\":\"" + (i % 3 == 0 ? "error" : "warning")
+                        + "\",\"message\":{\"text\":\"Finding " + i + "\"},\"locations\":[{\"physicalLocation\":"
+                        + "{\"artifactLocation\":{\"uri\":\"src/File" + (i % 500) + ".java\"},\"region\":{\"startLine\":"
+                        + (i % 1000 + 1) + "}}}]}");
+            }
+            writer.write("]}]}");
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.aagproservices.jenkins.bitbucketsteps.step;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketStandIn;
+import com.aagproservices.jenkins.bitbucketsteps.cache.ResponseCache;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the step "bitbucketLatestTag" against a local stand-in server: a descending tag listing is only walked
+ * until no later tag can carry a higher version, an ascending one is walked to the end.
+ *
+ * @author Aleks Gekht
+ */
+public class LatestTagStepTest {
+
+    private static final String TAGS = BitbucketStandIn.REPO_RESOURCE + "tags";
+    private static final String COMMIT = "0123456789abcdef0123456789abcdef01234567";
+    private static final int PATCH_COUNT = 150;
+    private static final Pattern START = Pattern.compile("(?:^|&)start=(\\d+)");
+    private static final Pattern LIMIT = Pattern.compile("(?:^|&)limit=(\\d+)");
+    private static final Pattern FILTER = Pattern.compile("(?:^|&)filterText=([^&]*)");
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private BitbucketStandIn bitbucket;
+    private final List<String> tags = new ArrayList<>();
+    private final List<String> queries = new CopyOnWriteArrayList<>();
+    //whether the stand-in lists the tags in descending alphabetical order, as Bitbucket does
+    private volatile boolean descending = true;
+
+    @Before
+    public void setUp() throws Exception {
+        bitbucket = new BitbucketStandIn();
+        bitbucket.configurePlugin();
+        ResponseCache.getInstance().invalidate("PRJ", "repo");
+        for (int patch = 1; patch <= PATCH_COUNT; patch++) {
+            tags.add("v0.0." + patch);
+        }
+        tags.add("v2.0.0");
+        tags.add("v10.0.0");
+        tags.add("v11.0.0-rc.1");
+        tags.add("release-99.0.0");
+        bitbucket.on("GET", TAGS, (method, query, body) -> {
+            queries.add(query);
+            Matcher filter = FILTER.matcher(query);
+            List<String> listed = new ArrayList<>();
+            for (String tag : tags) {
+                if (!filter.find(0) || tag.contains(filter.group(1))) {
+                    listed.add(tag);
+                }
+            }
+            Collections.sort(listed);
+            if (descending) {
+                Collections.reverse(listed);
+            }
+            int start = intParameter(START, query);
+            int end = Math.min(listed.size(), start + intParameter(LIMIT, query));
+            StringBuilder values = new StringBuilder();
+            for (String tag : listed.subList(start, end)) {
+                values.append(values.length() == 0 ? "" : ",").append("{\"id\":\"refs/tags/").append(tag)
+                        .append("\",\"displayId\":\"").append(tag).append("\",\"latestCommit\":\"").append(COMMIT).append("\"}");
+            }
+            return BitbucketStandIn.Reply.json("{\"values\":[" + values + "],\"isLastPage\":" + (end >= listed.size())
+                    + (end < listed.size() ? ",\"nextPageStart\":" + end : "") + "}");
+        });
+    }
+
+    @After
+    public void tearDown() {
+        bitbucket.close();
+    }
+
+    @Test
+    public void descendingListingStopsBelowTheLowestNameOfHigherVersion() throws Exception {
+        WorkflowRun run = latest("bump: 'minor'");
+
+        j.assertLogContains("tag=v10.0.0 version=10.0.0 next=v10.1.0", run);
+        //the first page ends among the 0.0.x tags, which are all below "v1"
+        assertEquals(1, bitbucket.hits("GET", TAGS));
+        assertTrue(queries.get(0), queries.get(0).contains("filterText=v"));
+        assertTrue(queries.get(0), queries.get(0).contains("orderBy=ALPHABETICAL"));
+    }
+
+    @Test
+    public void ascendingListingIsWalkedToTheEnd() throws Exception {
+        descending = false;
+
+        WorkflowRun run = latest("bump: 'minor'");
+
+        j.assertLogContains("tag=v10.0.0 version=10.0.0 next=v10.1.0", run);
+        assertEquals(2, bitbucket.hits("GET", TAGS));
+    }
+
+    @Test
+    public void preReleasesAndBoundsNarrowTheWalk() throws Exception {
+        WorkflowRun run = latest("includePreReleases: true");
+        j.assertLogContains("tag=v11.0.0-rc.1 version=11.0.0-rc.1", run);
+
+        ResponseCache.getInstance().invalidate("PRJ", "repo");
+        run = latest("to: '10.0.0'");
+        j.assertLogContains("tag=v2.0.0 version=2.0.0", run);
+
+        ResponseCache.getInstance().invalidate("PRJ", "repo");
+        run = latest("to: 'v0.0.100'");
+        j.assertLogContains("tag=v0.0.99 version=0.0.99", run);
+    }
+
+    private WorkflowRun latest(final String arguments) throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class);
+        job.setDefinition(new CpsFlowDefinition(
+                "def tag = bitbucketLatestTag(project: 'PRJ', repoSlug: 'repo', " + arguments + ")\n"
+                        + "echo \"tag=${tag.displayId} version=${tag.version} next=${tag.nextVersion}\"", true));
+        return j.assertBuildStatusSuccess(job.scheduleBuild2(0));
+    }
+
+    private static int intParameter(final Pattern parameter, final String query) {
+        Matcher matcher = parameter.matcher(query == null ? "" : query);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : 0;
+    }
+}
@@ -0,0 +1,114 @@
+package com.aagproservices.jenkins.bitbucketsteps.step;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketStandIn;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the step "bitbucketListPullRequests" against a local stand-in server: pages are only requested as long as
+ * more results are wanted, and an output file gets one JSON line per pull request.
+ *
+ * @author Aleks Gekht
+ */
+public class ListPullRequestsStepTest {
+
+    private static final String PULL_REQUESTS = BitbucketStandIn.REPO_RESOURCE + "pull-requests";
+    private static final int PULL_REQUEST_COUNT = 250;
+    private static final Pattern START = Pattern.compile("(?:^|&)start=(\\d+)");
+    private static final Pattern LIMIT = Pattern.compile("(?:^|&)limit=(\\d+)");
+    private static final Pattern ID = Pattern.compile("\"id\":(\\d+)[,}]");
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private BitbucketStandIn bitbucket;
+    private final List<String> queries = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        bitbucket = new BitbucketStandIn();
+        bitbucket.configurePlugin();
+        bitbucket.on("GET", PULL_REQUESTS, (method, query, body) -> {
+            queries.add(query);
+            int start = intParameter(START, query);
+            int end = Math.min(PULL_REQUEST_COUNT, start + intParameter(LIMIT, query));
+            StringBuilder values = new StringBuilder();
+            for (int id = start + 1; id <= end; id++) {
+                values.append(values.length() == 0 ? "" : ",").append("{\"id\":").append(id)
+                        .append(",\"version\":0,\"state\":\"OPEN\",\"title\":\"Change ").append(id).append("\"}");
+            }
+            return BitbucketStandIn.Reply.json("{\"values\":[" + values + "],\"isLastPage\":" + (end >= PULL_REQUEST_COUNT)
+                    + (end < PULL_REQUEST_COUNT ? ",\"nextPageStart\":" + end : "") + "}");
+        });
+    }
+
+    @After
+    public void tearDown() {
+        bitbucket.close();
+    }
+
+    @Test
+    public void stopsRequestingPagesAtMaxResults() throws Exception {
+        WorkflowRun run = list("def prs = bitbucketListPullRequests(project: 'PRJ', repoSlug: 'repo', at: 'release/1.x',"
+                + " maxResults: 150)\n"
+                + "echo \"count=${prs.size()} last=${prs[prs.size() - 1].id}\"");
+
+        j.assertLogContains("count=150 last=150", run);
+        assertEquals(2, bitbucket.hits("GET", PULL_REQUESTS));
+        assertTrue(queries.get(0), queries.get(0).contains("limit=100"));
+        assertTrue(queries.get(0), queries.get(0).contains("at=refs/heads/release/1.x"));
+    }
+
+    @Test
+    public void smallMaxResultsAsksForASmallPage() throws Exception {
+        WorkflowRun run = list("def prs = bitbucketListPullRequests(project: 'PRJ', repoSlug: 'repo', maxResults: 5)\n"
+                + "echo \"count=${prs.size()}\"");
+
+        j.assertLogContains("count=5", run);
+        assertEquals(1, bitbucket.hits("GET", PULL_REQUESTS));
+        assertTrue(queries.get(0), queries.get(0).contains("limit=5"));
+    }
+
+    @Test
+    public void writesOneJsonLinePerPullRequest() throws Exception {
+        WorkflowRun run = list("node {\n"
+                + "  def count = bitbucketListPullRequests(project: 'PRJ', repoSlug: 'repo', outputFile: 'prs.jsonl')\n"
+                + "  echo \"count=${count}\"\n"
+                + "}");
+
+        j.assertLogContains("count=" + PULL_REQUEST_COUNT, run);
+        assertEquals(3, bitbucket.hits("GET", PULL_REQUESTS));
+        String[] lines = j.jenkins.getWorkspaceFor(run.getParent()).child("prs.jsonl").readToString().split("\n");
+        assertEquals(PULL_REQUEST_COUNT, lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            Matcher id = ID.matcher(lines[i]);
+            assertTrue(lines[i], lines[i].startsWith("{") && lines[i].endsWith("}") && id.find());
+            assertEquals(i + 1, Integer.parseInt(id.group(1)));
+        }
+    }
+
+    private WorkflowRun list(final String script) throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class, "list");
+        job.setDefinition(new CpsFlowDefinition(script, true));
+        return j.assertBuildStatusSuccess(job.scheduleBuild2(0));
+    }
+
+    private static int intParameter(final Pattern parameter, final String query) {
+        Matcher matcher = parameter.matcher(query == null ? "" : query);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : 0;
+    }
+}
@@ -0,0 +1,111 @@
+package com.aagproservices.jenkins.bitbucketsteps.step;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketStandIn;
+import hudson.model.Result;
+import hudson.model.queue.QueueTaskFuture;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the step "bitbucketMergePullRequest" against a local stand-in server: a merge that conflicts with a
+ * concurrent change is retried with the version the server reports, a veto is not retried.
+ *
+ * @author Aleks Gekht
+ */
+public class MergePullRequestStepTest {
+
+    private static final String PULL_REQUEST = BitbucketStandIn.REPO_RESOURCE + "pull-requests/1";
+    private static final String MERGE = PULL_REQUEST + "/merge";
+    private static final Pattern VERSION = Pattern.compile("(?:^|&)version=(\\d+)");
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private BitbucketStandIn bitbucket;
+    private final AtomicInteger version = new AtomicInteger(1);
+    private final AtomicBoolean canMerge = new AtomicBoolean(true);
+    //someone edits the pull request right after its version was read
+    private volatile boolean editedAfterReading;
+    private final List<Integer> mergedWith = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        bitbucket = new BitbucketStandIn();
+        bitbucket.configurePlugin();
+        bitbucket.on("GET", PULL_REQUEST, (method, query, body) -> {
+            String reply = "{\"id\":1,\"version\":" + version.get() + ",\"state\":\"OPEN\"}";
+            if (editedAfterReading) {
+                version.incrementAndGet();
+            }
+            return BitbucketStandIn.Reply.json(reply);
+        });
+        bitbucket.on("GET", MERGE, (method, query, body) -> BitbucketStandIn.Reply.json(canMerge.get()
+                ? "{\"canMerge\":true,\"conflicted\":false,\"vetoes\":[]}"
+                : "{\"canMerge\":false,\"conflicted\":false,\"vetoes\":[{\"summaryMessage\":\"Needs 1 approval\"}]}"));
+        //like the server, a merge based on an outdated version is refused and names the current one
+        bitbucket.on("POST", MERGE, (method, query, body) -> {
+            Matcher given = VERSION.matcher(query == null ? "" : query);
+            int requested = given.find() ? Integer.parseInt(given.group(1)) : -1;
+            mergedWith.add(requested);
+            if (requested != version.get()) {
+                return new BitbucketStandIn.Reply(409, "{\"errors\":[{\"message\":\"The pull request has been updated\","
+                        + "\"currentVersion\":" + version.get() + "}]}");
+            }
+            return BitbucketStandIn.Reply.json("{\"id\":1,\"version\":" + version.incrementAndGet() + ",\"state\":\"MERGED\"}");
+        });
+    }
+
+    @After
+    public void tearDown() {
+        bitbucket.close();
+    }
+
+    @Test
+    public void conflictIsRetriedWithTheReportedVersion() throws Exception {
+        editedAfterReading = true;
+
+        WorkflowRun run = j.assertBuildStatusSuccess(merge());
+
+        j.assertLogContains("state=MERGED", run);
+        assertEquals(2, mergedWith.size());
+        assertEquals(Integer.valueOf(1), mergedWith.get(0));
+        assertEquals(Integer.valueOf(2), mergedWith.get(1));
+        //the version came with the conflict, the pull request is not read again
+        assertEquals(1, bitbucket.hits("GET", PULL_REQUEST));
+        assertEquals(2, bitbucket.hits("GET", MERGE));
+    }
+
+    @Test
+    public void vetoIsNotRetried() throws Exception {
+        canMerge.set(false);
+
+        WorkflowRun run = j.assertBuildStatus(Result.FAILURE, merge());
+
+        j.assertLogContains("Automated merge not possible for pull request with ID 1: Needs 1 approval", run);
+        assertEquals(1, bitbucket.hits("GET", MERGE));
+        assertEquals(0, bitbucket.hits("POST", MERGE));
+    }
+
+    private QueueTaskFuture<WorkflowRun> merge() throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class, "merge");
+        job.setDefinition(new CpsFlowDefinition(
+                "def pr = bitbucketMergePullRequest(project: 'PRJ', repoSlug: 'repo', id: 1)\n"
+                        + "echo \"state=${pr.state}\"", true));
+        return job.scheduleBuild2(0);
+    }
+}
@@ -0,0 +1,174 @@
+package com.aagproservices.jenkins.bitbucketsteps.step;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketStandIn;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.Result;
+import hudson.model.StringParameterDefinition;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the step "bitbucketMergeTrain" against a local stand-in server: grouping of queued pull requests for
+ * validation, a failed validation and stopping a waiting build.
+ *
+ * @author Aleks Gekht
+ */
+public class MergeTrainStepTest {
+
+    private static final String PULL_REQUESTS = BitbucketStandIn.REPO_RESOURCE + "pull-requests";
+    private static final int PULL_REQUEST_COUNT = 3;
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private BitbucketStandIn bitbucket;
+    private final Set<Integer> merged = new ConcurrentSkipListSet<>();
+    private final AtomicInteger listings = new AtomicInteger();
+    //holds the first listing, so the following pull requests queue up behind the first round
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Before
+    public void setUp() throws Exception {
+        bitbucket = new BitbucketStandIn();
+        bitbucket.configurePlugin();
+        bitbucket.on("GET", PULL_REQUESTS, (method, query, body) -> {
+            if (listings.getAndIncrement() == 0) {
+                try {
+                    release.await(30, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            StringBuilder values = new StringBuilder();
+            for (int id = 1; id <= PULL_REQUEST_COUNT; id++) {
+                if (!merged.contains(id)) {
+                    values.append(values.length() == 0 ? "" : ",").append("{\"id\":").append(id).append(",\"version\":2}");
+                }
+            }
+            return BitbucketStandIn.Reply.json("{\"values\":[" + values + "],\"isLastPage\":true}");
+        });
+        for (int id = 1; id <= PULL_REQUEST_COUNT; id++) {
+            int pullRequest = id;
+            bitbucket.on("POST", PULL_REQUESTS + "/" + id + "/merge", (method, query, body) -> {
+                merged.add(pullRequest);
+                return BitbucketStandIn.Reply.json("{\"id\":" + pullRequest + ",\"version\":3,\"state\":\"MERGED\","
+                        + "\"properties\":{\"mergeCommit\":{\"id\":\"c" + pullRequest + "\"}}}");
+            });
+        }
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        bitbucket.close();
+    }
+
+    @Test
+    public void queuedPullRequestsAreValidatedTogether() throws Exception {
+        WorkflowJob validation = validationJob("echo \"PRS=${params.MERGE_TRAIN_PULL_REQUESTS}\"");
+        WorkflowRun first = board(1);
+        j.waitForMessage("queued for merge", first);
+        WorkflowRun second = board(2);
+        WorkflowRun third = board(3);
+        j.waitForMessage("queued for merge", second);
+        j.waitForMessage("queued for merge", third);
+        release.countDown();
+
+        j.assertBuildStatusSuccess(j.waitForCompletion(first));
+        j.assertBuildStatusSuccess(j.waitForCompletion(second));
+        j.assertBuildStatusSuccess(j.waitForCompletion(third));
+        assertEquals(2, validation.getBuilds().size());
+        j.assertLogContains("PRS=1", validation.getBuildByNumber(1));
+        j.assertLogContains("PRS=2,3", validation.getBuildByNumber(2));
+        assertEquals(PULL_REQUEST_COUNT, merged.size());
+        for (int id = 1; id <= PULL_REQUEST_COUNT; id++) {
+            assertEquals("merge status is taken from the listing", 0, bitbucket.hits("GET", PULL_REQUESTS + "/" + id + "/merge"));
+        }
+    }
+
+    @Test
+    public void failedValidationRejectsTheWholeGroup() throws Exception {
+        validationJob("error \"rejected ${params.MERGE_TRAIN_PULL_REQUESTS}\"");
+        WorkflowRun first = board(1);
+        j.waitForMessage("queued for merge", first);
+        WorkflowRun second = board(2);
+        j.waitForMessage("queued for merge", second);
+        release.countDown();
+
+        j.assertBuildStatus(Result.FAILURE, j.waitForCompletion(first));
+        j.assertBuildStatus(Result.FAILURE, j.waitForCompletion(second));
+        j.assertLogContains("failed for pull requests 2", second);
+        assertEquals(0, merged.size());
+    }
+
+    @Test
+    public void stoppedBuildLeavesTheTrain() throws Exception {
+        WorkflowRun first = board(1);
+        j.waitForMessage("queued for merge", first);
+        WorkflowRun second = board(2);
+        j.waitForMessage("queued for merge", second);
+
+        second.doStop();
+        j.assertBuildStatus(Result.ABORTED, j.waitForCompletion(second));
+        release.countDown();
+        j.assertBuildStatusSuccess(j.waitForCompletion(first));
+        assertEquals(0, bitbucket.hits("POST", PULL_REQUESTS + "/2/merge"));
+        assertEquals(1, merged.size());
+    }
+
+    @Test
+    public void conflictWithoutCurrentVersionIsAVetoAndNotRetried() throws Exception {
+        //the train skips the merge status, so a veto only shows as a conflict of the merge itself
+        bitbucket.on("POST", PULL_REQUESTS + "/1/merge", (method, query, body) -> new BitbucketStandIn.Reply(409,
+                "{\"errors\":[{\"message\":\"Needs 1 approval\",\"vetoes\":[{\"summaryMessage\":\"Needs 1 approval\"}]}]}"));
+        release.countDown();
+        WorkflowRun run = board(1);
+
+        j.assertBuildStatus(Result.FAILURE, j.waitForCompletion(run));
+        j.assertLogContains("Automated merge not possible for pull request with ID 1", run);
+        assertEquals(1, bitbucket.hits("POST", PULL_REQUESTS + "/1/merge"));
+        assertEquals(0, bitbucket.hits("GET", PULL_REQUESTS + "/1"));
+    }
+
+    @Test
+    public void repositoryIsTakenFromTheEnclosingBlock() throws Exception {
+        release.countDown();
+        WorkflowJob job = j.createProject(WorkflowJob.class, "block");
+        job.setDefinition(new CpsFlowDefinition("withBitbucket(project: 'PRJ', repoSlug: 'repo') {\n"
+                + "  bitbucketMergeTrain(id: 1, targetBranch: 'master')\n"
+                + "}", true));
+        WorkflowRun run = j.assertBuildStatusSuccess(job.scheduleBuild2(0));
+
+        j.assertLogContains("Merged pull request 1 into master", run);
+        assertEquals(1, bitbucket.hits("POST", PULL_REQUESTS + "/1/merge"));
+    }
+
+    private WorkflowJob validationJob(final String script) throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class, "validate");
+        job.addProperty(new ParametersDefinitionProperty(new StringParameterDefinition("MERGE_TRAIN_PULL_REQUESTS", "")));
+        job.setDefinition(new CpsFlowDefinition(script, true));
+        return job;
+    }
+
+    private WorkflowRun board(final int id) throws Exception {
+        boolean validated = j.jenkins.getItem("validate") != null;
+        WorkflowJob job = j.createProject(WorkflowJob.class, "pr" + id);
+        job.setDefinition(new CpsFlowDefinition("bitbucketMergeTrain(project: 'PRJ', repoSlug: 'repo', id: " + id
+                + ", targetBranch: 'master'" + (validated ? ", validationJob: 'validate'" : "") + ")", true));
+        return job.scheduleBuild2(0).waitForStart();
+    }
+}
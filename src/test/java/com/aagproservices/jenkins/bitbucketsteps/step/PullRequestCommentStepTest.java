@@ -0,0 +1,176 @@
+package com.aagproservices.jenkins.bitbucketsteps.step;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketStandIn;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the step "bitbucketPullRequestComment" against a local stand-in server: finding the marked comment,
+ * updating a remembered comment directly and retrying an update that conflicts with an edit.
+ *
+ * @author Aleks Gekht
+ */
+public class PullRequestCommentStepTest {
+
+    private static final String PULL_REQUEST = BitbucketStandIn.REPO_RESOURCE + "pull-requests/1/";
+    private static final String ACTIVITIES = PULL_REQUEST + "activities";
+    private static final String COMMENTS = PULL_REQUEST + "comments";
+    private static final String MARKER_LINE = "[//]: # (bitbucket-steps:report)";
+    private static final int MAX_COMMENTS = 5;
+    private static final Pattern TEXT = Pattern.compile("\"text\":\"((?:[^\"\\\\]|\\\\.)*)\"");
+    private static final Pattern VERSION = Pattern.compile("\"version\":(\\d+)");
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private BitbucketStandIn bitbucket;
+    //comment ID to the comment, newest last
+    private final ConcurrentSkipListMap<Integer, Comment> comments = new ConcurrentSkipListMap<>();
+    //a comment that someone edits right after it was listed
+    private volatile int editedAfterListing;
+
+    @Before
+    public void setUp() throws Exception {
+        bitbucket = new BitbucketStandIn();
+        bitbucket.configurePlugin();
+        bitbucket.on("GET", ACTIVITIES, (method, query, body) -> {
+            StringBuilder values = new StringBuilder();
+            for (Comment comment : comments.descendingMap().values()) {
+                values.append(values.length() == 0 ? "" : ",").append("{\"action\":\"COMMENTED\",\"comment\":")
+                        .append(comment.toJson()).append("}");
+            }
+            Comment edited = comments.get(editedAfterListing);
+            if (edited != null) {
+                edited.version++;
+            }
+            return BitbucketStandIn.Reply.json("{\"values\":[" + values + "],\"isLastPage\":true}");
+        });
+        bitbucket.on("POST", COMMENTS, (method, query, body) -> {
+            Comment comment = new Comment(comments.size() + 1, "user", textOf(body));
+            comments.put(comment.id, comment);
+            return BitbucketStandIn.Reply.json(comment.toJson());
+        });
+        for (int id = 1; id <= MAX_COMMENTS; id++) {
+            int commentId = id;
+            //like the server, an update based on an outdated version is refused and names the current one
+            bitbucket.on("PUT", COMMENTS + "/" + id, (method, query, body) -> {
+                Comment comment = comments.get(commentId);
+                Matcher version = VERSION.matcher(body);
+                if (!version.find() || Integer.parseInt(version.group(1)) != comment.version) {
+                    return new BitbucketStandIn.Reply(409, "{\"errors\":[{\"message\":\"The comment was edited\","
+                            + "\"currentVersion\":" + comment.version + "}]}");
+                }
+                comment.text = textOf(body);
+                comment.version++;
+                return BitbucketStandIn.Reply.json(comment.toJson());
+            });
+        }
+    }
+
+    @After
+    public void tearDown() {
+        bitbucket.close();
+    }
+
+    @Test
+    public void updatesTheMarkedCommentOfTheUserOnly() throws Exception {
+        addComment("user", "first build\n\n" + MARKER_LINE);
+        addComment("reviewer", "> first build\n> " + MARKER_LINE + "\n\nwhy?");
+
+        WorkflowRun run = comment("def c = bitbucketPullRequestComment(project: 'PRJ', repoSlug: 'repo', pullRequestId: 1,"
+                + " text: 'second build', marker: 'report')\n"
+                + "echo \"comment=${c.id}@${c.version}\"");
+
+        j.assertLogContains("comment=1@1", run);
+        assertEquals(escaped("second build\n\n" + MARKER_LINE), comments.get(1).text);
+        assertTrue(comments.get(2).text.endsWith("why?"));
+        assertEquals(0, bitbucket.hits("POST", COMMENTS));
+        assertEquals(0, bitbucket.hits("PUT", COMMENTS + "/2"));
+    }
+
+    @Test
+    public void rememberedCommentIsUpdatedWithoutLookingItUp() throws Exception {
+        WorkflowRun run = comment("for (int i = 0; i < 3; i++) {\n"
+                + "  def c = bitbucketPullRequestComment(project: 'PRJ', repoSlug: 'repo', pullRequestId: 1,"
+                + " text: \"build ${i}\", marker: 'report')\n"
+                + "  echo \"comment=${c.id}@${c.version}\"\n"
+                + "}");
+
+        j.assertLogContains("comment=1@0", run);
+        j.assertLogContains("comment=1@2", run);
+        assertEquals(1, comments.size());
+        assertEquals(escaped("build 2\n\n" + MARKER_LINE), comments.get(1).text);
+        assertEquals(1, bitbucket.hits("GET", ACTIVITIES));
+        assertEquals(1, bitbucket.hits("POST", COMMENTS));
+        assertEquals(2, bitbucket.hits("PUT", COMMENTS + "/1"));
+    }
+
+    @Test
+    public void conflictingEditIsRetriedWithTheCurrentVersion() throws Exception {
+        addComment("user", "first build\n\n" + MARKER_LINE);
+        editedAfterListing = 1;
+
+        WorkflowRun run = comment("def c = bitbucketPullRequestComment(project: 'PRJ', repoSlug: 'repo', pullRequestId: 1,"
+                + " text: 'second build', marker: 'report')\n"
+                + "echo \"comment=${c.id}@${c.version}\"");
+
+        j.assertLogContains("comment=1@2", run);
+        assertEquals(escaped("second build\n\n" + MARKER_LINE), comments.get(1).text);
+        assertEquals(2, bitbucket.hits("PUT", COMMENTS + "/1"));
+        assertEquals(0, bitbucket.hits("POST", COMMENTS));
+    }
+
+    private void addComment(final String author, final String text) {
+        Comment comment = new Comment(comments.size() + 1, author, escaped(text));
+        comments.put(comment.id, comment);
+    }
+
+    /**
+     * Returns the text as it appears in a JSON string, which is how the stand-in keeps it.
+     */
+    private static String escaped(final String text) {
+        return text.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String textOf(final String body) {
+        Matcher text = TEXT.matcher(body);
+        return text.find() ? text.group(1) : "";
+    }
+
+    private WorkflowRun comment(final String script) throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class, "comment");
+        job.setDefinition(new CpsFlowDefinition(script, true));
+        return j.assertBuildStatusSuccess(job.scheduleBuild2(0));
+    }
+
+    private static final class Comment {
+        private final int id;
+        private final String author;
+        private volatile String text;
+        private volatile int version;
+
+        private Comment(final int id, final String author, final String text) {
+            this.id = id;
+            this.author = author;
+            this.text = text;
+        }
+
+        private String toJson() {
+            return "{\"id\":" + id + ",\"version\":" + version + ",\"text\":\"" + text + "\",\"author\":{\"name\":\""
+                    + author + "\"}}";
+        }
+    }
+}
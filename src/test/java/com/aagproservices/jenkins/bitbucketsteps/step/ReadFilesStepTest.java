@@ -0,0 +1,68 @@
+package com.aagproservices.jenkins.bitbucketsteps.step;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketStandIn;
+import hudson.FilePath;
+import hudson.model.Result;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Tests for the step "bitbucketReadFiles" against a local stand-in server.
+ *
+ * @author Aleks Gekht
+ */
+public class ReadFilesStepTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private BitbucketStandIn bitbucket;
+
+    @Before
+    public void setUp() throws Exception {
+        bitbucket = new BitbucketStandIn();
+        bitbucket.configurePlugin();
+        bitbucket.on("GET", BitbucketStandIn.REPO_RESOURCE + "raw/docs/a.txt",
+                (method, query, body) -> new BitbucketStandIn.Reply(200, "hello"));
+    }
+
+    @After
+    public void tearDown() {
+        bitbucket.close();
+    }
+
+    @Test
+    public void writesFilesBelowOutputDir() throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class, "read");
+        job.setDefinition(new CpsFlowDefinition("node {\n"
+                + "  bitbucketReadFiles(files: [[project: 'PRJ', repoSlug: 'repo', path: '/docs/./a.txt']], outputDir: 'out')\n"
+                + "}", true));
+        j.assertBuildStatusSuccess(job.scheduleBuild2(0));
+
+        FilePath workspace = j.jenkins.getWorkspaceFor(job);
+        assertEquals("hello", workspace.child("out/PRJ/repo/docs/a.txt").readToString());
+    }
+
+    @Test
+    public void rejectsPathsLeavingOutputDir() throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class, "escape");
+        job.setDefinition(new CpsFlowDefinition("node {\n"
+                + "  bitbucketReadFiles(files: [[project: 'PRJ', repoSlug: 'repo', path: 'docs/../../../../escape.txt']],"
+                + " outputDir: 'out')\n"
+                + "}", true));
+        WorkflowRun run = j.assertBuildStatus(Result.FAILURE, job.scheduleBuild2(0));
+
+        j.assertLogContains("'..' is not allowed", run);
+        assertEquals(0, bitbucket.hits("GET", BitbucketStandIn.REPO_RESOURCE + "raw/escape.txt"));
+        assertFalse(j.jenkins.getWorkspaceFor(job).getParent().child("escape.txt").exists());
+    }
+}
@@ -0,0 +1,137 @@
+package com.aagproservices.jenkins.bitbucketsteps.step;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketStandIn;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runners.model.Statement;
+import org.jvnet.hudson.test.RestartableJenkinsRule;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the steps making a change on the server are resumed after the controller restarted while their request
+ * was on its way: the change is only requested again if the server does not have it yet.
+ *
+ * @author Aleks Gekht
+ */
+public class ResumeAfterRestartTest {
+
+    private static final String PULL_REQUEST = BitbucketStandIn.REPO_RESOURCE + "pull-requests/1";
+    private static final String COMMIT = "0123456789abcdef0123456789abcdef01234567";
+
+    @Rule
+    public RestartableJenkinsRule story = new RestartableJenkinsRule();
+
+    private BitbucketStandIn bitbucket;
+    //the first request is held until the end of the test, as if its answer got lost in the restart
+    private final CountDownLatch sent = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicBoolean applied = new AtomicBoolean();
+
+    @Before
+    public void setUp() throws Exception {
+        bitbucket = new BitbucketStandIn();
+        //longer than the restart takes, so the held request does not time out and fail the resumed step
+        bitbucket.setTimeout(300);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        bitbucket.close();
+    }
+
+    @Test
+    public void createdTagIsNotCreatedAgain() {
+        bitbucket.on("POST", BitbucketStandIn.REPO_RESOURCE + "tags", (method, query, body) -> hold(true, ref("tags", "v1.0.0")));
+        bitbucket.on("GET", BitbucketStandIn.REPO_RESOURCE + "tags", (method, query, body) ->
+                BitbucketStandIn.Reply.json("{\"values\":[" + (applied.get() ? ref("tags", "v1.0.0") : "") + "],\"isLastPage\":true}"));
+
+        restartDuring("bitbucketCreateTag(project: 'PRJ', repoSlug: 'repo', name: 'v1.0.0', message: '', startPoint: '" + COMMIT + "')",
+                "create tag PRJ/repo v1.0.0 was already done", 1);
+    }
+
+    @Test
+    public void missingBranchIsCreated() {
+        bitbucket.on("POST", BitbucketStandIn.REPO_RESOURCE + "branches", (method, query, body) -> hold(false, ref("heads", "release")));
+        bitbucket.on("GET", BitbucketStandIn.REPO_RESOURCE + "branches", (method, query, body) ->
+                BitbucketStandIn.Reply.json("{\"values\":[" + (applied.get() ? ref("heads", "release") : "") + "],\"isLastPage\":true}"));
+
+        restartDuring("bitbucketCreateBranch(project: 'PRJ', repoSlug: 'repo', name: 'release', message: '', startPoint: 'master')",
+                "create branch PRJ/repo release was not done yet", 2);
+    }
+
+    @Test
+    public void mergedPullRequestIsNotMergedAgain() {
+        bitbucket.on("POST", PULL_REQUEST + "/merge", (method, query, body) ->
+                hold(true, "{\"id\":1,\"version\":3,\"state\":\"MERGED\"}"));
+        bitbucket.on("GET", PULL_REQUEST, (method, query, body) -> BitbucketStandIn.Reply.json(
+                "{\"id\":1,\"version\":2,\"state\":\"" + (applied.get() ? "MERGED" : "OPEN") + "\"}"));
+        bitbucket.on("GET", PULL_REQUEST + "/merge", (method, query, body) ->
+                BitbucketStandIn.Reply.json("{\"canMerge\":true,\"vetoes\":[]}"));
+
+        restartDuring("bitbucketMergePullRequest(project: 'PRJ', repoSlug: 'repo', id: 1)",
+                "merge pull request PRJ/repo #1 was already done", 1);
+    }
+
+    /**
+     * Restarts the controller while the change of the script is requested, then waits for the resumed build.
+     */
+    private void restartDuring(final String script, final String resumed, final int expectedRequests) {
+        story.addStep(new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                bitbucket.configurePlugin();
+                WorkflowJob job = story.j.createProject(WorkflowJob.class, "resume");
+                job.setDefinition(new CpsFlowDefinition(script, true));
+                job.scheduleBuild2(0).waitForStart();
+                assertTrue("the change was not requested", sent.await(60, TimeUnit.SECONDS));
+            }
+        });
+        story.addStep(new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                WorkflowRun run = story.j.jenkins.getItemByFullName("resume", WorkflowJob.class).getBuildByNumber(1);
+                story.j.assertBuildStatusSuccess(story.j.waitForCompletion(run));
+                story.j.assertLogContains("Resumed after a restart, " + resumed, run);
+                assertEquals(expectedRequests, requests.get());
+            }
+        });
+    }
+
+    /**
+     * Answers the first request only once the test is over; later ones right away.
+     *
+     * @param apply Whether the server makes the change of the first request.
+     */
+    private BitbucketStandIn.Reply hold(final boolean apply, final String reply) {
+        if (requests.incrementAndGet() == 1) {
+            applied.set(apply);
+            sent.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else {
+            applied.set(true);
+        }
+        return BitbucketStandIn.Reply.json(reply);
+    }
+
+    private static String ref(final String kind, final String name) {
+        return "{\"id\":\"refs/" + kind + "/" + name + "\",\"displayId\":\"" + name + "\",\"latestCommit\":\"" + COMMIT + "\"}";
+    }
+}
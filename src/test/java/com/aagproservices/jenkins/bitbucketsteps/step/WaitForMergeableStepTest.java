@@ -0,0 +1,114 @@
+package com.aagproservices.jenkins.bitbucketsteps.step;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketStandIn;
+import hudson.model.Result;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the step "bitbucketWaitForMergeable" against a local stand-in server.
+ *
+ * @author Aleks Gekht
+ */
+public class WaitForMergeableStepTest {
+
+    private static final String MERGE = BitbucketStandIn.REPO_RESOURCE + "pull-requests/1/merge";
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private BitbucketStandIn bitbucket;
+    private final AtomicBoolean approved = new AtomicBoolean();
+    private final AtomicBoolean merged = new AtomicBoolean();
+
+    @Before
+    public void setUp() throws Exception {
+        bitbucket = new BitbucketStandIn();
+        bitbucket.configurePlugin();
+        bitbucket.on("GET", MERGE, (method, query, body) -> BitbucketStandIn.Reply.json(approved.get()
+                ? "{\"canMerge\":true,\"conflicted\":false,\"vetoes\":[]}"
+                : "{\"canMerge\":false,\"conflicted\":false,\"vetoes\":[{\"summaryMessage\":\"Needs 1 approval\"}]}"));
+        bitbucket.on("GET", BitbucketStandIn.REPO_RESOURCE + "pull-requests/1",
+                (method, query, body) -> BitbucketStandIn.Reply.json("{\"id\":1,\"version\":3}"));
+        bitbucket.on("POST", MERGE, (method, query, body) -> {
+            merged.set(true);
+            return BitbucketStandIn.Reply.json("{\"id\":1,\"version\":4,\"state\":\"MERGED\"}");
+        });
+    }
+
+    @After
+    public void tearDown() {
+        bitbucket.close();
+    }
+
+    @Test
+    public void webhookWakesWaitingStepBeforeNextPoll() throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class, "wait");
+        job.setDefinition(new CpsFlowDefinition(
+                "def vetoes = bitbucketWaitForMergeable(project: 'PRJ', repoSlug: 'repo', id: 1, merge: true,"
+                        + " initialIntervalSeconds: 600, maxIntervalSeconds: 600)\n"
+                        + "echo \"vetoes=${vetoes}\"", true));
+        WorkflowRun run = job.scheduleBuild2(0).waitForStart();
+
+        j.waitForMessage("Needs 1 approval", run);
+        assertEquals(1, bitbucket.hits("GET", MERGE));
+        assertTrue(run.isBuilding());
+
+        //the reviewer approves - Bitbucket sends the event long before the next scheduled poll
+        approved.set(true);
+        assertEquals(200, bitbucket.sendWebhook(j.getURL(), "pr:reviewer:approved", BitbucketStandIn.pullRequestEvent(1)));
+
+        long giveUp = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+        while (run.isBuilding() && System.currentTimeMillis() < giveUp) {
+            Thread.sleep(100);
+        }
+        assertFalse("step was not woken up by the webhook", run.isBuilding());
+        j.assertBuildStatusSuccess(run);
+        j.assertLogContains("vetoes=[]", run);
+        assertTrue(merged.get());
+    }
+
+    @Test
+    public void failsWithTheVetoesWhenTimedOut() throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class, "timeout");
+        job.setDefinition(new CpsFlowDefinition(
+                "bitbucketWaitForMergeable(project: 'PRJ', repoSlug: 'repo', id: 1, merge: true, timeoutMinutes: 0)\n"
+                        + "echo 'not reached'", true));
+        WorkflowRun run = j.assertBuildStatus(Result.FAILURE, job.scheduleBuild2(0));
+
+        j.assertLogContains("did not become mergeable within 0 minute(s): Needs 1 approval", run);
+        j.assertLogNotContains("not reached", run);
+        assertEquals(1, bitbucket.hits("GET", MERGE));
+        assertFalse(merged.get());
+    }
+
+    @Test
+    public void webhookForOtherPullRequestIsIgnored() throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class, "other");
+        job.setDefinition(new CpsFlowDefinition(
+                "bitbucketWaitForMergeable(project: 'PRJ', repoSlug: 'repo', id: 1,"
+                        + " initialIntervalSeconds: 600, maxIntervalSeconds: 600)", true));
+        WorkflowRun run = job.scheduleBuild2(0).waitForStart();
+        j.waitForMessage("Needs 1 approval", run);
+
+        assertEquals(200, bitbucket.sendWebhook(j.getURL(), "pr:reviewer:approved", BitbucketStandIn.pullRequestEvent(2)));
+        Thread.sleep(1000);
+        assertEquals(1, bitbucket.hits("GET", MERGE));
+        assertTrue(run.isBuilding());
+        run.doStop();
+        j.waitForCompletion(run);
+    }
+}
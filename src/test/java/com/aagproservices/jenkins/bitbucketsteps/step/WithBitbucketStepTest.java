@@ -0,0 +1,109 @@
+package com.aagproservices.jenkins.bitbucketsteps.step;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketStandIn;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the block step "withBitbucket" against a local stand-in server: how often the password is checked in a
+ * session compared to steps on their own, and requests that are authenticated with the session cookie.
+ *
+ * @author Aleks Gekht
+ */
+public class WithBitbucketStepTest {
+
+    private static final String TAGS = BitbucketStandIn.REPO_RESOURCE + "tags";
+    private static final int STEPS = 40;
+    private static final long PASSWORD_CHECK_MILLIS = 25;
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private BitbucketStandIn bitbucket;
+    private final AtomicInteger created = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        bitbucket = new BitbucketStandIn();
+        bitbucket.configurePlugin();
+        bitbucket.simulatePasswordCheck(PASSWORD_CHECK_MILLIS);
+        bitbucket.on("POST", TAGS, (method, query, body) -> BitbucketStandIn.Reply.json(
+                "{\"id\":\"refs/tags/t" + created.incrementAndGet() + "\",\"displayId\":\"t" + created.get()
+                        + "\",\"latestCommit\":\"0123456789abcdef0123456789abcdef01234567\"}"));
+    }
+
+    @After
+    public void tearDown() {
+        bitbucket.close();
+    }
+
+    @Test
+    public void sessionChecksThePasswordOnce() throws Exception {
+        int before = bitbucket.passwordChecks();
+        run("for (int i = 0; i < " + STEPS + "; i++) {\n"
+                + "  bitbucketCreateTag(project: 'PRJ', repoSlug: 'repo', name: \"a${i}\", message: '', startPoint: 'master')\n"
+                + "}");
+        assertEquals(STEPS, bitbucket.passwordChecks() - before);
+
+        before = bitbucket.passwordChecks();
+        run("withBitbucket(project: 'PRJ', repoSlug: 'repo') {\n"
+                + "  for (int i = 0; i < " + STEPS + "; i++) {\n"
+                + "    bitbucketCreateTag(name: \"b${i}\", message: '', startPoint: 'master')\n"
+                + "  }\n"
+                + "}");
+        assertEquals(1, bitbucket.passwordChecks() - before);
+        assertEquals(2 * STEPS, created.get());
+    }
+
+    @Test
+    public void multipartRequestsInASessionPassTheXsrfCheck() throws Exception {
+        bitbucket.on("PUT", BitbucketStandIn.REPO_RESOURCE + "browse/notes.txt", (method, query, body) ->
+                BitbucketStandIn.Reply.json("{\"id\":\"0123456789abcdef0123456789abcdef01234567\",\"displayId\":\"0123456\"}"));
+        WorkflowJob job = j.createProject(WorkflowJob.class);
+        j.jenkins.getWorkspaceFor(job).child("notes.txt").write("notes", "UTF-8");
+        job.setDefinition(new CpsFlowDefinition("node {\n"
+                + "  withBitbucket(project: 'PRJ', repoSlug: 'repo') {\n"
+                + "    bitbucketCreateTag(name: 'first', message: '', startPoint: 'master')\n"
+                + "    bitbucketUpdateFile(file: 'notes.txt', message: 'Update notes', branch: 'master',"
+                + " sourceCommitId: 'fedcba9876543210fedcba9876543210fedcba98')\n"
+                + "  }\n"
+                + "}", true));
+        j.buildAndAssertSuccess(job);
+
+        assertEquals(1, bitbucket.hits("PUT", BitbucketStandIn.REPO_RESOURCE + "browse/notes.txt"));
+        assertEquals(1, bitbucket.passwordChecks());
+    }
+
+    @Test
+    public void expiredSessionAuthenticatesAgain() throws Exception {
+        run("withBitbucket(project: 'PRJ', repoSlug: 'repo') {\n"
+                + "  bitbucketCreateTag(name: 'first', message: '', startPoint: 'master')\n"
+                + "}");
+        //the stand-in rejects cookie-only requests once, as if the server session had timed out
+        AtomicInteger rejected = new AtomicInteger();
+        bitbucket.on("POST", TAGS, (method, query, body) -> rejected.getAndIncrement() == 1
+                ? new BitbucketStandIn.Reply(401, "{\"errors\":[{\"message\":\"Authentication failed\"}]}")
+                : BitbucketStandIn.Reply.json("{\"id\":\"refs/tags/t\",\"displayId\":\"t\"}"));
+        int before = bitbucket.passwordChecks();
+        run("withBitbucket(project: 'PRJ', repoSlug: 'repo') {\n"
+                + "  bitbucketCreateTag(name: 'second', message: '', startPoint: 'master')\n"
+                + "  bitbucketCreateTag(name: 'third', message: '', startPoint: 'master')\n"
+                + "}");
+        assertEquals(2, bitbucket.passwordChecks() - before);
+    }
+
+    private void run(final String script) throws Exception {
+        WorkflowJob job = j.createProject(WorkflowJob.class);
+        job.setDefinition(new CpsFlowDefinition(script, true));
+        j.buildAndAssertSuccess(job);
+    }
+}
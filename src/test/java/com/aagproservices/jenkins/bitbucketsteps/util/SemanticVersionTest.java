@@ -0,0 +1,87 @@
+package com.aagproservices.jenkins.bitbucketsteps.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests parsing tag names, the ordering of versions including pre-releases and the bound used to stop walking a
+ * descending tag listing.
+ *
+ * @author Aleks Gekht
+ */
+public class SemanticVersionTest {
+
+    @Test
+    public void parsesVersionsBehindThePrefix() {
+        assertEquals("1.4.2", SemanticVersion.parse("v", "v1.4.2").toString());
+        assertEquals("1.4.0", SemanticVersion.parse("v", "v1.4").toString());
+        assertEquals("2.0.0-rc.1", SemanticVersion.parse("release-", "release-2.0.0-rc.1+build.7").toString());
+        assertEquals("12345678901234567890.0.0", SemanticVersion.parse("", "12345678901234567890.0.0").toString());
+        assertNull(SemanticVersion.parse("v", "1.4.2"));
+        assertNull(SemanticVersion.parse("v", "v1"));
+        assertNull(SemanticVersion.parse("v", "v01.4.2"));
+        assertNull(SemanticVersion.parse("v", "v1.4.2.1"));
+        assertNull(SemanticVersion.parse("v", "vnext"));
+        assertNull(SemanticVersion.parse("v", null));
+    }
+
+    @Test
+    public void versionsAreOrderedByPrecedence() {
+        List<String> ascending = Arrays.asList("0.9.0", "1.0.0-alpha", "1.0.0-alpha.1", "1.0.0-alpha.beta", "1.0.0-beta",
+                "1.0.0-beta.2", "1.0.0-beta.11", "1.0.0-rc.1", "1.0.0", "1.0.1", "1.2.0", "1.10.0", "2.0.0", "10.0.0");
+        for (int i = 0; i < ascending.size(); i++) {
+            for (int j = 0; j < ascending.size(); j++) {
+                int result = version(ascending.get(i)).compareTo(version(ascending.get(j)));
+                assertEquals(ascending.get(i) + " vs " + ascending.get(j), Integer.signum(Integer.compare(i, j)),
+                        Integer.signum(result));
+            }
+        }
+    }
+
+    @Test
+    public void twoPartVersionsEqualTheirPatchZero() {
+        assertEquals(version("1.4.0"), version("1.4"));
+        assertEquals(version("1.4.0").hashCode(), version("1.4").hashCode());
+        assertTrue(version("1.4").compareTo(version("1.4.1")) < 0);
+        //build metadata does not take part in the precedence
+        assertEquals(version("1.4.0"), version("1.4.0+build.1"));
+    }
+
+    @Test
+    public void nextVersionDropsThePreRelease() {
+        assertEquals("2.0.0", version("1.4.2").next("major").toString());
+        assertEquals("1.5.0", version("1.4.2").next("Minor").toString());
+        assertEquals("1.4.3", version("1.4.2").next("patch").toString());
+        assertEquals("1.4.2", version("1.4.2-rc.1").next("patch").toString());
+        assertEquals("1.4.2", version("1.4.2-rc.1").next("PATCH").toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nextVersionOfAnUnknownPartIsRefused() {
+        version("1.4.2").next("build");
+    }
+
+    @Test
+    public void noHigherVersionSortsBelowTheLowestNameOfHigherVersion() {
+        assertEquals("v1", version("9.1.0").lowestNameOfHigherVersion("v"));
+        assertEquals("v0", version("0.9.0").lowestNameOfHigherVersion("v"));
+        //whatever the number of digits, a higher major version is named at or above the bound
+        for (String higher : Arrays.asList("v9.2.0", "v10.0.0", "v100.0.0", "v9.1.1")) {
+            assertTrue(higher, higher.compareTo(version("9.1.0").lowestNameOfHigherVersion("v")) >= 0);
+        }
+        for (String higher : Arrays.asList("v0.9.1", "v0.10.0", "v1.0.0")) {
+            assertTrue(higher, higher.compareTo(version("0.9.0").lowestNameOfHigherVersion("v")) >= 0);
+        }
+        assertTrue("v0.99.0".compareTo(version("9.1.0").lowestNameOfHigherVersion("v")) < 0);
+    }
+
+    private static SemanticVersion version(final String version) {
+        return SemanticVersion.parse("", version);
+    }
+}
@@ -0,0 +1,191 @@
+package com.aagproservices.jenkins.bitbucketsteps.webhook;
+
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketServer;
+import com.aagproservices.jenkins.bitbucketsteps.BitbucketStandIn;
+import com.aagproservices.jenkins.bitbucketsteps.service.ContentService;
+import com.aagproservices.jenkins.bitbucketsteps.service.RefIndex;
+import com.aagproservices.jenkins.bitbucketsteps.step.AbstractStep;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Posts recorded Bitbucket webhook payloads to the endpoint and checks their effect.
+ *
+ * @author Aleks Gekht
+ */
+public class BitbucketWebhookReceiverTest {
+
+    private static final String TAGS = BitbucketStandIn.REPO_RESOURCE + "tags";
+    private static final String SECRET = "s3cr3t";
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private BitbucketStandIn bitbucket;
+
+    @Before
+    public void setUp() throws Exception {
+        bitbucket = new BitbucketStandIn();
+        bitbucket.configurePlugin(SECRET);
+        bitbucket.on("GET", TAGS, (method, query, body) -> BitbucketStandIn.Reply.json(
+                "{\"values\":[{\"id\":\"refs/tags/v1.4.0\",\"displayId\":\"v1.4.0\"}],\"isLastPage\":true}"));
+    }
+
+    @After
+    public void tearDown() {
+        bitbucket.close();
+    }
+
+    @Test
+    public void rejectsMissingOrWrongSignature() throws Exception {
+        String payload = recorded("pr-reviewer-approved.json");
+        assertEquals(401, bitbucket.sendWebhook(j.getURL(), "pr:reviewer:approved", payload, Collections.emptyMap()));
+        assertEquals(401, bitbucket.sendWebhook(j.getURL(), "pr:reviewer:approved", payload,
+                Collections.singletonMap("X-Hub-Signature", "sha256=" + BitbucketWebhookReceiver.sign("wrong", bytes(payload)))));
+        assertEquals(200, bitbucket.sendWebhook(j.getURL(), "pr:reviewer:approved", payload, signed(payload, null)));
+    }
+
+    @Test
+    public void rejectsEverythingWithoutSecret() throws Exception {
+        bitbucket.configurePlugin(null);
+        String payload = recorded("pr-reviewer-approved.json");
+        assertEquals(403, bitbucket.sendWebhook(j.getURL(), "pr:reviewer:approved", payload));
+        assertEquals(403, bitbucket.sendWebhook(j.getURL(), "pr:reviewer:approved", payload, signed(payload, null)));
+    }
+
+    @Test
+    public void storesSecretEncrypted() throws Exception {
+        String config = FileUtils.readFileToString(new File(j.jenkins.getRootDir(), BitbucketServer.class.getName() + ".xml"),
+                StandardCharsets.UTF_8);
+        assertFalse(config.contains(SECRET));
+    }
+
+    @Test
+    public void rejectsMalformedPayload() throws Exception {
+        String payload = "{\"pullRequest\":{}}";
+        assertEquals(400, bitbucket.sendWebhook(j.getURL(), "pr:opened", payload, signed(payload, null)));
+    }
+
+    @Test
+    public void refsChangedDropsCachedTags() throws Exception {
+        ContentService service = new ContentService(AbstractStep.resolveSite());
+        service.getTags("PRJ", "repo");
+        service.getTags("PRJ", "repo");
+        assertEquals("second read is served from the cache", 1, bitbucket.hits("GET", TAGS));
+
+        String payload = recorded("repo-refs_changed.json");
+        assertEquals(200, bitbucket.sendWebhook(j.getURL(), "repo:refs_changed", payload, signed(payload, null)));
+        awaitProcessed();
+
+        service.getTags("PRJ", "repo");
+        assertEquals(2, bitbucket.hits("GET", TAGS));
+    }
+
+    @Test
+    public void refsChangedUpdatesTheTagIndexWithoutListingAllTags() throws Exception {
+        String oldCommit = "0123456789abcdef0123456789abcdef01234567";
+        boolean[] tagged = {false};
+        List<String> queries = new CopyOnWriteArrayList<>();
+        bitbucket.on("GET", TAGS, (method, query, body) -> {
+            queries.add(String.valueOf(query));
+            String values = "{\"id\":\"refs/tags/v1.3.0\",\"displayId\":\"v1.3.0\",\"latestCommit\":\"" + oldCommit + "\"}";
+            if (tagged[0]) {
+                //a new tag on an old commit, which is not among the recently modified refs
+                values += ",{\"id\":\"refs/tags/v1.4.0\",\"displayId\":\"v1.4.0\",\"latestCommit\":\"" + oldCommit + "\"}";
+            }
+            return BitbucketStandIn.Reply.json("{\"values\":[" + values + "],\"isLastPage\":true}");
+        });
+        ContentService service = new ContentService(AbstractStep.resolveSite());
+        RefIndex index = RefIndex.forRepository(bitbucket.getUrl(), "PRJ", "repo", "tags");
+        index.refresh(service, 0);
+        assertEquals(oldCommit, index.lookup("v1.3.0"));
+        assertNull(index.lookup("v1.4.0"));
+
+        tagged[0] = true;
+        String payload = recorded("repo-refs_changed.json");
+        assertEquals(200, bitbucket.sendWebhook(j.getURL(), "repo:refs_changed", payload, signed(payload, null)));
+        awaitProcessed();
+        assertEquals(Long.MAX_VALUE, index.getAgeMillis());
+
+        index.refresh(service, TimeUnit.HOURS.toMillis(1));
+        assertEquals(oldCommit, index.lookup("v1.4.0"));
+        assertEquals("v1.4.0", index.findLatestVersion("v", null, null, false).getKey());
+        assertEquals(2, index.size());
+        assertEquals("only the changed tag was looked up", 2, queries.size());
+        assertTrue(queries.get(1), queries.get(1).contains("filterText=v1.4.0"));
+    }
+
+    @Test
+    public void pullRequestEventWakesSubscribersOncePerDelivery() throws Exception {
+        AtomicInteger pullRequestWakeUps = new AtomicInteger();
+        AtomicInteger repositoryWakeUps = new AtomicInteger();
+        Runnable onPullRequest = pullRequestWakeUps::incrementAndGet;
+        Runnable onRepository = repositoryWakeUps::incrementAndGet;
+        WebhookSubscriptions.subscribe(WebhookSubscriptions.pullRequestKey("prj", "REPO", 7), onPullRequest);
+        WebhookSubscriptions.subscribe(WebhookSubscriptions.repositoryKey("PRJ", "repo"), onRepository);
+        try {
+            String payload = recorded("pr-reviewer-approved.json");
+            Map<String, String> headers = signed(payload, "6b8a7b5e-1f0c-4bb2-9e0e-3d6a4c1f2a10");
+            assertEquals(200, bitbucket.sendWebhook(j.getURL(), "pr:reviewer:approved", payload, headers));
+            awaitProcessed();
+            //Bitbucket redelivers the same request
+            assertEquals(200, bitbucket.sendWebhook(j.getURL(), "pr:reviewer:approved", payload, headers));
+            awaitProcessed();
+
+            assertEquals(1, pullRequestWakeUps.get());
+            assertEquals(1, repositoryWakeUps.get());
+        } finally {
+            WebhookSubscriptions.unsubscribe(WebhookSubscriptions.pullRequestKey("PRJ", "repo", 7), onPullRequest);
+            WebhookSubscriptions.unsubscribe(WebhookSubscriptions.repositoryKey("PRJ", "repo"), onRepository);
+        }
+    }
+
+    private static Map<String, String> signed(final String payload, final String requestId) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("X-Hub-Signature", "sha256=" + BitbucketWebhookReceiver.sign(SECRET, bytes(payload)));
+        if (requestId != null) {
+            headers.put("X-Request-Id", requestId);
+        }
+        return headers;
+    }
+
+    private static void awaitProcessed() throws InterruptedException {
+        long giveUp = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (!WebhookEventQueue.isIdle() && System.currentTimeMillis() < giveUp) {
+            Thread.sleep(20);
+        }
+        assertTrue("webhook events were not processed", WebhookEventQueue.isIdle());
+    }
+
+    private static byte[] bytes(final String payload) {
+        return payload.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private String recorded(final String name) throws IOException {
+        try (InputStream in = getClass().getResourceAsStream(name)) {
+            return IOUtils.toString(in, StandardCharsets.UTF_8);
+        }
+    }
+}